@@ -37,6 +37,7 @@ public class ParserOptions {
 	private boolean myStripVersionsFromReferences = true;
 	private Set<String> myDontStripVersionsFromReferencesAtPaths = Collections.emptySet();
 	private boolean myOverrideResourceIdWithBundleEntryFullUrl = true;
+	private boolean myStreamingJsonParsing = false;
 
 	/**
 	 * If supplied value(s), any resource references at the specified paths will have their
@@ -166,4 +167,40 @@ public class ParserOptions {
 		return this;
 	}
 
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), the JSON parser will parse resources directly from
+	 * a stream of JSON tokens instead of first loading the entire document into memory. This significantly reduces
+	 * the memory required to parse large documents such as Bundles with many entries.
+	 * <p>
+	 * Note that when this setting is enabled, any validation problems found in the document may be reported to the
+	 * {@link ca.uhn.fhir.parser.IParserErrorHandler parser error handler} in a different order than they appear in
+	 * the document, and <code>_name</code> elements (e.g. extensions on primitives) which appear after a
+	 * non-primitive element of the same name are ignored.
+	 * </p>
+	 *
+	 * @since 4.1.0
+	 */
+	public boolean isStreamingJsonParsing() {
+		return myStreamingJsonParsing;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), the JSON parser will parse resources directly from
+	 * a stream of JSON tokens instead of first loading the entire document into memory. This significantly reduces
+	 * the memory required to parse large documents such as Bundles with many entries.
+	 * <p>
+	 * Note that when this setting is enabled, any validation problems found in the document may be reported to the
+	 * {@link ca.uhn.fhir.parser.IParserErrorHandler parser error handler} in a different order than they appear in
+	 * the document, and <code>_name</code> elements (e.g. extensions on primitives) which appear after a
+	 * non-primitive element of the same name are ignored.
+	 * </p>
+	 *
+	 * @return Returns a reference to <code>this</code> parser so that method calls can be chained together
+	 * @since 4.1.0
+	 */
+	public ParserOptions setStreamingJsonParsing(boolean theStreamingJsonParsing) {
+		myStreamingJsonParsing = theStreamingJsonParsing;
+		return this;
+	}
+
 }
@@ -36,6 +36,9 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -50,8 +53,15 @@ public class InterceptorService implements IInterceptorService, IInterceptorBroa
 	private final ListMultimap<Pointcut, BaseInvoker> myAnonymousInvokers = ArrayListMultimap.create();
 	private final Object myRegistryMutex = new Object();
 	private final ThreadLocal<ListMultimap<Pointcut, BaseInvoker>> myThreadlocalInvokers = new ThreadLocal<>();
+	/**
+	 * Immutable, sorted union of the global and anonymous invokers for each pointcut. This
+	 * is rebuilt (copy-on-write) whenever an interceptor is registered or unregistered, so
+	 * that hook dispatch never needs to take {@link #myRegistryMutex}.
+	 */
+	private volatile Map<Pointcut, List<BaseInvoker>> myInvokerSnapshot = Collections.emptyMap();
 	private String myName;
-	private boolean myThreadlocalInvokersEnabled = true;
+	private volatile boolean myThreadlocalInvokersEnabled = true;
+	private volatile boolean myMethodHandleInvokersEnabled = true;
 
 	/**
 	 * Constructor which uses a default name of "default"
@@ -84,6 +94,27 @@ public class InterceptorService implements IInterceptorService, IInterceptorBroa
 		myThreadlocalInvokersEnabled = theThreadlocalInvokersEnabled;
 	}
 
+	/**
+	 * Should hook methods be invoked using a {@link MethodHandle} which is bound to the
+	 * interceptor once at registration time (defaults to true). If set to false, hook
+	 * methods are invoked using reflection instead.
+	 */
+	public boolean isMethodHandleInvokersEnabled() {
+		return myMethodHandleInvokersEnabled;
+	}
+
+	/**
+	 * Should hook methods be invoked using a {@link MethodHandle} which is bound to the
+	 * interceptor once at registration time (defaults to true). If set to false, hook
+	 * methods are invoked using reflection instead.
+	 * <p>
+	 * Note that this setting only affects interceptors registered after it is changed.
+	 * </p>
+	 */
+	public void setMethodHandleInvokersEnabled(boolean theMethodHandleInvokersEnabled) {
+		myMethodHandleInvokersEnabled = theMethodHandleInvokersEnabled;
+	}
+
 	@VisibleForTesting
 	List<Object> getGlobalInterceptorsForUnitTest() {
 		return myInterceptors;
@@ -109,6 +140,7 @@ public class InterceptorService implements IInterceptorService, IInterceptorBroa
 			if (!isInterceptorAlreadyRegistered(theInterceptor)) {
 				myInterceptors.add(theInterceptor);
 			}
+			rebuildInvokerSnapshot();
 		}
 	}
 
@@ -128,6 +160,7 @@ public class InterceptorService implements IInterceptorService, IInterceptorBroa
 			myAnonymousInvokers.clear();
 			myGlobalInvokers.clear();
 			myInterceptors.clear();
+			rebuildInvokerSnapshot();
 		}
 	}
 
@@ -151,7 +184,7 @@ public class InterceptorService implements IInterceptorService, IInterceptorBroa
 			return false;
 		}
 		ListMultimap<Pointcut, BaseInvoker> invokers = getThreadLocalInvokerMultimap();
-		scanInterceptorAndAddToInvokerMultimap(theInterceptor, invokers);
+		scanInterceptorAndAddToInvokerMultimap(theInterceptor, invokers, myMethodHandleInvokersEnabled);
 		return !invokers.isEmpty();
 
 	}
@@ -184,7 +217,7 @@ public class InterceptorService implements IInterceptorService, IInterceptorBroa
 				return false;
 			}
 
-			List<HookInvoker> addedInvokers = scanInterceptorAndAddToInvokerMultimap(theInterceptor, myGlobalInvokers);
+			List<HookInvoker> addedInvokers = scanInterceptorAndAddToInvokerMultimap(theInterceptor, myGlobalInvokers, myMethodHandleInvokersEnabled);
 			if (addedInvokers.isEmpty()) {
 				ourLog.warn("Interceptor registered with no valid hooks - Type was: {}", theInterceptor.getClass().getName());
 				return false;
@@ -194,6 +227,7 @@ public class InterceptorService implements IInterceptorService, IInterceptorBroa
 			myInterceptors.add(theInterceptor);
 			sortByOrderAnnotation(myInterceptors);
 
+			rebuildInvokerSnapshot();
 			return true;
 		}
 	}
@@ -213,10 +247,29 @@ public class InterceptorService implements IInterceptorService, IInterceptorBroa
 			boolean removed = myInterceptors.removeIf(t -> t == theInterceptor);
 			removed |= myGlobalInvokers.entries().removeIf(t -> t.getValue().getInterceptor() == theInterceptor);
 			removed |= myAnonymousInvokers.entries().removeIf(t -> t.getValue().getInterceptor() == theInterceptor);
+			if (removed) {
+				rebuildInvokerSnapshot();
+			}
 			return removed;
 		}
 	}
 
+	/**
+	 * Rebuilds the immutable per-pointcut invoker snapshot used by
+	 * {@link #getInvokersForPointcut(Pointcut)}. Must be called while holding
+	 * {@link #myRegistryMutex}.
+	 */
+	private void rebuildInvokerSnapshot() {
+		Map<Pointcut, List<BaseInvoker>> snapshot = new EnumMap<>(Pointcut.class);
+		for (Pointcut nextPointcut : Pointcut.values()) {
+			List<BaseInvoker> invokers = union(myGlobalInvokers.get(nextPointcut), myAnonymousInvokers.get(nextPointcut));
+			if (!invokers.isEmpty()) {
+				snapshot.put(nextPointcut, Collections.unmodifiableList(new ArrayList<>(invokers)));
+			}
+		}
+		myInvokerSnapshot = Collections.unmodifiableMap(snapshot);
+	}
+
 	private void sortByOrderAnnotation(List<Object> theObjects) {
 		IdentityHashMap<Object, Integer> interceptorToOrder = new IdentityHashMap<>();
 		for (Object next : theObjects) {
@@ -242,8 +295,7 @@ public class InterceptorService implements IInterceptorService, IInterceptorBroa
 
 	@Override
 	public boolean hasHooks(Pointcut thePointcut) {
-		return myGlobalInvokers.containsKey(thePointcut)
-			|| myAnonymousInvokers.containsKey(thePointcut)
+		return myInvokerSnapshot.containsKey(thePointcut)
 			|| hasThreadLocalHooks(thePointcut);
 	}
 
@@ -297,30 +349,29 @@ public class InterceptorService implements IInterceptorService, IInterceptorBroa
 	}
 
 	/**
-	 * Returns an ordered list of invokers for the given pointcut. Note that
-	 * a new and stable list is returned to.. do whatever you want with it.
+	 * Returns an ordered list of invokers for the given pointcut. The returned
+	 * list is immutable and stable, and this method does not lock - the global
+	 * and anonymous invokers come from a snapshot which is rebuilt whenever
+	 * the registry changes.
 	 */
 	private List<BaseInvoker> getInvokersForPointcut(Pointcut thePointcut) {
-		List<BaseInvoker> invokers;
+		List<BaseInvoker> invokers = myInvokerSnapshot.getOrDefault(thePointcut, Collections.emptyList());
 
-		synchronized (myRegistryMutex) {
-			List<BaseInvoker> globalInvokers = myGlobalInvokers.get(thePointcut);
-			List<BaseInvoker> anonymousInvokers = myAnonymousInvokers.get(thePointcut);
-			List<BaseInvoker> threadLocalInvokers = null;
-			if (myThreadlocalInvokersEnabled) {
-				ListMultimap<Pointcut, BaseInvoker> pointcutToInvokers = myThreadlocalInvokers.get();
-				if (pointcutToInvokers != null) {
-					threadLocalInvokers = pointcutToInvokers.get(thePointcut);
+		if (myThreadlocalInvokersEnabled) {
+			ListMultimap<Pointcut, BaseInvoker> pointcutToInvokers = myThreadlocalInvokers.get();
+			if (pointcutToInvokers != null) {
+				List<BaseInvoker> threadLocalInvokers = pointcutToInvokers.get(thePointcut);
+				if (!threadLocalInvokers.isEmpty()) {
+					invokers = union(invokers, threadLocalInvokers);
 				}
 			}
-			invokers = union(globalInvokers, anonymousInvokers, threadLocalInvokers);
 		}
 
 		return invokers;
 	}
 
 	/**
-	 * First argument must be the global invoker list!!
+	 * First argument must be an already sorted list (e.g. the global invoker list)!!
 	 */
 	@SafeVarargs
 	private final List<BaseInvoker> union(List<BaseInvoker>... theInvokersLists) {
@@ -430,7 +481,14 @@ public class InterceptorService implements IInterceptorService, IInterceptorBroa
 
 	private static class HookInvoker extends BaseInvoker {
 
+		/**
+		 * Value in {@link #myParameterIndexes} indicating that the parameter
+		 * receives the pointcut itself instead of a value from the {@link HookParams}
+		 */
+		private static final int POINTCUT_PARAMETER_INDEX = -1;
+
 		private final Method myMethod;
+		private final MethodHandle myMethodHandle;
 		private final Class<?>[] myParameterTypes;
 		private final int[] myParameterIndexes;
 		private final Pointcut myPointcut;
@@ -438,7 +496,7 @@ public class InterceptorService implements IInterceptorService, IInterceptorBroa
 		/**
 		 * Constructor
 		 */
-		private HookInvoker(Hook theHook, @Nonnull Object theInterceptor, @Nonnull Method theHookMethod, int theOrder) {
+		private HookInvoker(Hook theHook, @Nonnull Object theInterceptor, @Nonnull Method theHookMethod, int theOrder, boolean theUseMethodHandle) {
 			super(theInterceptor, theOrder);
 			myPointcut = theHook.value();
 			myParameterTypes = theHookMethod.getParameterTypes();
@@ -456,11 +514,21 @@ public class InterceptorService implements IInterceptorService, IInterceptorBroa
 			myParameterIndexes = new int[myParameterTypes.length];
 			Map<Class<?>, AtomicInteger> typeToCount = new HashMap<>();
 			for (int i = 0; i < myParameterTypes.length; i++) {
+				if (myParameterTypes[i].equals(Pointcut.class)) {
+					myParameterIndexes[i] = POINTCUT_PARAMETER_INDEX;
+					continue;
+				}
 				AtomicInteger counter = typeToCount.computeIfAbsent(myParameterTypes[i], t -> new AtomicInteger(0));
 				myParameterIndexes[i] = counter.getAndIncrement();
 			}
 
 			myMethod.setAccessible(true);
+
+			if (theUseMethodHandle) {
+				myMethodHandle = createMethodHandle(theInterceptor, theHookMethod);
+			} else {
+				myMethodHandle = null;
+			}
 		}
 
 		@Override
@@ -482,44 +550,71 @@ public class InterceptorService implements IInterceptorService, IInterceptorBroa
 
 			Object[] args = new Object[myParameterTypes.length];
 			for (int i = 0; i < myParameterTypes.length; i++) {
-				Class<?> nextParamType = myParameterTypes[i];
-				if (nextParamType.equals(Pointcut.class)) {
+				int nextParamIndex = myParameterIndexes[i];
+				if (nextParamIndex == POINTCUT_PARAMETER_INDEX) {
 					args[i] = myPointcut;
 				} else {
-					int nextParamIndex = myParameterIndexes[i];
-					Object nextParamValue = theParams.get(nextParamType, nextParamIndex);
-					args[i] = nextParamValue;
+					args[i] = theParams.get(myParameterTypes[i], nextParamIndex);
 				}
 			}
 
 			// Invoke the method
+			if (myMethodHandle != null) {
+				try {
+					return (Object) myMethodHandle.invokeExact(args);
+				} catch (Throwable t) {
+					return handleHookException(t);
+				}
+			}
+
 			try {
 				return myMethod.invoke(getInterceptor(), args);
 			} catch (InvocationTargetException e) {
-				Throwable targetException = e.getTargetException();
-				if (myPointcut.isShouldLogAndSwallowException(targetException)) {
-					ourLog.error("Exception thrown by interceptor: " + targetException.toString(), targetException);
-					return null;
-				}
-
-				if (targetException instanceof RuntimeException) {
-					throw ((RuntimeException) targetException);
-				} else {
-					throw new InternalErrorException("Failure invoking interceptor for pointcut(s) " + getPointcut(), targetException);
-				}
+				return handleHookException(e.getTargetException());
 			} catch (Exception e) {
 				throw new InternalErrorException(e);
 			}
 
 		}
 
+		private Object handleHookException(Throwable theTargetException) {
+			if (myPointcut.isShouldLogAndSwallowException(theTargetException)) {
+				ourLog.error("Exception thrown by interceptor: " + theTargetException.toString(), theTargetException);
+				return null;
+			}
+
+			if (theTargetException instanceof RuntimeException) {
+				throw ((RuntimeException) theTargetException);
+			} else {
+				throw new InternalErrorException("Failure invoking interceptor for pointcut(s) " + getPointcut(), theTargetException);
+			}
+		}
+
+		/**
+		 * Creates a method handle which is bound to the interceptor instance and
+		 * which accepts the hook arguments as a single <code>Object[]</code>,
+		 * returning an <code>Object</code> (<code>null</code> for void methods)
+		 */
+		private static MethodHandle createMethodHandle(Object theInterceptor, Method theHookMethod) {
+			try {
+				return MethodHandles
+					.lookup()
+					.unreflect(theHookMethod)
+					.bindTo(theInterceptor)
+					.asSpreader(Object[].class, theHookMethod.getParameterCount())
+					.asType(MethodType.methodType(Object.class, Object[].class));
+			} catch (IllegalAccessException e) {
+				throw new InternalErrorException("Unable to access hook method " + theHookMethod, e);
+			}
+		}
+
 	}
 
-	private static List<HookInvoker> scanInterceptorAndAddToInvokerMultimap(Object theInterceptor, ListMultimap<Pointcut, BaseInvoker> theInvokers) {
+	private static List<HookInvoker> scanInterceptorAndAddToInvokerMultimap(Object theInterceptor, ListMultimap<Pointcut, BaseInvoker> theInvokers, boolean theUseMethodHandles) {
 		Class<?> interceptorClass = theInterceptor.getClass();
 		int typeOrder = determineOrder(interceptorClass);
 
-		List<HookInvoker> addedInvokers = scanInterceptorForHookMethods(theInterceptor, typeOrder);
+		List<HookInvoker> addedInvokers = scanInterceptorForHookMethods(theInterceptor, typeOrder, theUseMethodHandles);
 
 		// Invoke the REGISTERED pointcut for any added hooks
 		addedInvokers.stream()
@@ -548,7 +643,7 @@ public class InterceptorService implements IInterceptorService, IInterceptorBroa
 	/**
 	 * @return Returns a list of any added invokers
 	 */
-	private static List<HookInvoker> scanInterceptorForHookMethods(Object theInterceptor, int theTypeOrder) {
+	private static List<HookInvoker> scanInterceptorForHookMethods(Object theInterceptor, int theTypeOrder, boolean theUseMethodHandles) {
 		ArrayList<HookInvoker> retVal = new ArrayList<>();
 		for (Method nextMethod : theInterceptor.getClass().getMethods()) {
 			Optional<Hook> hook = findAnnotation(nextMethod, Hook.class);
@@ -560,7 +655,7 @@ public class InterceptorService implements IInterceptorService, IInterceptorBroa
 					methodOrder = methodOrderAnnotation;
 				}
 
-				retVal.add(new HookInvoker(hook.get(), theInterceptor, nextMethod, methodOrder));
+				retVal.add(new HookInvoker(hook.get(), theInterceptor, nextMethod, methodOrder, theUseMethodHandles));
 			}
 		}
 
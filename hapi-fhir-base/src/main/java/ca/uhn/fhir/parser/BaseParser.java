@@ -26,6 +26,7 @@ import ca.uhn.fhir.model.api.*;
 import ca.uhn.fhir.model.primitive.IdDt;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.util.BundleUtil;
 import ca.uhn.fhir.util.UrlUtil;
 
 import com.google.common.base.Charsets;
@@ -770,11 +771,7 @@ public abstract class BaseParser implements IParser {
 								List<IBase> entryResources = entryDef.getChildByName("resource").getAccessor().getValues(nextEntry);
 								if (entryResources != null && entryResources.size() > 0) {
 									IBaseResource res = (IBaseResource) entryResources.get(0);
-									String versionId = res.getIdElement().getVersionIdPart();
-									res.setId(value.getValueAsString());
-									if (isNotBlank(versionId) && res.getIdElement().hasVersionIdPart() == false) {
-										res.setId(res.getIdElement().withVersion(versionId));
-									}
+									overrideResourceIdWithBundleEntryFullUrl(res, value.getValueAsString());
 								}
 							}
 						}
@@ -804,6 +801,40 @@ public abstract class BaseParser implements IParser {
 		return parseResource(null, theMessageString);
 	}
 
+	@Override
+	public Iterator<IBaseResource> parseBundleEntryResources(InputStream theInputStream) throws DataFormatException {
+		return parseBundleEntryResources(new InputStreamReader(theInputStream, Constants.CHARSET_UTF8));
+	}
+
+	/**
+	 * Parsers which are able to read a Bundle incrementally override this method. This
+	 * default implementation parses the complete Bundle and then iterates over its entries.
+	 */
+	@Override
+	public Iterator<IBaseResource> parseBundleEntryResources(Reader theReader) throws DataFormatException {
+		IBaseResource bundle = parseResource(theReader);
+		if (!(bundle instanceof IBaseBundle)) {
+			throw new DataFormatException("Expected a resource of type 'Bundle', found: " + myContext.getResourceDefinition(bundle).getName());
+		}
+		return BundleUtil.toListOfResources(myContext, (IBaseBundle) bundle).iterator();
+	}
+
+	/**
+	 * Sets the ID of a Bundle entry resource to the value of the entry's <code>fullUrl</code>,
+	 * if this behaviour is enabled (see {@link #setOverrideResourceIdWithBundleEntryFullUrl(Boolean)}).
+	 * Any version ID already present on the resource is preserved.
+	 */
+	protected void overrideResourceIdWithBundleEntryFullUrl(IBaseResource theResource, String theFullUrl) {
+		if (isBlank(theFullUrl) || !isOverrideResourceIdWithBundleEntryFullUrl()) {
+			return;
+		}
+		String versionId = theResource.getIdElement().getVersionIdPart();
+		theResource.setId(theFullUrl);
+		if (isNotBlank(versionId) && theResource.getIdElement().hasVersionIdPart() == false) {
+			theResource.setId(theResource.getIdElement().withVersion(versionId));
+		}
+	}
+
 	protected List<? extends IBase> preProcessValues(BaseRuntimeChildDefinition theMetaChildUncast, IBaseResource theResource, List<? extends IBase> theValues,
 																	 CompositeChildElement theCompositeChildElement, EncodeContext theEncodeContext) {
 		if (myContext.getVersion().getVersion().isRi()) {
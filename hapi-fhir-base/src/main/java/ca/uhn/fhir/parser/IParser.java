@@ -34,6 +34,7 @@ import java.io.InputStream;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
@@ -191,6 +192,43 @@ public interface IParser {
 	 */
 	IBaseResource parseResource(String theMessageString) throws ConfigurationException, DataFormatException;
 
+	/**
+	 * Parses a Bundle one entry at a time, returning an iterator over the resources found in
+	 * <code>Bundle.entry.resource</code>. Unlike {@link #parseResource(Reader)}, the Bundle itself is
+	 * never built: each entry resource is parsed from the reader only when {@link Iterator#next()} is
+	 * called, so the memory used is bounded by the size of a single entry rather than the size of the
+	 * whole Bundle. Elements of the Bundle and of its entries other than <code>Bundle.entry.fullUrl</code>
+	 * and <code>Bundle.entry.resource</code> are skipped.
+	 * <p>
+	 * If {@link #setOverrideResourceIdWithBundleEntryFullUrl(Boolean) overriding the resource ID with the
+	 * entry fullUrl} is enabled, it is applied to each resource as it is returned.
+	 * </p>
+	 *
+	 * @param theReader
+	 *           The reader to parse input from. Note that the Reader will not be closed by the parser, and
+	 *           must remain open until the iterator has been exhausted.
+	 * @return An iterator over the entry resources. Note that {@link Iterator#hasNext()} and {@link Iterator#next()}
+	 *         may throw {@link DataFormatException} if the content of the entry being read can not be parsed.
+	 * @throws DataFormatException
+	 *            If the content is not a Bundle
+	 * @since 4.1.0
+	 */
+	Iterator<IBaseResource> parseBundleEntryResources(Reader theReader) throws DataFormatException;
+
+	/**
+	 * Parses a Bundle one entry at a time, returning an iterator over the resources found in
+	 * <code>Bundle.entry.resource</code>. See {@link #parseBundleEntryResources(Reader)} for details.
+	 *
+	 * @param theInputStream
+	 *           The InputStream to parse input from (charset is assumed to be UTF-8). Note that the stream will
+	 *           not be closed by the parser, and must remain open until the iterator has been exhausted.
+	 * @return An iterator over the entry resources
+	 * @throws DataFormatException
+	 *            If the content is not a Bundle
+	 * @since 4.1.0
+	 */
+	Iterator<IBaseResource> parseBundleEntryResources(InputStream theInputStream) throws DataFormatException;
+
 	/**
 	 * If provided, specifies the elements which should NOT be encoded. Valid values for this
 	 * field would include:
@@ -34,6 +34,7 @@ import ca.uhn.fhir.parser.json.JsonLikeValue.ScalarType;
 import ca.uhn.fhir.parser.json.JsonLikeValue.ValueType;
 import ca.uhn.fhir.rest.api.EncodingEnum;
 import ca.uhn.fhir.util.ElementUtil;
+import com.google.common.collect.AbstractIterator;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import org.apache.commons.lang3.StringUtils;
@@ -172,6 +173,11 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 
 	@Override
 	public <T extends IBaseResource> T doParseResource(Class<T> theResourceType, Reader theReader) {
+		if (myContext.getParserOptions().isStreamingJsonParsing()) {
+			JsonLikeStreamReader streamReader = new GsonStreamReader(theReader);
+			return doParseResource(theResourceType, streamReader);
+		}
+
 		JsonLikeStructure jsonStructure = new GsonStructure();
 		jsonStructure.load(theReader);
 
@@ -180,6 +186,61 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 		return retVal;
 	}
 
+	/**
+	 * Parses a resource from a stream of JSON tokens. Unlike {@link #doParseResource(Class, JsonLikeStructure)},
+	 * the document is never loaded into memory as a whole: complex elements (including large repeating
+	 * elements such as <code>Bundle.entry</code>) are passed to the parser state as soon as they are read,
+	 * and only primitive values are held until the end of their containing object (since their
+	 * <code>_name</code> counterparts may appear anywhere within it).
+	 */
+	public <T extends IBaseResource> T doParseResource(Class<T> theResourceType, JsonLikeStreamReader theReader) {
+		T retVal = parseResourceObject(theResourceType, theReader);
+		theReader.endDocument();
+		return retVal;
+	}
+
+	/**
+	 * Streams a single resource object (the value of which the reader must be positioned
+	 * before) into a new resource instance
+	 */
+	private <T extends IBaseResource> T parseResourceObject(Class<T> theResourceType, JsonLikeStreamReader theReader) {
+		theReader.beginObject();
+
+		Map<String, JsonLikeValue> bufferedMembers = new LinkedHashMap<>();
+		JsonLikeValue resourceTypeObj = readToResourceType(theReader, bufferedMembers);
+		if (resourceTypeObj == null || !resourceTypeObj.isString() || isBlank(resourceTypeObj.getAsString())) {
+			throw new DataFormatException("Invalid JSON content detected, missing required element: 'resourceType'");
+		}
+
+		String resourceType = resourceTypeObj.getAsString();
+
+		ParserState<? extends IBaseResource> state = ParserState.getPreResourceInstance(this, theResourceType, myContext, true, getErrorHandler());
+		state.enteringNewElement(null, resourceType);
+
+		parseChildren(theReader, bufferedMembers, state);
+		theReader.endObject();
+
+		state.endingElement();
+		state.endingElement();
+
+		@SuppressWarnings("unchecked")
+		T retVal = (T) state.getObject();
+
+		return retVal;
+	}
+
+	/**
+	 * Reads the Bundle one entry at a time. Members of the Bundle other than <code>entry</code>,
+	 * and members of each entry other than <code>fullUrl</code> and <code>resource</code>, are
+	 * skipped without being loaded.
+	 */
+	@Override
+	public Iterator<IBaseResource> parseBundleEntryResources(Reader theReader) throws DataFormatException {
+		JsonLikeStreamReader reader = new GsonStreamReader(theReader);
+		reader.beginObject();
+		return new BundleEntryResourceIterator(reader);
+	}
+
 	public <T extends IBaseResource> T doParseResource(Class<T> theResourceType, JsonLikeStructure theJsonStructure) {
 		JsonLikeObject object = theJsonStructure.getRootObject();
 
@@ -1040,6 +1101,142 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 
 	}
 
+	/**
+	 * Streaming equivalent of {@link #parseChildren(JsonLikeObject, ParserState)}. The reader must be
+	 * positioned inside the object whose members are being parsed, and is left positioned before the
+	 * end of that object.
+	 *
+	 * @param theBufferedMembers Any members of the object which have already been read from the stream
+	 */
+	private void parseChildren(JsonLikeStreamReader theReader, Map<String, JsonLikeValue> theBufferedMembers, ParserState<?> theState) {
+		Map<String, JsonLikeValue> deferredMembers = new LinkedHashMap<>(theBufferedMembers);
+		Set<String> streamedNames = new HashSet<>();
+
+		while (theReader.hasNext()) {
+			String nextName = theReader.nextName();
+			ValueType nextType = theReader.peek();
+
+			if (!isStreamable(nextName) || (nextType != ValueType.OBJECT && nextType != ValueType.ARRAY)) {
+				deferredMembers.put(nextName, theReader.nextValue());
+				continue;
+			}
+
+			String alternateName = '_' + nextName;
+			JsonLikeValue alternateVal = deferredMembers.remove(alternateName);
+
+			if (nextType == ValueType.OBJECT) {
+				streamedNames.add(nextName);
+				parseObject(theReader, theState, nextName, alternateVal, alternateName, false);
+				continue;
+			}
+
+			theReader.beginArray();
+			if (!theReader.hasNext() || theReader.peek() != ValueType.OBJECT) {
+
+				// Empty or primitive arrays are held until the end of the object, along with their alternates
+				List<JsonLikeValue> values = new ArrayList<>();
+				while (theReader.hasNext()) {
+					values.add(theReader.nextValue());
+				}
+				theReader.endArray();
+				deferredMembers.put(nextName, new BufferedJsonArray(values));
+				if (alternateVal != null) {
+					deferredMembers.put(alternateName, alternateVal);
+				}
+				continue;
+			}
+
+			streamedNames.add(nextName);
+			if (alternateVal != null && alternateVal.isArray() == false) {
+				getErrorHandler().incorrectJsonType(null, alternateName, ValueType.ARRAY, null, alternateVal.getJsonType(), null);
+				alternateVal = null;
+			}
+			JsonLikeArray alternateArray = JsonLikeValue.asArray(alternateVal); // could be null
+			for (int i = 0; theReader.hasNext(); i++) {
+				JsonLikeValue nextAlternate = null;
+				if (alternateArray != null && alternateArray.size() >= (i + 1)) {
+					nextAlternate = alternateArray.get(i);
+				}
+				if (theReader.peek() == ValueType.OBJECT) {
+					parseObject(theReader, theState, nextName, nextAlternate, alternateName, true);
+				} else {
+					parseChildren(theState, nextName, theReader.nextValue(), nextAlternate, alternateName, true);
+				}
+			}
+			theReader.endArray();
+		}
+
+		// Alternates for complex elements which were already streamed can no longer be applied
+		for (String nextStreamedName : streamedNames) {
+			deferredMembers.remove('_' + nextStreamedName);
+		}
+
+		if (!deferredMembers.isEmpty()) {
+			parseChildren(new BufferedJsonObject(deferredMembers), theState);
+		}
+	}
+
+	/**
+	 * Streaming equivalent of the object handling in
+	 * {@link #parseChildren(ParserState, String, JsonLikeValue, JsonLikeValue, String, boolean)}
+	 */
+	private void parseObject(JsonLikeStreamReader theReader, ParserState<?> theState, String theName, JsonLikeValue theAlternateVal, String theAlternateName, boolean theInArray) {
+		if (!theInArray && theState.elementIsRepeating(theName)) {
+			getErrorHandler().incorrectJsonType(null, theName, ValueType.ARRAY, null, ValueType.OBJECT, null);
+		}
+
+		theState.enteringNewElement(null, theName);
+		parseAlternates(theAlternateVal, theState, theAlternateName, theAlternateName);
+		theReader.beginObject();
+		Map<String, JsonLikeValue> bufferedMembers = new LinkedHashMap<>();
+		boolean preResource = false;
+		if (theState.isPreResource()) {
+			JsonLikeValue resType = readToResourceType(theReader, bufferedMembers);
+			if (resType == null || !resType.isString()) {
+				throw new DataFormatException("Missing required element 'resourceType' from JSON resource object, unable to parse");
+			}
+			theState.enteringNewElement(null, resType.getAsString());
+			preResource = true;
+		}
+		parseChildren(theReader, bufferedMembers, theState);
+		theReader.endObject();
+		if (preResource) {
+			theState.endingElement();
+		}
+		theState.endingElement();
+	}
+
+	/**
+	 * Reads (and buffers) members of the current object until the <code>resourceType</code>
+	 * member is found. Normally this is the first member so nothing is buffered.
+	 *
+	 * @return The <code>resourceType</code> value, or <code>null</code> if the object has none
+	 */
+	private static JsonLikeValue readToResourceType(JsonLikeStreamReader theReader, Map<String, JsonLikeValue> theBufferedMembers) {
+		while (theReader.hasNext()) {
+			String nextName = theReader.nextName();
+			JsonLikeValue nextValue = theReader.nextValue();
+			if ("resourceType".equals(nextName)) {
+				return nextValue;
+			}
+			theBufferedMembers.put(nextName, nextValue);
+		}
+		return null;
+	}
+
+	private static boolean isStreamable(String theName) {
+		switch (theName) {
+			case "id":
+			case "extension":
+			case "modifierExtension":
+			case "fhir_comments":
+			case "resourceType":
+				return false;
+			default:
+				return !theName.startsWith("_");
+		}
+	}
+
 	private void parseChildren(ParserState<?> theState, String theName, JsonLikeValue theJsonVal, JsonLikeValue theAlternateVal, String theAlternateName, boolean theInArray) {
 		if (theName.equals("id")) {
 			if (!theJsonVal.isString()) {
@@ -1372,6 +1569,145 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 		theWriter.write(theName, theValue);
 	}
 
+	/**
+	 * Iterates over <code>Bundle.entry.resource</code> in a Bundle being read from a {@link JsonLikeStreamReader}
+	 */
+	private class BundleEntryResourceIterator extends AbstractIterator<IBaseResource> {
+
+		private final JsonLikeStreamReader myReader;
+		private boolean myInEntryArray;
+		private boolean myFoundResourceType;
+
+		BundleEntryResourceIterator(JsonLikeStreamReader theReader) {
+			myReader = theReader;
+		}
+
+		@Override
+		protected IBaseResource computeNext() {
+			while (true) {
+				if (myInEntryArray) {
+					if (myReader.hasNext()) {
+						IBaseResource next = parseEntry();
+						if (next != null) {
+							return next;
+						}
+						continue;
+					}
+					myReader.endArray();
+					myInEntryArray = false;
+				}
+
+				if (!myReader.hasNext()) {
+					myReader.endObject();
+					myReader.endDocument();
+					if (!myFoundResourceType) {
+						throw new DataFormatException("Invalid JSON content detected, missing required element: 'resourceType'");
+					}
+					return endOfData();
+				}
+
+				String nextName = myReader.nextName();
+				if ("resourceType".equals(nextName)) {
+					JsonLikeValue resourceType = myReader.nextValue();
+					if (!resourceType.isString() || !"Bundle".equals(resourceType.getAsString())) {
+						throw new DataFormatException("Expected a resource of type 'Bundle', found: " + resourceType.getAsString());
+					}
+					myFoundResourceType = true;
+				} else if ("entry".equals(nextName) && myReader.peek() == ValueType.ARRAY) {
+					myReader.beginArray();
+					myInEntryArray = true;
+				} else {
+					myReader.skipValue();
+				}
+			}
+		}
+
+		/**
+		 * @return The entry resource, or <code>null</code> if the entry has none
+		 */
+		private IBaseResource parseEntry() {
+			if (myReader.peek() != ValueType.OBJECT) {
+				getErrorHandler().incorrectJsonType(null, "entry", ValueType.OBJECT, null, myReader.peek(), null);
+				myReader.skipValue();
+				return null;
+			}
+
+			String fullUrl = null;
+			IBaseResource resource = null;
+			myReader.beginObject();
+			while (myReader.hasNext()) {
+				String nextName = myReader.nextName();
+				ValueType nextType = myReader.peek();
+				if ("fullUrl".equals(nextName) && nextType == ValueType.SCALAR) {
+					fullUrl = myReader.nextValue().getAsString();
+				} else if ("resource".equals(nextName) && nextType == ValueType.OBJECT) {
+					resource = parseResourceObject(null, myReader);
+				} else {
+					myReader.skipValue();
+				}
+			}
+			myReader.endObject();
+
+			if (resource != null) {
+				overrideResourceIdWithBundleEntryFullUrl(resource, fullUrl);
+			}
+			return resource;
+		}
+
+	}
+
+	/**
+	 * Object containing members which were read from a {@link JsonLikeStreamReader}
+	 */
+	private static class BufferedJsonObject extends JsonLikeObject {
+		private final Map<String, JsonLikeValue> myMembers;
+
+		BufferedJsonObject(Map<String, JsonLikeValue> theMembers) {
+			myMembers = theMembers;
+		}
+
+		@Override
+		public Object getValue() {
+			return null;
+		}
+
+		@Override
+		public Set<String> keySet() {
+			return myMembers.keySet();
+		}
+
+		@Override
+		public JsonLikeValue get(String key) {
+			return myMembers.get(key);
+		}
+	}
+
+	/**
+	 * Array containing elements which were read from a {@link JsonLikeStreamReader}
+	 */
+	private static class BufferedJsonArray extends JsonLikeArray {
+		private final List<JsonLikeValue> myValues;
+
+		BufferedJsonArray(List<JsonLikeValue> theValues) {
+			myValues = theValues;
+		}
+
+		@Override
+		public Object getValue() {
+			return null;
+		}
+
+		@Override
+		public int size() {
+			return myValues.size();
+		}
+
+		@Override
+		public JsonLikeValue get(int index) {
+			return myValues.get(index);
+		}
+	}
+
 	private class HeldExtension implements Comparable<HeldExtension> {
 
 		private CompositeChildElement myChildElem;
@@ -32,12 +32,14 @@ import ca.uhn.fhir.util.ElementUtil;
 import ca.uhn.fhir.util.NonPrettyPrintWriterWrapper;
 import ca.uhn.fhir.util.PrettyPrintWriterWrapper;
 import ca.uhn.fhir.util.XmlUtil;
+import com.google.common.collect.AbstractIterator;
 import org.apache.commons.lang3.StringUtils;
 import org.hl7.fhir.instance.model.api.*;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.*;
 import javax.xml.stream.events.*;
+import javax.xml.stream.util.EventReaderDelegate;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.ArrayList;
@@ -116,6 +118,31 @@ public class XmlParser extends BaseParser {
 		return parseResource(theResourceType, streamReader);
 	}
 
+	/**
+	 * Reads the Bundle one entry at a time. Children of the Bundle other than <code>entry</code>,
+	 * and children of each entry other than <code>fullUrl</code> and <code>resource</code>, are
+	 * skipped without being parsed.
+	 */
+	@Override
+	public Iterator<IBaseResource> parseBundleEntryResources(Reader theReader) throws DataFormatException {
+		XMLEventReader streamReader = createStreamReader(theReader);
+		try {
+			while (streamReader.hasNext() && !streamReader.peek().isStartElement()) {
+				streamReader.nextEvent();
+			}
+			if (!streamReader.hasNext()) {
+				throw new DataFormatException("Expected a resource of type 'Bundle', but no root element was found");
+			}
+			String rootName = streamReader.nextEvent().asStartElement().getName().getLocalPart();
+			if (!"Bundle".equals(rootName)) {
+				throw new DataFormatException("Expected a resource of type 'Bundle', found: " + rootName);
+			}
+		} catch (XMLStreamException e) {
+			throw new DataFormatException(e);
+		}
+		return new BundleEntryResourceIterator(streamReader);
+	}
+
 	private <T> T doXmlLoop(XMLEventReader streamReader, ParserState<T> parserState) {
 		ourLog.trace("Entering XML parsing loop with state: {}", parserState);
 
@@ -753,6 +780,18 @@ public class XmlParser extends BaseParser {
 		return doXmlLoop(theStreamReader, parserState);
 	}
 
+	/**
+	 * Parses the resource element that the reader is positioned before, stopping at the end of that element
+	 */
+	private IBaseResource parseEntryResource(XMLEventReader theStreamReader) {
+		ParserState<IBaseResource> parserState = ParserState.getPreResourceInstance(this, null, myContext, false, getErrorHandler());
+		doXmlLoop(new SubtreeEventReader(theStreamReader), parserState);
+
+		// The subtree reader has no end of document, so finish the parse as if it did
+		parserState.endingElement();
+		return parserState.getObject();
+	}
+
 	@Override
 	public IParser setPrettyPrint(boolean thePrettyPrint) {
 		myPrettyPrint = thePrettyPrint;
@@ -798,4 +837,132 @@ public class XmlParser extends BaseParser {
 		}
 	}
 
+	/**
+	 * Consumes the remainder of an element whose start has already been read
+	 */
+	private static void skipElement(XMLEventReader theStreamReader) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			XMLEvent next = theStreamReader.nextEvent();
+			if (next.isStartElement()) {
+				depth++;
+			} else if (next.isEndElement()) {
+				depth--;
+			}
+		}
+	}
+
+	/**
+	 * Iterates over <code>Bundle.entry.resource</code> in a Bundle being read from an {@link XMLEventReader}
+	 * which is positioned just after the start of the Bundle element
+	 */
+	private class BundleEntryResourceIterator extends AbstractIterator<IBaseResource> {
+
+		private final XMLEventReader myStreamReader;
+
+		BundleEntryResourceIterator(XMLEventReader theStreamReader) {
+			myStreamReader = theStreamReader;
+		}
+
+		@Override
+		protected IBaseResource computeNext() {
+			try {
+				while (myStreamReader.hasNext()) {
+					XMLEvent next = myStreamReader.nextEvent();
+					if (next.isEndElement()) {
+						// End of the Bundle
+						break;
+					}
+					if (!next.isStartElement()) {
+						continue;
+					}
+					if ("entry".equals(next.asStartElement().getName().getLocalPart())) {
+						IBaseResource resource = parseEntry();
+						if (resource != null) {
+							return resource;
+						}
+					} else {
+						skipElement(myStreamReader);
+					}
+				}
+			} catch (XMLStreamException e) {
+				throw new DataFormatException(e);
+			}
+			return endOfData();
+		}
+
+		/**
+		 * @return The entry resource, or <code>null</code> if the entry has none
+		 */
+		private IBaseResource parseEntry() throws XMLStreamException {
+			String fullUrl = null;
+			IBaseResource resource = null;
+			while (true) {
+				XMLEvent next = myStreamReader.nextEvent();
+				if (next.isEndElement()) {
+					break;
+				}
+				if (!next.isStartElement()) {
+					continue;
+				}
+				StartElement elem = next.asStartElement();
+				String elementName = elem.getName().getLocalPart();
+				if ("fullUrl".equals(elementName)) {
+					Attribute value = elem.getAttributeByName(new QName("value"));
+					if (value != null) {
+						fullUrl = value.getValue();
+					}
+				} else if ("resource".equals(elementName)) {
+					while (myStreamReader.hasNext() && !myStreamReader.peek().isStartElement() && !myStreamReader.peek().isEndElement()) {
+						myStreamReader.nextEvent();
+					}
+					if (myStreamReader.hasNext() && myStreamReader.peek().isStartElement()) {
+						resource = parseEntryResource(myStreamReader);
+					}
+				}
+				skipElement(myStreamReader);
+			}
+
+			if (resource != null) {
+				overrideResourceIdWithBundleEntryFullUrl(resource, fullUrl);
+			}
+			return resource;
+		}
+
+	}
+
+	/**
+	 * Reader which returns the events for a single element (and its children) from the
+	 * underlying reader, and then reports that there are no more events
+	 */
+	private static class SubtreeEventReader extends EventReaderDelegate {
+
+		private int myDepth;
+		private boolean myComplete;
+
+		SubtreeEventReader(XMLEventReader theReader) {
+			super(theReader);
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !myComplete && super.hasNext();
+		}
+
+		@Override
+		public XMLEvent nextEvent() throws XMLStreamException {
+			XMLEvent retVal = super.nextEvent();
+			if (retVal.isStartElement()) {
+				myDepth++;
+			} else if (retVal.isEndElement()) {
+				myDepth--;
+				if (myDepth == 0) {
+					myComplete = true;
+				}
+			}
+			return retVal;
+		}
+
+	}
+
 }
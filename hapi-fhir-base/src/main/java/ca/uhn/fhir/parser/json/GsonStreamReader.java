@@ -0,0 +1,185 @@
+package ca.uhn.fhir.parser.json;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.parser.json.JsonLikeValue.ValueType;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+
+/**
+ * {@link JsonLikeStreamReader} implementation which uses Gson's
+ * {@link JsonReader} pull parser
+ */
+public class GsonStreamReader extends JsonLikeStreamReader {
+
+	private final JsonReader myReader;
+	private final JsonParser myElementParser = new JsonParser();
+
+	/**
+	 * Constructor
+	 *
+	 * @param theReader The reader to consume. The content must be a JSON object.
+	 * @throws DataFormatException If the content does not start with a JSON object
+	 */
+	public GsonStreamReader(Reader theReader) throws DataFormatException {
+		PushbackReader pbr = new PushbackReader(theReader);
+		try {
+			GsonStructure.readToContent(pbr, false);
+		} catch (Exception e) {
+			throw new DataFormatException("Failed to parse JSON content, error was: " + e.getMessage(), e);
+		}
+		myReader = new JsonReader(pbr);
+		myReader.setLenient(true);
+	}
+
+	@Override
+	public ValueType peek() throws DataFormatException {
+		JsonToken token;
+		try {
+			token = myReader.peek();
+		} catch (Exception e) {
+			throw toDataFormatException(e);
+		}
+		switch (token) {
+			case BEGIN_OBJECT:
+				return ValueType.OBJECT;
+			case BEGIN_ARRAY:
+				return ValueType.ARRAY;
+			case STRING:
+			case NUMBER:
+			case BOOLEAN:
+				return ValueType.SCALAR;
+			case NULL:
+				return ValueType.NULL;
+			default:
+				return null;
+		}
+	}
+
+	@Override
+	public void beginObject() throws DataFormatException {
+		try {
+			myReader.beginObject();
+		} catch (Exception e) {
+			throw toDataFormatException(e);
+		}
+	}
+
+	@Override
+	public void endObject() throws DataFormatException {
+		try {
+			myReader.endObject();
+		} catch (Exception e) {
+			throw toDataFormatException(e);
+		}
+	}
+
+	@Override
+	public void beginArray() throws DataFormatException {
+		try {
+			myReader.beginArray();
+		} catch (Exception e) {
+			throw toDataFormatException(e);
+		}
+	}
+
+	@Override
+	public void endArray() throws DataFormatException {
+		try {
+			myReader.endArray();
+		} catch (Exception e) {
+			throw toDataFormatException(e);
+		}
+	}
+
+	@Override
+	public boolean hasNext() throws DataFormatException {
+		try {
+			return myReader.hasNext();
+		} catch (Exception e) {
+			throw toDataFormatException(e);
+		}
+	}
+
+	@Override
+	public String nextName() throws DataFormatException {
+		try {
+			return myReader.nextName();
+		} catch (Exception e) {
+			throw toDataFormatException(e);
+		}
+	}
+
+	@Override
+	public JsonLikeValue nextValue() throws DataFormatException {
+		JsonElement element;
+		try {
+			element = myElementParser.parse(myReader);
+		} catch (Exception e) {
+			throw toDataFormatException(e);
+		}
+		return new GsonStructure.GsonJsonValue(element);
+	}
+
+	@Override
+	public void skipValue() throws DataFormatException {
+		try {
+			myReader.skipValue();
+		} catch (Exception e) {
+			throw toDataFormatException(e);
+		}
+	}
+
+	@Override
+	public void endDocument() throws DataFormatException {
+		try {
+			if (myReader.peek() != JsonToken.END_DOCUMENT) {
+				throw new DataFormatException("Failed to parse JSON content, error was: JSON document was not fully consumed.");
+			}
+		} catch (IOException e) {
+			throw toDataFormatException(e);
+		}
+	}
+
+	/**
+	 * Translates exceptions thrown by the pull parser into the same messages
+	 * produced by {@link GsonStructure#load(Reader)}
+	 */
+	private static DataFormatException toDataFormatException(Exception theException) {
+		if (theException instanceof MalformedJsonException || theException instanceof IllegalStateException || theException instanceof NumberFormatException) {
+			return GsonStructure.newDataFormatException(new JsonSyntaxException(theException));
+		}
+		if (theException instanceof JsonSyntaxException) {
+			return GsonStructure.newDataFormatException((JsonSyntaxException) theException);
+		}
+		return new DataFormatException("Failed to parse JSON content, error was: " + theException.getMessage(), theException);
+	}
+
+}
@@ -19,6 +19,7 @@ package ca.uhn.fhir.parser.json;
  * #L%
  */
 
+import java.io.IOException;
 import java.io.PushbackReader;
 import java.io.Reader;
 import java.io.Writer;
@@ -85,28 +86,8 @@ public class GsonStructure implements JsonLikeStructure {
 		PushbackReader pbr = new PushbackReader(theReader);
 		int nextInt;
 		try {
-			while(true) {
-					nextInt = pbr.read();
-				if (nextInt == -1) {
-					throw new DataFormatException("Did not find any content to parse");
-				}
-				if (nextInt == '{') {
-					pbr.unread(nextInt);
-					break;
-				}
-				if (Character.isWhitespace(nextInt)) {
-					continue;
-				}
-				if (allowArray) {
-					if (nextInt == '[') {
-						pbr.unread(nextInt);
-						break;
-					}
-					throw new DataFormatException("Content does not appear to be FHIR JSON, first non-whitespace character was: '" + (char)nextInt + "' (must be '{' or '[')");
-				}
-				throw new DataFormatException("Content does not appear to be FHIR JSON, first non-whitespace character was: '" + (char)nextInt + "' (must be '{')");
-			}
-		
+			nextInt = readToContent(pbr, allowArray);
+
 			Gson gson = new GsonBuilder().disableHtmlEscaping().create();
 			if (nextInt == '{') {
 				JsonObject root = gson.fromJson(pbr, JsonObject.class);
@@ -117,15 +98,50 @@ public class GsonStructure implements JsonLikeStructure {
 				setNativeArray(root);
 			}
 		} catch (JsonSyntaxException e) {
-			if (e.getMessage().startsWith("Unexpected char 39")) {
-				throw new DataFormatException("Failed to parse JSON encoded FHIR content: " + e.getMessage() + " - This may indicate that single quotes are being used as JSON escapes where double quotes are required", e);
-			}
-			throw new DataFormatException("Failed to parse JSON encoded FHIR content: " + e.getMessage(), e);
+			throw newDataFormatException(e);
 		} catch (Exception e) {
 			throw new DataFormatException("Failed to parse JSON content, error was: " + e.getMessage(), e);
 		}
 	}
 
+	/**
+	 * Skips any leading whitespace and verifies that the content begins with an object
+	 * (or an array if permitted). The first content character is pushed back onto the
+	 * reader and returned.
+	 */
+	static int readToContent(PushbackReader thePbr, boolean theAllowArray) throws IOException {
+		int nextInt;
+		while(true) {
+			nextInt = thePbr.read();
+			if (nextInt == -1) {
+				throw new DataFormatException("Did not find any content to parse");
+			}
+			if (nextInt == '{') {
+				thePbr.unread(nextInt);
+				break;
+			}
+			if (Character.isWhitespace(nextInt)) {
+				continue;
+			}
+			if (theAllowArray) {
+				if (nextInt == '[') {
+					thePbr.unread(nextInt);
+					break;
+				}
+				throw new DataFormatException("Content does not appear to be FHIR JSON, first non-whitespace character was: '" + (char)nextInt + "' (must be '{' or '[')");
+			}
+			throw new DataFormatException("Content does not appear to be FHIR JSON, first non-whitespace character was: '" + (char)nextInt + "' (must be '{')");
+		}
+		return nextInt;
+	}
+
+	static DataFormatException newDataFormatException(JsonSyntaxException theException) {
+		if (theException.getMessage().startsWith("Unexpected char 39")) {
+			return new DataFormatException("Failed to parse JSON encoded FHIR content: " + theException.getMessage() + " - This may indicate that single quotes are being used as JSON escapes where double quotes are required", theException);
+		}
+		return new DataFormatException("Failed to parse JSON encoded FHIR content: " + theException.getMessage(), theException);
+	}
+
 	@Override
 	public JsonLikeWriter getJsonLikeWriter (Writer writer) {
 		if (null == jsonLikeWriter) {
@@ -241,7 +257,7 @@ public class GsonStructure implements JsonLikeStructure {
 		}
 	}
 	
-	private static class GsonJsonValue extends JsonLikeValue {
+	static class GsonJsonValue extends JsonLikeValue {
 		private JsonElement nativeValue;
 		private JsonLikeObject jsonLikeObject = null;
 		private JsonLikeArray jsonLikeArray = null;
@@ -0,0 +1,80 @@
+package ca.uhn.fhir.parser.json;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.parser.json.JsonLikeValue.ValueType;
+
+/**
+ * This is the pull (token streaming) counterpart to {@link JsonLikeStructure}. Rather
+ * than loading an entire JSON document into memory before it is navigated, a
+ * stream reader moves forward through the document one token at a time, and
+ * only materializes individual values when asked to via {@link #nextValue()}.
+ * <p>
+ * All methods throw {@link DataFormatException} if the underlying content is
+ * not valid JSON, or does not contain the requested token.
+ * </p>
+ */
+public abstract class JsonLikeStreamReader {
+
+	/**
+	 * Returns the type of the next value in the stream without consuming it,
+	 * or <code>null</code> if the next token is not a value (e.g. the end of
+	 * the current object or array)
+	 */
+	public abstract ValueType peek() throws DataFormatException;
+
+	public abstract void beginObject() throws DataFormatException;
+
+	public abstract void endObject() throws DataFormatException;
+
+	public abstract void beginArray() throws DataFormatException;
+
+	public abstract void endArray() throws DataFormatException;
+
+	/**
+	 * Returns true if the current object or array has another member/element
+	 */
+	public abstract boolean hasNext() throws DataFormatException;
+
+	/**
+	 * Consumes and returns the name of the next member of the current object
+	 */
+	public abstract String nextName() throws DataFormatException;
+
+	/**
+	 * Consumes the next value (including any nested objects and arrays it contains)
+	 * and returns it in memory
+	 */
+	public abstract JsonLikeValue nextValue() throws DataFormatException;
+
+	/**
+	 * Consumes the next value (including any nested objects and arrays it contains)
+	 * without materializing it
+	 */
+	public abstract void skipValue() throws DataFormatException;
+
+	/**
+	 * Verifies that the entire document has been consumed
+	 */
+	public abstract void endDocument() throws DataFormatException;
+
+}
@@ -148,6 +148,38 @@ public class InterceptorServiceTest {
 
 	}
 
+	@Test
+	public void testInvokerSnapshotReflectsRegistrationChanges() {
+		InterceptorService svc = new InterceptorService();
+		svc.setThreadlocalInvokersEnabled(false);
+		assertFalse(svc.hasHooks(Pointcut.TEST_RB));
+		assertEquals(0, svc.getInterceptorsWithInvokersForPointcut(Pointcut.TEST_RB).size());
+
+		MyTestInterceptorTwo interceptor1 = new MyTestInterceptorTwo();
+		MyTestInterceptorOne interceptor0 = new MyTestInterceptorOne();
+		svc.registerInterceptor(interceptor1);
+		assertTrue(svc.hasHooks(Pointcut.TEST_RB));
+
+		List<Object> invokersBefore = svc.getInterceptorsWithInvokersForPointcut(Pointcut.TEST_RB);
+		svc.registerInterceptor(interceptor0);
+		svc.registerAnonymousInterceptor(Pointcut.TEST_RB, 200, (thePointcut, theArgs) -> myInvocations.add("anonymous"));
+
+		// Previously returned lists are stable
+		assertThat(invokersBefore, contains(interceptor1));
+
+		svc.callHooks(Pointcut.TEST_RB, new HookParams("A", "B"));
+		assertThat(myInvocations, contains("MyTestInterceptorOne.testRb", "anonymous", "MyTestInterceptorTwo.testRb"));
+
+		svc.unregisterInterceptor(interceptor0);
+		svc.unregisterInterceptor(interceptor1);
+		myInvocations.clear();
+		svc.callHooks(Pointcut.TEST_RB, new HookParams("A", "B"));
+		assertThat(myInvocations, contains("anonymous"));
+
+		svc.unregisterAllInterceptors();
+		assertFalse(svc.hasHooks(Pointcut.TEST_RB));
+	}
+
 	@Test
 	public void testInvokeGlobalInterceptorMethods() {
 		InterceptorService svc = new InterceptorService();
@@ -495,6 +527,69 @@ public class InterceptorServiceTest {
 		ourLog.info("ThreadLocalEnabled={} - Performed {} loops in {} - {} / loop - Outcomne: {}", theThreadlocalInvokersEnabled, theCount, sw.toString(), sw.formatMillisPerOperation(theCount), interceptor.myCount);
 	}
 
+	@Test
+	public void testInvokeUsingReflectionInvokers() {
+		InterceptorService svc = new InterceptorService();
+		svc.setMethodHandleInvokersEnabled(false);
+
+		MyTestInterceptorTwo interceptor1 = new MyTestInterceptorTwo();
+		MyTestInterceptorOne interceptor0 = new MyTestInterceptorOne();
+		svc.registerInterceptor(interceptor1);
+		svc.registerInterceptor(interceptor0);
+
+		interceptor0.myNextReturn = false;
+		boolean outcome = svc.callHooks(Pointcut.TEST_RB, new HookParams("A", "B"));
+		assertFalse(outcome);
+		assertThat(myInvocations, contains("MyTestInterceptorOne.testRb"));
+		assertSame("A", interceptor0.myLastString0);
+	}
+
+	/**
+	 * Compares the cost of invoking hooks using bound method handles (the default) with
+	 * invoking them using reflection
+	 */
+	@Test
+	@Ignore("Performance test - Not needed normally")
+	public void testHookInvokerBackendMicroBenchmark() {
+		hookInvokerMicroBenchmark(true, 2000000);
+		hookInvokerMicroBenchmark(false, 2000000);
+		hookInvokerMicroBenchmark(true, 2000000);
+		hookInvokerMicroBenchmark(false, 2000000);
+		hookInvokerMicroBenchmark(true, 2000000);
+		hookInvokerMicroBenchmark(false, 2000000);
+	}
+
+	private void hookInvokerMicroBenchmark(boolean theMethodHandleInvokersEnabled, int theCount) {
+		InterceptorService svc = new InterceptorService();
+		svc.setThreadlocalInvokersEnabled(false);
+		svc.setMethodHandleInvokersEnabled(theMethodHandleInvokersEnabled);
+
+		HookParams params = new HookParams().add("A").add("B");
+
+		@Interceptor(order = 100)
+		class LocalInterceptor {
+
+			private int myCount = 0;
+
+			@Hook(Pointcut.TEST_RB)
+			public boolean testRb(String theString0, String theString1) {
+				myCount++;
+				return true;
+			}
+
+		}
+
+		LocalInterceptor interceptor = new LocalInterceptor();
+		svc.registerInterceptor(interceptor);
+
+		StopWatch sw = new StopWatch();
+		for (int i = 0; i < theCount; i++) {
+			svc.callHooks(Pointcut.TEST_RB, params);
+		}
+
+		ourLog.info("MethodHandleInvokersEnabled={} - Performed {} loops in {} - {} / loop - Outcome: {}", theMethodHandleInvokersEnabled, theCount, sw.toString(), sw.formatMillisPerOperation(theCount), interceptor.myCount);
+	}
+
 	@Before
 	public void before() {
 		myInvocations.clear();
@@ -146,6 +146,10 @@ public class BulkDataExportProvider {
 				for (IBulkDataExportSvc.FileEntry nextFile : status.getFiles()) {
 					String serverBase = getServerBase(theRequestDetails);
 					String nextUrl = serverBase + "/" + nextFile.getResourceId().toUnqualifiedVersionless().getValue();
+					if (nextFile.getBlobId() != null) {
+						// Files streamed into binary storage aren't inlined when the Binary is read
+						nextUrl = nextUrl + "/" + JpaConstants.OPERATION_BINARY_ACCESS_READ;
+					}
 					bulkResponseDocument
 						.addOutput()
 						.setType(nextFile.getResourceType())
@@ -21,36 +21,42 @@ package ca.uhn.fhir.jpa.bulk;
  */
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.binstore.IBinaryStorageSvc;
+import ca.uhn.fhir.jpa.dao.DaoConfig;
 import ca.uhn.fhir.jpa.dao.DaoRegistry;
 import ca.uhn.fhir.jpa.dao.IFhirResourceDao;
-import ca.uhn.fhir.jpa.dao.IResultIterator;
 import ca.uhn.fhir.jpa.dao.ISearchBuilder;
 import ca.uhn.fhir.jpa.dao.data.IBulkExportCollectionDao;
 import ca.uhn.fhir.jpa.dao.data.IBulkExportCollectionFileDao;
 import ca.uhn.fhir.jpa.dao.data.IBulkExportJobDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceTableDao;
 import ca.uhn.fhir.jpa.entity.BulkExportCollectionEntity;
 import ca.uhn.fhir.jpa.entity.BulkExportCollectionFileEntity;
 import ca.uhn.fhir.jpa.entity.BulkExportJobEntity;
 import ca.uhn.fhir.jpa.model.sched.FireAtIntervalJob;
 import ca.uhn.fhir.jpa.model.sched.ISchedulerService;
 import ca.uhn.fhir.jpa.model.sched.ScheduledJobDefinition;
-import ca.uhn.fhir.jpa.model.search.SearchRuntimeDetails;
 import ca.uhn.fhir.jpa.model.util.JpaConstants;
-import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.util.ExpungeOptions;
+import ca.uhn.fhir.jpa.util.ThreadPoolUtil;
 import ca.uhn.fhir.parser.IParser;
 import ca.uhn.fhir.rest.api.Constants;
-import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 import ca.uhn.fhir.util.BinaryUtil;
 import ca.uhn.fhir.util.StopWatch;
-import org.apache.commons.io.FileUtils;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.commons.lang3.time.DateUtils;
 import org.hl7.fhir.instance.model.api.IBaseBinary;
+import org.hl7.fhir.instance.model.api.IBaseExtension;
+import org.hl7.fhir.instance.model.api.IBaseHasExtensions;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
 import org.hl7.fhir.r4.model.InstantType;
 import org.quartz.DisallowConcurrentExecution;
 import org.quartz.JobExecutionContext;
@@ -65,12 +71,11 @@ import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.transaction.Transactional;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
@@ -81,6 +86,12 @@ public class BulkDataExportSvcImpl implements IBulkDataExportSvc {
 
 	private static final long REFRESH_INTERVAL = 10 * DateUtils.MILLIS_PER_SECOND;
 	private static final Logger ourLog = LoggerFactory.getLogger(BulkDataExportSvcImpl.class);
+	/**
+	 * Number of resources loaded from the database in each call to {@link ISearchBuilder#loadResourcesByPid(Collection, Collection, List, boolean, ca.uhn.fhir.rest.api.server.RequestDetails)}
+	 */
+	private static final int LOAD_BATCH_SIZE = 800;
+	private static final int EXECUTOR_QUEUE_SIZE = 100;
+	static final String CT_GZIP = "application/gzip";
 	private int myReuseBulkExportForMillis = (int) (60 * DateUtils.MILLIS_PER_MINUTE);
 
 	@Autowired
@@ -96,10 +107,18 @@ public class BulkDataExportSvcImpl implements IBulkDataExportSvc {
 	@Autowired
 	private FhirContext myContext;
 	@Autowired
+	private IResourceTableDao myResourceTableDao;
+	@Autowired
+	private DaoConfig myDaoConfig;
+	@Autowired(required = false)
+	private IBinaryStorageSvc myBinaryStorageSvc;
+	@Autowired
 	private PlatformTransactionManager myTxManager;
 	private TransactionTemplate myTxTemplate;
+	private ThreadFactory myExportThreadFactory = new BasicThreadFactory.Builder().namingPattern("BulkExport-%d").build();
+	private ThreadPoolExecutor myExecutor;
+	private int myThreadCount;
 
-	private long myFileMaxChars = 500 * FileUtils.ONE_KB;
 	private int myRetentionPeriod = (int) (2 * DateUtils.MILLIS_PER_HOUR);
 
 	/**
@@ -126,10 +145,7 @@ public class BulkDataExportSvcImpl implements IBulkDataExportSvc {
 		String jobUuid = jobToProcessOpt.get().getJobId();
 
 		try {
-			myTxTemplate.execute(t -> {
-				processJob(jobUuid);
-				return null;
-			});
+			processJob(jobUuid);
 		} catch (Exception e) {
 			ourLog.error("Failure while preparing bulk export extract", e);
 			myTxTemplate.execute(t -> {
@@ -176,6 +192,9 @@ public class BulkDataExportSvcImpl implements IBulkDataExportSvc {
 						ourLog.info("Purging bulk data file: {}", nextFile.getResourceId());
 						getBinaryDao().delete(toId(nextFile.getResourceId()));
 						getBinaryDao().forceExpungeInExistingTransaction(toId(nextFile.getResourceId()), new ExpungeOptions().setExpungeDeletedResources(true).setExpungeOldVersions(true), null);
+						if (nextFile.getBlobId() != null && myBinaryStorageSvc != null) {
+							myBinaryStorageSvc.expungeBlob(toQualifiedBinaryId(nextFile.getResourceId()), nextFile.getBlobId());
+						}
 						myBulkExportCollectionFileDao.delete(nextFile);
 
 					}
@@ -193,7 +212,11 @@ public class BulkDataExportSvcImpl implements IBulkDataExportSvc {
 
 	private void processJob(String theJobUuid) {
 
-		Optional<BulkExportJobEntity> jobOpt = myBulkExportJobDao.findByJobId(theJobUuid);
+		Optional<BulkExportJobEntity> jobOpt = myTxTemplate.execute(t -> {
+			Optional<BulkExportJobEntity> retVal = myBulkExportJobDao.findByJobId(theJobUuid);
+			retVal.ifPresent(job -> job.getCollections().size());
+			return retVal;
+		});
 		if (!jobOpt.isPresent()) {
 			ourLog.info("Job appears to be deleted");
 			return;
@@ -205,101 +228,135 @@ public class BulkDataExportSvcImpl implements IBulkDataExportSvc {
 		BulkExportJobEntity job = jobOpt.get();
 		ourLog.info("Bulk export starting generation for batch export job: {}", job);
 
-		for (BulkExportCollectionEntity nextCollection : job.getCollections()) {
-
-			String nextType = nextCollection.getResourceType();
-			IFhirResourceDao dao = myDaoRegistry.getResourceDao(nextType);
-
-			ourLog.info("Bulk export assembling export of type {} for job {}", nextType, theJobUuid);
-
-			ISearchBuilder sb = dao.newSearchBuilder();
-			Class<? extends IBaseResource> nextTypeClass = myContext.getResourceDefinition(nextType).getImplementingClass();
-			sb.setType(nextTypeClass, nextType);
-
-			SearchParameterMap map = new SearchParameterMap();
-			map.setLoadSynchronous(true);
-			if (job.getSince() != null) {
-				map.setLastUpdated(new DateRangeParam(job.getSince(), null));
+		List<Future<Void>> partitions = new ArrayList<>();
+		try {
+			for (BulkExportCollectionEntity nextCollection : job.getCollections()) {
+				submitPartitions(job, nextCollection, partitions, jobResourceCounter, jobStopwatch);
 			}
-
-			IResultIterator resultIterator = sb.createQuery(map, new SearchRuntimeDetails(null, theJobUuid), null);
-			storeResultsToFiles(nextCollection, sb, resultIterator, jobResourceCounter, jobStopwatch);
-
-
+			for (Future<Void> nextPartition : partitions) {
+				nextPartition.get();
+			}
+		} catch (ExecutionException e) {
+			throw new InternalErrorException(e.getCause().getMessage(), e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InternalErrorException(e);
+		} finally {
+			// If a partition failed, don't bother starting the ones that are still queued
+			partitions.forEach(t -> t.cancel(false));
 		}
 
-		job.setStatus(BulkJobStatusEnum.COMPLETE);
-		updateExpiry(job);
-		myBulkExportJobDao.save(job);
+		myTxTemplate.execute(t -> {
+			myBulkExportJobDao.findByJobId(theJobUuid).ifPresent(completedJob -> {
+				completedJob.setStatus(BulkJobStatusEnum.COMPLETE);
+				updateExpiry(completedJob);
+				myBulkExportJobDao.save(completedJob);
+			});
+			return null;
+		});
 
-		ourLog.info("Bulk export completed job in {}: {}", jobStopwatch, job);
+		ourLog.info("Bulk export completed job in {}: {} - {} resources", jobStopwatch, job, jobResourceCounter.get());
 
 	}
 
-	private void storeResultsToFiles(BulkExportCollectionEntity theExportCollection, ISearchBuilder theSearchBuilder, IResultIterator theResultIterator, AtomicInteger theJobResourceCounter, StopWatch theJobStopwatch) {
+	/**
+	 * Splits the resources for one collection into partitions of consecutive PIDs and
+	 * submits each one to the export thread pool. PIDs are loaded a page at a time (one
+	 * page is one partition) so that neither the PID list nor the transaction used to
+	 * fetch it grows with the size of the database.
+	 */
+	private void submitPartitions(BulkExportJobEntity theJob, BulkExportCollectionEntity theCollection, List<Future<Void>> thePartitions, AtomicInteger theJobResourceCounter, StopWatch theJobStopwatch) {
+		String resourceType = theCollection.getResourceType();
+		ourLog.info("Bulk export assembling export of type {} for job {}", resourceType, theJob.getJobId());
+
+		int partitionSize = myDaoConfig.getBulkExportPartitionSize();
+		Long lowPid = Long.MIN_VALUE;
+		while (true) {
+			Long nextLowPid = lowPid;
+			List<Long> pids = myTxTemplate.execute(t -> {
+				Pageable page = PageRequest.of(0, partitionSize);
+				Slice<Long> slice;
+				if (theJob.getSince() != null) {
+					slice = myResourceTableDao.findIdsOfResourcesOfTypeAfterIdUpdatedSince(page, resourceType, nextLowPid, theJob.getSince());
+				} else {
+					slice = myResourceTableDao.findIdsOfResourcesOfTypeAfterId(page, resourceType, nextLowPid);
+				}
+				return new ArrayList<>(slice.getContent());
+			});
 
-		try (IResultIterator query = theResultIterator) {
-			if (!query.hasNext()) {
-				return;
+			if (pids.isEmpty()) {
+				break;
 			}
 
-			AtomicInteger fileCounter = new AtomicInteger(0);
-			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-			OutputStreamWriter writer = new OutputStreamWriter(outputStream, Constants.CHARSET_UTF8);
-			IParser parser = myContext.newJsonParser().setPrettyPrint(false);
-
-			List<Long> pidsSpool = new ArrayList<>();
-			List<IBaseResource> resourcesSpool = new ArrayList<>();
-			while (query.hasNext()) {
-				pidsSpool.add(query.next());
-				fileCounter.incrementAndGet();
-				theJobResourceCounter.incrementAndGet();
+			thePartitions.add(myExecutor.submit(new ExportPartitionTask(theCollection, pids, theJobResourceCounter, theJobStopwatch)));
 
-				if (pidsSpool.size() >= 10 || !query.hasNext()) {
-
-					theSearchBuilder.loadResourcesByPid(pidsSpool, Collections.emptyList(), resourcesSpool, false, null);
-
-					for (IBaseResource nextFileResource : resourcesSpool) {
-						parser.encodeResourceToWriter(nextFileResource, writer);
-						writer.append("\n");
-					}
-
-					pidsSpool.clear();
-					resourcesSpool.clear();
-
-					if (outputStream.size() >= myFileMaxChars || !query.hasNext()) {
-						Optional<IIdType> createdId = flushToFiles(theExportCollection, fileCounter, outputStream);
-						createdId.ifPresent(theIIdType -> ourLog.info("Created resource {} for bulk export file containing {} resources of type {} - Total {} resources ({}/sec)", theIIdType.toUnqualifiedVersionless().getValue(), fileCounter.get(), theExportCollection.getResourceType(), theJobResourceCounter.get(), theJobStopwatch.formatThroughput(theJobResourceCounter.get(), TimeUnit.SECONDS)));
-						fileCounter.set(0);
-					}
-
-				}
+			if (pids.size() < partitionSize) {
+				break;
 			}
-
-		} catch (IOException e) {
-			throw new InternalErrorException(e);
+			lowPid = pids.get(pids.size() - 1);
 		}
 	}
 
-	private Optional<IIdType> flushToFiles(BulkExportCollectionEntity theCollection, AtomicInteger theCounter, ByteArrayOutputStream theOutputStream) {
-		if (theOutputStream.size() > 0) {
-			IBaseBinary binary = BinaryUtil.newBinary(myContext);
-			binary.setContentType(Constants.CT_FHIR_NDJSON);
-			binary.setContent(theOutputStream.toByteArray());
+	/**
+	 * Stores a file in memory and then inline in a new Binary resource
+	 */
+	private IIdType storeInlineFile(Long theCollectionId, BulkExportFileInputStream theFileContents) throws IOException {
+		IBaseBinary binary = BinaryUtil.newBinary(myContext);
+		binary.setContentType(Constants.CT_FHIR_NDJSON);
+		binary.setContent(IOUtils.toByteArray(theFileContents));
+
+		return myTxTemplate.execute(t -> {
+			IIdType retVal = getBinaryDao().create(binary).getResource().getIdElement();
+			createFileEntity(theCollectionId, retVal);
+			return retVal;
+		});
+	}
 
-			IIdType createdId = getBinaryDao().create(binary).getResource().getIdElement();
+	/**
+	 * Streams a file into the binary storage service, and stores a Binary resource that
+	 * refers to the stored blob
+	 */
+	private IIdType storeBlobFile(Long theCollectionId, BulkExportFileInputStream theFileContents, boolean theGzip) throws IOException {
+		String contentType = theGzip ? CT_GZIP : Constants.CT_FHIR_NDJSON;
 
-			BulkExportCollectionFileEntity file = new BulkExportCollectionFileEntity();
-			theCollection.getFiles().add(file);
-			file.setCollection(theCollection);
-			file.setResource(createdId.getIdPart());
-			myBulkExportCollectionFileDao.saveAndFlush(file);
-			theOutputStream.reset();
+		// The blob is stored against the Binary's ID, so the Binary is created first. The
+		// file entity is saved with it so that the Binary gets purged even if the export fails.
+		BulkExportCollectionFileEntity file = myTxTemplate.execute(t -> {
+			IBaseBinary binary = BinaryUtil.newBinary(myContext);
+			binary.setContentType(contentType);
+			IIdType createdId = getBinaryDao().create(binary).getResource().getIdElement();
+			return createFileEntity(theCollectionId, createdId);
+		});
+		IIdType binaryId = toQualifiedBinaryId(file.getResourceId());
+
+		IBinaryStorageSvc.StoredDetails storedDetails = myBinaryStorageSvc.storeBlob(binaryId, contentType, theFileContents);
+		String blobId = storedDetails.getBlobId();
+
+		myTxTemplate.execute(t -> {
+			IBaseBinary binary = getBinaryDao().read(binaryId);
+			IBaseHasExtensions data = (IBaseHasExtensions) BinaryUtil.getOrCreateData(myContext, binary);
+			IBaseExtension<?, ?> ext = data.addExtension();
+			ext.setUrl(JpaConstants.EXT_EXTERNALIZED_BINARY_ID);
+			ext.setUserData(JpaConstants.EXTENSION_EXT_SYSTEMDEFINED, Boolean.TRUE);
+			@SuppressWarnings("unchecked")
+			IPrimitiveType<String> blobIdString = (IPrimitiveType<String>) myContext.getElementDefinition("string").newInstance();
+			blobIdString.setValueAsString(blobId);
+			ext.setValue(blobIdString);
+			getBinaryDao().update(binary);
+
+			file.setBlobId(blobId);
+			myBulkExportCollectionFileDao.save(file);
+			return null;
+		});
 
-			return Optional.of(createdId);
-		}
+		return binaryId;
+	}
 
-		return Optional.empty();
+	private BulkExportCollectionFileEntity createFileEntity(Long theCollectionId, IIdType theBinaryId) {
+		BulkExportCollectionFileEntity file = new BulkExportCollectionFileEntity();
+		file.setCollection(myBulkExportCollectionDao.getOne(theCollectionId));
+		file.setResource(theBinaryId.getIdPart());
+		return myBulkExportCollectionFileDao.save(file);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -312,12 +369,36 @@ public class BulkDataExportSvcImpl implements IBulkDataExportSvc {
 		ourLog.info("Bulk export service starting with refresh interval {}", StopWatch.formatMillis(REFRESH_INTERVAL));
 		myTxTemplate = new TransactionTemplate(myTxManager);
 
+		myThreadCount = myDaoConfig.getBulkExportThreadCount();
+		initExecutor();
+
 		ScheduledJobDefinition jobDetail = new ScheduledJobDefinition();
 		jobDetail.setId(BulkDataExportSvcImpl.class.getName());
 		jobDetail.setJobClass(BulkDataExportSvcImpl.SubmitJob.class);
 		mySchedulerService.scheduleFixedDelay(REFRESH_INTERVAL, true, jobDetail);
 	}
 
+	@PreDestroy
+	public void stop() {
+		myExecutor.shutdown();
+	}
+
+	private void initExecutor() {
+		myExecutor = ThreadPoolUtil.newBlockingThreadPool(myThreadCount, EXECUTOR_QUEUE_SIZE, myExportThreadFactory);
+	}
+
+	@VisibleForTesting
+	int getThreadCountForUnitTest() {
+		return myThreadCount;
+	}
+
+	@VisibleForTesting
+	void setThreadCountForUnitTest(int theThreadCount) {
+		myThreadCount = theThreadCount;
+		stop();
+		initExecutor();
+	}
+
 	@Transactional
 	@Override
 	public JobInfo submitJob(String theOutputFormat, Set<String> theResourceTypes, Date theSince, Set<String> theFilters) {
@@ -430,7 +511,8 @@ public class BulkDataExportSvcImpl implements IBulkDataExportSvc {
 				for (BulkExportCollectionFileEntity nextFile : nextCollection.getFiles()) {
 					retVal.addFile()
 						.setResourceType(nextCollection.getResourceType())
-						.setResourceId(toQualifiedBinaryId(nextFile.getResourceId()));
+						.setResourceId(toQualifiedBinaryId(nextFile.getResourceId()))
+						.setBlobId(nextFile.getBlobId());
 				}
 			}
 		}
@@ -459,6 +541,106 @@ public class BulkDataExportSvcImpl implements IBulkDataExportSvc {
 		myBulkExportJobDao.deleteAll();
 	}
 
+	/**
+	 * Exports one partition of resources, loading them in batches, each in its own
+	 * short transaction
+	 */
+	private class ExportPartitionTask implements Callable<Void> {
+
+		private final Long myCollectionId;
+		private final String myResourceType;
+		private final List<Long> myPids;
+		private final AtomicInteger myJobResourceCounter;
+		private final StopWatch myJobStopwatch;
+
+		ExportPartitionTask(BulkExportCollectionEntity theCollection, List<Long> thePids, AtomicInteger theJobResourceCounter, StopWatch theJobStopwatch) {
+			myCollectionId = theCollection.getId();
+			myResourceType = theCollection.getResourceType();
+			myPids = thePids;
+			myJobResourceCounter = theJobResourceCounter;
+			myJobStopwatch = theJobStopwatch;
+		}
+
+		@Override
+		public Void call() throws IOException {
+			IFhirResourceDao<?> dao = myDaoRegistry.getResourceDao(myResourceType);
+			ISearchBuilder sb = dao.newSearchBuilder();
+			Class<? extends IBaseResource> typeClass = myContext.getResourceDefinition(myResourceType).getImplementingClass();
+			sb.setType(typeClass, myResourceType);
+
+			IParser parser = myContext.newJsonParser().setPrettyPrint(false);
+			boolean useBinaryStorage = myBinaryStorageSvc != null && myDaoConfig.isBulkExportUseBinaryStorage();
+			boolean gzip = useBinaryStorage && myDaoConfig.isBulkExportGzipEnabled();
+			long maximumCharacters = myDaoConfig.getBulkExportFileMaximumCharacters();
+			Integer maximumResourceCount = myDaoConfig.getBulkExportFileMaximumResourceCount();
+
+			ResourceLoadingIterator resources = new ResourceLoadingIterator(sb, myPids);
+			while (resources.hasNext()) {
+				BulkExportFileInputStream fileContents = new BulkExportFileInputStream(resources, parser, maximumCharacters, maximumResourceCount, gzip);
+				IIdType createdId;
+				if (useBinaryStorage) {
+					createdId = storeBlobFile(myCollectionId, fileContents, gzip);
+				} else {
+					createdId = storeInlineFile(myCollectionId, fileContents);
+				}
+
+				int fileCounter = fileContents.getResourceCount();
+				int total = myJobResourceCounter.addAndGet(fileCounter);
+				ourLog.info("Created resource {} for bulk export file containing {} resources of type {} - Total {} resources ({}/sec)", createdId.toUnqualifiedVersionless().getValue(), fileCounter, myResourceType, total, myJobStopwatch.formatThroughput(total, TimeUnit.SECONDS));
+			}
+
+			return null;
+		}
+	}
+
+	/**
+	 * Iterates over the resources for a list of PIDs, loading them in batches as they
+	 * are needed, each batch in its own short transaction
+	 */
+	private class ResourceLoadingIterator implements Iterator<IBaseResource> {
+
+		private final ISearchBuilder mySearchBuilder;
+		private final Iterator<List<Long>> myBatches;
+		private Iterator<IBaseResource> myCurrentBatch = Collections.emptyIterator();
+		private IBaseResource myNext;
+
+		ResourceLoadingIterator(ISearchBuilder theSearchBuilder, List<Long> thePids) {
+			mySearchBuilder = theSearchBuilder;
+			myBatches = Lists.partition(thePids, LOAD_BATCH_SIZE).iterator();
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (myNext == null) {
+				if (myCurrentBatch.hasNext()) {
+					// Resources expunged since the partition was created come back as null
+					myNext = myCurrentBatch.next();
+				} else if (myBatches.hasNext()) {
+					List<Long> nextBatch = myBatches.next();
+					List<IBaseResource> resources = myTxTemplate.execute(t -> {
+						List<IBaseResource> retVal = new ArrayList<>(nextBatch.size());
+						mySearchBuilder.loadResourcesByPid(nextBatch, Collections.emptyList(), retVal, false, null);
+						return retVal;
+					});
+					myCurrentBatch = resources.iterator();
+				} else {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public IBaseResource next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			IBaseResource retVal = myNext;
+			myNext = null;
+			return retVal;
+		}
+	}
+
 	@DisallowConcurrentExecution
 	@PersistJobDataAfterExecution
 	public static class SubmitJob extends FireAtIntervalJob {
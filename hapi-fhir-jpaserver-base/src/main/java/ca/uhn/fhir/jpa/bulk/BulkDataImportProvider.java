@@ -0,0 +1,164 @@
+package ca.uhn.fhir.jpa.bulk;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.model.util.JpaConstants;
+import ca.uhn.fhir.jpa.util.JsonUtil;
+import ca.uhn.fhir.rest.annotation.Operation;
+import ca.uhn.fhir.rest.annotation.OperationParam;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.PreferHeader;
+import ca.uhn.fhir.rest.server.RestfulServerUtils;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import ca.uhn.fhir.util.OperationOutcomeUtil;
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.commons.lang3.StringUtils;
+import org.hl7.fhir.instance.model.api.IBaseOperationOutcome;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+import org.hl7.fhir.r4.model.InstantType;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class BulkDataImportProvider {
+
+	@Autowired
+	private IBulkDataImportSvc myBulkDataImportSvc;
+	@Autowired
+	private FhirContext myFhirContext;
+
+	@VisibleForTesting
+	public void setFhirContextForUnitTest(FhirContext theFhirContext) {
+		myFhirContext = theFhirContext;
+	}
+
+	@VisibleForTesting
+	public void setBulkDataImportSvcForUnitTests(IBulkDataImportSvc theBulkDataImportSvc) {
+		myBulkDataImportSvc = theBulkDataImportSvc;
+	}
+
+	/**
+	 * $import
+	 */
+	@Operation(name = JpaConstants.OPERATION_IMPORT, global = false, manualResponse = true, idempotent = false)
+	public void importResources(
+		@OperationParam(name = JpaConstants.PARAM_IMPORT_INPUT_URL, min = 1, max = OperationParam.MAX_UNLIMITED, typeName = "string") List<IPrimitiveType<String>> theInputUrls,
+		ServletRequestDetails theRequestDetails
+	) {
+
+		String preferHeader = theRequestDetails.getHeader(Constants.HEADER_PREFER);
+		PreferHeader prefer = RestfulServerUtils.parsePreferHeader(null, preferHeader);
+		if (prefer.getRespondAsync() == false) {
+			throw new InvalidRequestException("Must request async processing for " + JpaConstants.OPERATION_IMPORT);
+		}
+
+		List<String> inputUrls = null;
+		if (theInputUrls != null) {
+			inputUrls = theInputUrls
+				.stream()
+				.map(IPrimitiveType::getValueAsString)
+				.filter(StringUtils::isNotBlank)
+				.collect(Collectors.toList());
+		}
+
+		IBulkDataImportSvc.JobInfo outcome = myBulkDataImportSvc.submitJob(inputUrls);
+
+		String serverBase = getServerBase(theRequestDetails);
+		String pollLocation = serverBase + "/" + JpaConstants.OPERATION_IMPORT_POLL_STATUS + "?" + JpaConstants.PARAM_IMPORT_POLL_STATUS_JOB_ID + "=" + outcome.getJobId();
+
+		HttpServletResponse response = theRequestDetails.getServletResponse();
+
+		// Add standard headers
+		theRequestDetails.getServer().addHeadersToResponse(response);
+
+		// Successful 202 Accepted
+		response.addHeader(Constants.HEADER_CONTENT_LOCATION, pollLocation);
+		response.setStatus(Constants.STATUS_HTTP_202_ACCEPTED);
+	}
+
+	/**
+	 * $import-poll-status
+	 */
+	@Operation(name = JpaConstants.OPERATION_IMPORT_POLL_STATUS, manualResponse = true, idempotent = true)
+	public void importPollStatus(
+		@OperationParam(name = JpaConstants.PARAM_IMPORT_POLL_STATUS_JOB_ID, typeName = "string", min = 0, max = 1) IPrimitiveType<String> theJobId,
+		ServletRequestDetails theRequestDetails
+	) throws IOException {
+
+		HttpServletResponse response = theRequestDetails.getServletResponse();
+		theRequestDetails.getServer().addHeadersToResponse(response);
+
+		IBulkDataImportSvc.JobInfo status = myBulkDataImportSvc.getJobStatusOrThrowResourceNotFound(theJobId.getValueAsString());
+
+		switch (status.getStatus()) {
+			case SUBMITTED:
+			case BUILDING:
+
+				long resourceCount = status.getFiles().stream().mapToLong(IBulkDataImportSvc.FileEntry::getResourceCount).sum();
+				response.setStatus(Constants.STATUS_HTTP_202_ACCEPTED);
+				response.addHeader(Constants.HEADER_X_PROGRESS, "Import in progress - Status set to " + status.getStatus() + " at " + new InstantType(status.getStatusTime()).getValueAsString() + " - " + resourceCount + " resources imported");
+				response.addHeader(Constants.HEADER_RETRY_AFTER, "120");
+				break;
+
+			case COMPLETE:
+
+				response.setStatus(Constants.STATUS_HTTP_200_OK);
+				response.setContentType(Constants.CT_JSON);
+
+				// Create a JSON response
+				BulkImportResponseJson bulkResponseDocument = new BulkImportResponseJson();
+				bulkResponseDocument.setTransactionTime(status.getStatusTime());
+				for (IBulkDataImportSvc.FileEntry nextFile : status.getFiles()) {
+					bulkResponseDocument
+						.addOutput()
+						.setInputUrl(nextFile.getUrl())
+						.setCount(nextFile.getResourceCount());
+				}
+				JsonUtil.serialize(bulkResponseDocument, response.getWriter());
+				response.getWriter().close();
+				break;
+
+			case ERROR:
+
+				response.setStatus(Constants.STATUS_HTTP_500_INTERNAL_ERROR);
+				response.setContentType(Constants.CT_FHIR_JSON);
+
+				// Create an OperationOutcome response
+				IBaseOperationOutcome oo = OperationOutcomeUtil.newInstance(myFhirContext);
+				OperationOutcomeUtil.addIssue(myFhirContext, oo, "error", status.getStatusMessage(), null, null);
+				myFhirContext.newJsonParser().setPrettyPrint(true).encodeResourceToWriter(oo, response.getWriter());
+				response.getWriter().close();
+
+		}
+
+
+	}
+
+	private String getServerBase(ServletRequestDetails theRequestDetails) {
+		return StringUtils.removeEnd(theRequestDetails.getServerBaseForRequest(), "/");
+	}
+
+}
@@ -0,0 +1,553 @@
+package ca.uhn.fhir.jpa.bulk;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.binstore.IBinaryStorageSvc;
+import ca.uhn.fhir.jpa.dao.DaoConfig;
+import ca.uhn.fhir.jpa.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.dao.data.IBulkImportChunkDao;
+import ca.uhn.fhir.jpa.dao.data.IBulkImportJobDao;
+import ca.uhn.fhir.jpa.dao.data.IBulkImportJobFileDao;
+import ca.uhn.fhir.jpa.entity.BulkImportChunkEntity;
+import ca.uhn.fhir.jpa.entity.BulkImportJobEntity;
+import ca.uhn.fhir.jpa.entity.BulkImportJobFileEntity;
+import ca.uhn.fhir.jpa.model.sched.FireAtIntervalJob;
+import ca.uhn.fhir.jpa.model.sched.ISchedulerService;
+import ca.uhn.fhir.jpa.model.sched.ScheduledJobDefinition;
+import ca.uhn.fhir.jpa.model.util.JpaConstants;
+import ca.uhn.fhir.jpa.util.ThreadPoolUtil;
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import ca.uhn.fhir.util.BinaryUtil;
+import ca.uhn.fhir.util.StopWatch;
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.time.DateUtils;
+import org.hl7.fhir.instance.model.api.IBaseBinary;
+import org.hl7.fhir.instance.model.api.IBaseHasExtensions;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.JobExecutionContext;
+import org.quartz.PersistJobDataAfterExecution;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.transaction.Transactional;
+import java.io.*;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.left;
+
+/**
+ * Imports NDJSON files through a staged pipeline. The files in a job are read one at
+ * a time (so that files listed earlier, such as Patients, are loaded before files that
+ * refer to them) and each file is split into chunks of
+ * {@link DaoConfig#setBulkImportChunkSize(int) a fixed number of resources}. Chunks
+ * are then parsed on one thread pool and stored on another, so that several chunks
+ * from the same file are in flight at once.
+ * <p>
+ * Each chunk is stored in a single transaction, along with a record of the chunk having
+ * been imported. If a job is interrupted (e.g. by a server restart) it is resumed the
+ * next time the scheduler runs, skipping any chunks that were already stored.
+ * </p>
+ */
+public class BulkDataImportSvcImpl implements IBulkDataImportSvc {
+
+	private static final long REFRESH_INTERVAL = 10 * DateUtils.MILLIS_PER_SECOND;
+	private static final Logger ourLog = LoggerFactory.getLogger(BulkDataImportSvcImpl.class);
+	private static final int EXECUTOR_QUEUE_SIZE = 100;
+
+	@Autowired
+	private IBulkImportJobDao myBulkImportJobDao;
+	@Autowired
+	private IBulkImportJobFileDao myBulkImportJobFileDao;
+	@Autowired
+	private IBulkImportChunkDao myBulkImportChunkDao;
+	@Autowired
+	private ISchedulerService mySchedulerService;
+	@Autowired
+	private DaoRegistry myDaoRegistry;
+	@Autowired
+	private FhirContext myContext;
+	@Autowired
+	private DaoConfig myDaoConfig;
+	@Autowired(required = false)
+	private IBinaryStorageSvc myBinaryStorageSvc;
+	@Autowired
+	private PlatformTransactionManager myTxManager;
+	private TransactionTemplate myTxTemplate;
+	private ThreadPoolExecutor myParseExecutor;
+	private ThreadPoolExecutor myStoreExecutor;
+	private int myThreadCount;
+
+	/**
+	 * This method is called by the scheduler to run a pass of the
+	 * importer
+	 */
+	@Transactional(value = Transactional.TxType.NEVER)
+	@Override
+	public synchronized void processJobs() {
+
+		// Jobs that are still marked as in progress were interrupted, so they are resumed
+		Optional<String> jobToProcessOpt = myTxTemplate.execute(t -> {
+			PageRequest page = PageRequest.of(0, 1);
+			Slice<BulkImportJobEntity> jobs = myBulkImportJobDao.findByStatus(page, Arrays.asList(BulkJobStatusEnum.SUBMITTED, BulkJobStatusEnum.BUILDING));
+			if (jobs.isEmpty()) {
+				return Optional.empty();
+			}
+			return Optional.of(jobs.getContent().get(0).getJobId());
+		});
+
+		if (!jobToProcessOpt.isPresent()) {
+			return;
+		}
+
+		String jobUuid = jobToProcessOpt.get();
+
+		try {
+			processJob(jobUuid);
+		} catch (Exception e) {
+			ourLog.error("Failure while processing bulk import job " + jobUuid, e);
+			myTxTemplate.execute(t -> {
+				myBulkImportJobDao.findByJobId(jobUuid).ifPresent(job -> {
+					job.setStatus(BulkJobStatusEnum.ERROR);
+					job.setStatusMessage(left(e.getMessage(), BulkImportJobEntity.STATUS_MESSAGE_LEN));
+					myBulkImportJobDao.save(job);
+				});
+				return null;
+			});
+		}
+
+	}
+
+	private void processJob(String theJobUuid) {
+		StopWatch jobStopwatch = new StopWatch();
+		AtomicLong jobResourceCounter = new AtomicLong();
+
+		Optional<BulkImportJobEntity> jobOpt = myTxTemplate.execute(t -> {
+			Optional<BulkImportJobEntity> retVal = myBulkImportJobDao.findByJobId(theJobUuid);
+			retVal.ifPresent(job -> {
+				job.setStatus(BulkJobStatusEnum.BUILDING);
+				myBulkImportJobDao.save(job);
+				job.getFiles().size();
+			});
+			return retVal;
+		});
+		if (!jobOpt.isPresent()) {
+			ourLog.info("Job appears to be deleted");
+			return;
+		}
+
+		BulkImportJobEntity job = jobOpt.get();
+		ourLog.info("Bulk import starting job: {}", job);
+
+		for (BulkImportJobFileEntity nextFile : job.getFiles()) {
+			if (!nextFile.isComplete()) {
+				importFile(nextFile, job.getChunkSize(), jobResourceCounter, jobStopwatch);
+			}
+		}
+
+		myTxTemplate.execute(t -> {
+			myBulkImportJobDao.findByJobId(theJobUuid).ifPresent(completedJob -> {
+				completedJob.setStatus(BulkJobStatusEnum.COMPLETE);
+				myBulkImportJobDao.save(completedJob);
+			});
+			return null;
+		});
+
+		ourLog.info("Bulk import completed job in {}: {} - {} resources", jobStopwatch, job, jobResourceCounter.get());
+	}
+
+	private void importFile(BulkImportJobFileEntity theFile, int theChunkSize, AtomicLong theJobResourceCounter, StopWatch theJobStopwatch) {
+		Long fileId = theFile.getId();
+		String url = theFile.getUrl();
+		Set<Integer> completedChunks = myTxTemplate.execute(t -> new HashSet<>(myBulkImportChunkDao.findChunkIndexesForFile(fileId)));
+		ourLog.info("Bulk import starting file {} ({} chunks already imported)", url, completedChunks.size());
+
+		// Limit the number of chunks held in memory at any one time
+		Semaphore inFlight = new Semaphore(myThreadCount * 2);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		List<CompletableFuture<Void>> chunks = new ArrayList<>();
+
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(openFile(url), Constants.CHARSET_UTF8))) {
+			int chunkIndex = 0;
+			List<String> lines = new ArrayList<>(theChunkSize);
+			String nextLine;
+			while (failure.get() == null && (nextLine = reader.readLine()) != null) {
+				if (isBlank(nextLine)) {
+					continue;
+				}
+				lines.add(nextLine);
+				if (lines.size() == theChunkSize) {
+					submitChunk(theFile, chunkIndex * theChunkSize, chunkIndex, lines, completedChunks, inFlight, failure, chunks, theJobResourceCounter, theJobStopwatch);
+					chunkIndex++;
+					lines = new ArrayList<>(theChunkSize);
+				}
+			}
+			if (failure.get() == null && !lines.isEmpty()) {
+				submitChunk(theFile, chunkIndex * theChunkSize, chunkIndex, lines, completedChunks, inFlight, failure, chunks, theJobResourceCounter, theJobStopwatch);
+			}
+		} catch (IOException e) {
+			failure.compareAndSet(null, new InternalErrorException("Failed to read bulk import file " + url + ": " + e.getMessage(), e));
+		} finally {
+			// Don't leave chunks running in the background, even if reading failed
+			for (CompletableFuture<Void> nextChunk : chunks) {
+				try {
+					nextChunk.join();
+				} catch (CompletionException | CancellationException e) {
+					// Already recorded in the failure
+				}
+			}
+		}
+
+		Throwable failed = failure.get();
+		if (failed != null) {
+			throw new InternalErrorException(failed.getMessage(), failed);
+		}
+
+		myTxTemplate.execute(t -> {
+			BulkImportJobFileEntity file = myBulkImportJobFileDao.getOne(fileId);
+			file.setComplete(true);
+			myBulkImportJobFileDao.save(file);
+			return null;
+		});
+	}
+
+	private void submitChunk(BulkImportJobFileEntity theFile, int theFirstLineIndex, int theChunkIndex, List<String> theLines, Set<Integer> theCompletedChunks, Semaphore theInFlight, AtomicReference<Throwable> theFailure, List<CompletableFuture<Void>> theChunks, AtomicLong theJobResourceCounter, StopWatch theJobStopwatch) {
+		if (theCompletedChunks.contains(theChunkIndex)) {
+			return;
+		}
+
+		try {
+			theInFlight.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InternalErrorException(e);
+		}
+
+		CompletableFuture<Void> chunk = CompletableFuture
+			.supplyAsync(() -> parseChunk(theFile.getUrl(), theFirstLineIndex, theLines), myParseExecutor)
+			.thenAcceptAsync(resources -> {
+				storeChunk(theFile.getId(), theChunkIndex, resources);
+				long total = theJobResourceCounter.addAndGet(resources.size());
+				ourLog.info("Bulk import stored chunk {} of file {} - Total {} resources ({}/sec)", theChunkIndex, theFile.getUrl(), total, theJobStopwatch.formatThroughput(total, TimeUnit.SECONDS));
+			}, myStoreExecutor)
+			.whenComplete((result, error) -> {
+				theInFlight.release();
+				if (error != null) {
+					theFailure.compareAndSet(null, error instanceof CompletionException ? error.getCause() : error);
+				}
+			});
+		theChunks.add(chunk);
+	}
+
+	private List<IBaseResource> parseChunk(String theUrl, int theFirstLineIndex, List<String> theLines) {
+		IParser parser = myContext.newJsonParser();
+		List<IBaseResource> retVal = new ArrayList<>(theLines.size());
+		for (int i = 0; i < theLines.size(); i++) {
+			try {
+				retVal.add(parser.parseResource(theLines.get(i)));
+			} catch (DataFormatException e) {
+				throw new InvalidRequestException("Failed to parse resource " + (theFirstLineIndex + i + 1) + " in bulk import file " + theUrl + ": " + e.getMessage());
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Stores a chunk in a single transaction, so that the resource writes can be batched
+	 * by the JDBC driver (if Hibernate is configured with a JDBC batch size) and so that
+	 * the chunk is recorded as imported if and only if its resources were stored
+	 */
+	@SuppressWarnings("unchecked")
+	private void storeChunk(Long theFileId, int theChunkIndex, List<IBaseResource> theResources) {
+		myTxTemplate.execute(t -> {
+			for (IBaseResource next : theResources) {
+				IFhirResourceDao<IBaseResource> dao = myDaoRegistry.getResourceDao(myContext.getResourceDefinition(next).getName());
+				if (next.getIdElement().hasIdPart()) {
+					dao.update(next);
+				} else {
+					dao.create(next);
+				}
+			}
+
+			BulkImportChunkEntity chunk = new BulkImportChunkEntity();
+			chunk.setFile(myBulkImportJobFileDao.getOne(theFileId));
+			chunk.setChunkIndex(theChunkIndex);
+			chunk.setResourceCount(theResources.size());
+			myBulkImportChunkDao.save(chunk);
+			return null;
+		});
+	}
+
+	private InputStream openFile(String theUrl) throws IOException {
+		if (isBinaryUrl(theUrl)) {
+			return openBinary(theUrl);
+		}
+
+		File file = toLocalFile(theUrl);
+		InputStream retVal = new FileInputStream(file);
+		if (file.getName().endsWith(".gz")) {
+			retVal = new GZIPInputStream(retVal);
+		}
+		return retVal;
+	}
+
+	private InputStream openBinary(String theUrl) throws IOException {
+		IIdType binaryId = toBinaryId(theUrl);
+		IBaseBinary binary = myTxTemplate.execute(t -> getBinaryDao().read(binaryId));
+
+		Optional<String> blobId = ((IBaseHasExtensions) BinaryUtil.getOrCreateData(myContext, binary))
+			.getExtension()
+			.stream()
+			.filter(t -> JpaConstants.EXT_EXTERNALIZED_BINARY_ID.equals(t.getUrl()))
+			.map(t -> ((IPrimitiveType<?>) t.getValue()).getValueAsString())
+			.findFirst();
+
+		InputStream retVal;
+		if (blobId.isPresent()) {
+			if (myBinaryStorageSvc == null) {
+				throw new InternalErrorException("Binary " + theUrl + " is held in binary storage, but no binary storage service is configured");
+			}
+			retVal = copyBlobToTempFile(binaryId, blobId.get());
+		} else {
+			byte[] content = binary.getContent();
+			retVal = new ByteArrayInputStream(content != null ? content : new byte[0]);
+		}
+
+		if (BulkDataExportSvcImpl.CT_GZIP.equals(binary.getContentType())) {
+			retVal = new GZIPInputStream(retVal);
+		}
+		return retVal;
+	}
+
+	/**
+	 * The binary storage service can only write a blob to an OutputStream, so blobs are
+	 * copied to a temporary file (which is deleted when it is closed) in order to be read
+	 * without holding the whole file in memory
+	 */
+	private InputStream copyBlobToTempFile(IIdType theBinaryId, String theBlobId) throws IOException {
+		File tempFile = File.createTempFile("hapi-fhir-bulk-import-", ".ndjson");
+		try {
+			try (OutputStream outputStream = new FileOutputStream(tempFile)) {
+				if (!myBinaryStorageSvc.writeBlob(theBinaryId, theBlobId, outputStream)) {
+					throw new InternalErrorException("Unable to find blob " + theBlobId + " for " + theBinaryId.getValue());
+				}
+			}
+			return new FileInputStream(tempFile) {
+				@Override
+				public void close() throws IOException {
+					super.close();
+					FileUtils.deleteQuietly(tempFile);
+				}
+			};
+		} catch (IOException | RuntimeException e) {
+			FileUtils.deleteQuietly(tempFile);
+			throw e;
+		}
+	}
+
+	private boolean isBinaryUrl(String theUrl) {
+		return theUrl.startsWith("Binary/");
+	}
+
+	private IIdType toBinaryId(String theUrl) {
+		IIdType retVal = myContext.getVersion().newIdType();
+		retVal.setValue(theUrl);
+		if (!"Binary".equals(retVal.getResourceType()) || isBlank(retVal.getIdPart())) {
+			throw new InvalidRequestException("Invalid Binary ID for bulk import: " + theUrl);
+		}
+		return retVal.toUnqualifiedVersionless();
+	}
+
+	/**
+	 * Resolves a local file, and makes sure that it is within the directory that imports
+	 * are allowed to read from
+	 */
+	private File toLocalFile(String theUrl) {
+		String directory = myDaoConfig.getBulkImportLocalFileDirectory();
+		if (isBlank(directory)) {
+			throw new InvalidRequestException("Bulk import from local files is not enabled on this server: " + theUrl);
+		}
+
+		try {
+			Path path = theUrl.startsWith("file:") ? Paths.get(URI.create(theUrl)) : Paths.get(theUrl);
+			path = path.toRealPath();
+			if (!path.startsWith(Paths.get(directory).toRealPath()) || !path.toFile().isFile()) {
+				throw new InvalidRequestException("Bulk import file is not in the bulk import directory: " + theUrl);
+			}
+			return path.toFile();
+		} catch (IOException | IllegalArgumentException e) {
+			throw new InvalidRequestException("Unknown bulk import file: " + theUrl);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private IFhirResourceDao<IBaseBinary> getBinaryDao() {
+		return myDaoRegistry.getResourceDao("Binary");
+	}
+
+	@PostConstruct
+	public void start() {
+		ourLog.info("Bulk import service starting with refresh interval {}", StopWatch.formatMillis(REFRESH_INTERVAL));
+		myTxTemplate = new TransactionTemplate(myTxManager);
+
+		myThreadCount = myDaoConfig.getBulkImportThreadCount();
+		initExecutors();
+
+		ScheduledJobDefinition jobDetail = new ScheduledJobDefinition();
+		jobDetail.setId(BulkDataImportSvcImpl.class.getName());
+		jobDetail.setJobClass(BulkDataImportSvcImpl.SubmitJob.class);
+		mySchedulerService.scheduleFixedDelay(REFRESH_INTERVAL, true, jobDetail);
+	}
+
+	private void initExecutors() {
+		myParseExecutor = newExecutor(myThreadCount, "BulkImport-Parse-%d");
+		myStoreExecutor = newExecutor(myThreadCount, "BulkImport-Store-%d");
+	}
+
+	@VisibleForTesting
+	int getThreadCountForUnitTest() {
+		return myThreadCount;
+	}
+
+	@VisibleForTesting
+	void setThreadCountForUnitTest(int theThreadCount) {
+		myThreadCount = theThreadCount;
+		stop();
+		initExecutors();
+	}
+
+	private static ThreadPoolExecutor newExecutor(int theThreadCount, String theNamingPattern) {
+		return ThreadPoolUtil.newBlockingThreadPool(theThreadCount, EXECUTOR_QUEUE_SIZE, new BasicThreadFactory.Builder().namingPattern(theNamingPattern).build());
+	}
+
+	@PreDestroy
+	public void stop() {
+		myParseExecutor.shutdown();
+		myStoreExecutor.shutdown();
+	}
+
+	@Transactional
+	@Override
+	public JobInfo submitJob(List<String> theInputUrls) {
+		if (theInputUrls == null || theInputUrls.isEmpty()) {
+			throw new InvalidRequestException("No input files specified for bulk import");
+		}
+		for (String nextUrl : theInputUrls) {
+			if (isBlank(nextUrl) || nextUrl.length() > BulkImportJobFileEntity.FILE_URL_LENGTH) {
+				throw new InvalidRequestException("Invalid bulk import file: " + nextUrl);
+			}
+			if (isBinaryUrl(nextUrl)) {
+				toBinaryId(nextUrl);
+			} else {
+				toLocalFile(nextUrl);
+			}
+		}
+
+		BulkImportJobEntity job = new BulkImportJobEntity();
+		job.setJobId(UUID.randomUUID().toString());
+		job.setStatus(BulkJobStatusEnum.SUBMITTED);
+		job.setCreated(new Date());
+		job.setChunkSize(myDaoConfig.getBulkImportChunkSize());
+		myBulkImportJobDao.save(job);
+
+		int sequence = 0;
+		for (String nextUrl : theInputUrls) {
+			BulkImportJobFileEntity file = new BulkImportJobFileEntity();
+			file.setJob(job);
+			file.setFileSequence(sequence++);
+			file.setUrl(nextUrl);
+			job.getFiles().add(file);
+			myBulkImportJobFileDao.save(file);
+		}
+
+		ourLog.info("Bulk import job submitted: {}", job.toString());
+
+		return new JobInfo().setJobId(job.getJobId());
+	}
+
+	@Transactional
+	@Override
+	public JobInfo getJobStatusOrThrowResourceNotFound(String theJobId) {
+		BulkImportJobEntity job = myBulkImportJobDao
+			.findByJobId(theJobId)
+			.orElseThrow(() -> new ResourceNotFoundException(theJobId));
+
+		JobInfo retVal = new JobInfo();
+		retVal.setJobId(theJobId);
+		retVal.setStatus(job.getStatus());
+		retVal.setStatusTime(job.getStatusTime());
+		retVal.setStatusMessage(job.getStatusMessage());
+
+		for (BulkImportJobFileEntity nextFile : job.getFiles()) {
+			Long resourceCount = myBulkImportChunkDao.sumResourceCountForFile(nextFile.getId());
+			retVal.addFile()
+				.setUrl(nextFile.getUrl())
+				.setComplete(nextFile.isComplete())
+				.setResourceCount(resourceCount != null ? resourceCount : 0);
+		}
+
+		return retVal;
+	}
+
+	@DisallowConcurrentExecution
+	@PersistJobDataAfterExecution
+	public static class SubmitJob extends FireAtIntervalJob {
+		@Autowired
+		private IBulkDataImportSvc myTarget;
+
+		public SubmitJob() {
+			super(REFRESH_INTERVAL);
+		}
+
+		@Override
+		protected void doExecute(JobExecutionContext theContext) {
+			myTarget.processJobs();
+		}
+	}
+
+
+}
@@ -0,0 +1,169 @@
+package ca.uhn.fhir.jpa.bulk;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.api.Constants;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Produces the contents of a single NDJSON Bulk Data export file as an {@link InputStream}.
+ * Resources are only pulled from the source iterator and encoded (and optionally gzip
+ * compressed) as the stream is read, so at most one encoded resource is held in memory at
+ * a time regardless of the size of the file.
+ * <p>
+ * The file ends once the source is exhausted, or once the file has reached either the
+ * maximum number of characters or the maximum number of resources. Any remaining resources
+ * are left in the iterator for the next file.
+ * </p>
+ */
+class BulkExportFileInputStream extends InputStream {
+
+	private final Iterator<IBaseResource> myResources;
+	private final IParser myParser;
+	private final long myMaximumCharacters;
+	private final Integer myMaximumResourceCount;
+	private final ReadableByteArrayOutputStream myBuffer = new ReadableByteArrayOutputStream();
+	private final CountingOutputStream myCountingOutputStream;
+	private final Writer myWriter;
+	private int myBufferPosition;
+	private int myResourceCount;
+	private boolean myFinished;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theResources            The resources to write. Must not contain <code>null</code> entries.
+	 * @param theParser               The parser to encode resources with
+	 * @param theMaximumCharacters    The file ends once it contains at least this many (uncompressed) characters
+	 * @param theMaximumResourceCount If not <code>null</code>, the file ends once it contains this many resources
+	 * @param theGzip                 Should the file be gzip compressed
+	 */
+	BulkExportFileInputStream(Iterator<IBaseResource> theResources, IParser theParser, long theMaximumCharacters, Integer theMaximumResourceCount, boolean theGzip) throws IOException {
+		myResources = theResources;
+		myParser = theParser;
+		myMaximumCharacters = theMaximumCharacters;
+		myMaximumResourceCount = theMaximumResourceCount;
+
+		OutputStream target = myBuffer;
+		if (theGzip) {
+			target = new GZIPOutputStream(target);
+		}
+		myCountingOutputStream = new CountingOutputStream(target);
+		myWriter = new OutputStreamWriter(myCountingOutputStream, Constants.CHARSET_UTF8);
+	}
+
+	/**
+	 * Returns the number of resources written to the file so far
+	 */
+	int getResourceCount() {
+		return myResourceCount;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!fillBuffer()) {
+			return -1;
+		}
+		return myBuffer.byteAt(myBufferPosition++) & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] theBytes, int theOffset, int theLength) throws IOException {
+		if (theLength == 0) {
+			return 0;
+		}
+		if (!fillBuffer()) {
+			return -1;
+		}
+		int retVal = Math.min(theLength, myBuffer.size() - myBufferPosition);
+		myBuffer.copyTo(myBufferPosition, theBytes, theOffset, retVal);
+		myBufferPosition += retVal;
+		return retVal;
+	}
+
+	@Override
+	public int available() {
+		return myBuffer.size() - myBufferPosition;
+	}
+
+	/**
+	 * Encodes resources into the buffer until it contains unread bytes or the file is complete
+	 *
+	 * @return Returns <code>false</code> if there is nothing left to read
+	 */
+	private boolean fillBuffer() throws IOException {
+		if (myBufferPosition < myBuffer.size()) {
+			return true;
+		}
+		myBuffer.reset();
+		myBufferPosition = 0;
+
+		// With gzip enabled the compressor may need several resources before it produces output
+		while (myBuffer.size() == 0 && !myFinished) {
+			if (isFull() || !myResources.hasNext()) {
+				// Closing the writer also writes the gzip trailer, if any
+				myWriter.close();
+				myFinished = true;
+			} else {
+				myParser.encodeResourceToWriter(myResources.next(), myWriter);
+				myWriter.append("\n");
+				myWriter.flush();
+				myResourceCount++;
+			}
+		}
+
+		return myBuffer.size() > 0;
+	}
+
+	private boolean isFull() {
+		if (myCountingOutputStream.getByteCount() >= myMaximumCharacters) {
+			return true;
+		}
+		return myMaximumResourceCount != null && myResourceCount >= myMaximumResourceCount;
+	}
+
+	/**
+	 * Exposes the internal buffer so that it can be read without copying it
+	 */
+	private static class ReadableByteArrayOutputStream extends ByteArrayOutputStream {
+
+		byte byteAt(int theIndex) {
+			return buf[theIndex];
+		}
+
+		void copyTo(int theIndex, byte[] theTarget, int theTargetOffset, int theLength) {
+			System.arraycopy(buf, theIndex, theTarget, theTargetOffset, theLength);
+		}
+
+	}
+
+}
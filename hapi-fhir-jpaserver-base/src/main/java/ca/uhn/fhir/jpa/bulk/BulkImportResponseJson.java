@@ -0,0 +1,99 @@
+package ca.uhn.fhir.jpa.bulk;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import ca.uhn.fhir.jpa.util.JsonDateDeserializer;
+import ca.uhn.fhir.jpa.util.JsonDateSerializer;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_DEFAULT)
+@JsonAutoDetect(creatorVisibility = JsonAutoDetect.Visibility.NONE, fieldVisibility = JsonAutoDetect.Visibility.NONE, getterVisibility = JsonAutoDetect.Visibility.NONE, isGetterVisibility = JsonAutoDetect.Visibility.NONE, setterVisibility = JsonAutoDetect.Visibility.NONE)
+public class BulkImportResponseJson {
+
+	@JsonProperty("transactionTime")
+	@JsonSerialize(using = JsonDateSerializer.class)
+	@JsonDeserialize(using = JsonDateDeserializer.class)
+	private Date myTransactionTime;
+
+	@JsonProperty("output")
+	private List<Output> myOutput;
+
+	public Date getTransactionTime() {
+		return myTransactionTime;
+	}
+
+	public BulkImportResponseJson setTransactionTime(Date theTransactionTime) {
+		myTransactionTime = theTransactionTime;
+		return this;
+	}
+
+	public List<Output> getOutput() {
+		if (myOutput == null) {
+			myOutput = new ArrayList<>();
+		}
+		return myOutput;
+	}
+
+	public Output addOutput() {
+		Output retVal = new Output();
+		getOutput().add(retVal);
+		return retVal;
+	}
+
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	@JsonAutoDetect(creatorVisibility = JsonAutoDetect.Visibility.NONE, fieldVisibility = JsonAutoDetect.Visibility.NONE, getterVisibility = JsonAutoDetect.Visibility.NONE, isGetterVisibility = JsonAutoDetect.Visibility.NONE, setterVisibility = JsonAutoDetect.Visibility.NONE)
+	public static class Output {
+
+		@JsonProperty("inputUrl")
+		private String myInputUrl;
+		@JsonProperty("count")
+		private Long myCount;
+
+		public String getInputUrl() {
+			return myInputUrl;
+		}
+
+		public Output setInputUrl(String theInputUrl) {
+			myInputUrl = theInputUrl;
+			return this;
+		}
+
+		public Long getCount() {
+			return myCount;
+		}
+
+		public Output setCount(Long theCount) {
+			myCount = theCount;
+			return this;
+		}
+
+	}
+
+}
@@ -110,6 +110,7 @@ public interface IBulkDataExportSvc {
 	class FileEntry {
 		private String myResourceType;
 		private IIdType myResourceId;
+		private String myBlobId;
 
 		public String getResourceType() {
 			return myResourceType;
@@ -128,6 +129,19 @@ public interface IBulkDataExportSvc {
 			myResourceId = theResourceId;
 			return this;
 		}
+
+		/**
+		 * Returns the ID of the binary storage blob holding the file contents, or <code>null</code>
+		 * if the contents are stored inline in the Binary resource
+		 */
+		public String getBlobId() {
+			return myBlobId;
+		}
+
+		public FileEntry setBlobId(String theBlobId) {
+			myBlobId = theBlobId;
+			return this;
+		}
 	}
 
 
@@ -0,0 +1,143 @@
+package ca.uhn.fhir.jpa.bulk;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+public interface IBulkDataImportSvc {
+
+	/**
+	 * This method is called by the scheduler to process the next
+	 * submitted (or interrupted) import job, if any
+	 */
+	void processJobs();
+
+	/**
+	 * Submits a new import job
+	 *
+	 * @param theInputUrls The NDJSON files to import, in the order they should be imported. Each one is
+	 *                     either a <code>Binary</code> resource ID (e.g. <code>Binary/123</code>), or a
+	 *                     local file (see {@link ca.uhn.fhir.jpa.dao.DaoConfig#setBulkImportLocalFileDirectory(String)}).
+	 *                     Files are gunzipped while they are read if the Binary has a content type of
+	 *                     <code>application/gzip</code> or the file name ends with <code>.gz</code>.
+	 */
+	JobInfo submitJob(List<String> theInputUrls);
+
+	JobInfo getJobStatusOrThrowResourceNotFound(String theJobId);
+
+	class JobInfo {
+		private String myJobId;
+		private BulkJobStatusEnum myStatus;
+		private List<FileEntry> myFiles;
+		private Date myStatusTime;
+		private String myStatusMessage;
+
+		public Date getStatusTime() {
+			return myStatusTime;
+		}
+
+		public JobInfo setStatusTime(Date theStatusTime) {
+			myStatusTime = theStatusTime;
+			return this;
+		}
+
+		public String getJobId() {
+			return myJobId;
+		}
+
+		public JobInfo setJobId(String theJobId) {
+			myJobId = theJobId;
+			return this;
+		}
+
+		public List<FileEntry> getFiles() {
+			if (myFiles == null) {
+				myFiles = new ArrayList<>();
+			}
+			return myFiles;
+		}
+
+		public BulkJobStatusEnum getStatus() {
+			return myStatus;
+		}
+
+		public JobInfo setStatus(BulkJobStatusEnum theStatus) {
+			myStatus = theStatus;
+			return this;
+		}
+
+		public String getStatusMessage() {
+			return myStatusMessage;
+		}
+
+		public JobInfo setStatusMessage(String theStatusMessage) {
+			myStatusMessage = theStatusMessage;
+			return this;
+		}
+
+		public FileEntry addFile() {
+			FileEntry retVal = new FileEntry();
+			getFiles().add(retVal);
+			return retVal;
+		}
+	}
+
+
+	class FileEntry {
+		private String myUrl;
+		private long myResourceCount;
+		private boolean myComplete;
+
+		public String getUrl() {
+			return myUrl;
+		}
+
+		public FileEntry setUrl(String theUrl) {
+			myUrl = theUrl;
+			return this;
+		}
+
+		/**
+		 * Returns the number of resources from this file that have been imported so far
+		 */
+		public long getResourceCount() {
+			return myResourceCount;
+		}
+
+		public FileEntry setResourceCount(long theResourceCount) {
+			myResourceCount = theResourceCount;
+			return this;
+		}
+
+		public boolean isComplete() {
+			return myComplete;
+		}
+
+		public FileEntry setComplete(boolean theComplete) {
+			myComplete = theComplete;
+			return this;
+		}
+	}
+
+
+}
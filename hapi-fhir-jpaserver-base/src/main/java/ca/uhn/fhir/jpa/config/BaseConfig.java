@@ -8,8 +8,13 @@ import ca.uhn.fhir.jpa.binstore.BinaryAccessProvider;
 import ca.uhn.fhir.jpa.binstore.BinaryStorageInterceptor;
 import ca.uhn.fhir.jpa.bulk.BulkDataExportSvcImpl;
 import ca.uhn.fhir.jpa.bulk.BulkDataExportProvider;
+import ca.uhn.fhir.jpa.bulk.BulkDataImportProvider;
+import ca.uhn.fhir.jpa.bulk.BulkDataImportSvcImpl;
 import ca.uhn.fhir.jpa.bulk.IBulkDataExportSvc;
+import ca.uhn.fhir.jpa.bulk.IBulkDataImportSvc;
 import ca.uhn.fhir.jpa.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.dao.cache.IResourceVersionCacheSvc;
+import ca.uhn.fhir.jpa.dao.cache.ResourceVersionCacheSvcImpl;
 import ca.uhn.fhir.jpa.graphql.JpaStorageServices;
 import ca.uhn.fhir.jpa.interceptor.JpaConsentContextServices;
 import ca.uhn.fhir.jpa.model.sched.ISchedulerService;
@@ -170,6 +175,11 @@ public abstract class BaseConfig {
 		return new ResourceReindexingSvcImpl();
 	}
 
+	@Bean
+	public IResourceVersionCacheSvc resourceVersionCacheSvc() {
+		return new ResourceVersionCacheSvcImpl();
+	}
+
 	@Bean
 	public IStaleSearchDeletingSvc staleSearchDeletingSvc() {
 		return new StaleSearchDeletingSvcImpl();
@@ -255,6 +265,18 @@ public abstract class BaseConfig {
 		return new BulkDataExportProvider();
 	}
 
+	@Bean
+	@Lazy
+	public IBulkDataImportSvc bulkDataImportSvc() {
+		return new BulkDataImportSvcImpl();
+	}
+
+	@Bean
+	@Lazy
+	public BulkDataImportProvider bulkDataImportProvider() {
+		return new BulkDataImportProvider();
+	}
+
 
 
 	public static void configureEntityManagerFactory(LocalContainerEntityManagerFactoryBean theFactory, FhirContext theCtx) {
@@ -4,6 +4,8 @@ import ca.uhn.fhir.context.*;
 import ca.uhn.fhir.interceptor.api.HookParams;
 import ca.uhn.fhir.interceptor.api.IInterceptorBroadcaster;
 import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.dao.cache.CachedResourceVersion;
+import ca.uhn.fhir.jpa.dao.cache.IResourceVersionCacheSvc;
 import ca.uhn.fhir.jpa.dao.data.*;
 import ca.uhn.fhir.jpa.dao.expunge.ExpungeService;
 import ca.uhn.fhir.jpa.dao.index.DaoSearchParamSynchronizer;
@@ -17,6 +19,7 @@ import ca.uhn.fhir.jpa.model.entity.*;
 import ca.uhn.fhir.jpa.model.search.SearchStatusEnum;
 import ca.uhn.fhir.jpa.model.search.StorageProcessingMessage;
 import ca.uhn.fhir.jpa.model.util.JpaConstants;
+import ca.uhn.fhir.jpa.search.HistoryKeysetSvc;
 import ca.uhn.fhir.jpa.search.ISearchCoordinatorSvc;
 import ca.uhn.fhir.jpa.search.PersistedJpaBundleProvider;
 import ca.uhn.fhir.jpa.search.cache.ISearchCacheSvc;
@@ -56,8 +59,10 @@ import ca.uhn.fhir.util.*;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Charsets;
 import com.google.common.collect.Sets;
-import com.google.common.hash.HashFunction;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
+import org.apache.commons.io.output.TeeOutputStream;
 import org.apache.commons.lang3.NotImplementedException;
 import org.apache.commons.lang3.Validate;
 import org.hibernate.Session;
@@ -83,8 +88,13 @@ import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 import javax.xml.stream.events.Characters;
 import javax.xml.stream.events.XMLEvent;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.zip.GZIPOutputStream;
 
 import static ca.uhn.fhir.jpa.model.util.JpaConstants.EXT_EXTERNALIZED_BINARY_ID;
 import static org.apache.commons.lang3.StringUtils.*;
@@ -162,6 +172,8 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 	@Autowired
 	private ISearchResultCacheSvc mySearchResultCacheSvc;
 	@Autowired
+	private IResourceVersionCacheSvc myResourceVersionCacheSvc;
+	@Autowired
 	private ISearchParamPresenceSvc mySearchParamPresenceSvc;
 	@Autowired
 	private DaoRegistry myDaoRegistry;
@@ -171,6 +183,10 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 	private DaoSearchParamSynchronizer myDaoSearchParamSynchronizer;
 	@Autowired
 	private SearchBuilderFactory mySearchBuilderFactory;
+	@Autowired
+	private TagDefinitionCacheSvc myTagDefinitionCacheSvc;
+	@Autowired
+	private HistoryKeysetSvc myHistoryKeysetSvc;
 	private FhirContext myContext;
 	private ApplicationContext myApplicationContext;
 
@@ -201,6 +217,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 			fid.setForcedId(theId.getIdPart());
 			fid.setResource(theEntity);
 			theEntity.setForcedId(fid);
+			myIdHelperService.forcedIdCreated(fid);
 			return fid;
 		}
 
@@ -367,32 +384,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 			return null;
 		}
 
-		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
-		CriteriaQuery<TagDefinition> cq = builder.createQuery(TagDefinition.class);
-		Root<TagDefinition> from = cq.from(TagDefinition.class);
-
-		if (isNotBlank(theScheme)) {
-			cq.where(
-				builder.and(
-					builder.equal(from.get("myTagType"), theTagType),
-					builder.equal(from.get("mySystem"), theScheme),
-					builder.equal(from.get("myCode"), theTerm)));
-		} else {
-			cq.where(
-				builder.and(
-					builder.equal(from.get("myTagType"), theTagType),
-					builder.isNull(from.get("mySystem")),
-					builder.equal(from.get("myCode"), theTerm)));
-		}
-
-		TypedQuery<TagDefinition> q = myEntityManager.createQuery(cq);
-		try {
-			return q.getSingleResult();
-		} catch (NoResultException e) {
-			TagDefinition retVal = new TagDefinition(theTagType, theScheme, theTerm, theLabel);
-			myEntityManager.persist(retVal);
-			return retVal;
-		}
+		return myTagDefinitionCacheSvc.getOrCreateTag(theTagType, theScheme, theTerm, theLabel);
 	}
 
 	protected TagList getTags(RequestDetails theRequest, Class<? extends IBaseResource> theResourceType, IIdType theResourceId) {
@@ -496,6 +488,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 		theProvider.setSearchCacheSvc(mySearchCacheSvc);
 		theProvider.setSearchCoordinatorSvc(mySearchCoordinatorSvc);
 		theProvider.setInterceptorBroadcaster(myInterceptorBroadcaster);
+		theProvider.setHistoryKeysetSvc(myHistoryKeysetSvc);
 	}
 
 	public boolean isLogicalReference(IIdType theId) {
@@ -550,11 +543,11 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 			Set<String> excludeElements = ResourceMetaParams.EXCLUDE_ELEMENTS_IN_ENCODED;
 			theEntity.setFhirVersion(myContext.getVersion().getVersion());
 
-			bytes = encodeResource(theResource, encoding, excludeElements, myContext);
+			Hasher sha256 = theUpdateHash ? Hashing.sha256().newHasher() : null;
+			bytes = encodeResource(theResource, encoding, excludeElements, myContext, sha256);
 
 			if (theUpdateHash) {
-				HashFunction sha256 = Hashing.sha256();
-				String hashSha256 = sha256.hashBytes(bytes).toString();
+				String hashSha256 = sha256.hash().toString();
 				if (hashSha256.equals(theEntity.getHashSha256()) == false) {
 					changed = true;
 				}
@@ -861,6 +854,8 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 		Long version;
 		String provenanceSourceUri = null;
 		String provenanceRequestId = null;
+		Long resourcePid = null;
+		CachedResourceVersion cached = null;
 
 		if (theEntity instanceof ResourceHistoryTable) {
 			ResourceHistoryTable history = (ResourceHistoryTable) theEntity;
@@ -868,15 +863,32 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 			resourceEncoding = history.getEncoding();
 			myTagList = history.getTags();
 			version = history.getVersion();
+			resourcePid = history.getResourceId();
+			cached = getCachedResourceVersion(theResourceType, resourcePid, version);
 			if (history.getProvenance() != null) {
 				provenanceRequestId = history.getProvenance().getRequestId();
 				provenanceSourceUri = history.getProvenance().getSourceUri();
 			}
+		} else if (theEntity instanceof ResourceTable && (cached = getCachedResourceVersion(theResourceType, theEntity.getId(), theEntity.getVersion())) != null) {
+			// The current version is cached, so there is no need to load it
+			ResourceTable resource = (ResourceTable) theEntity;
+			resourcePid = resource.getId();
+			resourceBytes = null;
+			resourceEncoding = null;
+			myTagList = resource.getTags();
+			version = resource.getVersion();
+			provenanceRequestId = cached.getProvenanceRequestId();
+			provenanceSourceUri = cached.getProvenanceSourceUri();
 		} else if (theEntity instanceof ResourceTable) {
 			ResourceTable resource = (ResourceTable) theEntity;
+			resourcePid = resource.getId();
 			version = theEntity.getVersion();
-			ResourceHistoryTable history = myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(theEntity.getId(), version);
-			((ResourceTable) theEntity).setCurrentVersionEntity(history);
+			// The current version may already have been loaded (e.g. in bulk by the reindexer)
+			ResourceHistoryTable history = resource.getCurrentVersionEntity();
+			if (history == null || history.getVersion() != version) {
+				history = myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(theEntity.getId(), version);
+				resource.setCurrentVersionEntity(history);
+			}
 
 			while (history == null) {
 				if (version > 1L) {
@@ -912,7 +924,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 		}
 
 		// 2. get The text
-		String resourceText = decodeResource(resourceBytes, resourceEncoding);
+		String resourceText = cached == null ? decodeResource(resourceBytes, resourceEncoding) : null;
 
 		// 3. Use the appropriate custom type if one is specified in the context
 		Class<R> resourceType = theResourceType;
@@ -934,7 +946,11 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 
 		// 4. parse the text to FHIR
 		R retVal;
-		if (resourceEncoding != ResourceEncodingEnum.DEL) {
+		if (cached != null) {
+
+			retVal = (R) cached.getResource();
+
+		} else if (resourceEncoding != ResourceEncodingEnum.DEL) {
 			IParser parser = resourceEncoding.newParser(getContext(theEntity.getFhirVersion()));
 			parser.setParserErrorHandler(new LenientErrorHandler(false).setErrorOnInvalidValue(false));
 
@@ -957,6 +973,10 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 				throw new DataFormatException(msg, e);
 			}
 
+			if (resourcePid != null && isResourceVersionCacheUsable()) {
+				myResourceVersionCacheSvc.put(resourcePid, version, new CachedResourceVersion(retVal, provenanceSourceUri, provenanceRequestId));
+			}
+
 		} else {
 
 			retVal = (R) myContext.getResourceDefinition(theEntity.getResourceType()).newInstance();
@@ -992,6 +1012,29 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 		return retVal;
 	}
 
+	/**
+	 * Returns a copy of the cached body of the given resource version, or <code>null</code>
+	 * if the resource version cache is disabled or the body is not cached
+	 */
+	private CachedResourceVersion getCachedResourceVersion(Class<? extends IBaseResource> theResourceType, Long theResourcePid, Long theVersion) {
+		if (theResourcePid == null || !isResourceVersionCacheUsable()) {
+			return null;
+		}
+		CachedResourceVersion retVal = myResourceVersionCacheSvc.get(theResourcePid, theVersion);
+		if (retVal != null && !theResourceType.isInstance(retVal.getResource())) {
+			return null;
+		}
+		return retVal;
+	}
+
+	/**
+	 * If custom types are registered for profiles, the type a resource is parsed into
+	 * depends on its current tags, so cached bodies are not used
+	 */
+	private boolean isResourceVersionCacheUsable() {
+		return myConfig.isResourceVersionCacheEnabled() && !myContext.hasDefaultTypeForProfile();
+	}
+
 	public String toResourceName(Class<? extends IBaseResource> theResourceType) {
 		return myContext.getResourceDefinition(theResourceType).getName();
 	}
@@ -1102,7 +1145,8 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 		/*
 		 * Save the resource itself
 		 */
-		if (theEntity.getId() == null) {
+		boolean entityIsNew = theEntity.getId() == null;
+		if (entityIsNew) {
 			myEntityManager.persist(theEntity);
 
 			if (theEntity.getForcedId() != null) {
@@ -1191,7 +1235,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 					}
 				}
 			}
-			AddRemoveCount presenceCount = mySearchParamPresenceSvc.updatePresence(theEntity, presentSearchParams);
+			AddRemoveCount presenceCount = mySearchParamPresenceSvc.updatePresence(theEntity, presentSearchParams, entityIsNew);
 
 			// Interceptor broadcast: JPA_PERFTRACE_INFO
 			if (!presenceCount.isEmpty()) {
@@ -1510,6 +1554,9 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 			case JSONC:
 				resourceText = GZipUtil.decompress(theResourceBytes);
 				break;
+			case JSONZ:
+				resourceText = ZstdUtil.decompress(theResourceBytes);
+				break;
 			case DEL:
 				break;
 		}
@@ -1517,27 +1564,49 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 	}
 
 	public static byte[] encodeResource(IBaseResource theResource, ResourceEncodingEnum theEncoding, Set<String> theExcludeElements, FhirContext theContext) {
-		byte[] bytes;
+		return encodeResource(theResource, theEncoding, theExcludeElements, theContext, null);
+	}
+
+	/**
+	 * Encodes the resource in a single pass: the parser writes straight into the
+	 * compressor (for {@link ResourceEncodingEnum#JSONC} and {@link ResourceEncodingEnum#JSONZ}), and the resulting bytes are
+	 * collected and fed to the given hasher (if any) as they are written. This avoids
+	 * holding the encoded resource as a String, a byte array, and a compressed byte array
+	 * at the same time.
+	 *
+	 * @param theHasherOrNull If not null, receives the same bytes as are returned
+	 */
+	static byte[] encodeResource(IBaseResource theResource, ResourceEncodingEnum theEncoding, Set<String> theExcludeElements, FhirContext theContext, Hasher theHasherOrNull) {
+		if (theEncoding == ResourceEncodingEnum.DEL) {
+			return new byte[0];
+		}
+
 		IParser parser = theEncoding.newParser(theContext);
 		parser.setDontEncodeElements(theExcludeElements);
-		String encoded = parser.encodeResourceToString(theResource);
 
+		// This buffer grows in chunks, so it isn't copied each time it fills
+		org.apache.commons.io.output.ByteArrayOutputStream bytes = new org.apache.commons.io.output.ByteArrayOutputStream();
+		OutputStream os = bytes;
+		if (theHasherOrNull != null) {
+			os = new TeeOutputStream(bytes, Funnels.asOutputStream(theHasherOrNull));
+		}
 
-		switch (theEncoding) {
-			case JSON:
-				bytes = encoded.getBytes(Charsets.UTF_8);
-				break;
-			case JSONC:
-				bytes = GZipUtil.compress(encoded);
-				break;
-			default:
-			case DEL:
-				bytes = new byte[0];
-				break;
+		try {
+			if (theEncoding == ResourceEncodingEnum.JSONC) {
+				os = new GZIPOutputStream(os);
+			} else if (theEncoding == ResourceEncodingEnum.JSONZ) {
+				os = ZstdUtil.newCompressingStream(os);
+			}
+			try (Writer writer = new OutputStreamWriter(os, Charsets.UTF_8)) {
+				parser.encodeResourceToWriter(theResource, writer);
+			}
+		} catch (IOException e) {
+			throw new InternalErrorException("Failed to encode resource: " + e.getMessage(), e);
 		}
 
-		ourLog.debug("Encoded {} chars of resource body as {} bytes", encoded.length(), bytes.length);
-		return bytes;
+		byte[] retVal = bytes.toByteArray();
+		ourLog.debug("Encoded resource body as {} bytes", retVal.length);
+		return retVal;
 	}
 
 	private static String parseNarrativeTextIntoWords(IBaseResource theResource) {
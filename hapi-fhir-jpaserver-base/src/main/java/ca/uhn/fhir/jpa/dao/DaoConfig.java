@@ -8,6 +8,7 @@ import ca.uhn.fhir.jpa.searchparam.SearchParamConstants;
 import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Sets;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.time.DateUtils;
 import org.hl7.fhir.dstu2.model.Subscription;
@@ -43,12 +44,52 @@ public class DaoConfig {
 	 * Default value for {@link #setReuseCachedSearchResultsForMillis(Long)}: 60000ms (one minute)
 	 */
 	public static final Long DEFAULT_REUSE_CACHED_SEARCH_RESULTS_FOR_MILLIS = DateUtils.MILLIS_PER_MINUTE;
+	/**
+	 * Default value for {@link #setEstimatedSearchTotalCacheMillis(Long)}: 60000ms (one minute)
+	 */
+	public static final Long DEFAULT_ESTIMATED_SEARCH_TOTAL_CACHE_MILLIS = DateUtils.MILLIS_PER_MINUTE;
 	/**
 	 * Default value for {@link #setTranslationCachesExpireAfterWriteInMinutes(Long)}: 60 minutes
 	 *
 	 * @see #setTranslationCachesExpireAfterWriteInMinutes(Long)
 	 */
 	public static final Long DEFAULT_TRANSLATION_CACHES_EXPIRE_AFTER_WRITE_IN_MINUTES = 60L;
+	/**
+	 * Default value for {@link #setResourcePidCacheMaximumSize(int)}: 10000
+	 *
+	 * @see #setResourcePidCacheMaximumSize(int)
+	 */
+	public static final int DEFAULT_RESOURCE_PID_CACHE_MAXIMUM_SIZE = 10000;
+	/**
+	 * Default value for {@link #setResourceVersionCacheMaximumSize(int)}: 5000
+	 *
+	 * @see #setResourceVersionCacheMaximumSize(int)
+	 */
+	public static final int DEFAULT_RESOURCE_VERSION_CACHE_MAXIMUM_SIZE = 5000;
+	/**
+	 * Default value for {@link #setBulkExportPartitionSize(int)}: 5000
+	 *
+	 * @see #setBulkExportPartitionSize(int)
+	 */
+	public static final int DEFAULT_BULK_EXPORT_PARTITION_SIZE = 5000;
+	/**
+	 * Default value for {@link #setBulkExportFileMaximumCharacters(long)}: 512000 (500 KB)
+	 *
+	 * @see #setBulkExportFileMaximumCharacters(long)
+	 */
+	public static final long DEFAULT_BULK_EXPORT_FILE_MAXIMUM_CHARACTERS = 500 * FileUtils.ONE_KB;
+	/**
+	 * Default value for {@link #setBulkImportChunkSize(int)}: 500
+	 *
+	 * @see #setBulkImportChunkSize(int)
+	 */
+	public static final int DEFAULT_BULK_IMPORT_CHUNK_SIZE = 500;
+	/**
+	 * Default value for {@link #setReindexChunkSize(int)}: 500
+	 *
+	 * @see #setReindexChunkSize(int)
+	 */
+	public static final int DEFAULT_REINDEX_CHUNK_SIZE = 500;
 	/**
 	 * See {@link #setStatusBasedReindexingDisabled(boolean)}
 	 */
@@ -126,6 +167,7 @@ public class DaoConfig {
 	 */
 	private Integer myResourceMetaCountHardLimit = 1000;
 	private Long myReuseCachedSearchResultsForMillis = DEFAULT_REUSE_CACHED_SEARCH_RESULTS_FOR_MILLIS;
+	private Long myEstimatedSearchTotalCacheMillis = DEFAULT_ESTIMATED_SEARCH_TOTAL_CACHE_MILLIS;
 	private boolean mySchedulingDisabled;
 	private boolean mySuppressUpdatesWithNoChange = true;
 	private boolean myAutoCreatePlaceholderReferenceTargets;
@@ -137,7 +179,18 @@ public class DaoConfig {
 	private boolean myExpungeEnabled;
 	private int myExpungeBatchSize = DEFAULT_EXPUNGE_BATCH_SIZE;
 	private int myReindexThreadCount;
+	private int myReindexChunkSize = DEFAULT_REINDEX_CHUNK_SIZE;
+	private int myReindexJobPartitionCount = 1;
 	private int myExpungeThreadCount;
+	private int myBulkExportThreadCount;
+	private int myBulkExportPartitionSize = DEFAULT_BULK_EXPORT_PARTITION_SIZE;
+	private long myBulkExportFileMaximumCharacters = DEFAULT_BULK_EXPORT_FILE_MAXIMUM_CHARACTERS;
+	private Integer myBulkExportFileMaximumResourceCount;
+	private boolean myBulkExportUseBinaryStorage;
+	private boolean myBulkExportGzipEnabled;
+	private int myBulkImportThreadCount;
+	private int myBulkImportChunkSize = DEFAULT_BULK_IMPORT_CHUNK_SIZE;
+	private String myBulkImportLocalFileDirectory;
 	private Set<String> myBundleTypesAllowedForStorage;
 	private boolean myValidateSearchParameterExpressionsOnSave = true;
 	private List<Integer> mySearchPreFetchThresholds = Arrays.asList(500, 2000, -1);
@@ -146,6 +199,12 @@ public class DaoConfig {
 	private boolean myEnableInMemorySubscriptionMatching = true;
 	private boolean myEnforceReferenceTargetTypes = true;
 	private ClientIdStrategyEnum myResourceClientIdStrategy = ClientIdStrategyEnum.ALPHANUMERIC;
+	private boolean myResourcePidCacheEnabled = true;
+	private int myResourcePidCacheMaximumSize = DEFAULT_RESOURCE_PID_CACHE_MAXIMUM_SIZE;
+	private boolean myResourcePidNegativeCacheEnabled = false;
+	private boolean myResourceVersionCacheEnabled = false;
+	private int myResourceVersionCacheMaximumSize = DEFAULT_RESOURCE_VERSION_CACHE_MAXIMUM_SIZE;
+	private boolean myTagDefinitionCacheEnabled = true;
 	private boolean myFilterParameterEnabled = false;
 	private StoreMetaSourceInformationEnum myStoreMetaSourceInformation = StoreMetaSourceInformationEnum.SOURCE_URI_AND_REQUEST_ID;
 	/**
@@ -175,6 +234,8 @@ public class DaoConfig {
 		setMarkResourcesForReindexingUponSearchParameterChange(true);
 		setReindexThreadCount(Runtime.getRuntime().availableProcessors());
 		setExpungeThreadCount(Runtime.getRuntime().availableProcessors());
+		setBulkExportThreadCount(Runtime.getRuntime().availableProcessors());
+		setBulkImportThreadCount(Runtime.getRuntime().availableProcessors());
 		setBundleTypesAllowedForStorage(DEFAULT_BUNDLE_TYPES_ALLOWED_FOR_STORAGE);
 
 		if ("true".equalsIgnoreCase(System.getProperty(DISABLE_STATUS_BASED_REINDEX))) {
@@ -623,6 +684,74 @@ public class DaoConfig {
 		myReindexThreadCount = Math.max(myReindexThreadCount, 1); // Minimum of 1
 	}
 
+	/**
+	 * This setting controls the number of resources which are reindexed together in a
+	 * single database transaction by one reindexing thread (see {@link #setReindexThreadCount(int)}).
+	 * The resources in a chunk, along with their current versions, are loaded using a
+	 * small number of queries instead of being loaded one at a time. If reindexing any
+	 * resource in a chunk fails, the chunk is rolled back and its resources are reindexed
+	 * one at a time instead, so that the failing resource can be marked as such.
+	 * <p>
+	 * The default value is {@link #DEFAULT_REINDEX_CHUNK_SIZE}. Value for this setting must
+	 * be a positive integer.
+	 * </p>
+	 *
+	 * @since 4.1.0
+	 */
+	public int getReindexChunkSize() {
+		return myReindexChunkSize;
+	}
+
+	/**
+	 * This setting controls the number of resources which are reindexed together in a
+	 * single database transaction by one reindexing thread (see {@link #setReindexThreadCount(int)}).
+	 * The resources in a chunk, along with their current versions, are loaded using a
+	 * small number of queries instead of being loaded one at a time. If reindexing any
+	 * resource in a chunk fails, the chunk is rolled back and its resources are reindexed
+	 * one at a time instead, so that the failing resource can be marked as such.
+	 * <p>
+	 * The default value is {@link #DEFAULT_REINDEX_CHUNK_SIZE}. Value for this setting must
+	 * be a positive integer.
+	 * </p>
+	 *
+	 * @since 4.1.0
+	 */
+	public void setReindexChunkSize(int theReindexChunkSize) {
+		Validate.isTrue(theReindexChunkSize > 0, "theReindexChunkSize must be a positive integer");
+		myReindexChunkSize = theReindexChunkSize;
+	}
+
+	/**
+	 * When resources are marked for reindexing, this setting controls how many reindexing
+	 * jobs are created. If this is greater than 1, each job covers a disjoint range of
+	 * resource PIDs. Each server in a cluster works on one job at a time, so this allows the
+	 * reindexing work to be spread across several servers.
+	 * <p>
+	 * The default value is 1, meaning that a single job covers all resources.
+	 * </p>
+	 *
+	 * @since 4.1.0
+	 */
+	public int getReindexJobPartitionCount() {
+		return myReindexJobPartitionCount;
+	}
+
+	/**
+	 * When resources are marked for reindexing, this setting controls how many reindexing
+	 * jobs are created. If this is greater than 1, each job covers a disjoint range of
+	 * resource PIDs. Each server in a cluster works on one job at a time, so this allows the
+	 * reindexing work to be spread across several servers.
+	 * <p>
+	 * The default value is 1, meaning that a single job covers all resources.
+	 * </p>
+	 *
+	 * @since 4.1.0
+	 */
+	public void setReindexJobPartitionCount(int theReindexJobPartitionCount) {
+		Validate.isTrue(theReindexJobPartitionCount > 0, "theReindexJobPartitionCount must be a positive integer");
+		myReindexJobPartitionCount = theReindexJobPartitionCount;
+	}
+
 	/**
 	 * This setting controls the number of threads allocated to the expunge operation
 	 * <p>
@@ -648,11 +777,328 @@ public class DaoConfig {
 		myExpungeThreadCount = Math.max(myExpungeThreadCount, 1); // Minimum of 1
 	}
 
+	/**
+	 * This setting controls the number of threads allocated to generating Bulk Data
+	 * export files. Each thread exports one partition (see {@link #setBulkExportPartitionSize(int)})
+	 * at a time.
+	 * <p>
+	 * The default value is set to the number of available processors
+	 * (via <code>Runtime.getRuntime().availableProcessors()</code>). Value
+	 * for this setting must be a positive integer. This setting is read when the server starts.
+	 * </p>
+	 *
+	 * @since 4.1.0
+	 */
+	public int getBulkExportThreadCount() {
+		return myBulkExportThreadCount;
+	}
+
+	/**
+	 * This setting controls the number of threads allocated to generating Bulk Data
+	 * export files. Each thread exports one partition (see {@link #setBulkExportPartitionSize(int)})
+	 * at a time.
+	 * <p>
+	 * The default value is set to the number of available processors
+	 * (via <code>Runtime.getRuntime().availableProcessors()</code>). Value
+	 * for this setting must be a positive integer. This setting is read when the server starts.
+	 * </p>
+	 *
+	 * @since 4.1.0
+	 */
+	public void setBulkExportThreadCount(int theBulkExportThreadCount) {
+		myBulkExportThreadCount = theBulkExportThreadCount;
+		myBulkExportThreadCount = Math.max(myBulkExportThreadCount, 1); // Minimum of 1
+	}
+
+	/**
+	 * When generating Bulk Data export files, the resources of each type are split
+	 * into partitions of consecutive resource IDs, and each partition is exported
+	 * independently by one of the export threads (see {@link #setBulkExportThreadCount(int)})
+	 * in its own short transactions. This setting controls the maximum number of resources
+	 * in a partition.
+	 * <p>
+	 * The default value is {@link #DEFAULT_BULK_EXPORT_PARTITION_SIZE}. Value
+	 * for this setting must be a positive integer.
+	 * </p>
+	 *
+	 * @since 4.1.0
+	 */
+	public int getBulkExportPartitionSize() {
+		return myBulkExportPartitionSize;
+	}
+
+	/**
+	 * When generating Bulk Data export files, the resources of each type are split
+	 * into partitions of consecutive resource IDs, and each partition is exported
+	 * independently by one of the export threads (see {@link #setBulkExportThreadCount(int)})
+	 * in its own short transactions. This setting controls the maximum number of resources
+	 * in a partition.
+	 * <p>
+	 * The default value is {@link #DEFAULT_BULK_EXPORT_PARTITION_SIZE}. Value
+	 * for this setting must be a positive integer.
+	 * </p>
+	 *
+	 * @since 4.1.0
+	 */
+	public void setBulkExportPartitionSize(int theBulkExportPartitionSize) {
+		Validate.isTrue(theBulkExportPartitionSize > 0, "theBulkExportPartitionSize must be greater than 0");
+		myBulkExportPartitionSize = theBulkExportPartitionSize;
+	}
+
+	/**
+	 * When generating Bulk Data export files, a new output file is started once the
+	 * current file contains at least this many characters of (uncompressed) NDJSON.
+	 * Files may therefore be slightly larger than this value, since a resource is never
+	 * split across files.
+	 * <p>
+	 * The default value is {@link #DEFAULT_BULK_EXPORT_FILE_MAXIMUM_CHARACTERS}. Value
+	 * for this setting must be a positive integer.
+	 * </p>
+	 *
+	 * @see #setBulkExportFileMaximumResourceCount(Integer)
+	 * @since 4.1.0
+	 */
+	public long getBulkExportFileMaximumCharacters() {
+		return myBulkExportFileMaximumCharacters;
+	}
+
+	/**
+	 * When generating Bulk Data export files, a new output file is started once the
+	 * current file contains at least this many characters of (uncompressed) NDJSON.
+	 * Files may therefore be slightly larger than this value, since a resource is never
+	 * split across files.
+	 * <p>
+	 * The default value is {@link #DEFAULT_BULK_EXPORT_FILE_MAXIMUM_CHARACTERS}. Value
+	 * for this setting must be a positive integer.
+	 * </p>
+	 *
+	 * @see #setBulkExportFileMaximumResourceCount(Integer)
+	 * @since 4.1.0
+	 */
+	public void setBulkExportFileMaximumCharacters(long theBulkExportFileMaximumCharacters) {
+		Validate.isTrue(theBulkExportFileMaximumCharacters > 0, "theBulkExportFileMaximumCharacters must be greater than 0");
+		myBulkExportFileMaximumCharacters = theBulkExportFileMaximumCharacters;
+	}
+
+	/**
+	 * When generating Bulk Data export files, if this is set to a non-null value a new
+	 * output file is started once the current file contains this many resources, even if
+	 * it has not reached the size given by {@link #setBulkExportFileMaximumCharacters(long)}.
+	 * <p>
+	 * The default value is <code>null</code>, meaning that files are only split by size.
+	 * </p>
+	 *
+	 * @since 4.1.0
+	 */
+	public Integer getBulkExportFileMaximumResourceCount() {
+		return myBulkExportFileMaximumResourceCount;
+	}
+
+	/**
+	 * When generating Bulk Data export files, if this is set to a non-null value a new
+	 * output file is started once the current file contains this many resources, even if
+	 * it has not reached the size given by {@link #setBulkExportFileMaximumCharacters(long)}.
+	 * <p>
+	 * The default value is <code>null</code>, meaning that files are only split by size.
+	 * </p>
+	 *
+	 * @since 4.1.0
+	 */
+	public void setBulkExportFileMaximumResourceCount(Integer theBulkExportFileMaximumResourceCount) {
+		Validate.isTrue(theBulkExportFileMaximumResourceCount == null || theBulkExportFileMaximumResourceCount > 0, "theBulkExportFileMaximumResourceCount must be greater than 0");
+		myBulkExportFileMaximumResourceCount = theBulkExportFileMaximumResourceCount;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), Bulk Data export files
+	 * are streamed directly into the configured binary storage service
+	 * (see {@link ca.uhn.fhir.jpa.binstore.IBinaryStorageSvc}) as they are generated, instead
+	 * of being assembled in memory and stored inline in the <code>Binary</code> resource. Memory
+	 * use is then no longer proportional to the size of the output files. The file contents
+	 * are retrieved using the <code>$binary-access-read</code> operation.
+	 * <p>
+	 * This setting has no effect if no binary storage service is configured.
+	 * </p>
+	 *
+	 * @see #setBulkExportGzipEnabled(boolean)
+	 * @since 4.1.0
+	 */
+	public boolean isBulkExportUseBinaryStorage() {
+		return myBulkExportUseBinaryStorage;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), Bulk Data export files
+	 * are streamed directly into the configured binary storage service
+	 * (see {@link ca.uhn.fhir.jpa.binstore.IBinaryStorageSvc}) as they are generated, instead
+	 * of being assembled in memory and stored inline in the <code>Binary</code> resource. Memory
+	 * use is then no longer proportional to the size of the output files. The file contents
+	 * are retrieved using the <code>$binary-access-read</code> operation.
+	 * <p>
+	 * This setting has no effect if no binary storage service is configured.
+	 * </p>
+	 *
+	 * @see #setBulkExportGzipEnabled(boolean)
+	 * @since 4.1.0
+	 */
+	public void setBulkExportUseBinaryStorage(boolean theBulkExportUseBinaryStorage) {
+		myBulkExportUseBinaryStorage = theBulkExportUseBinaryStorage;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), Bulk Data export files
+	 * that are streamed into binary storage (see {@link #setBulkExportUseBinaryStorage(boolean)})
+	 * are gzip compressed, and are stored with a content type of <code>application/gzip</code>.
+	 * <p>
+	 * This setting has no effect on files stored inline in the <code>Binary</code> resource.
+	 * </p>
+	 *
+	 * @since 4.1.0
+	 */
+	public boolean isBulkExportGzipEnabled() {
+		return myBulkExportGzipEnabled;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), Bulk Data export files
+	 * that are streamed into binary storage (see {@link #setBulkExportUseBinaryStorage(boolean)})
+	 * are gzip compressed, and are stored with a content type of <code>application/gzip</code>.
+	 * <p>
+	 * This setting has no effect on files stored inline in the <code>Binary</code> resource.
+	 * </p>
+	 *
+	 * @since 4.1.0
+	 */
+	public void setBulkExportGzipEnabled(boolean theBulkExportGzipEnabled) {
+		myBulkExportGzipEnabled = theBulkExportGzipEnabled;
+	}
+
+	/**
+	 * This setting controls the number of threads allocated to each stage of the Bulk Data
+	 * <code>$import</code> pipeline. One pool of this size parses NDJSON chunks, and another
+	 * stores the parsed chunks (see {@link #setBulkImportChunkSize(int)}).
+	 * <p>
+	 * The default value is set to the number of available processors
+	 * (via <code>Runtime.getRuntime().availableProcessors()</code>). Value
+	 * for this setting must be a positive integer. This setting is read when the server starts.
+	 * </p>
+	 *
+	 * @since 4.1.0
+	 */
+	public int getBulkImportThreadCount() {
+		return myBulkImportThreadCount;
+	}
+
+	/**
+	 * This setting controls the number of threads allocated to each stage of the Bulk Data
+	 * <code>$import</code> pipeline. One pool of this size parses NDJSON chunks, and another
+	 * stores the parsed chunks (see {@link #setBulkImportChunkSize(int)}).
+	 * <p>
+	 * The default value is set to the number of available processors
+	 * (via <code>Runtime.getRuntime().availableProcessors()</code>). Value
+	 * for this setting must be a positive integer. This setting is read when the server starts.
+	 * </p>
+	 *
+	 * @since 4.1.0
+	 */
+	public void setBulkImportThreadCount(int theBulkImportThreadCount) {
+		myBulkImportThreadCount = theBulkImportThreadCount;
+		myBulkImportThreadCount = Math.max(myBulkImportThreadCount, 1); // Minimum of 1
+	}
+
+	/**
+	 * When importing Bulk Data NDJSON files, each file is split into chunks of this many
+	 * resources. Each chunk is stored in a single database transaction, and progress is
+	 * recorded after each chunk so that an interrupted import can resume where it left off.
+	 * <p>
+	 * The default value is {@link #DEFAULT_BULK_IMPORT_CHUNK_SIZE}. Value
+	 * for this setting must be a positive integer.
+	 * </p>
+	 *
+	 * @since 4.1.0
+	 */
+	public int getBulkImportChunkSize() {
+		return myBulkImportChunkSize;
+	}
+
+	/**
+	 * When importing Bulk Data NDJSON files, each file is split into chunks of this many
+	 * resources. Each chunk is stored in a single database transaction, and progress is
+	 * recorded after each chunk so that an interrupted import can resume where it left off.
+	 * <p>
+	 * The default value is {@link #DEFAULT_BULK_IMPORT_CHUNK_SIZE}. Value
+	 * for this setting must be a positive integer.
+	 * </p>
+	 *
+	 * @since 4.1.0
+	 */
+	public void setBulkImportChunkSize(int theBulkImportChunkSize) {
+		Validate.isTrue(theBulkImportChunkSize > 0, "theBulkImportChunkSize must be greater than 0");
+		myBulkImportChunkSize = theBulkImportChunkSize;
+	}
+
+	/**
+	 * If set, Bulk Data <code>$import</code> jobs may read NDJSON files from the local filesystem,
+	 * as long as they are located within this directory (or a subdirectory of it).
+	 * <p>
+	 * The default value is <code>null</code>, meaning that files can only be imported from
+	 * <code>Binary</code> resources.
+	 * </p>
+	 *
+	 * @since 4.1.0
+	 */
+	public String getBulkImportLocalFileDirectory() {
+		return myBulkImportLocalFileDirectory;
+	}
+
+	/**
+	 * If set, Bulk Data <code>$import</code> jobs may read NDJSON files from the local filesystem,
+	 * as long as they are located within this directory (or a subdirectory of it).
+	 * <p>
+	 * The default value is <code>null</code>, meaning that files can only be imported from
+	 * <code>Binary</code> resources.
+	 * </p>
+	 *
+	 * @since 4.1.0
+	 */
+	public void setBulkImportLocalFileDirectory(String theBulkImportLocalFileDirectory) {
+		myBulkImportLocalFileDirectory = theBulkImportLocalFileDirectory;
+	}
+
+	/**
+	 * Returns the encoding which is used to store resource bodies. Resources which were stored
+	 * using a different encoding can still be read, since the encoding of each stored version
+	 * is recorded alongside it.
+	 * <p>
+	 * The default is {@link ResourceEncodingEnum#JSONC} (JSON compressed using GZip).
+	 * {@link ResourceEncodingEnum#JSONZ} (JSON compressed using Zstandard) is much faster to read
+	 * and usually smaller, but requires the <code>com.github.luben:zstd-jni</code> library.
+	 * </p>
+	 */
 	public ResourceEncodingEnum getResourceEncoding() {
 		return myResourceEncoding;
 	}
 
+	/**
+	 * Sets the encoding which is used to store resource bodies. Resources which were stored
+	 * using a different encoding can still be read, since the encoding of each stored version
+	 * is recorded alongside it.
+	 * <p>
+	 * The default is {@link ResourceEncodingEnum#JSONC} (JSON compressed using GZip).
+	 * {@link ResourceEncodingEnum#JSONZ} (JSON compressed using Zstandard) is much faster to read
+	 * and usually smaller, but requires the <code>com.github.luben:zstd-jni</code> library.
+	 * </p>
+	 */
 	public void setResourceEncoding(ResourceEncodingEnum theResourceEncoding) {
+		Validate.notNull(theResourceEncoding, "theResourceEncoding must not be null");
+		Validate.isTrue(theResourceEncoding != ResourceEncodingEnum.DEL, "DEL is not a valid resource encoding");
+		if (theResourceEncoding == ResourceEncodingEnum.JSONZ) {
+			try {
+				Class.forName("com.github.luben.zstd.ZstdOutputStream");
+			} catch (ClassNotFoundException e) {
+				throw new IllegalArgumentException("The JSONZ resource encoding requires the com.github.luben:zstd-jni library, which was not found on the classpath");
+			}
+		}
 		myResourceEncoding = theResourceEncoding;
 	}
 
@@ -740,6 +1186,194 @@ public class DaoConfig {
 		myResourceServerIdStrategy = theResourceIdStrategy;
 	}
 
+	/**
+	 * If set to <code>true</code> (default is <code>true</code>) the server will keep an in-memory
+	 * cache of client-assigned resource IDs (e.g. <code>Patient/ABC</code>) and the internal
+	 * resource PIDs they resolve to. This avoids a database lookup every time a client-assigned
+	 * ID is read, updated, or used as a reference or search parameter value.
+	 * <p>
+	 * The mapping between a client-assigned ID and its PID never changes while the resource
+	 * exists (including while it is deleted), and cache entries are discarded when a resource is
+	 * expunged. Note however that the cache is local to each server, so if several servers share a
+	 * database and resources are expunged, the other servers may briefly see stale entries.
+	 * </p>
+	 *
+	 * @since 4.1.0
+	 */
+	public boolean isResourcePidCacheEnabled() {
+		return myResourcePidCacheEnabled;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>true</code>) the server will keep an in-memory
+	 * cache of client-assigned resource IDs (e.g. <code>Patient/ABC</code>) and the internal
+	 * resource PIDs they resolve to. This avoids a database lookup every time a client-assigned
+	 * ID is read, updated, or used as a reference or search parameter value.
+	 * <p>
+	 * The mapping between a client-assigned ID and its PID never changes while the resource
+	 * exists (including while it is deleted), and cache entries are discarded when a resource is
+	 * expunged. Note however that the cache is local to each server, so if several servers share a
+	 * database and resources are expunged, the other servers may briefly see stale entries.
+	 * </p>
+	 *
+	 * @since 4.1.0
+	 */
+	public void setResourcePidCacheEnabled(boolean theResourcePidCacheEnabled) {
+		myResourcePidCacheEnabled = theResourcePidCacheEnabled;
+	}
+
+	/**
+	 * Specifies the maximum number of entries held by the resource PID cache (see
+	 * {@link #setResourcePidCacheEnabled(boolean)}). Defaults to {@link #DEFAULT_RESOURCE_PID_CACHE_MAXIMUM_SIZE}.
+	 * This setting is read when the server starts.
+	 *
+	 * @since 4.1.0
+	 */
+	public int getResourcePidCacheMaximumSize() {
+		return myResourcePidCacheMaximumSize;
+	}
+
+	/**
+	 * Specifies the maximum number of entries held by the resource PID cache (see
+	 * {@link #setResourcePidCacheEnabled(boolean)}). Defaults to {@link #DEFAULT_RESOURCE_PID_CACHE_MAXIMUM_SIZE}.
+	 * This setting is read when the server starts.
+	 *
+	 * @since 4.1.0
+	 */
+	public void setResourcePidCacheMaximumSize(int theResourcePidCacheMaximumSize) {
+		Validate.isTrue(theResourcePidCacheMaximumSize > 0, "theResourcePidCacheMaximumSize must be greater than 0");
+		myResourcePidCacheMaximumSize = theResourcePidCacheMaximumSize;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>) and the resource PID cache is
+	 * enabled (see {@link #setResourcePidCacheEnabled(boolean)}), client-assigned IDs which do not
+	 * exist in the database will also be cached for a short period (one minute), so that repeated
+	 * lookups for a missing resource (e.g. a client polling for a resource that has not yet been
+	 * created) do not hit the database every time.
+	 * <p>
+	 * Resources created on this server are visible immediately, but a resource created by another
+	 * server sharing the same database may appear to be missing on this server until the
+	 * cached entry expires.
+	 * </p>
+	 *
+	 * @since 4.1.0
+	 */
+	public boolean isResourcePidNegativeCacheEnabled() {
+		return myResourcePidNegativeCacheEnabled;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>) and the resource PID cache is
+	 * enabled (see {@link #setResourcePidCacheEnabled(boolean)}), client-assigned IDs which do not
+	 * exist in the database will also be cached for a short period (one minute), so that repeated
+	 * lookups for a missing resource (e.g. a client polling for a resource that has not yet been
+	 * created) do not hit the database every time.
+	 * <p>
+	 * Resources created on this server are visible immediately, but a resource created by another
+	 * server sharing the same database may appear to be missing on this server until the
+	 * cached entry expires.
+	 * </p>
+	 *
+	 * @since 4.1.0
+	 */
+	public void setResourcePidNegativeCacheEnabled(boolean theResourcePidNegativeCacheEnabled) {
+		myResourcePidNegativeCacheEnabled = theResourcePidNegativeCacheEnabled;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>) the server will keep an in-memory
+	 * cache of parsed resource bodies, keyed by resource PID and version. A read of a resource
+	 * whose current version is in the cache still looks up the resource itself (so that its current
+	 * version, deletion status and tags are always up to date), but does not need to load, decompress
+	 * or parse the stored body. This is useful for resources such as <code>Practitioner</code> or
+	 * <code>Organization</code> which are read far more often than they are changed.
+	 * <p>
+	 * The body of a given resource version never changes, so the cache is always consistent with the
+	 * database, including when several servers share a database. Cached bodies are copied each
+	 * time they are used, so this only applies to DSTU3 and newer structures.
+	 * </p>
+	 *
+	 * @since 4.1.0
+	 */
+	public boolean isResourceVersionCacheEnabled() {
+		return myResourceVersionCacheEnabled;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>) the server will keep an in-memory
+	 * cache of parsed resource bodies, keyed by resource PID and version. A read of a resource
+	 * whose current version is in the cache still looks up the resource itself (so that its current
+	 * version, deletion status and tags are always up to date), but does not need to load, decompress
+	 * or parse the stored body. This is useful for resources such as <code>Practitioner</code> or
+	 * <code>Organization</code> which are read far more often than they are changed.
+	 * <p>
+	 * The body of a given resource version never changes, so the cache is always consistent with the
+	 * database, including when several servers share a database. Cached bodies are copied each
+	 * time they are used, so this only applies to DSTU3 and newer structures.
+	 * </p>
+	 *
+	 * @since 4.1.0
+	 */
+	public void setResourceVersionCacheEnabled(boolean theResourceVersionCacheEnabled) {
+		myResourceVersionCacheEnabled = theResourceVersionCacheEnabled;
+	}
+
+	/**
+	 * Specifies the maximum number of resource versions held by the resource version cache (see
+	 * {@link #setResourceVersionCacheEnabled(boolean)}). Defaults to {@link #DEFAULT_RESOURCE_VERSION_CACHE_MAXIMUM_SIZE}.
+	 * This setting is read when the server starts.
+	 *
+	 * @since 4.1.0
+	 */
+	public int getResourceVersionCacheMaximumSize() {
+		return myResourceVersionCacheMaximumSize;
+	}
+
+	/**
+	 * Specifies the maximum number of resource versions held by the resource version cache (see
+	 * {@link #setResourceVersionCacheEnabled(boolean)}). Defaults to {@link #DEFAULT_RESOURCE_VERSION_CACHE_MAXIMUM_SIZE}.
+	 * This setting is read when the server starts.
+	 *
+	 * @since 4.1.0
+	 */
+	public void setResourceVersionCacheMaximumSize(int theResourceVersionCacheMaximumSize) {
+		Validate.isTrue(theResourceVersionCacheMaximumSize > 0, "theResourceVersionCacheMaximumSize must be greater than 0");
+		myResourceVersionCacheMaximumSize = theResourceVersionCacheMaximumSize;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>true</code>), the tag definitions used by
+	 * tags, security labels and profiles are cached in memory once they have been committed,
+	 * so that storing a resource with a tag, security label or profile which has been seen
+	 * before does not need to look up its definition in the database.
+	 * <p>
+	 * This cache should be disabled if tag definitions (the <code>HFJ_TAG_DEF</code> table)
+	 * are ever deleted by something other than this server.
+	 * </p>
+	 *
+	 * @since 4.1.0
+	 */
+	public boolean isTagDefinitionCacheEnabled() {
+		return myTagDefinitionCacheEnabled;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>true</code>), the tag definitions used by
+	 * tags, security labels and profiles are cached in memory once they have been committed,
+	 * so that storing a resource with a tag, security label or profile which has been seen
+	 * before does not need to look up its definition in the database.
+	 * <p>
+	 * This cache should be disabled if tag definitions (the <code>HFJ_TAG_DEF</code> table)
+	 * are ever deleted by something other than this server.
+	 * </p>
+	 *
+	 * @since 4.1.0
+	 */
+	public void setTagDefinitionCacheEnabled(boolean theTagDefinitionCacheEnabled) {
+		myTagDefinitionCacheEnabled = theTagDefinitionCacheEnabled;
+	}
+
 	/**
 	 * If set to a non {@literal null} value (default is {@link #DEFAULT_REUSE_CACHED_SEARCH_RESULTS_FOR_MILLIS non null})
 	 * if an identical search is requested multiple times within this window, the same results will be returned
@@ -780,6 +1414,48 @@ public class DaoConfig {
 		myReuseCachedSearchResultsForMillis = theReuseCachedSearchResultsForMillis;
 	}
 
+	/**
+	 * If set to a non {@literal null} value (default is {@link #DEFAULT_ESTIMATED_SEARCH_TOTAL_CACHE_MILLIS non null}),
+	 * the total number of results found by a search is remembered for this long. If the same
+	 * search is then performed again with <code>_total=estimated</code> (or with no <code>_total</code>
+	 * parameter, if {@link #setDefaultTotalMode(SearchTotalModeEnum) the default total mode} is
+	 * {@link SearchTotalModeEnum#ESTIMATED}) the remembered total is returned. An estimated total
+	 * never causes a count query to be run, so if no total has been remembered, the total is only
+	 * returned once the search has finished loading its results.
+	 * <p>
+	 * Totals are only remembered by the server which calculated them, and are not updated when
+	 * resources are created or deleted, so an estimated total may be out of date by up to this
+	 * amount of time. Searches with <code>_total=accurate</code> always run a count query.
+	 * If this is set to <code>null</code>, totals are never remembered.
+	 * </p>
+	 *
+	 * @since 4.1.0
+	 */
+	public Long getEstimatedSearchTotalCacheMillis() {
+		return myEstimatedSearchTotalCacheMillis;
+	}
+
+	/**
+	 * If set to a non {@literal null} value (default is {@link #DEFAULT_ESTIMATED_SEARCH_TOTAL_CACHE_MILLIS non null}),
+	 * the total number of results found by a search is remembered for this long. If the same
+	 * search is then performed again with <code>_total=estimated</code> (or with no <code>_total</code>
+	 * parameter, if {@link #setDefaultTotalMode(SearchTotalModeEnum) the default total mode} is
+	 * {@link SearchTotalModeEnum#ESTIMATED}) the remembered total is returned. An estimated total
+	 * never causes a count query to be run, so if no total has been remembered, the total is only
+	 * returned once the search has finished loading its results.
+	 * <p>
+	 * Totals are only remembered by the server which calculated them, and are not updated when
+	 * resources are created or deleted, so an estimated total may be out of date by up to this
+	 * amount of time. Searches with <code>_total=accurate</code> always run a count query.
+	 * If this is set to <code>null</code>, totals are never remembered.
+	 * </p>
+	 *
+	 * @since 4.1.0
+	 */
+	public void setEstimatedSearchTotalCacheMillis(Long theEstimatedSearchTotalCacheMillis) {
+		myEstimatedSearchTotalCacheMillis = theEstimatedSearchTotalCacheMillis;
+	}
+
 	/**
 	 * Specifies the duration in minutes for which values will be retained after being
 	 * written to the terminology translation cache. Defaults to 60.
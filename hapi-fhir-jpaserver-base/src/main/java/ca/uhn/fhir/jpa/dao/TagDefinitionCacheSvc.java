@@ -0,0 +1,230 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.model.entity.TagDefinition;
+import ca.uhn.fhir.jpa.model.entity.TagTypeEnum;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.NoResultException;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceContextType;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+/**
+ * Resolves the {@link TagDefinition} rows used by tags, security labels and profiles
+ * when a resource is written, creating them if needed.
+ * <p>
+ * New definitions are created and committed in their own transaction, so every
+ * definition returned by this service is committed. Definitions are kept in a cache
+ * which is shared by all DAOs, so that writing a resource with a tag which has been
+ * seen before doesn't need to query the database.
+ * </p>
+ */
+@Service
+public class TagDefinitionCacheSvc {
+
+	/**
+	 * Tag definitions are small, and the number of distinct definitions is
+	 * normally small too, so this is not currently configurable
+	 */
+	static final int MAXIMUM_SIZE = 10000;
+	private static final Logger ourLog = LoggerFactory.getLogger(TagDefinitionCacheSvc.class);
+
+	@PersistenceContext(type = PersistenceContextType.TRANSACTION)
+	private EntityManager myEntityManager;
+	@Autowired
+	private DaoConfig myDaoConfig;
+	@Autowired
+	private PlatformTransactionManager myTxManager;
+	private Cache<TagDefinitionCacheKey, TagDefinition> myCache;
+	/*
+	 * Incremented whenever the HFJ_TAG_DEF table is cleared, so that a definition which
+	 * was resolved before the table was cleared is never added to the cache afterward
+	 */
+	private final AtomicLong myCacheGeneration = new AtomicLong();
+
+	@PostConstruct
+	public void start() {
+		myCache = Caffeine.newBuilder()
+			.maximumSize(MAXIMUM_SIZE)
+			.build();
+	}
+
+	/**
+	 * Discards all cached definitions. This must be called whenever tag definitions are deleted.
+	 */
+	public void clearCache() {
+		Runnable invalidate = () -> {
+			myCacheGeneration.incrementAndGet();
+			myCache.invalidateAll();
+		};
+		invalidate.run();
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int theStatus) {
+					invalidate.run();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Returns the definition for the given tag, creating it if it does not already exist.
+	 * If two transactions create the same definition at the same time, both of them get
+	 * the definition which was committed first.
+	 */
+	public TagDefinition getOrCreateTag(TagTypeEnum theTagType, String theScheme, String theTerm, String theLabel) {
+		boolean cacheEnabled = myDaoConfig.isTagDefinitionCacheEnabled();
+		TagDefinitionCacheKey key = new TagDefinitionCacheKey(theTagType, theScheme, theTerm);
+		if (cacheEnabled) {
+			TagDefinition retVal = myCache.getIfPresent(key);
+			if (retVal != null) {
+				return retVal;
+			}
+		}
+
+		long generation = myCacheGeneration.get();
+		TagDefinition retVal = findTag(theTagType, theScheme, theTerm);
+		if (retVal == null) {
+			retVal = createTag(theTagType, theScheme, theTerm, theLabel);
+		}
+
+		if (cacheEnabled && myCacheGeneration.get() == generation) {
+			myCache.put(key, retVal);
+		}
+
+		return retVal;
+	}
+
+	/**
+	 * Creates the definition in a separate transaction, so that losing a race with another
+	 * transaction creating the same definition doesn't roll back the caller's transaction
+	 */
+	private TagDefinition createTag(TagTypeEnum theTagType, String theScheme, String theTerm, String theLabel) {
+		TransactionTemplate txTemplate = new TransactionTemplate(myTxManager);
+		txTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		try {
+			return txTemplate.execute(t -> {
+				TagDefinition retVal = new TagDefinition(theTagType, theScheme, theTerm, theLabel);
+				myEntityManager.persist(retVal);
+				return retVal;
+			});
+		} catch (DataIntegrityViolationException e) {
+			TagDefinition retVal = txTemplate.execute(t -> findTag(theTagType, theScheme, theTerm));
+			if (retVal == null) {
+				throw e;
+			}
+			ourLog.debug("Tag definition {}|{} was created by another transaction", theScheme, theTerm);
+			return retVal;
+		}
+	}
+
+	private TagDefinition findTag(TagTypeEnum theTagType, String theScheme, String theTerm) {
+		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
+		CriteriaQuery<TagDefinition> cq = builder.createQuery(TagDefinition.class);
+		Root<TagDefinition> from = cq.from(TagDefinition.class);
+
+		if (isNotBlank(theScheme)) {
+			cq.where(
+				builder.and(
+					builder.equal(from.get("myTagType"), theTagType),
+					builder.equal(from.get("mySystem"), theScheme),
+					builder.equal(from.get("myCode"), theTerm)));
+		} else {
+			cq.where(
+				builder.and(
+					builder.equal(from.get("myTagType"), theTagType),
+					builder.isNull(from.get("mySystem")),
+					builder.equal(from.get("myCode"), theTerm)));
+		}
+
+		TypedQuery<TagDefinition> q = myEntityManager.createQuery(cq);
+		try {
+			return q.getSingleResult();
+		} catch (NoResultException e) {
+			return null;
+		}
+	}
+
+	private static class TagDefinitionCacheKey {
+
+		private final TagTypeEnum myType;
+		private final String mySystem;
+		private final String myCode;
+		private final int myHashCode;
+
+		TagDefinitionCacheKey(TagTypeEnum theType, String theSystem, String theCode) {
+			myType = theType;
+			mySystem = isNotBlank(theSystem) ? theSystem : null;
+			myCode = theCode;
+			myHashCode = new HashCodeBuilder(17, 37)
+				.append(myType)
+				.append(mySystem)
+				.append(myCode)
+				.toHashCode();
+		}
+
+		@Override
+		public boolean equals(Object theO) {
+			if (this == theO) {
+				return true;
+			}
+			if (!(theO instanceof TagDefinitionCacheKey)) {
+				return false;
+			}
+			TagDefinitionCacheKey that = (TagDefinitionCacheKey) theO;
+			return new EqualsBuilder()
+				.append(myType, that.myType)
+				.append(mySystem, that.mySystem)
+				.append(myCode, that.myCode)
+				.isEquals();
+		}
+
+		@Override
+		public int hashCode() {
+			return myHashCode;
+		}
+	}
+
+}
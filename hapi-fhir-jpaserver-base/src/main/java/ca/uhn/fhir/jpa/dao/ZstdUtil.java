@@ -0,0 +1,68 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.parser.DataFormatException;
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Compression for the {@link ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum#JSONZ JSONZ}
+ * resource encoding. The Zstandard library is an optional dependency, so it is only
+ * referenced from this class.
+ */
+public class ZstdUtil {
+
+	public static String decompress(byte[] theResource) {
+		try (InputStream is = new ZstdInputStream(new ByteArrayInputStream(theResource))) {
+			return IOUtils.toString(is, "UTF-8");
+		} catch (IOException e) {
+			throw new DataFormatException("Failed to decompress contents", e);
+		}
+	}
+
+	public static byte[] compress(String theEncoded) {
+		try {
+			ByteArrayOutputStream os = new ByteArrayOutputStream();
+			try (OutputStream zos = newCompressingStream(os)) {
+				IOUtils.write(theEncoded, zos, "UTF-8");
+			}
+			return os.toByteArray();
+		} catch (IOException e) {
+			throw new DataFormatException("Compress contents", e);
+		}
+	}
+
+	/**
+	 * Returns a stream which compresses everything written to it into the given stream
+	 */
+	public static OutputStream newCompressingStream(OutputStream theOutputStream) throws IOException {
+		return new ZstdOutputStream(theOutputStream);
+	}
+
+}
@@ -0,0 +1,56 @@
+package ca.uhn.fhir.jpa.dao.cache;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.commons.lang3.Validate;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+/**
+ * The parsed body of a single resource version, as held by {@link IResourceVersionCacheSvc}.
+ * The resource does not have any metadata (ID, version, tags, etc.) populated, since those
+ * come from the resource entity when the resource is read.
+ */
+public class CachedResourceVersion {
+
+	private final IBaseResource myResource;
+	private final String myProvenanceSourceUri;
+	private final String myProvenanceRequestId;
+
+	public CachedResourceVersion(IBaseResource theResource, String theProvenanceSourceUri, String theProvenanceRequestId) {
+		Validate.notNull(theResource);
+		myResource = theResource;
+		myProvenanceSourceUri = theProvenanceSourceUri;
+		myProvenanceRequestId = theProvenanceRequestId;
+	}
+
+	public IBaseResource getResource() {
+		return myResource;
+	}
+
+	public String getProvenanceSourceUri() {
+		return myProvenanceSourceUri;
+	}
+
+	public String getProvenanceRequestId() {
+		return myProvenanceRequestId;
+	}
+
+}
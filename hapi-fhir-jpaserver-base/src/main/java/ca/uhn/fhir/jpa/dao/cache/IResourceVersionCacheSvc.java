@@ -0,0 +1,72 @@
+package ca.uhn.fhir.jpa.dao.cache;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Caches the parsed bodies of resource versions, so that resources which are read often
+ * don't need to be loaded, decompressed and parsed each time.
+ * <p>
+ * Entries are keyed by resource PID and version. The stored body of a given version never
+ * changes, and a PID is never reused, so an entry can never become stale: callers always
+ * check the current version of a resource in the database before using the cache. This
+ * means that a purely local implementation is correct even when several servers share a
+ * database, and invalidation (e.g. when a version is expunged) only serves to free memory.
+ * </p>
+ *
+ * @see ca.uhn.fhir.jpa.dao.DaoConfig#setResourceVersionCacheEnabled(boolean)
+ */
+public interface IResourceVersionCacheSvc {
+
+	/**
+	 * Returns the cached body of the given resource version, or <code>null</code> if
+	 * it is not cached. The returned resource is a copy which the caller may modify.
+	 */
+	CachedResourceVersion get(Long theResourcePid, Long theVersion);
+
+	/**
+	 * Adds the body of the given resource version to the cache. The resource is copied, so
+	 * the caller may continue to modify it. If this is called within a transaction, the entry
+	 * is only added once the transaction commits, since a version which is rolled back may
+	 * later be written again with different contents.
+	 */
+	void put(Long theResourcePid, Long theVersion, CachedResourceVersion theEntry);
+
+	/**
+	 * Discards the given resource version. This is called when a version is expunged.
+	 */
+	void invalidate(Long theResourcePid, Long theVersion);
+
+	/**
+	 * Discards all cached resource versions
+	 */
+	void invalidateAll();
+
+	/**
+	 * Returns the number of times {@link #get(Long, Long)} has found a cached entry
+	 */
+	long getHitCount();
+
+	/**
+	 * Returns the number of times {@link #get(Long, Long)} has not found a cached entry
+	 */
+	long getMissCount();
+
+}
@@ -0,0 +1,161 @@
+package ca.uhn.fhir.jpa.dao.cache;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.dao.DaoConfig;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Local in-memory implementation of {@link IResourceVersionCacheSvc}.
+ * <p>
+ * Cached resources are copied on the way in and on the way out, since callers populate
+ * metadata into the resources they read and interceptors may modify them. Copying uses the
+ * generated <code>copy()</code> methods of the DSTU3, R4 and R5 structures, and resources
+ * of other structure versions are not cached.
+ * </p>
+ */
+public class ResourceVersionCacheSvcImpl implements IResourceVersionCacheSvc {
+
+	@Autowired
+	private DaoConfig myDaoConfig;
+	private Cache<ResourceVersionKey, CachedResourceVersion> myCache;
+
+	@PostConstruct
+	public void start() {
+		myCache = Caffeine.newBuilder()
+			.maximumSize(myDaoConfig.getResourceVersionCacheMaximumSize())
+			.recordStats()
+			.build();
+	}
+
+	@Override
+	public CachedResourceVersion get(Long theResourcePid, Long theVersion) {
+		CachedResourceVersion cached = myCache.getIfPresent(new ResourceVersionKey(theResourcePid, theVersion));
+		if (cached == null) {
+			return null;
+		}
+		return new CachedResourceVersion(copy(cached.getResource()), cached.getProvenanceSourceUri(), cached.getProvenanceRequestId());
+	}
+
+	@Override
+	public void put(Long theResourcePid, Long theVersion, CachedResourceVersion theEntry) {
+		IBaseResource resource = copy(theEntry.getResource());
+		if (resource == null) {
+			return;
+		}
+
+		ResourceVersionKey key = new ResourceVersionKey(theResourcePid, theVersion);
+		CachedResourceVersion entry = new CachedResourceVersion(resource, theEntry.getProvenanceSourceUri(), theEntry.getProvenanceRequestId());
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					myCache.put(key, entry);
+				}
+			});
+		} else {
+			myCache.put(key, entry);
+		}
+	}
+
+	@Override
+	public void invalidate(Long theResourcePid, Long theVersion) {
+		myCache.invalidate(new ResourceVersionKey(theResourcePid, theVersion));
+	}
+
+	@Override
+	public void invalidateAll() {
+		myCache.invalidateAll();
+	}
+
+	@Override
+	public long getHitCount() {
+		return myCache.stats().hitCount();
+	}
+
+	@Override
+	public long getMissCount() {
+		return myCache.stats().missCount();
+	}
+
+	/**
+	 * Returns a deep copy of the given resource, or <code>null</code> if resources of
+	 * its structure version can not be copied
+	 */
+	static IBaseResource copy(IBaseResource theResource) {
+		if (theResource instanceof org.hl7.fhir.r4.model.Resource) {
+			return ((org.hl7.fhir.r4.model.Resource) theResource).copy();
+		}
+		if (theResource instanceof org.hl7.fhir.dstu3.model.Resource) {
+			return ((org.hl7.fhir.dstu3.model.Resource) theResource).copy();
+		}
+		if (theResource instanceof org.hl7.fhir.r5.model.Resource) {
+			return ((org.hl7.fhir.r5.model.Resource) theResource).copy();
+		}
+		return null;
+	}
+
+	private static class ResourceVersionKey {
+
+		private final Long myResourcePid;
+		private final Long myVersion;
+		private final int myHashCode;
+
+		ResourceVersionKey(Long theResourcePid, Long theVersion) {
+			myResourcePid = theResourcePid;
+			myVersion = theVersion;
+			myHashCode = new HashCodeBuilder(17, 37)
+				.append(myResourcePid)
+				.append(myVersion)
+				.toHashCode();
+		}
+
+		@Override
+		public boolean equals(Object theO) {
+			if (this == theO) {
+				return true;
+			}
+			if (!(theO instanceof ResourceVersionKey)) {
+				return false;
+			}
+			ResourceVersionKey that = (ResourceVersionKey) theO;
+			return new EqualsBuilder()
+				.append(myResourcePid, that.myResourcePid)
+				.append(myVersion, that.myVersion)
+				.isEquals();
+		}
+
+		@Override
+		public int hashCode() {
+			return myHashCode;
+		}
+	}
+
+}
@@ -0,0 +1,37 @@
+package ca.uhn.fhir.jpa.dao.data;
+
+import ca.uhn.fhir.jpa.entity.BulkImportChunkEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+public interface IBulkImportChunkDao extends JpaRepository<BulkImportChunkEntity, Long> {
+
+	@Query("SELECT c.myChunkIndex FROM BulkImportChunkEntity c WHERE c.myFile.myId = :fileid")
+	List<Integer> findChunkIndexesForFile(@Param("fileid") Long theFileId);
+
+	@Query("SELECT SUM(c.myResourceCount) FROM BulkImportChunkEntity c WHERE c.myFile.myId = :fileid")
+	Long sumResourceCountForFile(@Param("fileid") Long theFileId);
+}
@@ -98,6 +98,13 @@ public interface IResourceHistoryTableDao extends JpaRepository<ResourceHistoryT
 		"WHERE r.myId in (:pids)")
 	Collection<ResourceHistoryTable> findByResourceIds(@Param("pids") Collection<Long> pids);
 
+	@Query("" +
+		"SELECT h FROM ResourceHistoryTable h " +
+		"INNER JOIN ResourceTable r ON (r.myId = h.myResourceId and r.myVersion = h.myResourceVersion) " +
+		"LEFT OUTER JOIN FETCH h.myProvenance " +
+		"WHERE r.myId in (:pids)")
+	Collection<ResourceHistoryTable> findByResourceIdsAndFetchProvenance(@Param("pids") Collection<Long> thePids);
+
 	@Modifying
 	@Query("UPDATE ResourceHistoryTable r SET r.myResourceVersion = :newVersion WHERE r.myResourceId = :id AND r.myResourceVersion = :oldVersion")
 	void updateVersion(@Param("id") long theId, @Param("oldVersion") long theOldVersion, @Param("newVersion") long theNewVersion);
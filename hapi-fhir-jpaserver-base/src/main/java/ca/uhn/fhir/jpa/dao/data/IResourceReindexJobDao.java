@@ -57,6 +57,20 @@ public interface IResourceReindexJobDao extends JpaRepository<ResourceReindexJob
 	@Query("UPDATE ResourceReindexJobEntity j SET j.myThresholdLow = :low WHERE j.myId = :id")
 	void setThresholdLow(@Param("id") Long theId, @Param("low") Date theLow);
 
+	/**
+	 * @return Returns 1 if the lease was claimed, or 0 if another server currently holds it
+	 */
+	@Modifying
+	@Query("UPDATE ResourceReindexJobEntity j SET j.myLeasedUntil = :leasedUntil WHERE j.myId = :id AND (j.myLeasedUntil IS NULL OR j.myLeasedUntil < :now)")
+	int claimLease(@Param("id") Long theId, @Param("now") Date theNow, @Param("leasedUntil") Date theLeasedUntil);
+
+	/**
+	 * @return Returns 1 if the lease was released, or 0 if it had already been claimed again with a different expiry
+	 */
+	@Modifying
+	@Query("UPDATE ResourceReindexJobEntity j SET j.myLeasedUntil = NULL WHERE j.myId = :id AND j.myLeasedUntil = :leasedUntil")
+	int releaseLease(@Param("id") Long theId, @Param("leasedUntil") Date theLeasedUntil);
+
 	@Query("SELECT j.myReindexCount FROM ResourceReindexJobEntity j WHERE j.myId = :id")
 	Optional<Integer> getReindexCount(@Param("id") Long theId);
 
@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -55,6 +56,27 @@ public interface IResourceTableDao extends JpaRepository<ResourceTable, Long> {
 	@Query("SELECT t.myId FROM ResourceTable t WHERE t.myUpdated >= :low AND t.myUpdated <= :high AND t.myResourceType = :restype ORDER BY t.myUpdated ASC")
 	Slice<Long> findIdsOfResourcesWithinUpdatedRangeOrderedFromOldest(Pageable thePage, @Param("restype") String theResourceType, @Param("low") Date theLow, @Param("high") Date theHigh);
 
+	@Query("SELECT t.myId FROM ResourceTable t WHERE t.myUpdated >= :low AND t.myUpdated <= :high AND t.myId >= :lowpid AND t.myId <= :highpid ORDER BY t.myUpdated ASC")
+	Slice<Long> findIdsOfResourcesWithinUpdatedAndPidRangeOrderedFromOldest(Pageable thePage, @Param("low") Date theLow, @Param("high") Date theHigh, @Param("lowpid") Long theLowPid, @Param("highpid") Long theHighPid);
+
+	@Query("SELECT t.myId FROM ResourceTable t WHERE t.myUpdated >= :low AND t.myUpdated <= :high AND t.myResourceType = :restype AND t.myId >= :lowpid AND t.myId <= :highpid ORDER BY t.myUpdated ASC")
+	Slice<Long> findIdsOfResourcesWithinUpdatedAndPidRangeOrderedFromOldest(Pageable thePage, @Param("restype") String theResourceType, @Param("low") Date theLow, @Param("high") Date theHigh, @Param("lowpid") Long theLowPid, @Param("highpid") Long theHighPid);
+
+	@Query("SELECT MAX(t.myId) FROM ResourceTable t")
+	Long findMaxPid();
+
+	@Query("SELECT MAX(t.myId) FROM ResourceTable t WHERE t.myResourceType = :restype")
+	Long findMaxPidOfType(@Param("restype") String theResourceType);
+
+	@Query("SELECT t FROM ResourceTable t LEFT OUTER JOIN FETCH t.myForcedId WHERE t.myId IN (:pids)")
+	List<ResourceTable> findByIdsAndFetchForcedId(@Param("pids") Collection<Long> thePids);
+
+	@Query("SELECT t.myId FROM ResourceTable t WHERE t.myResourceType = :restype AND t.myId > :lowpid AND t.myDeleted IS NULL ORDER BY t.myId ASC")
+	Slice<Long> findIdsOfResourcesOfTypeAfterId(Pageable thePage, @Param("restype") String theResourceType, @Param("lowpid") Long theLowPid);
+
+	@Query("SELECT t.myId FROM ResourceTable t WHERE t.myResourceType = :restype AND t.myId > :lowpid AND t.myUpdated >= :low AND t.myDeleted IS NULL ORDER BY t.myId ASC")
+	Slice<Long> findIdsOfResourcesOfTypeAfterIdUpdatedSince(Pageable thePage, @Param("restype") String theResourceType, @Param("lowpid") Long theLowPid, @Param("low") Date theLow);
+
 	@Modifying
 	@Query("UPDATE ResourceTable t SET t.myIndexStatus = :status WHERE t.myId = :id")
 	void updateIndexStatus(@Param("id") Long theId, @Param("status") Long theIndexStatus);
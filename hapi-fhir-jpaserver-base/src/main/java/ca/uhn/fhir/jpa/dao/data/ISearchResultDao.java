@@ -35,6 +35,13 @@ public interface ISearchResultDao extends JpaRepository<SearchResult, Long> {
 	@Query(value="SELECT r.myResourcePid FROM SearchResult r WHERE r.mySearchPid = :search ORDER BY r.myOrder ASC")
 	Slice<Long> findWithSearchPid(@Param("search") Long theSearchPid, Pageable thePage);
 
+	/**
+	 * Results are stored with a contiguous order index, so a page can be fetched by seeking to its
+	 * range of the index instead of using an offset
+	 */
+	@Query(value="SELECT r.myResourcePid FROM SearchResult r WHERE r.mySearchPid = :search AND r.myOrder >= :from AND r.myOrder < :to ORDER BY r.myOrder ASC")
+	List<Long> findWithSearchPidAndOrderRange(@Param("search") Long theSearchPid, @Param("from") int theFromIndex, @Param("to") int theToIndex);
+
 	@Query(value="SELECT r.myResourcePid FROM SearchResult r WHERE r.mySearchPid = :search")
 	List<Long> findWithSearchPidOrderIndependent(@Param("search") Long theSearchPid);
 
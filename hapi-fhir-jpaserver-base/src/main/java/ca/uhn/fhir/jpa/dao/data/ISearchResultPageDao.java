@@ -0,0 +1,48 @@
+package ca.uhn.fhir.jpa.dao.data;
+
+import ca.uhn.fhir.jpa.entity.SearchResultPage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+public interface ISearchResultPageDao extends JpaRepository<SearchResultPage, Long> {
+
+	/**
+	 * Returns the pages of the given search which contain any results with an order index in
+	 * the range <code>theFromIndex</code> (inclusive) to <code>theToIndex</code> (exclusive).
+	 * <code>theLowestFirstIndex</code> is a lower bound on the first order index of any such page,
+	 * which lets the database seek directly to the first page instead of scanning from the start.
+	 */
+	@Query("SELECT p FROM SearchResultPage p WHERE p.mySearchPid = :search AND p.myFirstOrder >= :lowestFirst AND p.myFirstOrder < :to AND p.myFirstOrder + p.myPidCount > :from ORDER BY p.myFirstOrder ASC")
+	List<SearchResultPage> findWithSearchPidAndOrderRange(@Param("search") Long theSearchPid, @Param("lowestFirst") int theLowestFirstIndex, @Param("from") int theFromIndex, @Param("to") int theToIndex);
+
+	@Query("SELECT p FROM SearchResultPage p WHERE p.mySearchPid = :search ORDER BY p.myFirstOrder ASC")
+	List<SearchResultPage> findForSearch(@Param("search") Long theSearchPid);
+
+	@Modifying
+	@Query("DELETE FROM SearchResultPage p WHERE p.mySearchPid = :search")
+	void deleteForSearch(@Param("search") Long theSearchPid);
+}
@@ -23,6 +23,9 @@ package ca.uhn.fhir.jpa.dao.expunge;
 import ca.uhn.fhir.interceptor.api.HookParams;
 import ca.uhn.fhir.interceptor.api.IInterceptorBroadcaster;
 import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.dao.TagDefinitionCacheSvc;
+import ca.uhn.fhir.jpa.dao.cache.IResourceVersionCacheSvc;
+import ca.uhn.fhir.jpa.dao.index.IdHelperService;
 import ca.uhn.fhir.jpa.entity.*;
 import ca.uhn.fhir.jpa.model.entity.*;
 import ca.uhn.fhir.jpa.util.JpaInterceptorBroadcaster;
@@ -56,6 +59,12 @@ public class ExpungeEverythingService {
 	private PlatformTransactionManager myPlatformTransactionManager;
 	@Autowired
 	protected IInterceptorBroadcaster myInterceptorBroadcaster;
+	@Autowired
+	private IdHelperService myIdHelperService;
+	@Autowired
+	private TagDefinitionCacheSvc myTagDefinitionCacheSvc;
+	@Autowired
+	private IResourceVersionCacheSvc myResourceVersionCacheSvc;
 
 	private TransactionTemplate myTxTemplate;
 
@@ -85,6 +94,7 @@ public class ExpungeEverythingService {
 		});
 		counter.addAndGet(expungeEverythingByType(SearchParamPresent.class));
 		counter.addAndGet(expungeEverythingByType(ForcedId.class));
+		myIdHelperService.clearCache();
 		counter.addAndGet(expungeEverythingByType(ResourceIndexedSearchParamDate.class));
 		counter.addAndGet(expungeEverythingByType(ResourceIndexedSearchParamNumber.class));
 		counter.addAndGet(expungeEverythingByType(ResourceIndexedSearchParamQuantity.class));
@@ -95,6 +105,7 @@ public class ExpungeEverythingService {
 		counter.addAndGet(expungeEverythingByType(ResourceIndexedCompositeStringUnique.class));
 		counter.addAndGet(expungeEverythingByType(ResourceLink.class));
 		counter.addAndGet(expungeEverythingByType(SearchResult.class));
+		counter.addAndGet(expungeEverythingByType(SearchResultPage.class));
 		counter.addAndGet(expungeEverythingByType(SearchInclude.class));
 		counter.addAndGet(expungeEverythingByType(TermValueSetConceptDesignation.class));
 		counter.addAndGet(expungeEverythingByType(TermValueSetConcept.class));
@@ -120,8 +131,10 @@ public class ExpungeEverythingService {
 		counter.addAndGet(expungeEverythingByType(ResourceHistoryTag.class));
 		counter.addAndGet(expungeEverythingByType(ResourceTag.class));
 		counter.addAndGet(expungeEverythingByType(TagDefinition.class));
+		myTagDefinitionCacheSvc.clearCache();
 		counter.addAndGet(expungeEverythingByType(ResourceHistoryProvenanceEntity.class));
 		counter.addAndGet(expungeEverythingByType(ResourceHistoryTable.class));
+		myResourceVersionCacheSvc.invalidateAll();
 		counter.addAndGet(expungeEverythingByType(ResourceTable.class));
 		myTxTemplate.execute(t -> {
 			counter.addAndGet(doExpungeEverythingQuery("DELETE from " + org.hibernate.search.jpa.Search.class.getSimpleName() + " d"));
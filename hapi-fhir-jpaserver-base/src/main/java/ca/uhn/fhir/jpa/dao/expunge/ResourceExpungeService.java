@@ -25,6 +25,7 @@ import ca.uhn.fhir.interceptor.api.IInterceptorBroadcaster;
 import ca.uhn.fhir.interceptor.api.Pointcut;
 import ca.uhn.fhir.jpa.dao.DaoRegistry;
 import ca.uhn.fhir.jpa.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.dao.cache.IResourceVersionCacheSvc;
 import ca.uhn.fhir.jpa.dao.data.*;
 import ca.uhn.fhir.jpa.dao.index.IdHelperService;
 import ca.uhn.fhir.jpa.model.entity.ForcedId;
@@ -87,6 +88,8 @@ class ResourceExpungeService implements IResourceExpungeService {
 	private DaoRegistry myDaoRegistry;
 	@Autowired
 	private IResourceProvenanceDao myResourceHistoryProvenanceTableDao;
+	@Autowired
+	private IResourceVersionCacheSvc myResourceVersionCacheSvc;
 
 	@Override
 	@Transactional
@@ -152,6 +155,7 @@ class ResourceExpungeService implements IResourceExpungeService {
 		
 		myResourceHistoryTagDao.deleteAll(version.getTags());
 		myResourceHistoryTableDao.delete(version);
+		myResourceVersionCacheSvc.invalidate(version.getResourceId(), version.getVersion());
 
 		theRemainingCount.decrementAndGet();
 	}
@@ -32,7 +32,9 @@ import javax.persistence.PersistenceContext;
 import javax.persistence.PersistenceContextType;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 @Service
 public class DaoSearchParamSynchronizer {
@@ -62,15 +64,39 @@ public class DaoSearchParamSynchronizer {
 
 	private <T extends BaseResourceIndex> void synchronize(ResourceIndexedSearchParams theParams, ResourceTable theEntity, AddRemoveCount theAddRemoveCount, Collection<T> theNewParms, Collection<T> theExistingParms) {
 		theParams.calculateHashes(theNewParms);
-		List<T> quantitiesToRemove = subtract(theExistingParms, theNewParms);
-		List<T> quantitiesToAdd = subtract(theNewParms, theExistingParms);
+
+		/*
+		 * Most updates leave most types of index unchanged (e.g. a Questionnaire with hundreds of
+		 * tokens whose title was edited), so check whether the set of rows is identical before
+		 * working out what to remove and what to add. Comparing the hash sets is a size check,
+		 * followed by a containment check that looks up each existing row in the set of new rows
+		 * (one hash lookup per row) only if the sizes match.
+		 */
+		Set<T> newParams = toSet(theNewParms);
+		Set<T> existingParams = toSet(theExistingParms);
+		if (newParams.equals(existingParams)) {
+			return;
+		}
+
+		List<T> quantitiesToRemove = subtract(theExistingParms, newParams);
+		List<T> quantitiesToAdd = subtract(theNewParms, existingParams);
 		tryToReuseIndexEntities(quantitiesToRemove, quantitiesToAdd);
 		for (T next : quantitiesToRemove) {
 			myEntityManager.remove(next);
 			theEntity.getParamsQuantity().remove(next);
 		}
 		for (T next : quantitiesToAdd) {
-			myEntityManager.merge(next);
+			if (next.getId() == null) {
+				/*
+				 * New rows are persisted rather than merged so that the instance we hold is the
+				 * managed one, and no copy is made. Hibernate queues the inserts and sends the
+				 * new rows for each table together in JDBC batches when the session is flushed.
+				 */
+				myEntityManager.persist(next);
+			} else {
+				// A reused row (see tryToReuseIndexEntities), which becomes an UPDATE
+				myEntityManager.merge(next);
+			}
 		}
 
 		theAddRemoveCount.addToAddCount(quantitiesToAdd.size());
@@ -106,9 +132,6 @@ public class DaoSearchParamSynchronizer {
 		}
 	}
 
-
-
-
 	<T> List<T> subtract(Collection<T> theSubtractFrom, Collection<T> theToSubtract) {
 		assert theSubtractFrom != theToSubtract;
 
@@ -116,8 +139,17 @@ public class DaoSearchParamSynchronizer {
 			return new ArrayList<>();
 		}
 
+		// ArrayList#removeAll calls contains() on the collection for every element, so
+		// make sure that is a hash lookup and not a scan of a list
 		ArrayList<T> retVal = new ArrayList<>(theSubtractFrom);
-		retVal.removeAll(theToSubtract);
+		retVal.removeAll(toSet(theToSubtract));
 		return retVal;
 	}
+
+	private static <T> Set<T> toSet(Collection<T> theCollection) {
+		if (theCollection instanceof Set) {
+			return (Set<T>) theCollection;
+		}
+		return new HashSet<>(theCollection);
+	}
 }
@@ -32,29 +32,104 @@ import ca.uhn.fhir.model.primitive.IdDt;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.MultimapBuilder;
 import org.apache.commons.lang3.Validate;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.annotation.Nonnull;
+import javax.annotation.PostConstruct;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import static org.apache.commons.lang3.StringUtils.defaultString;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
 @Service
 public class IdHelperService {
+	/**
+	 * Client-assigned IDs which are known not to exist are only cached for this long
+	 */
+	static final long MISSING_PID_CACHE_EXPIRY_SECONDS = 60;
+
 	@Autowired
 	protected IForcedIdDao myForcedIdDao;
 	@Autowired(required = true)
 	private DaoConfig myDaoConfig;
 	@Autowired
 	private IInterceptorBroadcaster myInterceptorBroadcaster;
+	private Cache<String, Long> myPidCache;
+	private Cache<String, Boolean> myMissingPidCache;
+	/*
+	 * These are incremented whenever an entry in the corresponding cache might become
+	 * stale: a resolved PID only when a forced ID is deleted, and a missing PID also when
+	 * a forced ID is created. Cache entries are only added if the value has not changed
+	 * since the database was queried, so that a lookup which raced with a create or an
+	 * expunge can never leave a stale entry behind.
+	 */
+	private final AtomicLong myPidCacheGeneration = new AtomicLong();
+	private final AtomicLong myMissingPidCacheGeneration = new AtomicLong();
+
+	@PostConstruct
+	public void start() {
+		myPidCache = Caffeine.newBuilder()
+			.maximumSize(myDaoConfig.getResourcePidCacheMaximumSize())
+			.build();
+		myMissingPidCache = Caffeine.newBuilder()
+			.maximumSize(myDaoConfig.getResourcePidCacheMaximumSize())
+			.expireAfterWrite(MISSING_PID_CACHE_EXPIRY_SECONDS, TimeUnit.SECONDS)
+			.build();
+	}
 
 	public void delete(ForcedId forcedId) {
 		myForcedIdDao.delete(forcedId);
+		invalidateCachedPid(forcedId, true);
+	}
+
+	/**
+	 * Must be called whenever a new forced ID is assigned to a resource, so that
+	 * any cached lookup which did not find it is discarded
+	 */
+	public void forcedIdCreated(ForcedId theForcedId) {
+		invalidateCachedPid(theForcedId, false);
+	}
+
+	/**
+	 * Discards all cached PIDs. This is called when all resources are expunged.
+	 */
+	public void clearCache() {
+		Runnable invalidate = () -> {
+			myPidCacheGeneration.incrementAndGet();
+			myMissingPidCacheGeneration.incrementAndGet();
+			myPidCache.invalidateAll();
+			myMissingPidCache.invalidateAll();
+		};
+		invalidate.run();
+		runAfterCompletion(invalidate);
+	}
+
+	private void invalidateCachedPid(ForcedId theForcedId, boolean theDeleted) {
+		String key = toCacheKey(theForcedId.getResourceType(), theForcedId.getForcedId());
+		Runnable invalidate = () -> {
+			if (theDeleted) {
+				myPidCacheGeneration.incrementAndGet();
+				myPidCache.invalidate(key);
+			}
+			myMissingPidCacheGeneration.incrementAndGet();
+			myMissingPidCache.invalidate(key);
+		};
+
+		// Invalidate now so that the current transaction sees the change, and again
+		// once it completes in case a concurrent lookup has re-populated the entry meanwhile
+		invalidate.run();
+		runAfterCompletion(invalidate);
 	}
 
 	/**
@@ -72,7 +147,7 @@ public class IdHelperService {
 	public Long translateForcedIdToPid(String theResourceName, String theResourceId, RequestDetails theRequestDetails) throws ResourceNotFoundException {
 		// We only pass 1 input in so only 0..1 will come back
 		IdDt id = new IdDt(theResourceName, theResourceId);
-		List<Long> matches = translateForcedIdToPids(myDaoConfig, myInterceptorBroadcaster, theRequestDetails, myForcedIdDao, Collections.singletonList(id));
+		List<Long> matches = doTranslateForcedIdToPids(theRequestDetails, Collections.singletonList(id));
 		assert matches.size() <= 1;
 		if (matches.isEmpty()) {
 			throw new ResourceNotFoundException(id);
@@ -81,10 +156,10 @@ public class IdHelperService {
 	}
 
 	public List<Long> translateForcedIdToPids(Collection<IIdType> theId, RequestDetails theRequestDetails) {
-		return IdHelperService.translateForcedIdToPids(myDaoConfig, myInterceptorBroadcaster, theRequestDetails, myForcedIdDao, theId);
+		return doTranslateForcedIdToPids(theRequestDetails, theId);
 	}
 
-	private static List<Long> translateForcedIdToPids(DaoConfig theDaoConfig, IInterceptorBroadcaster theInterceptorBroadcaster, RequestDetails theRequest, IForcedIdDao theForcedIdDao, Collection<IIdType> theId) {
+	private List<Long> doTranslateForcedIdToPids(RequestDetails theRequest, Collection<IIdType> theId) {
 		theId.forEach(id -> Validate.isTrue(id.hasIdPart()));
 
 		if (theId.isEmpty()) {
@@ -95,7 +170,7 @@ public class IdHelperService {
 
 		ListMultimap<String, String> typeToIds = MultimapBuilder.hashKeys().arrayListValues().build();
 		for (IIdType nextId : theId) {
-			if (theDaoConfig.getResourceClientIdStrategy() != DaoConfig.ClientIdStrategyEnum.ANY && isValidPid(nextId)) {
+			if (myDaoConfig.getResourceClientIdStrategy() != DaoConfig.ClientIdStrategyEnum.ANY && isValidPid(nextId)) {
 				retVal.add(nextId.getIdPartAsLong());
 			} else {
 				if (nextId.hasResourceType()) {
@@ -117,16 +192,77 @@ public class IdHelperService {
 					.add(RequestDetails.class, theRequest)
 					.addIfMatchesType(ServletRequestDetails.class, theRequest)
 					.add(StorageProcessingMessage.class, msg);
-				JpaInterceptorBroadcaster.doCallHooks(theInterceptorBroadcaster, theRequest, Pointcut.JPA_PERFTRACE_WARNING, params);
+				JpaInterceptorBroadcaster.doCallHooks(myInterceptorBroadcaster, theRequest, Pointcut.JPA_PERFTRACE_WARNING, params);
 
-				retVal.addAll(theForcedIdDao.findByForcedId(nextIds));
+				retVal.addAll(myForcedIdDao.findByForcedId(nextIds));
 
+			} else if (myDaoConfig.isResourcePidCacheEnabled()) {
+				retVal.addAll(translateForcedIdToPidsUsingCache(nextResourceType, nextIds));
 			} else {
-				retVal.addAll(theForcedIdDao.findByTypeAndForcedId(nextResourceType, nextIds));
+				retVal.addAll(myForcedIdDao.findByTypeAndForcedId(nextResourceType, nextIds));
 			}
 		}
 
+		return retVal;
+	}
+
+	private List<Long> translateForcedIdToPidsUsingCache(String theResourceType, Collection<String> theIds) {
+		boolean negativeCacheEnabled = myDaoConfig.isResourcePidNegativeCacheEnabled();
+
+		List<Long> retVal = new ArrayList<>(theIds.size());
+		List<String> idsToResolve = new ArrayList<>(theIds.size());
+		for (String nextId : theIds) {
+			String key = toCacheKey(theResourceType, nextId);
+			Long cachedPid = myPidCache.getIfPresent(key);
+			if (cachedPid != null) {
+				retVal.add(cachedPid);
+			} else if (!negativeCacheEnabled || myMissingPidCache.getIfPresent(key) == null) {
+				idsToResolve.add(nextId);
+			}
+		}
+
+		if (idsToResolve.isEmpty()) {
 			return retVal;
+		}
+
+		long pidCacheGeneration = myPidCacheGeneration.get();
+		long missingPidCacheGeneration = myMissingPidCacheGeneration.get();
+		Map<String, Long> resolved = new HashMap<>();
+		// Databases may compare IDs case-insensitively, so only IDs which match nothing at all are "missing"
+		Set<String> missing = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		missing.addAll(idsToResolve);
+		for (Object[] next : myForcedIdDao.findAndResolveByTypeAndForcedId(theResourceType, idsToResolve)) {
+			String forcedId = (String) next[0];
+			Long pid = (Long) next[1];
+			retVal.add(pid);
+			resolved.put(toCacheKey(theResourceType, forcedId), pid);
+			missing.remove(forcedId);
+		}
+
+		/*
+		 * Only cache resolved PIDs once the transaction has committed, since anything
+		 * we found might have been created by this transaction and could still be
+		 * rolled back. Missing IDs stay missing even if the transaction is rolled back
+		 * (which is what usually happens when a read fails with a 404).
+		 */
+		if (!resolved.isEmpty()) {
+			runAfterCommit(() -> {
+				if (myPidCacheGeneration.get() == pidCacheGeneration) {
+					myPidCache.putAll(resolved);
+				}
+			});
+		}
+		if (negativeCacheEnabled && !missing.isEmpty()) {
+			runAfterCompletion(() -> {
+				if (myMissingPidCacheGeneration.get() == missingPidCacheGeneration) {
+					for (String nextMissing : missing) {
+						myMissingPidCache.put(toCacheKey(theResourceType, nextMissing), Boolean.TRUE);
+					}
+				}
+			});
+		}
+
+		return retVal;
 	}
 
 	String translatePidIdToForcedId(String theResourceType, Long theId) {
@@ -138,6 +274,36 @@ public class IdHelperService {
 		}
 	}
 
+	private static String toCacheKey(String theResourceType, String theForcedId) {
+		return defaultString(theResourceType) + '/' + theForcedId;
+	}
+
+	private static void runAfterCommit(Runnable theRunnable) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					theRunnable.run();
+				}
+			});
+		} else {
+			theRunnable.run();
+		}
+	}
+
+	private static void runAfterCompletion(Runnable theRunnable) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int theStatus) {
+					theRunnable.run();
+				}
+			});
+		} else {
+			theRunnable.run();
+		}
+	}
+
 	public static boolean isValidPid(IIdType theId) {
 		if (theId == null || theId.getIdPart() == null) {
 			return false;
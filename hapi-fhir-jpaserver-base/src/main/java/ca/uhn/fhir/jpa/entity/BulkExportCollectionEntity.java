@@ -48,6 +48,10 @@ public class BulkExportCollectionEntity {
 	@OneToMany(fetch = FetchType.LAZY, mappedBy = "myCollection")
 	private Collection<BulkExportCollectionFileEntity> myFiles;
 
+	public Long getId() {
+		return myId;
+	}
+
 	public void setJob(BulkExportJobEntity theJob) {
 		myJob = theJob;
 	}
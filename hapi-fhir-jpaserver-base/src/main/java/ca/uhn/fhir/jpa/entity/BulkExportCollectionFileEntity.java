@@ -28,6 +28,8 @@ import javax.persistence.*;
 @Table(name = "HFJ_BLK_EXPORT_COLFILE")
 public class BulkExportCollectionFileEntity {
 
+	public static final int BLOB_ID_LENGTH = 200;
+
 	@Id
 	@GeneratedValue(strategy = GenerationType.AUTO, generator = "SEQ_BLKEXCOLFILE_PID")
 	@SequenceGenerator(name = "SEQ_BLKEXCOLFILE_PID", sequenceName = "SEQ_BLKEXCOLFILE_PID")
@@ -38,6 +40,8 @@ public class BulkExportCollectionFileEntity {
 	private BulkExportCollectionEntity myCollection;
 	@Column(name = "RES_ID", length = ForcedId.MAX_FORCED_ID_LENGTH, nullable = false)
 	private String myResourceId;
+	@Column(name = "BLOB_ID", length = BLOB_ID_LENGTH, nullable = true)
+	private String myBlobId;
 
 	public void setCollection(BulkExportCollectionEntity theCollection) {
 		myCollection = theCollection;
@@ -50,4 +54,16 @@ public class BulkExportCollectionFileEntity {
 	public String getResourceId() {
 		return myResourceId;
 	}
+
+	/**
+	 * Returns the ID of the binary storage blob holding the file contents, or <code>null</code>
+	 * if the contents are stored inline in the Binary resource
+	 */
+	public String getBlobId() {
+		return myBlobId;
+	}
+
+	public void setBlobId(String theBlobId) {
+		myBlobId = theBlobId;
+	}
 }
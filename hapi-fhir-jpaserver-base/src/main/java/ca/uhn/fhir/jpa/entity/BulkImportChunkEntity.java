@@ -0,0 +1,68 @@
+package ca.uhn.fhir.jpa.entity;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import javax.persistence.*;
+
+/**
+ * Records that one chunk of a bulk import file has been stored. A row is saved in the
+ * same transaction as the resources in the chunk, so a job that is interrupted can be
+ * restarted without importing any chunk twice.
+ */
+@Entity
+@Table(name = "HFJ_BLK_IMPORT_CHUNK", uniqueConstraints = {
+	@UniqueConstraint(name = "IDX_BLKIM_CHUNK_FILE_IDX", columnNames = {"FILE_PID", "CHUNK_IDX"})
+})
+public class BulkImportChunkEntity {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.AUTO, generator = "SEQ_BLKIMCHUNK_PID")
+	@SequenceGenerator(name = "SEQ_BLKIMCHUNK_PID", sequenceName = "SEQ_BLKIMCHUNK_PID")
+	@Column(name = "PID")
+	private Long myId;
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name = "FILE_PID", referencedColumnName = "PID", nullable = false, foreignKey = @ForeignKey(name = "FK_BLKIMCHUNK_FILE"))
+	private BulkImportJobFileEntity myFile;
+	@Column(name = "CHUNK_IDX", nullable = false)
+	private int myChunkIndex;
+	@Column(name = "RES_COUNT", nullable = false)
+	private int myResourceCount;
+
+	public void setFile(BulkImportJobFileEntity theFile) {
+		myFile = theFile;
+	}
+
+	public int getChunkIndex() {
+		return myChunkIndex;
+	}
+
+	public void setChunkIndex(int theChunkIndex) {
+		myChunkIndex = theChunkIndex;
+	}
+
+	public int getResourceCount() {
+		return myResourceCount;
+	}
+
+	public void setResourceCount(int theResourceCount) {
+		myResourceCount = theResourceCount;
+	}
+}
@@ -0,0 +1,155 @@
+package ca.uhn.fhir.jpa.entity;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.bulk.BulkJobStatusEnum;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.hl7.fhir.r4.model.InstantType;
+
+import javax.persistence.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+@Entity
+@Table(name = "HFJ_BLK_IMPORT_JOB", uniqueConstraints = {
+	@UniqueConstraint(name = "IDX_BLKIM_JOB_ID", columnNames = "JOB_ID")
+})
+public class BulkImportJobEntity {
+
+	public static final int STATUS_MESSAGE_LEN = 500;
+	@Id
+	@GeneratedValue(strategy = GenerationType.AUTO, generator = "SEQ_BLKIMJOB_PID")
+	@SequenceGenerator(name = "SEQ_BLKIMJOB_PID", sequenceName = "SEQ_BLKIMJOB_PID")
+	@Column(name = "PID")
+	private Long myId;
+
+	@Column(name = "JOB_ID", length = Search.UUID_COLUMN_LENGTH, nullable = false)
+	private String myJobId;
+
+	@Enumerated(EnumType.STRING)
+	@Column(name = "JOB_STATUS", length = 10, nullable = false)
+	private BulkJobStatusEnum myStatus;
+	@Temporal(TemporalType.TIMESTAMP)
+	@Column(name = "CREATED_TIME", nullable = false)
+	private Date myCreated;
+	@Temporal(TemporalType.TIMESTAMP)
+	@Column(name = "STATUS_TIME", nullable = false)
+	private Date myStatusTime;
+	@OneToMany(fetch = FetchType.LAZY, mappedBy = "myJob")
+	@OrderBy("myFileSequence ASC")
+	private Collection<BulkImportJobFileEntity> myFiles;
+	@Version
+	@Column(name = "OPTLOCK", nullable = false)
+	private int myVersion;
+	@Column(name = "STATUS_MESSAGE", nullable = true, length = STATUS_MESSAGE_LEN)
+	private String myStatusMessage;
+	@Column(name = "CHUNK_SIZE", nullable = false)
+	private int myChunkSize;
+
+	public Date getCreated() {
+		return myCreated;
+	}
+
+	public void setCreated(Date theCreated) {
+		myCreated = theCreated;
+	}
+
+	public String getStatusMessage() {
+		return myStatusMessage;
+	}
+
+	public void setStatusMessage(String theStatusMessage) {
+		myStatusMessage = theStatusMessage;
+	}
+
+	/**
+	 * Returns the number of resources in each chunk. This is fixed when the job is submitted
+	 * so that chunk boundaries don't move if the job is resumed after a configuration change.
+	 */
+	public int getChunkSize() {
+		return myChunkSize;
+	}
+
+	public void setChunkSize(int theChunkSize) {
+		myChunkSize = theChunkSize;
+	}
+
+	public Collection<BulkImportJobFileEntity> getFiles() {
+		if (myFiles == null) {
+			myFiles = new ArrayList<>();
+		}
+		return myFiles;
+	}
+
+	public String getJobId() {
+		return myJobId;
+	}
+
+	public void setJobId(String theJobId) {
+		myJobId = theJobId;
+	}
+
+	@Override
+	public String toString() {
+		ToStringBuilder b = new ToStringBuilder(this);
+		if (isNotBlank(myJobId)) {
+			b.append("jobId", myJobId);
+		}
+		if (myStatus != null) {
+			b.append("status", myStatus + " " + new InstantType(myStatusTime).getValueAsString());
+		}
+		b.append("created", new InstantType(myCreated).getValueAsString());
+		if (isNotBlank(myStatusMessage)) {
+			b.append("statusMessage", myStatusMessage);
+		}
+		return b.toString();
+	}
+
+	public BulkJobStatusEnum getStatus() {
+		return myStatus;
+	}
+
+	public void setStatus(BulkJobStatusEnum theStatus) {
+		if (myStatus != theStatus) {
+			myStatusTime = new Date();
+			myStatus = theStatus;
+		}
+	}
+
+	public Date getStatusTime() {
+		return myStatusTime;
+	}
+
+	public int getVersion() {
+		return myVersion;
+	}
+
+	public void setVersion(int theVersion) {
+		myVersion = theVersion;
+	}
+
+	public Long getId() {
+		return myId;
+	}
+}
@@ -0,0 +1,90 @@
+package ca.uhn.fhir.jpa.entity;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import javax.persistence.*;
+
+@Entity
+@Table(name = "HFJ_BLK_IMPORT_JOBFILE")
+public class BulkImportJobFileEntity {
+
+	public static final int FILE_URL_LENGTH = 500;
+	@Id
+	@GeneratedValue(strategy = GenerationType.AUTO, generator = "SEQ_BLKIMJOBFILE_PID")
+	@SequenceGenerator(name = "SEQ_BLKIMJOBFILE_PID", sequenceName = "SEQ_BLKIMJOBFILE_PID")
+	@Column(name = "PID")
+	private Long myId;
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name = "JOB_PID", referencedColumnName = "PID", nullable = false, foreignKey = @ForeignKey(name = "FK_BLKIMJOBFILE_JOB"))
+	private BulkImportJobEntity myJob;
+	@Column(name = "FILE_SEQ", nullable = false)
+	private int myFileSequence;
+	@Column(name = "FILE_URL", length = FILE_URL_LENGTH, nullable = false)
+	private String myUrl;
+	@Column(name = "FILE_COMPLETE", nullable = false)
+	private boolean myComplete;
+	@Version
+	@Column(name = "OPTLOCK", nullable = false)
+	private int myVersion;
+
+	public Long getId() {
+		return myId;
+	}
+
+	public void setJob(BulkImportJobEntity theJob) {
+		myJob = theJob;
+	}
+
+	public int getFileSequence() {
+		return myFileSequence;
+	}
+
+	public void setFileSequence(int theFileSequence) {
+		myFileSequence = theFileSequence;
+	}
+
+	public String getUrl() {
+		return myUrl;
+	}
+
+	public void setUrl(String theUrl) {
+		myUrl = theUrl;
+	}
+
+	/**
+	 * Returns <code>true</code> once every chunk in the file has been imported
+	 */
+	public boolean isComplete() {
+		return myComplete;
+	}
+
+	public void setComplete(boolean theComplete) {
+		myComplete = theComplete;
+	}
+
+	public int getVersion() {
+		return myVersion;
+	}
+
+	public void setVersion(int theVersion) {
+		myVersion = theVersion;
+	}
+}
@@ -58,6 +58,62 @@ public class ResourceReindexJobEntity implements Serializable {
 	private Date mySuspendedUntil;
 	@Column(name = "REINDEX_COUNT", nullable = true)
 	private Integer myReindexCount;
+	/**
+	 * Inclusive
+	 */
+	@Column(name = "PID_RANGE_LOW", nullable = true)
+	private Long myPidRangeLow;
+	/**
+	 * Inclusive
+	 */
+	@Column(name = "PID_RANGE_HIGH", nullable = true)
+	private Long myPidRangeHigh;
+	@Column(name = "LEASED_UNTIL", nullable = true)
+	@Temporal(TemporalType.TIMESTAMP)
+	private Date myLeasedUntil;
+
+	/**
+	 * Inclusive. If <code>null</code>, the job has no lower bound on the resource PIDs it covers.
+	 */
+	public Long getPidRangeLow() {
+		return myPidRangeLow;
+	}
+
+	/**
+	 * Inclusive. If <code>null</code>, the job has no lower bound on the resource PIDs it covers.
+	 */
+	public void setPidRangeLow(Long thePidRangeLow) {
+		myPidRangeLow = thePidRangeLow;
+	}
+
+	/**
+	 * Inclusive. If <code>null</code>, the job has no upper bound on the resource PIDs it covers.
+	 */
+	public Long getPidRangeHigh() {
+		return myPidRangeHigh;
+	}
+
+	/**
+	 * Inclusive. If <code>null</code>, the job has no upper bound on the resource PIDs it covers.
+	 */
+	public void setPidRangeHigh(Long thePidRangeHigh) {
+		myPidRangeHigh = thePidRangeHigh;
+	}
+
+	/**
+	 * Returns <code>true</code> if this job only covers a range of resource PIDs
+	 */
+	public boolean hasPidRange() {
+		return myPidRangeLow != null || myPidRangeHigh != null;
+	}
+
+	public Date getLeasedUntil() {
+		return myLeasedUntil;
+	}
+
+	public void setLeasedUntil(Date theLeasedUntil) {
+		myLeasedUntil = theLeasedUntil;
+	}
 
 	public Integer getReindexCount() {
 		return myReindexCount;
@@ -145,6 +201,10 @@ public class ResourceReindexJobEntity implements Serializable {
 		if (mySuspendedUntil != null) {
 			b.append("suspendedUntil", mySuspendedUntil);
 		}
+		if (hasPidRange()) {
+			b.append("pidRangeLow", myPidRangeLow);
+			b.append("pidRangeHigh", myPidRangeHigh);
+		}
 		return b.toString();
 	}
 }
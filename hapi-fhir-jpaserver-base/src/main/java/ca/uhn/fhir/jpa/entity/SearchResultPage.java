@@ -0,0 +1,111 @@
+package ca.uhn.fhir.jpa.entity;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+/**
+ * A contiguous block of the results of a search, stored as a single row. The
+ * resource PIDs in the block are stored in a compact binary form. See
+ * {@link ca.uhn.fhir.jpa.search.cache.DatabaseSearchResultPageCacheSvcImpl}.
+ */
+@Entity
+@Table(name = "HFJ_SEARCH_RESULT_PAGE", uniqueConstraints = {
+	@UniqueConstraint(name = "IDX_SEARCHRESPAGE_ORDER", columnNames = {"SEARCH_PID", "FIRST_ORDER"})
+})
+public class SearchResultPage implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@GeneratedValue(strategy = GenerationType.AUTO, generator = "SEQ_SEARCH_RES_PAGE")
+	@SequenceGenerator(name = "SEQ_SEARCH_RES_PAGE", sequenceName = "SEQ_SEARCH_RES_PAGE")
+	@Id
+	@Column(name = "PID")
+	private Long myId;
+	@Column(name = "SEARCH_PID", insertable = true, updatable = false, nullable = false)
+	private Long mySearchPid;
+	@Column(name = "FIRST_ORDER", insertable = true, updatable = false, nullable = false)
+	private int myFirstOrder;
+	@Column(name = "PID_COUNT", insertable = true, updatable = false, nullable = false)
+	private int myPidCount;
+	@Lob
+	@Column(name = "PIDS_DATA", insertable = true, updatable = false, nullable = false)
+	private byte[] myPidsData;
+
+	/**
+	 * Constructor
+	 */
+	public SearchResultPage() {
+		// nothing
+	}
+
+	/**
+	 * Constructor
+	 */
+	public SearchResultPage(Search theSearch) {
+		Validate.notNull(theSearch.getId());
+		mySearchPid = theSearch.getId();
+	}
+
+	public Long getSearchPid() {
+		return mySearchPid;
+	}
+
+	/**
+	 * The order index (within the search) of the first result in this page
+	 */
+	public int getFirstOrder() {
+		return myFirstOrder;
+	}
+
+	public void setFirstOrder(int theFirstOrder) {
+		myFirstOrder = theFirstOrder;
+	}
+
+	public int getPidCount() {
+		return myPidCount;
+	}
+
+	public void setPidCount(int thePidCount) {
+		myPidCount = thePidCount;
+	}
+
+	public byte[] getPidsData() {
+		return myPidsData;
+	}
+
+	public void setPidsData(byte[] thePidsData) {
+		myPidsData = thePidsData;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this)
+			.append("search", mySearchPid)
+			.append("firstOrder", myFirstOrder)
+			.append("pidCount", myPidCount)
+			.toString();
+	}
+}
@@ -0,0 +1,108 @@
+package ca.uhn.fhir.jpa.search;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.dao.DaoConfig;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.commons.lang3.Validate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * History results are paged by offset (the <code>_getpagesoffset</code> parameter in
+ * paging links), but fetching a deep page of history with an SQL <code>OFFSET</code>
+ * means the database has to walk past every earlier row. This service remembers where
+ * each page of a history search ended, so that when the page which starts at that
+ * offset is requested the query can instead seek directly to the rows after the
+ * previous page (keyset paging).
+ * <p>
+ * Keysets are only held in memory. If one isn't available (e.g. because the previous
+ * page was served by a different server in a cluster) the page is fetched by offset.
+ * </p>
+ */
+@Service
+public class HistoryKeysetSvc {
+
+	static final int MAXIMUM_SIZE = 10000;
+
+	@Autowired
+	private DaoConfig myDaoConfig;
+	private Cache<String, HistoryKeyset> myKeysets;
+
+	@PostConstruct
+	public void start() {
+		myKeysets = Caffeine.newBuilder()
+			.maximumSize(MAXIMUM_SIZE)
+			.expireAfterWrite(myDaoConfig.getExpireSearchResultsAfterMillis(), TimeUnit.MILLISECONDS)
+			.build();
+	}
+
+	/**
+	 * Returns the keyset for the page of the given search which starts at the given offset,
+	 * or <code>null</code> if none is known
+	 */
+	public HistoryKeyset getKeysetForOffset(String theSearchUuid, int theOffset) {
+		return myKeysets.getIfPresent(toKey(theSearchUuid, theOffset));
+	}
+
+	/**
+	 * Records that the row at index <code>theOffset - 1</code> of the given search had
+	 * the given keyset
+	 */
+	public void storeKeysetForOffset(String theSearchUuid, int theOffset, HistoryKeyset theKeyset) {
+		myKeysets.put(toKey(theSearchUuid, theOffset), theKeyset);
+	}
+
+	private static String toKey(String theSearchUuid, int theOffset) {
+		return theSearchUuid + "/" + theOffset;
+	}
+
+	/**
+	 * The position of a row in a history result, which is sorted by
+	 * last updated time and then by version PID, both descending
+	 */
+	public static class HistoryKeyset {
+
+		private final Date myUpdated;
+		private final Long myVersionPid;
+
+		public HistoryKeyset(Date theUpdated, Long theVersionPid) {
+			Validate.notNull(theUpdated);
+			Validate.notNull(theVersionPid);
+			myUpdated = theUpdated;
+			myVersionPid = theVersionPid;
+		}
+
+		public Date getUpdated() {
+			return myUpdated;
+		}
+
+		public Long getVersionPid() {
+			return myVersionPid;
+		}
+	}
+
+}
@@ -49,6 +49,7 @@ import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 import java.util.*;
@@ -68,6 +69,7 @@ public class PersistedJpaBundleProvider implements IBundleProvider {
 	private String myUuid;
 	private boolean myCacheHit;
 	private IInterceptorBroadcaster myInterceptorBroadcaster;
+	private HistoryKeysetSvc myHistoryKeysetSvc;
 
 	public PersistedJpaBundleProvider(RequestDetails theRequest, String theSearchUuid, IDao theDao) {
 		myRequest = theRequest;
@@ -110,21 +112,48 @@ public class PersistedJpaBundleProvider implements IBundleProvider {
 			predicates.add(cb.lessThanOrEqualTo(from.get("myUpdated").as(Date.class), mySearchEntity.getLastUpdatedHigh()));
 		}
 
+		/*
+		 * If we know where the previous page ended, seek directly to the rows after it
+		 * instead of making the database skip over all of the earlier pages
+		 */
+		HistoryKeysetSvc.HistoryKeyset keyset = null;
+		if (myHistoryKeysetSvc != null && theFromIndex > 0) {
+			keyset = myHistoryKeysetSvc.getKeysetForOffset(myUuid, theFromIndex);
+		}
+		if (keyset != null) {
+			Path<Date> updated = from.get("myUpdated");
+			Path<Long> versionPid = from.get("myId");
+			predicates.add(cb.or(
+				cb.lessThan(updated, keyset.getUpdated()),
+				cb.and(
+					cb.equal(updated, keyset.getUpdated()),
+					cb.lessThan(versionPid, keyset.getVersionPid()))));
+		}
+
 		if (predicates.size() > 0) {
 			q.where(predicates.toArray(new Predicate[0]));
 		}
 
-		q.orderBy(cb.desc(from.get("myUpdated")));
+		// The version PID makes the order deterministic, which keyset paging relies on
+		q.orderBy(cb.desc(from.get("myUpdated")), cb.desc(from.get("myId")));
 
 		TypedQuery<ResourceHistoryTable> query = myEntityManager.createQuery(q);
 
 		if (theToIndex - theFromIndex > 0) {
-			query.setFirstResult(theFromIndex);
+			if (keyset == null) {
+				query.setFirstResult(theFromIndex);
+			}
 			query.setMaxResults(theToIndex - theFromIndex);
 		}
 
 		results = query.getResultList();
 
+		if (myHistoryKeysetSvc != null && !results.isEmpty()) {
+			ResourceHistoryTable last = results.get(results.size() - 1);
+			HistoryKeysetSvc.HistoryKeyset nextKeyset = new HistoryKeysetSvc.HistoryKeyset(last.getUpdatedDate(), last.getId());
+			myHistoryKeysetSvc.storeKeysetForOffset(myUuid, theFromIndex + results.size(), nextKeyset);
+		}
+
 		ArrayList<IBaseResource> retVal = new ArrayList<>();
 		for (ResourceHistoryTable next : results) {
 			BaseHasResource resource;
@@ -341,4 +370,8 @@ public class PersistedJpaBundleProvider implements IBundleProvider {
 	public void setSearchCacheSvc(ISearchCacheSvc theSearchCacheSvc) {
 		mySearchCacheSvc = theSearchCacheSvc;
 	}
+
+	public void setHistoryKeysetSvc(HistoryKeysetSvc theHistoryKeysetSvc) {
+		myHistoryKeysetSvc = theHistoryKeysetSvc;
+	}
 }
@@ -124,4 +124,9 @@ public class PersistedJpaSearchFirstPageBundleProvider extends PersistedJpaBundl
 		return super.size();
 	}
 
+	@Override
+	public Integer getEstimatedSize() {
+		return mySearchTask.getEstimatedTotal();
+	}
+
 }
@@ -35,6 +35,7 @@ import ca.uhn.fhir.jpa.search.cache.ISearchCacheSvc;
 import ca.uhn.fhir.jpa.search.cache.ISearchResultCacheSvc;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.util.JpaInterceptorBroadcaster;
+import ca.uhn.fhir.jpa.util.LongArrayList;
 import ca.uhn.fhir.model.api.Include;
 import ca.uhn.fhir.rest.api.CacheControlDirective;
 import ca.uhn.fhir.rest.api.Constants;
@@ -115,6 +116,8 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 	private DaoRegistry myDaoRegistry;
 	@Autowired
 	private IPagingProvider myPagingProvider;
+	@Autowired
+	private SearchTotalCacheSvc mySearchTotalCacheSvc;
 
 	private int mySyncSize = DEFAULT_SYNC_SIZE;
 	/**
@@ -507,6 +510,11 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 		myDaoRegistry = theDaoRegistry;
 	}
 
+	@VisibleForTesting
+	void setSearchTotalCacheSvcForUnitTest(SearchTotalCacheSvc theSearchTotalCacheSvc) {
+		mySearchTotalCacheSvc = theSearchTotalCacheSvc;
+	}
+
 	@VisibleForTesting
 	void setInterceptorBroadcasterForUnitTest(IInterceptorBroadcaster theInterceptorBroadcaster) {
 		myInterceptorBroadcaster = theInterceptorBroadcaster;
@@ -516,10 +524,10 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 		private final SearchParameterMap myParams;
 		private final IDao myCallingDao;
 		private final String myResourceType;
-		private final ArrayList<Long> mySyncedPids = new ArrayList<>();
+		private final LongArrayList mySyncedPids = new LongArrayList();
 		private final CountDownLatch myInitialCollectionLatch = new CountDownLatch(1);
 		private final CountDownLatch myCompletionLatch;
-		private final ArrayList<Long> myUnsyncedPids = new ArrayList<>();
+		private final LongArrayList myUnsyncedPids = new LongArrayList();
 		private final RequestDetails myRequest;
 		private Search mySearch;
 		private boolean myAbortRequested;
@@ -530,6 +538,8 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 		private List<Long> myPreviouslyAddedResourcePids;
 		private Integer myMaxResultsToFetch;
 		private SearchRuntimeDetails mySearchRuntimeDetails;
+		private String myMatchQueryString;
+		private Integer myEstimatedTotal;
 
 		/**
 		 * Constructor
@@ -553,6 +563,15 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 			return myInitialCollectionLatch;
 		}
 
+		/**
+		 * Returns the total found by a recent identical search, if one was available
+		 * when this search started. This is only an estimate, so it is never stored
+		 * as the total for this search.
+		 */
+		Integer getEstimatedTotal() {
+			return myEstimatedTotal;
+		}
+
 		void setPreviouslyAddedResourcePids(List<Long> thePreviouslyAddedResourcePids) {
 			myPreviouslyAddedResourcePids = thePreviouslyAddedResourcePids;
 			myCountSavedTotal = myPreviouslyAddedResourcePids.size();
@@ -651,7 +670,7 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 						doSaveSearch();
 					}
 
-					ArrayList<Long> unsyncedPids = myUnsyncedPids;
+					LongArrayList unsyncedPids = myUnsyncedPids;
 
 					// Interceptor call: STORAGE_PREACCESS_RESOURCES
 					// This can be used to remove results from the search result details before
@@ -694,6 +713,7 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 								ourLog.trace("Setting search status to FINISHED");
 								mySearch.setStatus(SearchStatusEnum.FINISHED);
 								mySearch.setTotalCount(myCountSavedTotal);
+								storeTotal(myCountSavedTotal);
 							} else if (myAdditionalPrefetchThresholdsRemaining) {
 								ourLog.trace("Setting search status to PASSCMPLET");
 								mySearch.setStatus(SearchStatusEnum.PASSCMPLET);
@@ -702,6 +722,7 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 								ourLog.trace("Setting search status to FINISHED");
 								mySearch.setStatus(SearchStatusEnum.FINISHED);
 								mySearch.setTotalCount(myCountSavedTotal);
+								storeTotal(myCountSavedTotal);
 							}
 						}
 					}
@@ -726,6 +747,27 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 
 		}
 
+		/**
+		 * Totals can't be reused for $everything operations, since the
+		 * parameters don't fully describe which resources are returned
+		 */
+		private boolean isTotalCacheable() {
+			return myParams.getEverythingMode() == null;
+		}
+
+		private String getMatchQueryString() {
+			if (myMatchQueryString == null) {
+				myMatchQueryString = myParams.toNormalizedMatchQueryString(myContext);
+			}
+			return myMatchQueryString;
+		}
+
+		private void storeTotal(int theTotal) {
+			if (isTotalCacheable()) {
+				mySearchTotalCacheSvc.storeTotal(myResourceType, getMatchQueryString(), theTotal);
+			}
+		}
+
 		boolean isNotAborted() {
 			return myAbortRequested == false;
 		}
@@ -864,25 +906,33 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 			 *
 			 * SELECT COUNT(*) ....
 			 *
-			 * before doing anything else.
+			 * before doing anything else. If only an estimated total was
+			 * requested, no count is performed and the total is filled in
+			 * once the search finishes. Until then, a total found by a recent
+			 * identical search is reported as an estimate if one is available.
 			 */
+			SearchTotalModeEnum totalMode = defaultIfNull(myParams.getSearchTotalMode(), myDaoConfig.getDefaultTotalMode());
 			boolean wantOnlyCount = SummaryEnum.COUNT.equals(myParams.getSummaryMode());
 			boolean wantCount =
 				wantOnlyCount ||
-					SearchTotalModeEnum.ACCURATE.equals(myParams.getSearchTotalMode()) ||
-					(myParams.getSearchTotalMode() == null && SearchTotalModeEnum.ACCURATE.equals(myDaoConfig.getDefaultTotalMode()));
+					SearchTotalModeEnum.ACCURATE.equals(totalMode);
+			if (SearchTotalModeEnum.ESTIMATED.equals(totalMode) && isTotalCacheable()) {
+				myEstimatedTotal = mySearchTotalCacheSvc.getTotalIfPresent(myResourceType, getMatchQueryString());
+				ourLog.trace("Estimated total {}", myEstimatedTotal);
+			}
 			if (wantCount) {
 				ourLog.trace("Performing count");
 				ISearchBuilder sb = newSearchBuilder();
 				Iterator<Long> countIterator = sb.createCountQuery(myParams, mySearch.getUuid(), myRequest);
-				Long count = countIterator.next();
+				int count = countIterator.next().intValue();
 				ourLog.trace("Got count {}", count);
+				storeTotal(count);
 
 				TransactionTemplate txTemplate = new TransactionTemplate(myManagedTxManager);
 				txTemplate.execute(new TransactionCallbackWithoutResult() {
 					@Override
 					protected void doInTransactionWithoutResult(TransactionStatus theArg0) {
-						mySearch.setTotalCount(count.intValue());
+						mySearch.setTotalCount(count);
 						if (wantOnlyCount) {
 							mySearch.setStatus(SearchStatusEnum.FINISHED);
 						}
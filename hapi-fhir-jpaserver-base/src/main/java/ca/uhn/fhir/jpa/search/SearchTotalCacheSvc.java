@@ -0,0 +1,119 @@
+package ca.uhn.fhir.jpa.search;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.dao.DaoConfig;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Remembers the total number of results found by recent searches, so that
+ * searches requesting an estimated total (<code>_total=estimated</code>) don't
+ * need to run a count query every time they are performed.
+ * <p>
+ * Totals are keyed by resource type and by the normalized query string of the
+ * parameters which determine which resources match (see
+ * {@link ca.uhn.fhir.jpa.searchparam.SearchParameterMap#toNormalizedMatchQueryString(ca.uhn.fhir.context.FhirContext)}),
+ * and are only used for {@link DaoConfig#getEstimatedSearchTotalCacheMillis()} after
+ * they are stored. They are only held in memory.
+ * </p>
+ */
+@Service
+public class SearchTotalCacheSvc {
+
+	static final int MAXIMUM_SIZE = 10000;
+
+	@Autowired
+	private DaoConfig myDaoConfig;
+	private Cache<String, CachedTotal> myTotals;
+
+	@PostConstruct
+	public void start() {
+		myTotals = Caffeine.newBuilder()
+			.maximumSize(MAXIMUM_SIZE)
+			.build();
+	}
+
+	/**
+	 * Returns the total stored for the given search, or <code>null</code> if none
+	 * has been stored recently enough to be used
+	 */
+	public Integer getTotalIfPresent(String theResourceType, String theMatchQueryString) {
+		Long maxAge = myDaoConfig.getEstimatedSearchTotalCacheMillis();
+		if (maxAge == null || maxAge <= 0) {
+			return null;
+		}
+
+		String key = toKey(theResourceType, theMatchQueryString);
+		CachedTotal cachedTotal = myTotals.getIfPresent(key);
+		if (cachedTotal == null) {
+			return null;
+		}
+		if (System.currentTimeMillis() - cachedTotal.getStored() > maxAge) {
+			myTotals.invalidate(key);
+			return null;
+		}
+		return cachedTotal.getTotal();
+	}
+
+	/**
+	 * Stores the total number of results which were found by the given search
+	 */
+	public void storeTotal(String theResourceType, String theMatchQueryString, int theTotal) {
+		Long maxAge = myDaoConfig.getEstimatedSearchTotalCacheMillis();
+		if (maxAge == null || maxAge <= 0) {
+			return;
+		}
+		myTotals.put(toKey(theResourceType, theMatchQueryString), new CachedTotal(theTotal, System.currentTimeMillis()));
+	}
+
+	public void invalidateAll() {
+		myTotals.invalidateAll();
+	}
+
+	private static String toKey(String theResourceType, String theMatchQueryString) {
+		return theResourceType + theMatchQueryString;
+	}
+
+	private static class CachedTotal {
+
+		private final int myTotal;
+		private final long myStored;
+
+		CachedTotal(int theTotal, long theStored) {
+			myTotal = theTotal;
+			myStored = theStored;
+		}
+
+		int getTotal() {
+			return myTotal;
+		}
+
+		long getStored() {
+			return myStored;
+		}
+	}
+
+}
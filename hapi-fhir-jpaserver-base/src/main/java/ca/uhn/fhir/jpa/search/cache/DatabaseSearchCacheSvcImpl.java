@@ -24,6 +24,7 @@ import ca.uhn.fhir.jpa.dao.DaoConfig;
 import ca.uhn.fhir.jpa.dao.data.ISearchDao;
 import ca.uhn.fhir.jpa.dao.data.ISearchIncludeDao;
 import ca.uhn.fhir.jpa.dao.data.ISearchResultDao;
+import ca.uhn.fhir.jpa.dao.data.ISearchResultPageDao;
 import ca.uhn.fhir.jpa.entity.Search;
 import ca.uhn.fhir.jpa.entity.SearchInclude;
 import ca.uhn.fhir.jpa.model.search.SearchStatusEnum;
@@ -74,6 +75,8 @@ public class DatabaseSearchCacheSvcImpl extends BaseSearchCacheSvcImpl {
 	@Autowired
 	private ISearchResultDao mySearchResultDao;
 	@Autowired
+	private ISearchResultPageDao mySearchResultPageDao;
+	@Autowired
 	private ISearchIncludeDao mySearchIncludeDao;
 	@Autowired
 	private PlatformTransactionManager myTxManager;
@@ -204,6 +207,7 @@ public class DatabaseSearchCacheSvcImpl extends BaseSearchCacheSvcImpl {
 	private void deleteSearch(final Long theSearchPid) {
 		mySearchDao.findById(theSearchPid).ifPresent(searchToDelete -> {
 			mySearchIncludeDao.deleteForSearch(searchToDelete.getId());
+			mySearchResultPageDao.deleteForSearch(searchToDelete.getId());
 
 			/*
 			 * Note, we're only deleting up to 500 results in an individual search here. This
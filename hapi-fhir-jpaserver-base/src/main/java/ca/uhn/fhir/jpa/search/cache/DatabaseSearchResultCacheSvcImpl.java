@@ -28,15 +28,12 @@ import com.google.common.collect.Lists;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Pageable;
 
 import javax.transaction.Transactional;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-import static ca.uhn.fhir.jpa.search.SearchCoordinatorSvcImpl.toPage;
-
 public class DatabaseSearchResultCacheSvcImpl implements ISearchResultCacheSvc {
 	private static final Logger ourLog = LoggerFactory.getLogger(DatabaseSearchResultCacheSvcImpl.class);
 
@@ -46,14 +43,11 @@ public class DatabaseSearchResultCacheSvcImpl implements ISearchResultCacheSvc {
 	@Override
 	@Transactional(Transactional.TxType.REQUIRED)
 	public List<Long> fetchResultPids(Search theSearch, int theFrom, int theTo) {
-		final Pageable page = toPage(theFrom, theTo);
-		if (page == null) {
+		if (theTo - theFrom < 1) {
 			return Collections.emptyList();
 		}
 
-		List<Long> retVal = mySearchResultDao
-			.findWithSearchPid(theSearch.getId(), page)
-			.getContent();
+		List<Long> retVal = mySearchResultDao.findWithSearchPidAndOrderRange(theSearch.getId(), theFrom, theTo);
 
 		ourLog.trace("fetchResultPids for range {}-{} returned {} pids", theFrom, theTo, retVal.size());
 
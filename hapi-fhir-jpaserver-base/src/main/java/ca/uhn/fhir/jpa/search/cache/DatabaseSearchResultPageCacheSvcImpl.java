@@ -0,0 +1,181 @@
+package ca.uhn.fhir.jpa.search.cache;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.dao.data.ISearchResultPageDao;
+import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.entity.SearchResultPage;
+import ca.uhn.fhir.jpa.util.LongArrayList;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A search result cache which stores the results of a search in blocks (pages)
+ * of up to {@link #MAX_PIDS_PER_PAGE} resource PIDs, with each page stored as
+ * a single row in the <code>HFJ_SEARCH_RESULT_PAGE</code> table. The PIDs in a
+ * page are delta encoded and written as variable length integers, so a page
+ * of PIDs which were allocated near each other typically needs only a byte or
+ * two per PID.
+ * <p>
+ * Compared to {@link DatabaseSearchResultCacheSvcImpl}, which stores one row per
+ * result, this means far fewer rows (and index entries) need to be written and
+ * later deleted for searches with large numbers of results.
+ * </p>
+ * <p>
+ * This implementation is not used by default. To use it, override
+ * {@link ca.uhn.fhir.jpa.config.BaseConfig#searchResultCacheSvc()} to return an
+ * instance of this class. Searches which were stored one row per result before
+ * the switch can still be read.
+ * </p>
+ */
+public class DatabaseSearchResultPageCacheSvcImpl extends DatabaseSearchResultCacheSvcImpl {
+	static final int MAX_PIDS_PER_PAGE = 1000;
+	private static final Logger ourLog = LoggerFactory.getLogger(DatabaseSearchResultPageCacheSvcImpl.class);
+
+	@Autowired
+	private ISearchResultPageDao mySearchResultPageDao;
+
+	@Override
+	@Transactional(Transactional.TxType.REQUIRED)
+	public List<Long> fetchResultPids(Search theSearch, int theFrom, int theTo) {
+		if (theTo - theFrom < 1) {
+			return Collections.emptyList();
+		}
+
+		// A page containing theFrom can't start more than a full page earlier
+		int lowestFirstIndex = Math.max(0, theFrom - MAX_PIDS_PER_PAGE + 1);
+		List<SearchResultPage> pages = mySearchResultPageDao.findWithSearchPidAndOrderRange(theSearch.getId(), lowestFirstIndex, theFrom, theTo);
+		if (pages.isEmpty()) {
+			return super.fetchResultPids(theSearch, theFrom, theTo);
+		}
+
+		LongArrayList retVal = new LongArrayList(theTo - theFrom);
+		for (SearchResultPage nextPage : pages) {
+			long[] pids = decodePids(nextPage.getPidsData(), nextPage.getPidCount());
+			int from = Math.max(theFrom - nextPage.getFirstOrder(), 0);
+			int to = Math.min(theTo - nextPage.getFirstOrder(), pids.length);
+			for (int i = from; i < to; i++) {
+				retVal.addLong(pids[i]);
+			}
+		}
+
+		ourLog.trace("fetchResultPids for range {}-{} returned {} pids from {} pages", theFrom, theTo, retVal.size(), pages.size());
+
+		return retVal;
+	}
+
+	@Override
+	@Transactional(Transactional.TxType.REQUIRED)
+	public List<Long> fetchAllResultPids(Search theSearch) {
+		List<SearchResultPage> pages = mySearchResultPageDao.findForSearch(theSearch.getId());
+		if (pages.isEmpty()) {
+			return super.fetchAllResultPids(theSearch);
+		}
+
+		LongArrayList retVal = new LongArrayList();
+		for (SearchResultPage nextPage : pages) {
+			for (long nextPid : decodePids(nextPage.getPidsData(), nextPage.getPidCount())) {
+				retVal.addLong(nextPid);
+			}
+		}
+
+		ourLog.trace("fetchAllResultPids returned {} pids from {} pages", retVal.size(), pages.size());
+		return retVal;
+	}
+
+	@Override
+	@Transactional(Transactional.TxType.REQUIRED)
+	public void storeResults(Search theSearch, List<Long> thePreviouslyStoredResourcePids, List<Long> theNewResourcePids) {
+		List<SearchResultPage> pagesToSave = new ArrayList<>();
+
+		ourLog.trace("Storing {} results with {} previous for search", theNewResourcePids.size(), thePreviouslyStoredResourcePids.size());
+
+		int order = thePreviouslyStoredResourcePids.size();
+		for (List<Long> nextPids : Lists.partition(theNewResourcePids, MAX_PIDS_PER_PAGE)) {
+			SearchResultPage nextPage = new SearchResultPage(theSearch);
+			nextPage.setFirstOrder(order);
+			nextPage.setPidCount(nextPids.size());
+			nextPage.setPidsData(encodePids(nextPids));
+			pagesToSave.add(nextPage);
+
+			order += nextPids.size();
+		}
+
+		mySearchResultPageDao.saveAll(pagesToSave);
+	}
+
+	@VisibleForTesting
+	void setSearchResultPageDaoForUnitTest(ISearchResultPageDao theSearchResultPageDao) {
+		mySearchResultPageDao = theSearchResultPageDao;
+	}
+
+	/**
+	 * Each PID is stored as the difference from the previous PID (ZigZag encoded,
+	 * since results can be in any order) written as a variable length integer
+	 * using 7 bits per byte
+	 */
+	static byte[] encodePids(List<Long> thePids) {
+		byte[] retVal = new byte[thePids.size() * 10];
+		int pos = 0;
+		long previous = 0;
+		for (Long nextPid : thePids) {
+			long delta = nextPid - previous;
+			long value = (delta << 1) ^ (delta >> 63);
+			while ((value & ~0x7FL) != 0) {
+				retVal[pos++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			retVal[pos++] = (byte) value;
+			previous = nextPid;
+		}
+		return Arrays.copyOf(retVal, pos);
+	}
+
+	static long[] decodePids(byte[] theData, int theCount) {
+		long[] retVal = new long[theCount];
+		int pos = 0;
+		long previous = 0;
+		for (int i = 0; i < theCount; i++) {
+			long value = 0;
+			int shift = 0;
+			byte next;
+			do {
+				next = theData[pos++];
+				value |= (long) (next & 0x7F) << shift;
+				shift += 7;
+			} while ((next & 0x80) != 0);
+			long delta = (value >>> 1) ^ -(value & 1);
+			previous += delta;
+			retVal[i] = previous;
+		}
+		return retVal;
+	}
+
+}
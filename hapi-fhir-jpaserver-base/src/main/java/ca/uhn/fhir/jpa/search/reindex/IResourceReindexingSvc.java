@@ -25,14 +25,16 @@ public interface IResourceReindexingSvc {
 	/**
 	 * Marks all indexes as needing fresh indexing
 	 *
-	 * @return Returns the job ID
+	 * @return Returns the job ID (or the ID of the first job if the work is split
+	 * into several jobs, see {@link ca.uhn.fhir.jpa.dao.DaoConfig#setReindexJobPartitionCount(int)})
 	 */
 	Long markAllResourcesForReindexing();
 
 	/**
 	 * Marks all indexes of the given type as needing fresh indexing
 	 *
-	 * @return Returns the job ID
+	 * @return Returns the job ID (or the ID of the first job if the work is split
+	 * into several jobs, see {@link ca.uhn.fhir.jpa.dao.DaoConfig#setReindexJobPartitionCount(int)})
 	 */
 	Long markAllResourcesForReindexing(String theType);
 
@@ -32,18 +32,20 @@ import ca.uhn.fhir.jpa.dao.data.IResourceReindexJobDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceTableDao;
 import ca.uhn.fhir.jpa.entity.ResourceReindexJobEntity;
 import ca.uhn.fhir.jpa.model.entity.ForcedId;
+import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
 import ca.uhn.fhir.jpa.model.entity.ResourceTable;
 import ca.uhn.fhir.jpa.model.sched.ISchedulerService;
 import ca.uhn.fhir.jpa.model.sched.ScheduledJobDefinition;
 import ca.uhn.fhir.jpa.searchparam.registry.ISearchParamRegistry;
+import ca.uhn.fhir.jpa.util.ThreadPoolUtil;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceVersionConflictException;
 import ca.uhn.fhir.util.StopWatch;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.commons.lang3.time.DateUtils;
-import org.hibernate.search.util.impl.Executors;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.r4.model.InstantType;
 import org.quartz.Job;
@@ -51,6 +53,7 @@ import org.quartz.JobExecutionContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Slice;
 import org.springframework.transaction.PlatformTransactionManager;
@@ -64,9 +67,12 @@ import javax.persistence.PersistenceContext;
 import javax.persistence.PersistenceContextType;
 import javax.persistence.Query;
 import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
@@ -80,6 +86,13 @@ public class ResourceReindexingSvcImpl implements IResourceReindexingSvc {
 	private static final Date BEGINNING_OF_TIME = new Date(0);
 	private static final Logger ourLog = LoggerFactory.getLogger(ResourceReindexingSvcImpl.class);
 	private static final int PASS_SIZE = 25000;
+	/**
+	 * A server holds the lease on a job while it is performing a pass of that job, so
+	 * that other servers in the cluster work on other jobs. The lease is released at the
+	 * end of the pass, so this only matters if a server dies partway through a pass.
+	 */
+	private static final long LEASE_DURATION_MILLIS = DateUtils.MILLIS_PER_HOUR;
+	private static final long PROGRESS_LOG_INTERVAL_MILLIS = 10 * DateUtils.MILLIS_PER_SECOND;
 	private final ReentrantLock myIndexingLock = new ReentrantLock();
 	@Autowired
 	private IResourceReindexJobDao myReindexJobDao;
@@ -127,6 +140,11 @@ public class ResourceReindexingSvcImpl implements IResourceReindexingSvc {
 		myResourceTableDao = theResourceTableDao;
 	}
 
+	@VisibleForTesting
+	void setResourceHistoryTableDaoForUnitTest(IResourceHistoryTableDao theResourceHistoryTableDao) {
+		myResourceHistoryTableDao = theResourceHistoryTableDao;
+	}
+
 	@VisibleForTesting
 	void setDaoRegistryForUnitTest(DaoRegistry theDaoRegistry) {
 		myDaoRegistry = theDaoRegistry;
@@ -151,13 +169,7 @@ public class ResourceReindexingSvcImpl implements IResourceReindexingSvc {
 	private void initExecutor() {
 		// Create the threadpool executor used for reindex jobs
 		int reindexThreadCount = myDaoConfig.getReindexThreadCount();
-		RejectedExecutionHandler rejectHandler = new Executors.BlockPolicy();
-		myTaskExecutor = new ThreadPoolExecutor(0, reindexThreadCount,
-			0L, TimeUnit.MILLISECONDS,
-			new LinkedBlockingQueue<>(100),
-			myReindexingThreadFactory,
-			rejectHandler
-		);
+		myTaskExecutor = ThreadPoolUtil.newBlockingThreadPool(reindexThreadCount, 100, myReindexingThreadFactory);
 	}
 
 	@Override
@@ -178,13 +190,43 @@ public class ResourceReindexingSvcImpl implements IResourceReindexingSvc {
 			typeDesc = "(any)";
 		}
 
+		Date thresholdHigh = DateUtils.addMinutes(new Date(), 5);
+		int partitionCount = myDaoConfig.getReindexJobPartitionCount();
+		Long maxPid = null;
+		if (partitionCount > 1) {
+			maxPid = isNotBlank(theType) ? myResourceTableDao.findMaxPidOfType(theType) : myResourceTableDao.findMaxPid();
+		}
+
+		if (maxPid == null) {
+			ResourceReindexJobEntity job = createJob(theType, thresholdHigh, null, null);
+			ourLog.info("Marking all resources of type {} for reindexing - Got job ID[{}]", typeDesc, job.getId());
+			return job.getId();
+		}
+
+		/*
+		 * Split the PIDs which currently exist into ranges of roughly equal width. The first
+		 * and last jobs are open ended, so that resources created after this point (but before
+		 * the high threshold) are still covered.
+		 */
+		long width = (maxPid / partitionCount) + 1;
+		List<Long> jobIds = new ArrayList<>();
+		for (int i = 0; i < partitionCount; i++) {
+			Long pidLow = i > 0 ? (i * width) + 1 : null;
+			Long pidHigh = i < partitionCount - 1 ? (i + 1) * width : null;
+			jobIds.add(createJob(theType, thresholdHigh, pidLow, pidHigh).getId());
+		}
+
+		ourLog.info("Marking all resources of type {} for reindexing - Got job IDs {}", typeDesc, jobIds);
+		return jobIds.get(0);
+	}
+
+	private ResourceReindexJobEntity createJob(String theType, Date theThresholdHigh, Long thePidLow, Long thePidHigh) {
 		ResourceReindexJobEntity job = new ResourceReindexJobEntity();
 		job.setResourceType(theType);
-		job.setThresholdHigh(DateUtils.addMinutes(new Date(), 5));
-		job = myReindexJobDao.saveAndFlush(job);
-
-		ourLog.info("Marking all resources of type {} for reindexing - Got job ID[{}]", typeDesc, job.getId());
-		return job.getId();
+		job.setThresholdHigh(theThresholdHigh);
+		job.setPidRangeLow(thePidLow);
+		job.setPidRangeHigh(thePidHigh);
+		return myReindexJobDao.saveAndFlush(job);
 	}
 
 	@PostConstruct
@@ -192,7 +234,8 @@ public class ResourceReindexingSvcImpl implements IResourceReindexingSvc {
 		ScheduledJobDefinition jobDetail = new ScheduledJobDefinition();
 		jobDetail.setId(ResourceReindexingSvcImpl.class.getName());
 		jobDetail.setJobClass(ResourceReindexingSvcImpl.SubmitJob.class);
-		mySchedulerService.scheduleFixedDelay(10 * DateUtils.MILLIS_PER_SECOND, true, jobDetail);
+		// Not clustered, since each job is leased by one server at a time (see runReindexJobs())
+		mySchedulerService.scheduleFixedDelay(10 * DateUtils.MILLIS_PER_SECOND, false, jobDetail);
 	}
 
 	@Override
@@ -263,11 +306,45 @@ public class ResourceReindexingSvcImpl implements IResourceReindexingSvc {
 				continue;
 			}
 
-			count += runReindexJob(next);
+			Date leasedUntil = claimLease(next);
+			if (leasedUntil == null) {
+				ourLog.debug("Reindex JOB[{}] is leased by another server, skipping it", next.getId());
+				continue;
+			}
+			try {
+				count += runReindexJob(next);
+			} finally {
+				releaseLease(next, leasedUntil);
+			}
 		}
 		return count;
 	}
 
+	/**
+	 * @return Returns the expiry of the lease if it was claimed, or <code>null</code> if another server holds it
+	 */
+	private Date claimLease(ResourceReindexJobEntity theJob) {
+		Date now = new Date();
+		// Truncated so that the value we compare against on release survives databases that drop milliseconds
+		Date leasedUntil = DateUtils.truncate(DateUtils.addMilliseconds(now, (int) LEASE_DURATION_MILLIS), Calendar.SECOND);
+		Integer claimed = myTxTemplate.execute(t -> myReindexJobDao.claimLease(theJob.getId(), now, leasedUntil));
+		if (claimed != null && claimed > 0) {
+			return leasedUntil;
+		}
+		return null;
+	}
+
+	/**
+	 * Only releases the lease we claimed - if our lease expired and another server has since
+	 * claimed the job, its lease is left alone
+	 */
+	private void releaseLease(ResourceReindexJobEntity theJob, Date theLeasedUntil) {
+		Integer released = myTxTemplate.execute(t -> myReindexJobDao.releaseLease(theJob.getId(), theLeasedUntil));
+		if (released == null || released == 0) {
+			ourLog.warn("Lease on reindex JOB[{}] expired before the pass completed, and was not released", theJob.getId());
+		}
+	}
+
 	@Override
 	public int countReindexJobs() {
 		return getResourceReindexJobEntities().size();
@@ -299,7 +376,7 @@ public class ResourceReindexingSvcImpl implements IResourceReindexingSvc {
 			}
 		}
 
-		ourLog.info("Performing reindex pass for JOB[{}]", theJob.getId());
+		ourLog.info("Performing reindex pass for JOB[{}]", theJob);
 		StopWatch sw = new StopWatch();
 		AtomicInteger counter = new AtomicInteger();
 
@@ -321,6 +398,15 @@ public class ResourceReindexingSvcImpl implements IResourceReindexingSvc {
 		StopWatch pageSw = new StopWatch();
 		Slice<Long> range = myTxTemplate.execute(t -> {
 			PageRequest page = PageRequest.of(0, PASS_SIZE);
+			if (theJob.hasPidRange()) {
+				Long pidLow = theJob.getPidRangeLow() != null ? theJob.getPidRangeLow() : Long.MIN_VALUE;
+				Long pidHigh = theJob.getPidRangeHigh() != null ? theJob.getPidRangeHigh() : Long.MAX_VALUE;
+				if (isNotBlank(theJob.getResourceType())) {
+					return myResourceTableDao.findIdsOfResourcesWithinUpdatedAndPidRangeOrderedFromOldest(page, theJob.getResourceType(), low, high, pidLow, pidHigh);
+				} else {
+					return myResourceTableDao.findIdsOfResourcesWithinUpdatedAndPidRangeOrderedFromOldest(page, low, high, pidLow, pidHigh);
+				}
+			}
 			if (isNotBlank(theJob.getResourceType())) {
 				return myResourceTableDao.findIdsOfResourcesWithinUpdatedRangeOrderedFromOldest(page, theJob.getResourceType(), low, high);
 			} else {
@@ -337,13 +423,14 @@ public class ResourceReindexingSvcImpl implements IResourceReindexingSvc {
 			return 0;
 		}
 
-		// Submit each resource requiring reindexing
-		List<Future<Date>> futures = range
+		// Submit the resources requiring reindexing in chunks, each of which is reindexed in a single transaction
+		List<Future<Date>> futures = Lists.partition(range.getContent(), myDaoConfig.getReindexChunkSize())
 			.stream()
-			.map(t -> myTaskExecutor.submit(new ResourceReindexingTask(t, counter)))
+			.map(t -> myTaskExecutor.submit(new ResourceReindexingChunkTask(new ArrayList<>(t), counter)))
 			.collect(Collectors.toList());
 
 		Date latestDate = null;
+		StopWatch progressSw = new StopWatch();
 		for (Future<Date> next : futures) {
 			Date nextDate;
 			try {
@@ -363,6 +450,12 @@ public class ResourceReindexingSvcImpl implements IResourceReindexingSvc {
 					latestDate = new Date(nextDate.getTime());
 				}
 			}
+
+			if (progressSw.getMillis() >= PROGRESS_LOG_INTERVAL_MILLIS) {
+				int completed = counter.get();
+				ourLog.info("Reindex JOB[{}] has indexed {} / {} resources in this pass ({} / sec) - ETA {}", theJob.getId(), completed, count, sw.formatThroughput(completed, TimeUnit.SECONDS), sw.getEstimatedTimeRemaining(completed, count));
+				progressSw.restart();
+			}
 		}
 
 		Validate.notNull(latestDate);
@@ -380,27 +473,32 @@ public class ResourceReindexingSvcImpl implements IResourceReindexingSvc {
 			newLow = latestDate;
 		}
 
-		myTxTemplate.execute(t -> {
+		Integer totalCount = myTxTemplate.execute(t -> {
 			myReindexJobDao.setThresholdLow(theJob.getId(), newLow);
 			Integer existingCount = myReindexJobDao.getReindexCount(theJob.getId()).orElse(0);
 			int newCount = existingCount + counter.get();
 			myReindexJobDao.setReindexCount(theJob.getId(), newCount);
-			return null;
+			return newCount;
 		});
 
-		ourLog.info("Completed pass of reindex JOB[{}] - Indexed {} resources in {} ({} / sec) - Have indexed until: {}", theJob.getId(), count, sw.toString(), sw.formatThroughput(count, TimeUnit.SECONDS), new InstantType(newLow));
+		ourLog.info("Completed pass of reindex JOB[{}] - Indexed {} resources in {} ({} / sec) - Have indexed {} resources in total for this job, until: {}", theJob.getId(), count, sw.toString(), sw.formatThroughput(count, TimeUnit.SECONDS), totalCount, new InstantType(newLow));
 		return counter.get();
 	}
 
 	private void expungeJobsMarkedAsDeleted() {
-		myTxTemplate.execute(t -> {
-			Collection<ResourceReindexJobEntity> toDelete = myReindexJobDao.findAll(PageRequest.of(0, 10), true);
-			toDelete.forEach(job -> {
-				ourLog.info("Purging deleted job[{}]", job.getId());
-				myReindexJobDao.deleteById(job.getId());
+		try {
+			myTxTemplate.execute(t -> {
+				Collection<ResourceReindexJobEntity> toDelete = myReindexJobDao.findAll(PageRequest.of(0, 10), true);
+				toDelete.forEach(job -> {
+					ourLog.info("Purging deleted job[{}]", job.getId());
+					myReindexJobDao.deleteById(job.getId());
+				});
+				return null;
 			});
-			return null;
-		});
+		} catch (DataAccessException | ResourceVersionConflictException e) {
+			// Every server purges deleted jobs, so another one may have purged the same job at the same time
+			ourLog.info("Failed to purge deleted reindex jobs, will try again later: {}", e.toString());
+		}
 	}
 
 	private void markResourceAsIndexingFailed(final long theId) {
@@ -455,6 +553,111 @@ public class ResourceReindexingSvcImpl implements IResourceReindexingSvc {
 		});
 	}
 
+	@SuppressWarnings("unchecked")
+	private <T extends IBaseResource> void doReindex(ResourceTable theResourceTable, T theResource) {
+		RuntimeResourceDefinition resourceDefinition = myContext.getResourceDefinition(theResource.getClass());
+		Class<T> resourceClass = (Class<T>) resourceDefinition.getImplementingClass();
+		final IFhirResourceDao<T> dao = myDaoRegistry.getResourceDao(resourceClass);
+		dao.reindex(theResource, theResourceTable);
+	}
+
+	/**
+	 * Reindexes a single resource. Must be called inside a transaction.
+	 */
+	private void reindexResource(ResourceTable theResourceTable) {
+		/*
+		 * This part is because from HAPI 1.5 - 1.6 we changed the format of forced ID to be "type/id" instead of just "id"
+		 */
+		ForcedId forcedId = theResourceTable.getForcedId();
+		if (forcedId != null) {
+			if (isBlank(forcedId.getResourceType())) {
+				ourLog.info("Updating resource {} forcedId type to {}", forcedId.getForcedId(), theResourceTable.getResourceType());
+				forcedId.setResourceType(theResourceTable.getResourceType());
+				myForcedIdDao.save(forcedId);
+			}
+		}
+
+		IFhirResourceDao<?> dao = myDaoRegistry.getResourceDao(theResourceTable.getResourceType());
+		long expectedVersion = theResourceTable.getVersion();
+		IBaseResource resource = dao.read(theResourceTable.getIdDt().toVersionless(), null, true);
+		if (resource == null) {
+			throw new InternalErrorException("Could not find resource version " + theResourceTable.getIdDt().toUnqualified().getValue() + " in database");
+		}
+
+		Long actualVersion = resource.getIdElement().getVersionIdPartAsLong();
+		if (actualVersion < expectedVersion) {
+			ourLog.warn("Resource {} version {} does not exist, renumbering version {}", resource.getIdElement().toUnqualifiedVersionless().getValue(), resource.getIdElement().getVersionIdPart(), expectedVersion);
+			myResourceHistoryTableDao.updateVersion(theResourceTable.getId(), actualVersion, expectedVersion);
+		}
+
+		doReindex(theResourceTable, resource);
+	}
+
+	/**
+	 * Reindexes a chunk of resources in a single transaction. The resources and their
+	 * current versions are loaded up front using one query each, instead of one
+	 * query per resource. If anything fails the whole chunk is rolled back and
+	 * each resource is reindexed individually using {@link ResourceReindexingTask}, so that
+	 * only the resources which actually fail are marked as failed.
+	 */
+	private class ResourceReindexingChunkTask implements Callable<Date> {
+		private final List<Long> myIds;
+		private final AtomicInteger myCounter;
+		private int myReindexedCount;
+
+		ResourceReindexingChunkTask(List<Long> theIds, AtomicInteger theCounter) {
+			myIds = theIds;
+			myCounter = theCounter;
+		}
+
+		@Override
+		public Date call() {
+			if (myIds.size() == 1) {
+				return new ResourceReindexingTask(myIds.get(0), myCounter).call();
+			}
+
+			Date retVal;
+			try {
+				retVal = myTxTemplate.execute(t -> reindexChunk());
+				myCounter.addAndGet(myReindexedCount);
+				return retVal;
+			} catch (Exception e) {
+				ourLog.info("Failed to reindex chunk of {} resources, reindexing them individually: {}", myIds.size(), e.toString());
+			}
+
+			retVal = null;
+			for (Long next : myIds) {
+				Date updated = new ResourceReindexingTask(next, myCounter).call();
+				if (updated != null && (retVal == null || retVal.before(updated))) {
+					retVal = updated;
+				}
+			}
+			return retVal;
+		}
+
+		private Date reindexChunk() {
+			List<ResourceTable> resourceTables = myResourceTableDao.findByIdsAndFetchForcedId(myIds);
+			Map<Long, ResourceHistoryTable> currentVersions = myResourceHistoryTableDao
+				.findByResourceIdsAndFetchProvenance(myIds)
+				.stream()
+				.collect(Collectors.toMap(ResourceHistoryTable::getResourceId, t -> t));
+
+			Date retVal = null;
+			for (ResourceTable next : resourceTables) {
+				Date updated = next.getUpdatedDate();
+				if (retVal == null || retVal.before(updated)) {
+					retVal = updated;
+				}
+
+				next.setCurrentVersionEntity(currentVersions.get(next.getId()));
+				reindexResource(next);
+			}
+
+			myReindexedCount = resourceTables.size();
+			return retVal;
+		}
+	}
+
 	private class ResourceReindexingTask implements Callable<Date> {
 		private final Long myNextId;
 		private final AtomicInteger myCounter;
@@ -465,17 +668,6 @@ public class ResourceReindexingSvcImpl implements IResourceReindexingSvc {
 			myCounter = theCounter;
 		}
 
-
-		@SuppressWarnings("unchecked")
-		private <T extends IBaseResource> void doReindex(ResourceTable theResourceTable, T theResource) {
-			RuntimeResourceDefinition resourceDefinition = myContext.getResourceDefinition(theResource.getClass());
-			Class<T> resourceClass = (Class<T>) resourceDefinition.getImplementingClass();
-			final IFhirResourceDao<T> dao = myDaoRegistry.getResourceDao(resourceClass);
-			dao.reindex(theResource, theResourceTable);
-
-			myCounter.incrementAndGet();
-		}
-
 		@Override
 		public Date call() {
 			Throwable reindexFailure;
@@ -485,32 +677,8 @@ public class ResourceReindexingSvcImpl implements IResourceReindexingSvc {
 					myUpdated = resourceTable.getUpdatedDate();
 
 					try {
-						/*
-						 * This part is because from HAPI 1.5 - 1.6 we changed the format of forced ID to be "type/id" instead of just "id"
-						 */
-						ForcedId forcedId = resourceTable.getForcedId();
-						if (forcedId != null) {
-							if (isBlank(forcedId.getResourceType())) {
-								ourLog.info("Updating resource {} forcedId type to {}", forcedId.getForcedId(), resourceTable.getResourceType());
-								forcedId.setResourceType(resourceTable.getResourceType());
-								myForcedIdDao.save(forcedId);
-							}
-						}
-
-						IFhirResourceDao<?> dao = myDaoRegistry.getResourceDao(resourceTable.getResourceType());
-						long expectedVersion = resourceTable.getVersion();
-						IBaseResource resource = dao.read(resourceTable.getIdDt().toVersionless(), null, true);
-						if (resource == null) {
-							throw new InternalErrorException("Could not find resource version " + resourceTable.getIdDt().toUnqualified().getValue() + " in database");
-						}
-
-						Long actualVersion = resource.getIdElement().getVersionIdPartAsLong();
-						if (actualVersion < expectedVersion) {
-							ourLog.warn("Resource {} version {} does not exist, renumbering version {}", resource.getIdElement().toUnqualifiedVersionless().getValue(), resource.getIdElement().getVersionIdPart(), expectedVersion);
-							myResourceHistoryTableDao.updateVersion(resourceTable.getId(), actualVersion, expectedVersion);
-						}
-
-						doReindex(resourceTable, resource);
+						reindexResource(resourceTable);
+						myCounter.incrementAndGet();
 						return null;
 
 					} catch (Exception e) {
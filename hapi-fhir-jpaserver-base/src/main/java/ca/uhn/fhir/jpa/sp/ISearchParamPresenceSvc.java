@@ -27,6 +27,12 @@ import java.util.Map;
 
 public interface ISearchParamPresenceSvc {
 
-	AddRemoveCount updatePresence(ResourceTable theResource, Map<String, Boolean> theParamNameToPresence);
+	/**
+	 * @param theResource              The resource
+	 * @param theParamNameToPresence   The search parameters whose presence should be stored for the resource
+	 * @param theResourceIsNew         Was the resource created in the current transaction? If so, it can't
+	 *                                 already have any stored entries, so they aren't looked up
+	 */
+	AddRemoveCount updatePresence(ResourceTable theResource, Map<String, Boolean> theParamNameToPresence, boolean theResourceIsNew);
 
 }
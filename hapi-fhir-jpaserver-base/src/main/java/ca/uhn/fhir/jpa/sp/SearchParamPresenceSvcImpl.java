@@ -41,7 +41,7 @@ public class SearchParamPresenceSvcImpl implements ISearchParamPresenceSvc {
 	private DaoConfig myDaoConfig;
 
 	@Override
-	public AddRemoveCount updatePresence(ResourceTable theResource, Map<String, Boolean> theParamNameToPresence) {
+	public AddRemoveCount updatePresence(ResourceTable theResource, Map<String, Boolean> theParamNameToPresence, boolean theResourceIsNew) {
 		AddRemoveCount retVal = new AddRemoveCount();
 		if (myDaoConfig.getIndexMissingFields() == DaoConfig.IndexEnabledEnum.DISABLED) {
 			return retVal;
@@ -51,7 +51,11 @@ public class SearchParamPresenceSvcImpl implements ISearchParamPresenceSvc {
 
 		// Find existing entries
 		Collection<SearchParamPresent> existing;
-		existing = mySearchParamPresentDao.findAllForResource(theResource);
+		if (theResourceIsNew) {
+			existing = Collections.emptyList();
+		} else {
+			existing = mySearchParamPresentDao.findAllForResource(theResource);
+		}
 		Map<Long, SearchParamPresent> existingHashToPresence = new HashMap<>();
 		for (SearchParamPresent nextExistingEntity : existing) {
 			existingHashToPresence.put(nextExistingEntity.getHashPresence(), nextExistingEntity);
@@ -89,7 +93,7 @@ public class SearchParamPresenceSvcImpl implements ISearchParamPresenceSvc {
 			}
 		}
 		mySearchParamPresentDao.saveAll(toAdd);
-		retVal.addToRemoveCount(toAdd.size());
+		retVal.addToAddCount(toAdd.size());
 
 		return retVal;
 	}
@@ -0,0 +1,173 @@
+package ca.uhn.fhir.jpa.util;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.commons.lang3.Validate;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * A growable list of <code>long</code> values which stores them in a primitive
+ * array instead of as individual {@link Long} objects. This is used for lists of
+ * resource PIDs that can grow very large (e.g. the results of a search), where an
+ * {@link java.util.ArrayList} would need a separate object for every PID.
+ * <p>
+ * This class implements {@link java.util.List} so that it can be passed to code
+ * expecting a list of PIDs, but values are only boxed as they are read. Null values
+ * are not supported.
+ * </p>
+ */
+public class LongArrayList extends AbstractList<Long> implements RandomAccess {
+
+	private static final int DEFAULT_CAPACITY = 16;
+	private long[] myValues;
+	private int mySize;
+
+	/**
+	 * Constructor
+	 */
+	public LongArrayList() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor
+	 */
+	public LongArrayList(int theInitialCapacity) {
+		Validate.isTrue(theInitialCapacity >= 0, "Capacity must not be negative");
+		myValues = new long[theInitialCapacity];
+	}
+
+	/**
+	 * Constructor
+	 */
+	public LongArrayList(Collection<Long> theValues) {
+		this(theValues.size());
+		addAll(theValues);
+	}
+
+	public long getLong(int theIndex) {
+		checkIndex(theIndex, mySize);
+		return myValues[theIndex];
+	}
+
+	public void addLong(long theValue) {
+		ensureCapacity(mySize + 1);
+		myValues[mySize++] = theValue;
+		modCount++;
+	}
+
+	@Override
+	public Long get(int theIndex) {
+		return getLong(theIndex);
+	}
+
+	@Override
+	public Long set(int theIndex, Long theValue) {
+		checkIndex(theIndex, mySize);
+		long retVal = myValues[theIndex];
+		myValues[theIndex] = theValue;
+		return retVal;
+	}
+
+	@Override
+	public boolean add(Long theValue) {
+		addLong(theValue);
+		return true;
+	}
+
+	@Override
+	public void add(int theIndex, Long theValue) {
+		if (theIndex < 0 || theIndex > mySize) {
+			throw new IndexOutOfBoundsException("Index: " + theIndex + ", Size: " + mySize);
+		}
+		long value = theValue;
+		ensureCapacity(mySize + 1);
+		System.arraycopy(myValues, theIndex, myValues, theIndex + 1, mySize - theIndex);
+		myValues[theIndex] = value;
+		mySize++;
+		modCount++;
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends Long> theValues) {
+		if (theValues.isEmpty()) {
+			return false;
+		}
+		ensureCapacity(mySize + theValues.size());
+		if (theValues instanceof LongArrayList) {
+			LongArrayList values = (LongArrayList) theValues;
+			System.arraycopy(values.myValues, 0, myValues, mySize, values.mySize);
+			mySize += values.mySize;
+		} else {
+			for (Long next : theValues) {
+				myValues[mySize++] = next;
+			}
+		}
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public Long remove(int theIndex) {
+		checkIndex(theIndex, mySize);
+		long retVal = myValues[theIndex];
+		System.arraycopy(myValues, theIndex + 1, myValues, theIndex, mySize - theIndex - 1);
+		mySize--;
+		modCount++;
+		return retVal;
+	}
+
+	@Override
+	public void clear() {
+		mySize = 0;
+		modCount++;
+	}
+
+	@Override
+	public int size() {
+		return mySize;
+	}
+
+	/**
+	 * Returns a copy of the values in this list
+	 */
+	public long[] toLongArray() {
+		return Arrays.copyOf(myValues, mySize);
+	}
+
+	private void ensureCapacity(int theCapacity) {
+		if (theCapacity > myValues.length) {
+			int newCapacity = Math.max(theCapacity, myValues.length + (myValues.length >> 1) + 1);
+			myValues = Arrays.copyOf(myValues, newCapacity);
+		}
+	}
+
+	private static void checkIndex(int theIndex, int theSize) {
+		if (theIndex < 0 || theIndex >= theSize) {
+			throw new IndexOutOfBoundsException("Index: " + theIndex + ", Size: " + theSize);
+		}
+	}
+
+}
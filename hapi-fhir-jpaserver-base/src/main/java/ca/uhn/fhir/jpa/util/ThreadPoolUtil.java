@@ -0,0 +1,65 @@
+package ca.uhn.fhir.jpa.util;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.util.CoverageIgnore;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.time.DateUtils;
+import org.hibernate.search.util.impl.Executors;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class ThreadPoolUtil {
+
+	/**
+	 * Non instantiable
+	 */
+	@CoverageIgnore
+	private ThreadPoolUtil() {
+		// nothing
+	}
+
+	/**
+	 * Creates a fixed size thread pool for background work such as reindexing and bulk
+	 * import/export. Submitting work blocks the caller once the queue is full.
+	 * <p>
+	 * A {@link ThreadPoolExecutor} only starts threads beyond its core size once its queue
+	 * is full, so all of the threads here are core threads. Otherwise work would run on a
+	 * single thread until the queue filled up. Core threads are allowed to time out after
+	 * a minute, so an idle pool holds no threads.
+	 * </p>
+	 */
+	public static ThreadPoolExecutor newBlockingThreadPool(int theThreadCount, int theQueueSize, ThreadFactory theThreadFactory) {
+		Validate.isTrue(theThreadCount > 0, "Thread count must be positive");
+		ThreadPoolExecutor retVal = new ThreadPoolExecutor(theThreadCount, theThreadCount,
+			DateUtils.MILLIS_PER_MINUTE, TimeUnit.MILLISECONDS,
+			new LinkedBlockingQueue<>(theQueueSize),
+			theThreadFactory,
+			new Executors.BlockPolicy()
+		);
+		retVal.allowCoreThreadTimeOut(true);
+		return retVal;
+	}
+
+}
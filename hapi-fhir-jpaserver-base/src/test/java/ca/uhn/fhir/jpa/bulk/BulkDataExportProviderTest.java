@@ -217,6 +217,32 @@ public class BulkDataExportProviderTest {
 
 	}
 
+	@Test
+	public void testPollForStatus_COMPLETED_BinaryStorage() throws IOException {
+
+		IBulkDataExportSvc.JobInfo jobInfo = new IBulkDataExportSvc.JobInfo()
+			.setJobId(A_JOB_ID)
+			.setStatus(BulkJobStatusEnum.COMPLETE)
+			.setStatusTime(InstantType.now().getValue());
+		jobInfo.addFile().setResourceType("Patient").setResourceId(new IdType("Binary/111")).setBlobId("ABC");
+		when(myBulkDataExportSvc.getJobStatusOrThrowResourceNotFound(eq(A_JOB_ID))).thenReturn(jobInfo);
+
+		String url = "http://localhost:" + myPort + "/" + JpaConstants.OPERATION_EXPORT_POLL_STATUS + "?" +
+			JpaConstants.PARAM_EXPORT_POLL_STATUS_JOB_ID + "=" + A_JOB_ID;
+		HttpGet get = new HttpGet(url);
+		get.addHeader(Constants.HEADER_PREFER, Constants.HEADER_PREFER_RESPOND_ASYNC);
+		try (CloseableHttpResponse response = myClient.execute(get)) {
+			assertEquals(200, response.getStatusLine().getStatusCode());
+
+			String responseContent = IOUtils.toString(response.getEntity().getContent(), Charsets.UTF_8);
+			ourLog.info("Response content: {}", responseContent);
+			BulkExportResponseJson responseJson = JsonUtil.deserialize(responseContent, BulkExportResponseJson.class);
+			assertEquals(1, responseJson.getOutput().size());
+			assertEquals("http://localhost:" + myPort + "/Binary/111/$binary-access-read", responseJson.getOutput().get(0).getUrl());
+		}
+
+	}
+
 	@Test
 	public void testPollForStatus_Gone() throws IOException {
 
@@ -1,5 +1,9 @@
 package ca.uhn.fhir.jpa.bulk;
 
+import ca.uhn.fhir.interceptor.api.IAnonymousInterceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.binstore.IBinaryStorageSvc;
+import ca.uhn.fhir.jpa.dao.DaoConfig;
 import ca.uhn.fhir.jpa.dao.data.IBulkExportCollectionDao;
 import ca.uhn.fhir.jpa.dao.data.IBulkExportCollectionFileDao;
 import ca.uhn.fhir.jpa.dao.data.IBulkExportJobDao;
@@ -7,27 +11,47 @@ import ca.uhn.fhir.jpa.dao.r4.BaseJpaR4Test;
 import ca.uhn.fhir.jpa.entity.BulkExportCollectionEntity;
 import ca.uhn.fhir.jpa.entity.BulkExportCollectionFileEntity;
 import ca.uhn.fhir.jpa.entity.BulkExportJobEntity;
+import ca.uhn.fhir.jpa.model.util.JpaConstants;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.test.utilities.UnregisterScheduledProcessor;
 import com.google.common.base.Charsets;
 import com.google.common.collect.Sets;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.time.DateUtils;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.hl7.fhir.r4.model.Binary;
+import org.hl7.fhir.r4.model.IdType;
 import org.hl7.fhir.r4.model.InstantType;
 import org.hl7.fhir.r4.model.Observation;
 import org.hl7.fhir.r4.model.Patient;
+import org.junit.After;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.AopTestUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 
 import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.Assert.*;
 
 @TestPropertySource(properties = {
@@ -44,7 +68,20 @@ public class BulkDataExportSvcImplR4Test extends BaseJpaR4Test {
 	private IBulkExportCollectionFileDao myBulkExportCollectionFileDao;
 	@Autowired
 	private IBulkDataExportSvc myBulkDataExportSvc;
+	@Autowired
+	private IBinaryStorageSvc myBinaryStorageSvc;
+
 
+	@After
+	public void after() {
+		myDaoConfig.setBulkExportPartitionSize(new DaoConfig().getBulkExportPartitionSize());
+		myDaoConfig.setBulkExportFileMaximumResourceCount(new DaoConfig().getBulkExportFileMaximumResourceCount());
+		myDaoConfig.setBulkExportUseBinaryStorage(new DaoConfig().isBulkExportUseBinaryStorage());
+		myDaoConfig.setBulkExportGzipEnabled(new DaoConfig().isBulkExportGzipEnabled());
+		if (getExportSvcImpl().getThreadCountForUnitTest() != myDaoConfig.getBulkExportThreadCount()) {
+			getExportSvcImpl().setThreadCountForUnitTest(myDaoConfig.getBulkExportThreadCount());
+		}
+	}
 
 	@Test
 	public void testPurgeExpiredJobs() {
@@ -99,6 +136,40 @@ public class BulkDataExportSvcImplR4Test extends BaseJpaR4Test {
 
 	}
 
+	@Test
+	public void testPurgeExpiredJobsExpungesBlobs() throws IOException {
+		myDaoConfig.setBulkExportUseBinaryStorage(true);
+
+		// Create some resources to load
+		createResources();
+
+		// Create a bulk job and build the export
+		IBulkDataExportSvc.JobInfo jobDetails = myBulkDataExportSvc.submitJob(null, Sets.newHashSet("Patient"), null, null);
+		myBulkDataExportSvc.buildExportFiles();
+
+		IBulkDataExportSvc.JobInfo status = myBulkDataExportSvc.getJobStatusOrThrowResourceNotFound(jobDetails.getJobId());
+		assertEquals(BulkJobStatusEnum.COMPLETE, status.getStatus());
+		assertEquals(1, status.getFiles().size());
+		IBulkDataExportSvc.FileEntry file = status.getFiles().get(0);
+		assertNotNull(file.getBlobId());
+		assertTrue(myBinaryStorageSvc.writeBlob(file.getResourceId(), file.getBlobId(), new ByteArrayOutputStream()));
+
+		// Expire the job
+		runInTransaction(() -> {
+			BulkExportJobEntity job = myBulkExportJobDao.findByJobId(jobDetails.getJobId()).orElseThrow(IllegalStateException::new);
+			job.setExpiry(DateUtils.addHours(new Date(), -1));
+			myBulkExportJobDao.save(job);
+		});
+
+		// Run a purge pass
+		myBulkDataExportSvc.purgeExpiredFiles();
+
+		// Check that the stored blob was deleted along with the Binary
+		runInTransaction(() -> assertEquals(0, myBulkExportCollectionFileDao.count()));
+		assertNull(myBinaryStorageSvc.fetchBlobDetails(file.getResourceId(), file.getBlobId()));
+		assertFalse(myBinaryStorageSvc.writeBlob(file.getResourceId(), file.getBlobId(), new ByteArrayOutputStream()));
+	}
+
 	@Test
 	public void testCreateBulkLoad_InvalidOutputFormat() {
 		try {
@@ -289,6 +360,145 @@ public class BulkDataExportSvcImplR4Test extends BaseJpaR4Test {
 		}
 	}
 
+	@Test
+	public void testSubmit_MultiplePartitions() {
+		getExportSvcImpl().setThreadCountForUnitTest(2);
+		myDaoConfig.setBulkExportPartitionSize(3);
+
+		// Create some resources to load
+		createResources();
+		myObservationDao.delete(new IdType("Observation/OBS5"));
+
+		// Each export file waits until two partitions are being exported, which only happens if they run on separate threads
+		CountDownLatch twoPartitionsStarted = new CountDownLatch(2);
+		Set<String> threadNames = Collections.synchronizedSet(new HashSet<>());
+		List<Boolean> overlapped = Collections.synchronizedList(new ArrayList<>());
+		IAnonymousInterceptor interceptor = (thePointcut, theArgs) -> {
+			if (!Thread.currentThread().getName().startsWith("BulkExport-")) {
+				return;
+			}
+			if (threadNames.add(Thread.currentThread().getName())) {
+				twoPartitionsStarted.countDown();
+			}
+			try {
+				overlapped.add(twoPartitionsStarted.await(10, TimeUnit.SECONDS));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		};
+		myInterceptorRegistry.registerAnonymousInterceptor(Pointcut.STORAGE_PRESTORAGE_RESOURCE_CREATED, interceptor);
+
+		// Create a bulk job
+		IBulkDataExportSvc.JobInfo jobDetails = myBulkDataExportSvc.submitJob(null, Sets.newHashSet("Patient", "Observation"), null, null);
+
+		// Run a scheduled pass to build the export
+		myBulkDataExportSvc.buildExportFiles();
+
+		IBulkDataExportSvc.JobInfo status = myBulkDataExportSvc.getJobStatusOrThrowResourceNotFound(jobDetails.getJobId());
+		assertEquals(BulkJobStatusEnum.COMPLETE, status.getStatus());
+		assertEquals(4 + 3, status.getFiles().size());
+
+		// Every resource is exported exactly once
+		List<String> observationIds = new ArrayList<>();
+		List<String> patientIds = new ArrayList<>();
+		for (IBulkDataExportSvc.FileEntry next : status.getFiles()) {
+			Binary nextBinary = myBinaryDao.read(next.getResourceId());
+			String nextContents = new String(nextBinary.getContent(), Constants.CHARSET_UTF8);
+			for (String nextLine : nextContents.split("\n")) {
+				IIdType nextId = myFhirCtx.newJsonParser().parseResource(nextLine).getIdElement().toUnqualifiedVersionless();
+				if ("Observation".equals(next.getResourceType())) {
+					observationIds.add(nextId.getValue());
+				} else {
+					patientIds.add(nextId.getValue());
+				}
+			}
+		}
+		assertThat(observationIds, containsInAnyOrder("Observation/OBS0", "Observation/OBS1", "Observation/OBS2", "Observation/OBS3", "Observation/OBS4", "Observation/OBS6", "Observation/OBS7", "Observation/OBS8", "Observation/OBS9"));
+		assertEquals(10, patientIds.size());
+		assertEquals(10, new HashSet<>(patientIds).size());
+
+		// Partitions were exported at the same time
+		assertEquals(2, threadNames.size());
+		assertEquals(4 + 3, overlapped.size());
+		assertThat(overlapped, everyItem(equalTo(true)));
+	}
+
+	@Test
+	public void testSubmit_MaximumResourceCountPerFile() {
+		myDaoConfig.setBulkExportFileMaximumResourceCount(4);
+
+		// Create some resources to load
+		createResources();
+
+		// Create a bulk job
+		IBulkDataExportSvc.JobInfo jobDetails = myBulkDataExportSvc.submitJob(null, Sets.newHashSet("Observation"), null, null);
+
+		// Run a scheduled pass to build the export
+		myBulkDataExportSvc.buildExportFiles();
+
+		IBulkDataExportSvc.JobInfo status = myBulkDataExportSvc.getJobStatusOrThrowResourceNotFound(jobDetails.getJobId());
+		assertEquals(BulkJobStatusEnum.COMPLETE, status.getStatus());
+
+		List<Integer> lineCounts = new ArrayList<>();
+		for (IBulkDataExportSvc.FileEntry next : status.getFiles()) {
+			assertNull(next.getBlobId());
+			Binary nextBinary = myBinaryDao.read(next.getResourceId());
+			assertEquals(Constants.CT_FHIR_NDJSON, nextBinary.getContentType());
+			String nextContents = new String(nextBinary.getContent(), Constants.CHARSET_UTF8);
+			lineCounts.add(nextContents.split("\n").length);
+		}
+		assertThat(lineCounts, containsInAnyOrder(4, 4, 2));
+	}
+
+	@Test
+	public void testSubmit_StreamToBinaryStorageWithGzip() throws IOException {
+		myDaoConfig.setBulkExportUseBinaryStorage(true);
+		myDaoConfig.setBulkExportGzipEnabled(true);
+		myDaoConfig.setBulkExportFileMaximumResourceCount(4);
+
+		// Create some resources to load
+		createResources();
+
+		// Create a bulk job
+		IBulkDataExportSvc.JobInfo jobDetails = myBulkDataExportSvc.submitJob(null, Sets.newHashSet("Patient", "Observation"), null, null);
+
+		// Run a scheduled pass to build the export
+		myBulkDataExportSvc.buildExportFiles();
+
+		IBulkDataExportSvc.JobInfo status = myBulkDataExportSvc.getJobStatusOrThrowResourceNotFound(jobDetails.getJobId());
+		assertEquals(BulkJobStatusEnum.COMPLETE, status.getStatus());
+		assertEquals(3 + 3, status.getFiles().size());
+
+		List<String> observationIds = new ArrayList<>();
+		for (IBulkDataExportSvc.FileEntry next : status.getFiles()) {
+			assertNotNull(next.getBlobId());
+
+			// The file contents aren't stored in the Binary resource itself
+			Binary nextBinary = myBinaryDao.read(next.getResourceId());
+			assertEquals("application/gzip", nextBinary.getContentType());
+			assertNull(nextBinary.getContent());
+			assertEquals(next.getBlobId(), nextBinary.getDataElement().getExtensionString(JpaConstants.EXT_EXTERNALIZED_BINARY_ID));
+
+			ByteArrayOutputStream blob = new ByteArrayOutputStream();
+			assertTrue(myBinaryStorageSvc.writeBlob(next.getResourceId(), next.getBlobId(), blob));
+			String nextContents = IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(blob.toByteArray())), Constants.CHARSET_UTF8);
+			ourLog.info("Next contents for type {}:\n{}", next.getResourceType(), nextContents);
+
+			String[] lines = nextContents.split("\n");
+			assertThat(lines.length, lessThanOrEqualTo(4));
+			if ("Observation".equals(next.getResourceType())) {
+				for (String nextLine : lines) {
+					observationIds.add(myFhirCtx.newJsonParser().parseResource(nextLine).getIdElement().toUnqualifiedVersionless().getValue());
+				}
+			}
+		}
+		assertThat(observationIds, containsInAnyOrder("Observation/OBS0", "Observation/OBS1", "Observation/OBS2", "Observation/OBS3", "Observation/OBS4", "Observation/OBS5", "Observation/OBS6", "Observation/OBS7", "Observation/OBS8", "Observation/OBS9"));
+	}
+
+	private BulkDataExportSvcImpl getExportSvcImpl() {
+		return AopTestUtils.getTargetObject(myBulkDataExportSvc);
+	}
+
 	private void createResources() {
 		for (int i = 0; i < 10; i++) {
 			Patient patient = new Patient();
@@ -0,0 +1,211 @@
+package ca.uhn.fhir.jpa.bulk;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.model.util.JpaConstants;
+import ca.uhn.fhir.jpa.util.JsonUtil;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.client.apache.ResourceEntity;
+import ca.uhn.fhir.rest.server.RestfulServer;
+import ca.uhn.fhir.test.utilities.JettyUtil;
+import com.google.common.base.Charsets;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.hl7.fhir.r4.model.InstantType;
+import org.hl7.fhir.r4.model.Parameters;
+import org.hl7.fhir.r4.model.StringType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BulkDataImportProviderTest {
+
+	private static final String A_JOB_ID = "0000000-AAAAAA";
+	private static final Logger ourLog = LoggerFactory.getLogger(BulkDataImportProviderTest.class);
+	private Server myServer;
+	private FhirContext myCtx = FhirContext.forR4();
+	private int myPort;
+	@Mock
+	private IBulkDataImportSvc myBulkDataImportSvc;
+	private CloseableHttpClient myClient;
+	@Captor
+	private ArgumentCaptor<List<String>> myInputUrlsCaptor;
+
+	@After
+	public void after() throws Exception {
+		JettyUtil.closeServer(myServer);
+		myClient.close();
+	}
+
+	@Before
+	public void start() throws Exception {
+		myServer = new Server(0);
+
+		BulkDataImportProvider provider = new BulkDataImportProvider();
+		provider.setBulkDataImportSvcForUnitTests(myBulkDataImportSvc);
+		provider.setFhirContextForUnitTest(myCtx);
+
+		ServletHandler proxyHandler = new ServletHandler();
+		RestfulServer servlet = new RestfulServer(myCtx);
+		servlet.registerProvider(provider);
+		ServletHolder servletHolder = new ServletHolder(servlet);
+		proxyHandler.addServletWithMapping(servletHolder, "/*");
+		myServer.setHandler(proxyHandler);
+		JettyUtil.startServer(myServer);
+		myPort = JettyUtil.getPortForStartedServer(myServer);
+
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(5000, TimeUnit.MILLISECONDS);
+		HttpClientBuilder builder = HttpClientBuilder.create();
+		builder.setConnectionManager(connectionManager);
+		myClient = builder.build();
+
+	}
+
+	@Test
+	public void testSuccessfulInitiateImportRequest() throws IOException {
+
+		IBulkDataImportSvc.JobInfo jobInfo = new IBulkDataImportSvc.JobInfo()
+			.setJobId(A_JOB_ID);
+		when(myBulkDataImportSvc.submitJob(any())).thenReturn(jobInfo);
+
+		Parameters input = new Parameters();
+		input.addParameter(JpaConstants.PARAM_IMPORT_INPUT_URL, new StringType("Binary/123"));
+		input.addParameter(JpaConstants.PARAM_IMPORT_INPUT_URL, new StringType("Binary/456"));
+
+		HttpPost post = new HttpPost("http://localhost:" + myPort + "/" + JpaConstants.OPERATION_IMPORT);
+		post.addHeader(Constants.HEADER_PREFER, Constants.HEADER_PREFER_RESPOND_ASYNC);
+		post.setEntity(new ResourceEntity(myCtx, input));
+		try (CloseableHttpResponse response = myClient.execute(post)) {
+			ourLog.info("Response: {}", response.toString());
+
+			assertEquals(202, response.getStatusLine().getStatusCode());
+			assertEquals("Accepted", response.getStatusLine().getReasonPhrase());
+			assertEquals("http://localhost:" + myPort + "/$import-poll-status?_jobId=" + A_JOB_ID, response.getFirstHeader(Constants.HEADER_CONTENT_LOCATION).getValue());
+		}
+
+		verify(myBulkDataImportSvc, times(1)).submitJob(myInputUrlsCaptor.capture());
+		assertThat(myInputUrlsCaptor.getValue(), contains("Binary/123", "Binary/456"));
+
+	}
+
+	@Test
+	public void testInitiateImportRequestWithoutPreferAsync() throws IOException {
+
+		Parameters input = new Parameters();
+		input.addParameter(JpaConstants.PARAM_IMPORT_INPUT_URL, new StringType("Binary/123"));
+
+		HttpPost post = new HttpPost("http://localhost:" + myPort + "/" + JpaConstants.OPERATION_IMPORT);
+		post.setEntity(new ResourceEntity(myCtx, input));
+		try (CloseableHttpResponse response = myClient.execute(post)) {
+			assertEquals(400, response.getStatusLine().getStatusCode());
+			String responseContent = IOUtils.toString(response.getEntity().getContent(), Charsets.UTF_8);
+			assertThat(responseContent, containsString("Must request async processing for $import"));
+		}
+
+		verifyNoMoreInteractions(myBulkDataImportSvc);
+	}
+
+	@Test
+	public void testPollForStatus_BUILDING() throws IOException {
+
+		IBulkDataImportSvc.JobInfo jobInfo = new IBulkDataImportSvc.JobInfo()
+			.setJobId(A_JOB_ID)
+			.setStatus(BulkJobStatusEnum.BUILDING)
+			.setStatusTime(InstantType.now().getValue());
+		jobInfo.addFile().setUrl("Binary/123").setResourceCount(100).setComplete(true);
+		jobInfo.addFile().setUrl("Binary/456").setResourceCount(23);
+		when(myBulkDataImportSvc.getJobStatusOrThrowResourceNotFound(eq(A_JOB_ID))).thenReturn(jobInfo);
+
+		String url = "http://localhost:" + myPort + "/" + JpaConstants.OPERATION_IMPORT_POLL_STATUS + "?" +
+			JpaConstants.PARAM_IMPORT_POLL_STATUS_JOB_ID + "=" + A_JOB_ID;
+		HttpGet get = new HttpGet(url);
+		try (CloseableHttpResponse response = myClient.execute(get)) {
+			ourLog.info("Response: {}", response.toString());
+
+			assertEquals(202, response.getStatusLine().getStatusCode());
+			assertEquals("120", response.getFirstHeader(Constants.HEADER_RETRY_AFTER).getValue());
+			assertThat(response.getFirstHeader(Constants.HEADER_X_PROGRESS).getValue(), containsString("Import in progress - Status set to BUILDING at 20"));
+			assertThat(response.getFirstHeader(Constants.HEADER_X_PROGRESS).getValue(), containsString("123 resources imported"));
+		}
+
+	}
+
+	@Test
+	public void testPollForStatus_COMPLETED() throws IOException {
+
+		IBulkDataImportSvc.JobInfo jobInfo = new IBulkDataImportSvc.JobInfo()
+			.setJobId(A_JOB_ID)
+			.setStatus(BulkJobStatusEnum.COMPLETE)
+			.setStatusTime(InstantType.now().getValue());
+		jobInfo.addFile().setUrl("Binary/123").setResourceCount(100).setComplete(true);
+		jobInfo.addFile().setUrl("Binary/456").setResourceCount(23).setComplete(true);
+		when(myBulkDataImportSvc.getJobStatusOrThrowResourceNotFound(eq(A_JOB_ID))).thenReturn(jobInfo);
+
+		String url = "http://localhost:" + myPort + "/" + JpaConstants.OPERATION_IMPORT_POLL_STATUS + "?" +
+			JpaConstants.PARAM_IMPORT_POLL_STATUS_JOB_ID + "=" + A_JOB_ID;
+		HttpGet get = new HttpGet(url);
+		try (CloseableHttpResponse response = myClient.execute(get)) {
+			assertEquals(200, response.getStatusLine().getStatusCode());
+			assertEquals(Constants.CT_JSON, response.getEntity().getContentType().getValue());
+
+			String responseContent = IOUtils.toString(response.getEntity().getContent(), Charsets.UTF_8);
+			ourLog.info("Response content: {}", responseContent);
+			BulkImportResponseJson responseJson = JsonUtil.deserialize(responseContent, BulkImportResponseJson.class);
+			assertEquals(2, responseJson.getOutput().size());
+			assertEquals("Binary/123", responseJson.getOutput().get(0).getInputUrl());
+			assertEquals(100L, responseJson.getOutput().get(0).getCount().longValue());
+			assertEquals("Binary/456", responseJson.getOutput().get(1).getInputUrl());
+			assertEquals(23L, responseJson.getOutput().get(1).getCount().longValue());
+		}
+
+	}
+
+	@Test
+	public void testPollForStatus_ERROR() throws IOException {
+
+		IBulkDataImportSvc.JobInfo jobInfo = new IBulkDataImportSvc.JobInfo()
+			.setJobId(A_JOB_ID)
+			.setStatus(BulkJobStatusEnum.ERROR)
+			.setStatusTime(InstantType.now().getValue())
+			.setStatusMessage("Some error message");
+		when(myBulkDataImportSvc.getJobStatusOrThrowResourceNotFound(eq(A_JOB_ID))).thenReturn(jobInfo);
+
+		String url = "http://localhost:" + myPort + "/" + JpaConstants.OPERATION_IMPORT_POLL_STATUS + "?" +
+			JpaConstants.PARAM_IMPORT_POLL_STATUS_JOB_ID + "=" + A_JOB_ID;
+		HttpGet get = new HttpGet(url);
+		try (CloseableHttpResponse response = myClient.execute(get)) {
+			assertEquals(500, response.getStatusLine().getStatusCode());
+			String responseContent = IOUtils.toString(response.getEntity().getContent(), Charsets.UTF_8);
+			assertThat(responseContent, containsString("Some error message"));
+		}
+
+	}
+
+}
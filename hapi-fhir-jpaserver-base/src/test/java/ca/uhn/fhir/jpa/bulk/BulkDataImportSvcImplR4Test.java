@@ -0,0 +1,307 @@
+package ca.uhn.fhir.jpa.bulk;
+
+import ca.uhn.fhir.interceptor.api.IAnonymousInterceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.dao.DaoConfig;
+import ca.uhn.fhir.jpa.dao.data.IBulkImportChunkDao;
+import ca.uhn.fhir.jpa.dao.data.IBulkImportJobDao;
+import ca.uhn.fhir.jpa.dao.data.IBulkImportJobFileDao;
+import ca.uhn.fhir.jpa.dao.r4.BaseJpaR4Test;
+import ca.uhn.fhir.jpa.entity.BulkImportChunkEntity;
+import ca.uhn.fhir.jpa.entity.BulkImportJobEntity;
+import ca.uhn.fhir.jpa.entity.BulkImportJobFileEntity;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import ca.uhn.fhir.test.utilities.UnregisterScheduledProcessor;
+import org.apache.commons.io.FileUtils;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Binary;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.AopTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.junit.Assert.*;
+
+@TestPropertySource(properties = {
+	UnregisterScheduledProcessor.SCHEDULING_DISABLED_EQUALS_TRUE
+})
+public class BulkDataImportSvcImplR4Test extends BaseJpaR4Test {
+
+	@Autowired
+	private IBulkDataImportSvc myBulkDataImportSvc;
+	@Autowired
+	private IBulkImportJobDao myBulkImportJobDao;
+	@Autowired
+	private IBulkImportJobFileDao myBulkImportJobFileDao;
+	@Autowired
+	private IBulkImportChunkDao myBulkImportChunkDao;
+	private File myTempDirectory;
+
+	@After
+	public void after() throws IOException {
+		myDaoConfig.setBulkImportChunkSize(new DaoConfig().getBulkImportChunkSize());
+		if (getImportSvcImpl().getThreadCountForUnitTest() != myDaoConfig.getBulkImportThreadCount()) {
+			getImportSvcImpl().setThreadCountForUnitTest(myDaoConfig.getBulkImportThreadCount());
+		}
+		myDaoConfig.setBulkImportLocalFileDirectory(new DaoConfig().getBulkImportLocalFileDirectory());
+		if (myTempDirectory != null) {
+			FileUtils.deleteDirectory(myTempDirectory);
+		}
+		runInTransaction(() -> {
+			myBulkImportChunkDao.deleteAll();
+			myBulkImportJobFileDao.deleteAll();
+			myBulkImportJobDao.deleteAll();
+		});
+	}
+
+	@Test
+	public void testImportFromBinaries() throws IOException {
+		myDaoConfig.setBulkImportChunkSize(3);
+
+		Binary patients = new Binary();
+		patients.setContentType(Constants.CT_FHIR_NDJSON);
+		patients.setContent(createPatientsNdJson().getBytes(Constants.CHARSET_UTF8));
+		IIdType patientsId = myBinaryDao.create(patients).getId().toUnqualifiedVersionless();
+
+		// The second file is compressed
+		ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(gzipped)) {
+			gzipOutputStream.write(createObservationsNdJson().getBytes(Constants.CHARSET_UTF8));
+		}
+		Binary observations = new Binary();
+		observations.setContentType("application/gzip");
+		observations.setContent(gzipped.toByteArray());
+		IIdType observationsId = myBinaryDao.create(observations).getId().toUnqualifiedVersionless();
+
+		IBulkDataImportSvc.JobInfo jobDetails = myBulkDataImportSvc.submitJob(Arrays.asList(patientsId.getValue(), observationsId.getValue()));
+		assertEquals(BulkJobStatusEnum.SUBMITTED, myBulkDataImportSvc.getJobStatusOrThrowResourceNotFound(jobDetails.getJobId()).getStatus());
+
+		myBulkDataImportSvc.processJobs();
+
+		IBulkDataImportSvc.JobInfo status = myBulkDataImportSvc.getJobStatusOrThrowResourceNotFound(jobDetails.getJobId());
+		assertEquals(BulkJobStatusEnum.COMPLETE, status.getStatus());
+		assertEquals(2, status.getFiles().size());
+		assertEquals(patientsId.getValue(), status.getFiles().get(0).getUrl());
+		assertEquals(10, status.getFiles().get(0).getResourceCount());
+		assertTrue(status.getFiles().get(0).isComplete());
+		assertEquals(observationsId.getValue(), status.getFiles().get(1).getUrl());
+		assertEquals(10, status.getFiles().get(1).getResourceCount());
+		assertTrue(status.getFiles().get(1).isComplete());
+
+		// Resources with IDs keep them, and references between files are preserved
+		Observation obs = myObservationDao.read(new IdType("Observation/OBS9"));
+		assertEquals("Patient/PAT9", obs.getSubject().getReference());
+		assertEquals("PAT9", myPatientDao.read(new IdType("Patient/PAT9")).getIdentifierFirstRep().getValue());
+		assertEquals(10, myPatientDao.search(new SearchParameterMap().setLoadSynchronous(true)).size().intValue());
+		assertEquals(10, myObservationDao.search(new SearchParameterMap().setLoadSynchronous(true)).size().intValue());
+
+		runInTransaction(() -> assertEquals(4 + 4, myBulkImportChunkDao.count()));
+	}
+
+	@Test
+	public void testImportChunksConcurrently() {
+		getImportSvcImpl().setThreadCountForUnitTest(2);
+		myDaoConfig.setBulkImportChunkSize(5);
+
+		Binary patients = new Binary();
+		patients.setContentType(Constants.CT_FHIR_NDJSON);
+		patients.setContent(createPatientsNdJson().getBytes(Constants.CHARSET_UTF8));
+		IIdType patientsId = myBinaryDao.create(patients).getId().toUnqualifiedVersionless();
+
+		// Each resource waits until both chunks are being stored, which only happens if they are stored on separate threads
+		CountDownLatch bothChunksStarted = new CountDownLatch(2);
+		Set<String> threadNames = Collections.synchronizedSet(new HashSet<>());
+		List<Boolean> overlapped = Collections.synchronizedList(new ArrayList<>());
+		IAnonymousInterceptor interceptor = (thePointcut, theArgs) -> {
+			if (threadNames.add(Thread.currentThread().getName())) {
+				bothChunksStarted.countDown();
+			}
+			try {
+				overlapped.add(bothChunksStarted.await(10, TimeUnit.SECONDS));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		};
+		myInterceptorRegistry.registerAnonymousInterceptor(Pointcut.STORAGE_PRESTORAGE_RESOURCE_CREATED, interceptor);
+
+		IBulkDataImportSvc.JobInfo jobDetails = myBulkDataImportSvc.submitJob(Collections.singletonList(patientsId.getValue()));
+		myBulkDataImportSvc.processJobs();
+
+		assertEquals(BulkJobStatusEnum.COMPLETE, myBulkDataImportSvc.getJobStatusOrThrowResourceNotFound(jobDetails.getJobId()).getStatus());
+		assertEquals(2, threadNames.size());
+		assertEquals(10, overlapped.size());
+		assertThat(overlapped, everyItem(equalTo(true)));
+	}
+
+	@Test
+	public void testImportResumesInterruptedJob() {
+		myDaoConfig.setBulkImportChunkSize(4);
+
+		Binary patients = new Binary();
+		patients.setContentType(Constants.CT_FHIR_NDJSON);
+		patients.setContent(createPatientsNdJson().getBytes(Constants.CHARSET_UTF8));
+		IIdType patientsId = myBinaryDao.create(patients).getId().toUnqualifiedVersionless();
+
+		IBulkDataImportSvc.JobInfo jobDetails = myBulkDataImportSvc.submitJob(Collections.singletonList(patientsId.getValue()));
+
+		// Simulate the job having been interrupted after storing the second chunk
+		runInTransaction(() -> {
+			BulkImportJobEntity job = myBulkImportJobDao.findByJobId(jobDetails.getJobId()).orElseThrow(IllegalStateException::new);
+			job.setStatus(BulkJobStatusEnum.BUILDING);
+			myBulkImportJobDao.save(job);
+
+			BulkImportJobFileEntity file = job.getFiles().iterator().next();
+			BulkImportChunkEntity chunk = new BulkImportChunkEntity();
+			chunk.setFile(file);
+			chunk.setChunkIndex(1);
+			chunk.setResourceCount(4);
+			myBulkImportChunkDao.save(chunk);
+		});
+
+		// A chunk size change doesn't move the chunk boundaries of an existing job
+		myDaoConfig.setBulkImportChunkSize(5);
+
+		myBulkDataImportSvc.processJobs();
+
+		IBulkDataImportSvc.JobInfo status = myBulkDataImportSvc.getJobStatusOrThrowResourceNotFound(jobDetails.getJobId());
+		assertEquals(BulkJobStatusEnum.COMPLETE, status.getStatus());
+		assertEquals(10, status.getFiles().get(0).getResourceCount());
+
+		// The second chunk wasn't imported again
+		for (int i = 0; i < 10; i++) {
+			IdType id = new IdType("Patient/PAT" + i);
+			if (i >= 4 && i < 8) {
+				try {
+					myPatientDao.read(id);
+					fail();
+				} catch (ResourceNotFoundException e) {
+					// good
+				}
+			} else {
+				myPatientDao.read(id);
+			}
+		}
+	}
+
+	@Test
+	public void testImportFromLocalFile() throws IOException {
+		myTempDirectory = Files.createTempDirectory("bulk-import").toFile();
+		File file = new File(myTempDirectory, "patients.ndjson");
+		FileUtils.writeStringToFile(file, createPatientsNdJson(), Constants.CHARSET_UTF8);
+
+		// Local files aren't allowed by default
+		try {
+			myBulkDataImportSvc.submitJob(Collections.singletonList(file.getAbsolutePath()));
+			fail();
+		} catch (InvalidRequestException e) {
+			assertThat(e.getMessage(), containsString("Bulk import from local files is not enabled on this server"));
+		}
+
+		myDaoConfig.setBulkImportLocalFileDirectory(myTempDirectory.getAbsolutePath());
+
+		// Files outside of the directory can't be read
+		File outsideFile = new File(myTempDirectory.getParentFile(), myTempDirectory.getName() + "-outside.ndjson");
+		try {
+			FileUtils.writeStringToFile(outsideFile, createPatientsNdJson(), Constants.CHARSET_UTF8);
+			myBulkDataImportSvc.submitJob(Collections.singletonList(new File(myTempDirectory, "../" + outsideFile.getName()).getPath()));
+			fail();
+		} catch (InvalidRequestException e) {
+			assertThat(e.getMessage(), containsString("Bulk import file is not in the bulk import directory"));
+		} finally {
+			FileUtils.deleteQuietly(outsideFile);
+		}
+
+		IBulkDataImportSvc.JobInfo jobDetails = myBulkDataImportSvc.submitJob(Collections.singletonList(file.toURI().toString()));
+		myBulkDataImportSvc.processJobs();
+
+		IBulkDataImportSvc.JobInfo status = myBulkDataImportSvc.getJobStatusOrThrowResourceNotFound(jobDetails.getJobId());
+		assertEquals(BulkJobStatusEnum.COMPLETE, status.getStatus());
+		assertEquals(10, status.getFiles().get(0).getResourceCount());
+		assertEquals(10, myPatientDao.search(new SearchParameterMap().setLoadSynchronous(true)).size().intValue());
+	}
+
+	@Test
+	public void testImportInvalidResource() {
+		myDaoConfig.setBulkImportChunkSize(3);
+
+		Binary patients = new Binary();
+		patients.setContentType(Constants.CT_FHIR_NDJSON);
+		patients.setContent((createPatientsNdJson() + "{\"resourceType\":\"Patient\",\"foo\"\n").getBytes(Constants.CHARSET_UTF8));
+		IIdType patientsId = myBinaryDao.create(patients).getId().toUnqualifiedVersionless();
+
+		IBulkDataImportSvc.JobInfo jobDetails = myBulkDataImportSvc.submitJob(Collections.singletonList(patientsId.getValue()));
+		myBulkDataImportSvc.processJobs();
+
+		IBulkDataImportSvc.JobInfo status = myBulkDataImportSvc.getJobStatusOrThrowResourceNotFound(jobDetails.getJobId());
+		assertEquals(BulkJobStatusEnum.ERROR, status.getStatus());
+		assertThat(status.getStatusMessage(), containsString("Failed to parse resource 11 in bulk import file " + patientsId.getValue()));
+		assertFalse(status.getFiles().get(0).isComplete());
+	}
+
+	@Test
+	public void testSubmit_InvalidUrls() {
+		try {
+			myBulkDataImportSvc.submitJob(Collections.emptyList());
+			fail();
+		} catch (InvalidRequestException e) {
+			assertEquals("No input files specified for bulk import", e.getMessage());
+		}
+		try {
+			myBulkDataImportSvc.submitJob(Collections.singletonList("Binary/"));
+			fail();
+		} catch (InvalidRequestException e) {
+			assertEquals("Invalid Binary ID for bulk import: Binary/", e.getMessage());
+		}
+	}
+
+	private BulkDataImportSvcImpl getImportSvcImpl() {
+		return AopTestUtils.getTargetObject(myBulkDataImportSvc);
+	}
+
+	private String createPatientsNdJson() {
+		StringBuilder b = new StringBuilder();
+		for (int i = 0; i < 10; i++) {
+			Patient patient = new Patient();
+			patient.setId("PAT" + i);
+			patient.addIdentifier().setSystem("http://mrns").setValue("PAT" + i);
+			b.append(myFhirCtx.newJsonParser().encodeResourceToString(patient)).append("\n");
+		}
+		return b.toString();
+	}
+
+	private String createObservationsNdJson() {
+		StringBuilder b = new StringBuilder();
+		for (int i = 0; i < 10; i++) {
+			Observation obs = new Observation();
+			obs.setId("OBS" + i);
+			obs.setStatus(Observation.ObservationStatus.FINAL);
+			obs.getSubject().setReference("Patient/PAT" + i);
+			b.append(myFhirCtx.newJsonParser().encodeResourceToString(obs)).append("\n");
+			if (i == 4) {
+				// Blank lines are ignored
+				b.append("\n");
+			}
+		}
+		return b.toString();
+	}
+
+}
@@ -37,9 +37,10 @@ public class TestDstu2Config extends BaseJavaConfigDstu2 {
 		/*
 		 * We use a randomized number of maximum threads in order to try
 		 * and catch any potential deadlocks caused by database connection
-		 * starvation
+		 * starvation. A write which creates a new tag definition uses a
+		 * second connection, so two concurrent writes need at least three.
 		 */
-		ourMaxThreads = (int) (Math.random() * 6.0) + 1;
+		ourMaxThreads = (int) (Math.random() * 6.0) + 3;
 	}
 
 	private Exception myLastStackTrace;
@@ -91,9 +91,10 @@ public class TestDstu3Config extends BaseJavaConfigDstu3 {
 		/*
 		 * We use a randomized number of maximum threads in order to try
 		 * and catch any potential deadlocks caused by database connection
-		 * starvation
+		 * starvation. A write which creates a new tag definition uses a
+		 * second connection, so two concurrent writes need at least three.
 		 */
-		int maxThreads = (int) (Math.random() * 6.0) + 1;
+		int maxThreads = (int) (Math.random() * 6.0) + 3;
 		retVal.setMaxTotal(maxThreads);
 
 		return retVal;
@@ -0,0 +1,127 @@
+package ca.uhn.fhir.jpa.dao;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
+import ca.uhn.fhir.util.StopWatch;
+import ca.uhn.fhir.util.TestUtil;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.AfterClass;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class BaseHapiFhirDaoTest {
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(BaseHapiFhirDaoTest.class);
+
+	private static FhirContext ourCtx = FhirContext.forR4();
+
+	@AfterClass
+	public static void afterClassClearContext() {
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+	private Patient createPatient() {
+		Patient p = new Patient();
+		p.setActive(true);
+		for (int i = 0; i < 1000; i++) {
+			// Include some multibyte characters, which must not be split when streamed
+			p.addName().setFamily("FAMILY é中😀 " + i);
+		}
+		return p;
+	}
+
+	@Test
+	public void testEncodeResourceJson() {
+		Patient p = createPatient();
+		String expected = ourCtx.newJsonParser().encodeResourceToString(p);
+
+		Hasher hasher = Hashing.sha256().newHasher();
+		byte[] bytes = BaseHapiFhirDao.encodeResource(p, ResourceEncodingEnum.JSON, Collections.emptySet(), ourCtx, hasher);
+
+		assertArrayEquals(expected.getBytes(Charsets.UTF_8), bytes);
+		assertEquals(Hashing.sha256().hashBytes(bytes).toString(), hasher.hash().toString());
+	}
+
+	@Test
+	public void testEncodeResourceJsonc() {
+		Patient p = createPatient();
+		String expected = ourCtx.newJsonParser().encodeResourceToString(p);
+
+		Hasher hasher = Hashing.sha256().newHasher();
+		byte[] bytes = BaseHapiFhirDao.encodeResource(p, ResourceEncodingEnum.JSONC, Collections.emptySet(), ourCtx, hasher);
+
+		// Stored hashes must not change, so the compressed bytes must be the same as before
+		assertArrayEquals(GZipUtil.compress(expected), bytes);
+		assertEquals(expected, GZipUtil.decompress(bytes));
+		assertEquals(Hashing.sha256().hashBytes(bytes).toString(), hasher.hash().toString());
+	}
+
+	@Test
+	public void testEncodeResourceJsonz() {
+		Patient p = createPatient();
+		String expected = ourCtx.newJsonParser().encodeResourceToString(p);
+
+		Hasher hasher = Hashing.sha256().newHasher();
+		byte[] bytes = BaseHapiFhirDao.encodeResource(p, ResourceEncodingEnum.JSONZ, Collections.emptySet(), ourCtx, hasher);
+
+		assertEquals(expected, BaseHapiFhirDao.decodeResource(bytes, ResourceEncodingEnum.JSONZ));
+		assertEquals(expected, ZstdUtil.decompress(ZstdUtil.compress(expected)));
+		assertEquals(Hashing.sha256().hashBytes(bytes).toString(), hasher.hash().toString());
+	}
+
+	/**
+	 * Not a real test, this just compares the size and speed of the available
+	 * resource encodings
+	 */
+	@Test
+	@Ignore
+	public void testCompareEncodings() {
+		List<IBaseResource> resources = new ArrayList<>();
+		Patient small = new Patient();
+		small.setActive(true);
+		small.addName().setFamily("Smith").addGiven("John");
+		small.addIdentifier().setSystem("http://acme.org/mrn").setValue("123456");
+		resources.add(small);
+		resources.add(createPatient());
+
+		int iterations = 2000;
+		for (IBaseResource nextResource : resources) {
+			for (ResourceEncodingEnum nextEncoding : new ResourceEncodingEnum[]{ResourceEncodingEnum.JSON, ResourceEncodingEnum.JSONC, ResourceEncodingEnum.JSONZ}) {
+				byte[] bytes = null;
+				StopWatch encodeSw = new StopWatch();
+				for (int i = 0; i < iterations; i++) {
+					bytes = BaseHapiFhirDao.encodeResource(nextResource, nextEncoding, Collections.emptySet(), ourCtx);
+				}
+				long encodeMillis = encodeSw.getMillis();
+
+				StopWatch decodeSw = new StopWatch();
+				for (int i = 0; i < iterations; i++) {
+					BaseHapiFhirDao.decodeResource(bytes, nextEncoding);
+				}
+				long decodeMillis = decodeSw.getMillis();
+
+				ourLog.info("{} {} bytes - Encode {}ms - Decode {}ms", nextEncoding, bytes.length, encodeMillis, decodeMillis);
+			}
+		}
+	}
+
+	@Test
+	public void testEncodeResourceDeleted() {
+		Hasher hasher = Hashing.sha256().newHasher();
+		byte[] bytes = BaseHapiFhirDao.encodeResource(createPatient(), ResourceEncodingEnum.DEL, Collections.emptySet(), ourCtx, hasher);
+
+		assertEquals(0, bytes.length);
+		assertEquals(Hashing.sha256().hashBytes(new byte[0]).toString(), hasher.hash().toString());
+	}
+
+}
@@ -1,6 +1,8 @@
 package ca.uhn.fhir.jpa.dao.r4;
 
 import ca.uhn.fhir.jpa.dao.DaoConfig;
+import ca.uhn.fhir.jpa.util.ExpungeOptions;
+import ca.uhn.fhir.jpa.util.SqlQuery;
 import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
 import ca.uhn.fhir.jpa.model.entity.ResourceTable;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
@@ -8,6 +10,7 @@ import ca.uhn.fhir.jpa.util.TestUtil;
 import ca.uhn.fhir.model.primitive.InstantDt;
 import ca.uhn.fhir.rest.api.MethodOutcome;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.param.ReferenceParam;
 import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceGoneException;
@@ -20,6 +23,11 @@ import org.junit.*;
 import org.springframework.test.context.TestPropertySource;
 
 import java.util.*;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
@@ -35,6 +43,10 @@ public class FhirResourceDaoR4QueryCountTest extends BaseJpaR4Test {
 	public void afterResetDao() {
 		myDaoConfig.setResourceMetaCountHardLimit(new DaoConfig().getResourceMetaCountHardLimit());
 		myDaoConfig.setIndexMissingFields(new DaoConfig().getIndexMissingFields());
+		myDaoConfig.setExpungeEnabled(new DaoConfig().isExpungeEnabled());
+		myDaoConfig.setResourcePidCacheEnabled(new DaoConfig().isResourcePidCacheEnabled());
+		myDaoConfig.setResourcePidNegativeCacheEnabled(new DaoConfig().isResourcePidNegativeCacheEnabled());
+		myDaoConfig.setTagDefinitionCacheEnabled(new DaoConfig().isTagDefinitionCacheEnabled());
 	}
 
 	@Before
@@ -92,6 +104,46 @@ public class FhirResourceDaoR4QueryCountTest extends BaseJpaR4Test {
 		assertEquals(0, myCaptureQueriesListener.getDeleteQueriesForCurrentThread().size());
 	}
 
+	@Test
+	public void testUpdateWithOneChangeInManyIndexes() {
+		IIdType id = runInTransaction(() -> {
+			Patient p = new Patient();
+			for (int i = 0; i < 500; i++) {
+				p.addIdentifier().setSystem("urn:system").setValue("ID" + i);
+				p.addName().setFamily("FAM" + i);
+			}
+			return myPatientDao.create(p).getId().toUnqualified();
+		});
+
+		myCaptureQueriesListener.clear();
+		runInTransaction(() -> {
+			Patient p = new Patient();
+			p.setId(id.getIdPart());
+			for (int i = 0; i < 500; i++) {
+				p.addIdentifier().setSystem("urn:system").setValue("ID" + i);
+				p.addName().setFamily("FAM" + i);
+			}
+			p.addIdentifier().setSystem("urn:system").setValue("ID500");
+			myPatientDao.update(p).getResource();
+		});
+
+		// Only the new identifier is written, and nothing is removed
+		myCaptureQueriesListener.logInsertQueriesForCurrentThread();
+		List<String> inserts = myCaptureQueriesListener
+			.getInsertQueriesForCurrentThread()
+			.stream()
+			.filter(t -> t.getSql(false, false).contains("HFJ_SPIDX_"))
+			.map(t -> t.getSql(false, false))
+			.collect(Collectors.toList());
+		assertEquals(1, inserts.size());
+		assertThat(inserts.get(0), containsString("HFJ_SPIDX_TOKEN"));
+		assertThat(myCaptureQueriesListener.getDeleteQueriesForCurrentThread(), empty());
+		myCaptureQueriesListener.logUpdateQueriesForCurrentThread();
+		for (SqlQuery next : myCaptureQueriesListener.getUpdateQueriesForCurrentThread()) {
+			assertThat(next.getSql(false, false), not(containsString("HFJ_SPIDX_")));
+		}
+	}
+
 	@Test
 	public void testRead() {
 		IIdType id = runInTransaction(() -> {
@@ -136,6 +188,305 @@ public class FhirResourceDaoR4QueryCountTest extends BaseJpaR4Test {
 		assertEquals(0, myCaptureQueriesListener.getDeleteQueriesForCurrentThread().size());
 	}
 
+	@Test
+	public void testReadClientAssignedIdUsesPidCache() {
+		createPatientWithClientAssignedId("A");
+
+		myCaptureQueriesListener.clear();
+		runInTransaction(() -> myPatientDao.read(new IdType("Patient/A")));
+		assertEquals(1, countForcedIdSelectQueries());
+
+		myCaptureQueriesListener.clear();
+		runInTransaction(() -> myPatientDao.read(new IdType("Patient/A")));
+		assertEquals(0, countForcedIdSelectQueries());
+
+		// Searching by reference resolves the same ID
+		myCaptureQueriesListener.clear();
+		SearchParameterMap map = new SearchParameterMap();
+		map.setLoadSynchronous(true);
+		map.add(Observation.SP_SUBJECT, new ReferenceParam("Patient/A"));
+		assertEquals(0, myObservationDao.search(map).size().intValue());
+		assertEquals(0, countForcedIdSelectQueries());
+	}
+
+	@Test
+	public void testReadClientAssignedIdWithPidCacheDisabled() {
+		myDaoConfig.setResourcePidCacheEnabled(false);
+		createPatientWithClientAssignedId("A");
+
+		for (int i = 0; i < 2; i++) {
+			myCaptureQueriesListener.clear();
+			runInTransaction(() -> myPatientDao.read(new IdType("Patient/A")));
+			assertEquals(1, countForcedIdSelectQueries());
+		}
+	}
+
+	@Test
+	public void testPidCacheInvalidatedByExpunge() {
+		myDaoConfig.setExpungeEnabled(true);
+		createPatientWithClientAssignedId("A");
+		runInTransaction(() -> myPatientDao.read(new IdType("Patient/A")));
+
+		// Deleting keeps the forced ID, so the cached PID is still correct
+		myPatientDao.delete(new IdType("Patient/A"));
+		myCaptureQueriesListener.clear();
+		try {
+			myPatientDao.read(new IdType("Patient/A"));
+			fail();
+		} catch (ResourceGoneException e) {
+			// good
+		}
+		assertEquals(0, countForcedIdSelectQueries());
+
+		myPatientDao.expunge(new IdType("Patient/A"), new ExpungeOptions().setExpungeDeletedResources(true).setExpungeOldVersions(true), null);
+		try {
+			myPatientDao.read(new IdType("Patient/A"));
+			fail();
+		} catch (ResourceNotFoundException e) {
+			// good
+		}
+
+		// Re-creating the resource gives it a new PID
+		createPatientWithClientAssignedId("A");
+		Patient patient = myPatientDao.read(new IdType("Patient/A"));
+		assertTrue(patient.getActive());
+		assertEquals("1", patient.getIdElement().getVersionIdPart());
+	}
+
+	@Test
+	public void testPidNegativeCache() {
+		myDaoConfig.setResourcePidNegativeCacheEnabled(true);
+
+		myCaptureQueriesListener.clear();
+		for (int i = 0; i < 2; i++) {
+			try {
+				myPatientDao.read(new IdType("Patient/A"));
+				fail();
+			} catch (ResourceNotFoundException e) {
+				// good
+			}
+		}
+		assertEquals(1, countForcedIdSelectQueries());
+
+		// Creating the resource must discard the cached miss
+		createPatientWithClientAssignedId("A");
+		assertTrue(myPatientDao.read(new IdType("Patient/A")).getActive());
+	}
+
+	@Test
+	public void testCreateWithTagsUsesTagDefinitionCache() {
+		myPatientDao.create(createPatientWithTags());
+
+		myCaptureQueriesListener.clear();
+		myPatientDao.create(createPatientWithTags());
+		assertEquals(0, countTagDefinitionSelectQueries());
+		assertEquals(0, myCaptureQueriesListener
+			.getInsertQueriesForCurrentThread()
+			.stream()
+			.filter(t -> t.getSql(false, false).contains("HFJ_TAG_DEF"))
+			.count());
+
+		runInTransaction(() -> {
+			assertEquals(3, myTagDefinitionDao.count());
+			assertEquals(6, myResourceTagDao.count());
+		});
+	}
+
+	@Test
+	public void testCreateWithTagsWithTagDefinitionCacheDisabled() {
+		myDaoConfig.setTagDefinitionCacheEnabled(false);
+		myPatientDao.create(createPatientWithTags());
+
+		myCaptureQueriesListener.clear();
+		myPatientDao.create(createPatientWithTags());
+		assertEquals(3, countTagDefinitionSelectQueries());
+	}
+
+	@Test
+	public void testCreateWithSameNewTagsConcurrently() throws Exception {
+		int threadCount = 2;
+		CyclicBarrier barrier = new CyclicBarrier(threadCount);
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		try {
+			List<Future<IIdType>> futures = new ArrayList<>();
+			for (int i = 0; i < threadCount; i++) {
+				futures.add(executor.submit(() -> {
+					barrier.await();
+					return myPatientDao.create(createPatientWithTags()).getId().toUnqualifiedVersionless();
+				}));
+			}
+
+			// Both creates succeed, and share the same definitions
+			for (Future<IIdType> next : futures) {
+				Patient patient = myPatientDao.read(next.get());
+				assertEquals("code", patient.getMeta().getTagFirstRep().getCode());
+				assertEquals("http://profile", patient.getMeta().getProfile().get(0).getValue());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		runInTransaction(() -> {
+			assertEquals(3, myTagDefinitionDao.count());
+			assertEquals(6, myResourceTagDao.count());
+		});
+	}
+
+	@Test
+	public void testTagDefinitionCacheClearedByExpungeEverything() {
+		myDaoConfig.setExpungeEnabled(true);
+		myPatientDao.create(createPatientWithTags());
+
+		mySystemDao.expunge(new ExpungeOptions().setExpungeEverything(true), null);
+		runInTransaction(() -> assertEquals(0, myTagDefinitionDao.count()));
+
+		// The definitions are created again rather than reused from the cache
+		IIdType id = myPatientDao.create(createPatientWithTags()).getId().toUnqualifiedVersionless();
+		runInTransaction(() -> assertEquals(3, myTagDefinitionDao.count()));
+		Patient patient = myPatientDao.read(id);
+		assertEquals("code", patient.getMeta().getTagFirstRep().getCode());
+		assertEquals("seccode", patient.getMeta().getSecurityFirstRep().getCode());
+		assertEquals("http://profile", patient.getMeta().getProfile().get(0).getValue());
+	}
+
+	@Test
+	public void testHistoryPagingUsesKeyset() {
+		for (int i = 0; i < 25; i++) {
+			Patient p = new Patient();
+			p.setActive(true);
+			myPatientDao.create(p);
+		}
+
+		IBundleProvider history = mySystemDao.history(null, null, null);
+		List<String> ids = new ArrayList<>(toVersionlessIds(history.getResources(0, 10)));
+
+		// New versions don't shift the following pages
+		for (int i = 0; i < 5; i++) {
+			Patient p = new Patient();
+			p.setActive(false);
+			myPatientDao.create(p);
+		}
+
+		myCaptureQueriesListener.clear();
+		ids.addAll(toVersionlessIds(history.getResources(10, 20)));
+		ids.addAll(toVersionlessIds(history.getResources(20, 30)));
+		assertEquals(0, countHistorySelectQueriesWithOffset());
+
+		assertEquals(25, ids.size());
+		assertEquals(25, new HashSet<>(ids).size());
+		for (String next : ids) {
+			assertTrue(myPatientDao.read(new IdType(next)).getActive());
+		}
+	}
+
+	@Test
+	public void testHistoryPagingWithoutKeysetUsesOffset() {
+		for (int i = 0; i < 25; i++) {
+			Patient p = new Patient();
+			p.setActive(true);
+			myPatientDao.create(p);
+		}
+
+		IBundleProvider history = mySystemDao.history(null, null, null);
+		List<String> expected = toVersionlessIds(history.getResources(0, 25)).subList(15, 25);
+
+		// Jumping straight to a page means there is no keyset for it
+		history = mySystemDao.history(null, null, null);
+		myCaptureQueriesListener.clear();
+		List<String> actual = toVersionlessIds(history.getResources(15, 25));
+		assertEquals(1, countHistorySelectQueriesWithOffset());
+		assertEquals(expected, actual);
+	}
+
+	private List<String> toVersionlessIds(List<IBaseResource> theResources) {
+		return theResources
+			.stream()
+			.map(t -> t.getIdElement().toUnqualifiedVersionless().getValue())
+			.collect(Collectors.toList());
+	}
+
+	private long countHistorySelectQueriesWithOffset() {
+		return myCaptureQueriesListener
+			.getSelectQueriesForCurrentThread()
+			.stream()
+			.map(t -> t.getSql(false, false).toLowerCase())
+			.filter(t -> t.contains("hfj_res_ver") && t.contains("offset"))
+			.count();
+	}
+
+	private Patient createPatientWithTags() {
+		Patient p = new Patient();
+		p.setActive(true);
+		p.getMeta().addTag("http://tag", "code", "Tag");
+		p.getMeta().addSecurity("http://security", "seccode", "Security");
+		p.getMeta().addProfile("http://profile");
+		return p;
+	}
+
+	private long countTagDefinitionSelectQueries() {
+		return myCaptureQueriesListener
+			.getSelectQueriesForCurrentThread()
+			.stream()
+			.filter(t -> t.getSql(false, false).contains("HFJ_TAG_DEF"))
+			.count();
+	}
+
+	private void createPatientWithClientAssignedId(String theId) {
+		runInTransaction(() -> {
+			Patient p = new Patient();
+			p.setId(theId);
+			p.setActive(true);
+			myPatientDao.update(p);
+		});
+	}
+
+	@Test
+	public void testCreateWritesIndexesInOneBatchPerTable() {
+		Patient patient = new Patient();
+		patient.setActive(true);
+		IIdType patientId = myPatientDao.create(patient).getId().toUnqualifiedVersionless();
+
+		Observation obs = new Observation();
+		obs.setStatus(Observation.ObservationStatus.FINAL);
+		obs.getCode().addCoding().setSystem("http://loinc.org").setCode("1234-5");
+		obs.getCategoryFirstRep().addCoding().setSystem("http://category").setCode("vital-signs");
+		obs.addIdentifier().setSystem("http://identifier").setValue("A");
+		obs.addComponent().getCode().addCoding().setSystem("http://loinc.org").setCode("2345-6");
+		obs.setSubject(new Reference(patientId));
+		obs.setEffective(new DateTimeType("2019-01-01T10:00:00Z"));
+		obs.setValue(new Quantity().setValue(12).setSystem("http://unitsofmeasure.org").setCode("kg"));
+
+		myCaptureQueriesListener.clear();
+		myObservationDao.create(obs);
+
+		// Only the reference target is loaded, since a new resource has no existing index rows
+		myCaptureQueriesListener.logSelectQueriesForCurrentThread();
+		assertEquals(1, myCaptureQueriesListener.getSelectQueriesForCurrentThread().size());
+
+		// Each table is written with a single (batched) statement
+		List<String> inserts = myCaptureQueriesListener
+			.getInsertQueriesForCurrentThread()
+			.stream()
+			.map(t -> t.getSql(false, false))
+			.collect(Collectors.toList());
+		assertEquals(inserts.toString(), new HashSet<>(inserts).size(), inserts.size());
+		int tokenRowCount = myCaptureQueriesListener
+			.getInsertQueriesForCurrentThread()
+			.stream()
+			.filter(t -> t.getSql(false, false).contains("HFJ_SPIDX_TOKEN"))
+			.mapToInt(t -> t.getSize())
+			.sum();
+		assertThat(tokenRowCount, greaterThan(5));
+		assertThat(myCaptureQueriesListener.getUpdateQueriesForCurrentThread(), empty());
+	}
+
+	private long countForcedIdSelectQueries() {
+		return myCaptureQueriesListener
+			.getSelectQueriesForCurrentThread()
+			.stream()
+			.filter(t -> t.getSql(false, false).contains("FORCED_ID in"))
+			.count();
+	}
+
 	@AfterClass
 	public static void afterClassClearContext() {
 		TestUtil.clearAllStaticFieldsForUnitTest();
@@ -0,0 +1,180 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.dao.DaoConfig;
+import ca.uhn.fhir.jpa.dao.cache.IResourceVersionCacheSvc;
+import ca.uhn.fhir.jpa.util.ExpungeOptions;
+import ca.uhn.fhir.jpa.util.TestUtil;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceGoneException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Meta;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.junit.Assert.*;
+
+@TestPropertySource(properties = {
+	"scheduling_disabled=true"
+})
+public class FhirResourceDaoR4ResourceVersionCacheTest extends BaseJpaR4Test {
+
+	@Autowired
+	private IResourceVersionCacheSvc myResourceVersionCacheSvc;
+
+	@Before
+	public void before() {
+		myDaoConfig.setResourceVersionCacheEnabled(true);
+	}
+
+	@After
+	public void afterResetDao() {
+		myDaoConfig.setResourceVersionCacheEnabled(new DaoConfig().isResourceVersionCacheEnabled());
+	}
+
+	private IIdType createPatient(String theFamily) {
+		Patient p = new Patient();
+		p.setActive(true);
+		p.addName().setFamily(theFamily);
+		return myPatientDao.create(p).getId().toUnqualifiedVersionless();
+	}
+
+	private void updatePatient(IIdType theId, String theFamily) {
+		Patient p = new Patient();
+		p.setId(theId.getIdPart());
+		p.setActive(true);
+		p.addName().setFamily(theFamily);
+		myPatientDao.update(p);
+	}
+
+	@Test
+	public void testReadUsesCache() {
+		IIdType id = createPatient("FAMILY");
+
+		Patient first = myPatientDao.read(id);
+		long hits = myResourceVersionCacheSvc.getHitCount();
+
+		myCaptureQueriesListener.clear();
+		Patient second = myPatientDao.read(id);
+		assertEquals(hits + 1, myResourceVersionCacheSvc.getHitCount());
+
+		// Only the resource itself is loaded
+		myCaptureQueriesListener.logSelectQueriesForCurrentThread();
+		assertEquals(1, myCaptureQueriesListener.getSelectQueriesForCurrentThread().size());
+
+		assertEquals(myFhirCtx.newJsonParser().encodeResourceToString(first), myFhirCtx.newJsonParser().encodeResourceToString(second));
+		assertEquals(id.withVersion("1").getValue(), second.getIdElement().toUnqualified().getValue());
+		assertNotNull(second.getMeta().getLastUpdated());
+	}
+
+	@Test
+	public void testReadReturnsCopy() {
+		IIdType id = createPatient("FAMILY");
+
+		myPatientDao.read(id).getNameFirstRep().setFamily("MODIFIED");
+
+		assertEquals("FAMILY", myPatientDao.read(id).getNameFirstRep().getFamily());
+		assertEquals("FAMILY", myPatientDao.read(id.withVersion("1")).getNameFirstRep().getFamily());
+	}
+
+	@Test
+	public void testReadAfterUpdate() {
+		IIdType id = createPatient("FAMILY1");
+		assertEquals("FAMILY1", myPatientDao.read(id).getNameFirstRep().getFamily());
+
+		updatePatient(id, "FAMILY2");
+
+		Patient patient = myPatientDao.read(id);
+		assertEquals("FAMILY2", patient.getNameFirstRep().getFamily());
+		assertEquals("2", patient.getIdElement().getVersionIdPart());
+		assertEquals("FAMILY1", myPatientDao.read(id.withVersion("1")).getNameFirstRep().getFamily());
+	}
+
+	@Test
+	public void testReadAfterTagsChanged() {
+		IIdType id = createPatient("FAMILY");
+		assertEquals(0, myPatientDao.read(id).getMeta().getTag().size());
+
+		// Adding a tag doesn't create a new version
+		Meta meta = new Meta();
+		meta.addTag().setSystem("http://foo").setCode("bar");
+		myPatientDao.metaAddOperation(id, meta, mySrd);
+
+		Patient patient = myPatientDao.read(id);
+		assertEquals("1", patient.getIdElement().getVersionIdPart());
+		assertEquals(1, patient.getMeta().getTag().size());
+		assertEquals("bar", patient.getMeta().getTag().get(0).getCode());
+	}
+
+	@Test
+	public void testReadAfterDelete() {
+		IIdType id = createPatient("FAMILY");
+		myPatientDao.read(id);
+
+		myPatientDao.delete(id);
+
+		try {
+			myPatientDao.read(id);
+			fail();
+		} catch (ResourceGoneException e) {
+			// good
+		}
+		assertEquals("FAMILY", myPatientDao.read(id.withVersion("1")).getNameFirstRep().getFamily());
+	}
+
+	@Test
+	public void testVersionWrittenByRolledBackTransactionIsNotCached() {
+		IIdType id = createPatient("FAMILY1");
+
+		try {
+			runInTransaction(() -> {
+				updatePatient(id, "ROLLEDBACK");
+				assertEquals("ROLLEDBACK", myPatientDao.read(id).getNameFirstRep().getFamily());
+				throw new IllegalStateException("Roll back");
+			});
+			fail();
+		} catch (InternalErrorException e) {
+			assertEquals("Roll back", e.getCause().getMessage());
+		}
+
+		// The same version number is used again
+		updatePatient(id, "FAMILY2");
+		Patient patient = myPatientDao.read(id);
+		assertEquals("2", patient.getIdElement().getVersionIdPart());
+		assertEquals("FAMILY2", patient.getNameFirstRep().getFamily());
+	}
+
+	@Test
+	public void testReadAfterExpunge() {
+		myDaoConfig.setExpungeEnabled(true);
+		try {
+			IIdType id = createPatient("FAMILY1");
+			updatePatient(id, "FAMILY2");
+			myPatientDao.read(id.withVersion("1"));
+			myPatientDao.read(id.withVersion("2"));
+
+			myPatientDao.expunge(id, new ExpungeOptions().setExpungeOldVersions(true), mySrd);
+
+			try {
+				myPatientDao.read(id.withVersion("1"));
+				fail();
+			} catch (ResourceNotFoundException e) {
+				// good
+			}
+			assertEquals("FAMILY2", myPatientDao.read(id).getNameFirstRep().getFamily());
+		} finally {
+			myDaoConfig.setExpungeEnabled(new DaoConfig().isExpungeEnabled());
+		}
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() {
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+}
@@ -7,6 +7,7 @@ import ca.uhn.fhir.jpa.entity.Search;
 import ca.uhn.fhir.jpa.model.entity.ResourceTable;
 import ca.uhn.fhir.jpa.model.search.SearchStatusEnum;
 import ca.uhn.fhir.jpa.search.SearchCoordinatorSvcImpl;
+import ca.uhn.fhir.jpa.search.SearchTotalCacheSvc;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
 import ca.uhn.fhir.rest.api.SortSpec;
@@ -56,6 +57,8 @@ public class FhirResourceDaoR4SearchOptimizedTest extends BaseJpaR4Test {
 	private ISearchDao mySearchEntityDao;
 	@Autowired
 	private ISearchResultDao mySearchResultDao;
+	@Autowired
+	private SearchTotalCacheSvc mySearchTotalCacheSvc;
 
 	@Before
 	public void before() {
@@ -70,6 +73,8 @@ public class FhirResourceDaoR4SearchOptimizedTest extends BaseJpaR4Test {
 		mySearchCoordinatorSvcImpl.setLoadingThrottleForUnitTests(null);
 		mySearchCoordinatorSvcImpl.setSyncSizeForUnitTests(SearchCoordinatorSvcImpl.DEFAULT_SYNC_SIZE);
 		myDaoConfig.setSearchPreFetchThresholds(new DaoConfig().getSearchPreFetchThresholds());
+		myDaoConfig.setReuseCachedSearchResultsForMillis(new DaoConfig().getReuseCachedSearchResultsForMillis());
+		myDaoConfig.setEstimatedSearchTotalCacheMillis(new DaoConfig().getEstimatedSearchTotalCacheMillis());
 		myCaptureQueriesListener.setCaptureQueryStackTrace(false);
 	}
 
@@ -158,6 +163,114 @@ public class FhirResourceDaoR4SearchOptimizedTest extends BaseJpaR4Test {
 
 	}
 
+	@Test
+	public void testFetchTotalEstimatedUsesRecentTotal() {
+		create200Patients();
+		mySearchTotalCacheSvc.invalidateAll();
+
+		myDaoConfig.setSearchPreFetchThresholds(Arrays.asList(20, 50, -1));
+		myDaoConfig.setReuseCachedSearchResultsForMillis(null);
+
+		// Without a recent total, an estimated total doesn't run a count query, and
+		// there is no total until the search has finished
+		SearchParameterMap params = new SearchParameterMap();
+		params.add(Patient.SP_ACTIVE, new TokenParam("true"));
+		params.setSearchTotalMode(SearchTotalModeEnum.ESTIMATED);
+		myCaptureQueriesListener.clear();
+		IBundleProvider results = myPatientDao.search(params);
+		assertThat(toUnqualifiedVersionlessIdValues(results, 0, 10, true), hasSize(10));
+		assertNull(results.size());
+		assertEquals(0, countCountQueries());
+
+		// An accurate total is always counted
+		params = new SearchParameterMap();
+		params.add(Patient.SP_ACTIVE, new TokenParam("true"));
+		params.setSearchTotalMode(SearchTotalModeEnum.ACCURATE);
+		myCaptureQueriesListener.clear();
+		results = myPatientDao.search(params);
+		assertEquals(200, results.size().intValue());
+		assertEquals(1, countCountQueries());
+
+		// Add another matching resource
+		Patient p = new Patient();
+		p.setActive(true);
+		myPatientDao.create(p);
+
+		// ..and is then used for estimates. Sorting and paging don't change the total, so it is reused.
+		params = new SearchParameterMap();
+		params.add(Patient.SP_ACTIVE, new TokenParam("true"));
+		params.setSort(new SortSpec(Patient.SP_NAME));
+		params.setCount(5);
+		params.setSearchTotalMode(SearchTotalModeEnum.ESTIMATED);
+		myCaptureQueriesListener.clear();
+		results = myPatientDao.search(params);
+		assertThat(toUnqualifiedVersionlessIdValues(results, 0, 10, true), hasSize(10));
+		assertEquals(200, results.getEstimatedSize().intValue());
+		assertEquals(0, countCountQueries());
+
+		// The estimate is out of date, but isn't used for paging so every result is still returned
+		assertNull(results.size());
+		assertThat(toUnqualifiedVersionlessIdValues(results, 0, null, false), hasSize(201));
+		assertEquals(201, myDatabaseBackedPagingProvider.retrieveResultList(null, results.getUuid()).size().intValue());
+		assertEquals(0, countCountQueries());
+
+		// A different search doesn't use the total, but gets one when it finishes
+		params = new SearchParameterMap();
+		params.add(Patient.SP_ACTIVE, new TokenParam("true"));
+		params.add(Patient.SP_FAMILY, new StringParam("FAM0000"));
+		params.setSearchTotalMode(SearchTotalModeEnum.ESTIMATED);
+		myCaptureQueriesListener.clear();
+		results = myPatientDao.search(params);
+		assertEquals(10, results.size().intValue());
+		assertEquals(0, countCountQueries());
+
+		// ..which is then used for estimates too
+		params = new SearchParameterMap();
+		params.add(Patient.SP_ACTIVE, new TokenParam("true"));
+		params.add(Patient.SP_FAMILY, new StringParam("FAM0000"));
+		params.setSearchTotalMode(SearchTotalModeEnum.ESTIMATED);
+		params.setCount(5);
+		myCaptureQueriesListener.clear();
+		results = myPatientDao.search(params);
+		assertEquals(10, results.size().intValue());
+		assertEquals(0, countCountQueries());
+	}
+
+	@Test
+	public void testFetchTotalEstimatedWithTotalCacheDisabled() {
+		create200Patients();
+		mySearchTotalCacheSvc.invalidateAll();
+
+		myDaoConfig.setSearchPreFetchThresholds(Arrays.asList(20, 50, 190));
+		myDaoConfig.setReuseCachedSearchResultsForMillis(null);
+		myDaoConfig.setEstimatedSearchTotalCacheMillis(null);
+
+		// Set an accurate total, which isn't remembered
+		SearchParameterMap params = new SearchParameterMap();
+		params.add(Patient.SP_ACTIVE, new TokenParam("true"));
+		params.setSearchTotalMode(SearchTotalModeEnum.ACCURATE);
+		assertEquals(200, myPatientDao.search(params).size().intValue());
+
+		for (int i = 0; i < 2; i++) {
+			params = new SearchParameterMap();
+			params.add(Patient.SP_ACTIVE, new TokenParam("true"));
+			params.setSearchTotalMode(SearchTotalModeEnum.ESTIMATED);
+			myCaptureQueriesListener.clear();
+			IBundleProvider results = myPatientDao.search(params);
+			assertThat(toUnqualifiedVersionlessIdValues(results, 0, 10, true), hasSize(10));
+			assertNull(results.size());
+			assertEquals(0, countCountQueries());
+		}
+	}
+
+	private long countCountQueries() {
+		return myCaptureQueriesListener
+			.getSelectQueries()
+			.stream()
+			.filter(t -> t.getSql(false, false).toLowerCase().contains("count("))
+			.count();
+	}
+
 	@Test
 	public void testFetchTotalAccurateForSlowLoading() throws InterruptedException {
 		create200Patients();
@@ -717,6 +830,7 @@ public class FhirResourceDaoR4SearchOptimizedTest extends BaseJpaR4Test {
 	public void afterResetDao() {
 		myDaoConfig.setResourceMetaCountHardLimit(new DaoConfig().getResourceMetaCountHardLimit());
 		myDaoConfig.setIndexMissingFields(new DaoConfig().getIndexMissingFields());
+		myDaoConfig.setResourcePidCacheEnabled(new DaoConfig().isResourcePidCacheEnabled());
 	}
 
 	@Test
@@ -1032,6 +1146,8 @@ public class FhirResourceDaoR4SearchOptimizedTest extends BaseJpaR4Test {
 
 	@Test
 	public void testReferenceOrLinksUseInList_ForcedIds() {
+		// Otherwise the IDs resolved while creating the patients would not be looked up again
+		myDaoConfig.setResourcePidCacheEnabled(false);
 
 		List<String> ids = new ArrayList<>();
 		for (int i = 0; i < 5; i++) {
@@ -0,0 +1,169 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.dao.DaoConfig;
+import ca.uhn.fhir.jpa.dao.data.ISearchDao;
+import ca.uhn.fhir.jpa.dao.data.ISearchResultDao;
+import ca.uhn.fhir.jpa.dao.data.ISearchResultPageDao;
+import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.entity.SearchTypeEnum;
+import ca.uhn.fhir.jpa.model.search.SearchStatusEnum;
+import ca.uhn.fhir.jpa.search.SearchCoordinatorSvcImpl;
+import ca.uhn.fhir.jpa.search.cache.DatabaseSearchResultPageCacheSvcImpl;
+import ca.uhn.fhir.jpa.search.cache.ISearchResultCacheSvc;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.util.TestUtil;
+import org.apache.commons.lang3.time.DateUtils;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.apache.commons.lang3.StringUtils.leftPad;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@TestPropertySource(properties = {
+	"scheduling_disabled=true"
+})
+public class FhirResourceDaoR4SearchResultPageCacheTest extends BaseJpaR4Test {
+
+	private SearchCoordinatorSvcImpl mySearchCoordinatorSvcImpl;
+	private ISearchResultCacheSvc mySearchResultPageCacheSvc;
+	@Autowired
+	private ISearchDao mySearchEntityDao;
+	@Autowired
+	private ISearchResultDao mySearchResultDao;
+	@Autowired
+	private ISearchResultPageDao mySearchResultPageDao;
+
+	@Before
+	public void before() {
+		mySearchResultPageCacheSvc = (ISearchResultCacheSvc) myAppCtx.getAutowireCapableBeanFactory().createBean(DatabaseSearchResultPageCacheSvcImpl.class, AutowireCapableBeanFactory.AUTOWIRE_NO, false);
+		mySearchCoordinatorSvcImpl = (SearchCoordinatorSvcImpl) AopProxyUtils.getSingletonTarget(mySearchCoordinatorSvc);
+		mySearchCoordinatorSvcImpl.setSearchCacheServicesForUnitTest(mySearchCacheSvc, mySearchResultPageCacheSvc);
+	}
+
+	@After
+	public void after() {
+		mySearchCoordinatorSvcImpl.setSearchCacheServicesForUnitTest(mySearchCacheSvc, mySearchResultCacheSvc);
+		mySearchCoordinatorSvcImpl.setSyncSizeForUnitTests(SearchCoordinatorSvcImpl.DEFAULT_SYNC_SIZE);
+		mySearchCoordinatorSvcImpl.setNeverUseLocalSearchForUnitTests(false);
+		myDaoConfig.setSearchPreFetchThresholds(new DaoConfig().getSearchPreFetchThresholds());
+		myDaoConfig.setExpireSearchResultsAfterMillis(new DaoConfig().getExpireSearchResultsAfterMillis());
+		myDaoConfig.setReuseCachedSearchResultsForMillis(new DaoConfig().getReuseCachedSearchResultsForMillis());
+	}
+
+	private Search createSearch() {
+		return runInTransaction(() -> {
+			Search search = new Search();
+			search.setStatus(SearchStatusEnum.FINISHED);
+			search.setUuid(UUID.randomUUID().toString());
+			search.setCreated(DateUtils.addDays(new Date(), -10000));
+			search.setSearchType(SearchTypeEnum.SEARCH);
+			search.setResourceType("Patient");
+			search.setSearchLastReturned(DateUtils.addDays(new Date(), -10000));
+			return mySearchEntityDao.save(search);
+		});
+	}
+
+	@Test
+	public void testStoreAndFetchResults() {
+		Search search = createSearch();
+
+		List<Long> pids = new ArrayList<>();
+		for (long i = 0; i < 2500; i++) {
+			pids.add(i % 2 == 0 ? 100000L - i : 100000L + i);
+		}
+
+		runInTransaction(() -> {
+			mySearchResultPageCacheSvc.storeResults(search, new ArrayList<>(), pids.subList(0, 10));
+			mySearchResultPageCacheSvc.storeResults(search, pids.subList(0, 10), pids.subList(10, 2500));
+		});
+
+		// 1 page for the first 10, then 3 for the rest
+		assertEquals(4, mySearchResultPageDao.count());
+		assertEquals(0, mySearchResultDao.count());
+
+		runInTransaction(() -> {
+			assertEquals(pids.subList(0, 5), mySearchResultPageCacheSvc.fetchResultPids(search, 0, 5));
+			assertEquals(pids.subList(5, 20), mySearchResultPageCacheSvc.fetchResultPids(search, 5, 20));
+			assertEquals(pids.subList(1000, 1020), mySearchResultPageCacheSvc.fetchResultPids(search, 1000, 1020));
+			assertEquals(pids.subList(1005, 2015), mySearchResultPageCacheSvc.fetchResultPids(search, 1005, 2015));
+			assertEquals(pids.subList(2490, 2500), mySearchResultPageCacheSvc.fetchResultPids(search, 2490, 2600));
+			assertEquals(0, mySearchResultPageCacheSvc.fetchResultPids(search, 2500, 2600).size());
+			assertEquals(pids, mySearchResultPageCacheSvc.fetchAllResultPids(search));
+		});
+
+		// Pages are deleted along with the search
+		myDaoConfig.setExpireSearchResultsAfterMillis(10);
+		myDaoConfig.setReuseCachedSearchResultsForMillis(null);
+		myStaleSearchDeletingSvc.pollForStaleSearchesAndDeleteThem();
+		assertEquals(0, mySearchEntityDao.count());
+		assertEquals(0, mySearchResultPageDao.count());
+	}
+
+	@Test
+	public void testFetchResultsStoredAsRows() {
+		Search search = createSearch();
+		List<Long> pids = Arrays.asList(5L, 4L, 3L, 2L, 1L);
+		runInTransaction(() -> mySearchResultCacheSvc.storeResults(search, new ArrayList<>(), pids));
+
+		runInTransaction(() -> {
+			assertEquals(pids.subList(1, 3), mySearchResultPageCacheSvc.fetchResultPids(search, 1, 3));
+			assertEquals(pids, mySearchResultPageCacheSvc.fetchAllResultPids(search));
+		});
+	}
+
+	@Test
+	public void testSearchAcrossPrefetchThresholds() {
+		runInTransaction(() -> {
+			for (int i = 0; i < 200; i++) {
+				Patient p = new Patient();
+				p.setId("PT" + leftPad(Integer.toString(i), 5, '0'));
+				p.setActive(true);
+				p.addName().setFamily("FAM" + leftPad(Integer.toString(i), 5, '0'));
+				myPatientDao.update(p);
+			}
+		});
+
+		myDaoConfig.setSearchPreFetchThresholds(Arrays.asList(50, -1));
+		mySearchCoordinatorSvcImpl.setSyncSizeForUnitTests(15);
+		mySearchCoordinatorSvcImpl.setNeverUseLocalSearchForUnitTests(true);
+
+		SearchParameterMap params = new SearchParameterMap();
+		params.setSort(new SortSpec(Patient.SP_NAME));
+		IBundleProvider results = myPatientDao.search(params);
+
+		List<String> ids = toUnqualifiedVersionlessIdValues(results, 0, 10, true);
+		assertEquals("Patient/PT00000", ids.get(0));
+		assertEquals("Patient/PT00009", ids.get(9));
+
+		// Crosses the first prefetch threshold, so the search is continued
+		ids = toUnqualifiedVersionlessIdValues(myDatabaseBackedPagingProvider.retrieveResultList(null, results.getUuid()), 40, 200, false);
+		assertEquals(160, ids.size());
+		assertEquals("Patient/PT00040", ids.get(0));
+		assertEquals("Patient/PT00199", ids.get(159));
+
+		assertTrue(mySearchResultPageDao.count() > 0);
+		assertEquals(0, mySearchResultDao.count());
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() {
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+}
@@ -1,6 +1,7 @@
 package ca.uhn.fhir.jpa.dao.r4;
 
 import ca.uhn.fhir.jpa.dao.DaoConfig;
+import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
 import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
 import ca.uhn.fhir.jpa.model.entity.ResourceTable;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
@@ -37,6 +38,7 @@ public class FhirResourceDaoR4UpdateTest extends BaseJpaR4Test {
 	public void afterResetDao() {
 		myDaoConfig.setResourceMetaCountHardLimit(new DaoConfig().getResourceMetaCountHardLimit());
 		myDaoConfig.setIndexMissingFields(new DaoConfig().getIndexMissingFields());
+		myDaoConfig.setResourceEncoding(new DaoConfig().getResourceEncoding());
 	}
 
 	@Before
@@ -87,6 +89,35 @@ public class FhirResourceDaoR4UpdateTest extends BaseJpaR4Test {
 	}
 
 
+	@Test
+	public void testUpdateWithChangedResourceEncoding() {
+		Patient p = new Patient();
+		p.setActive(true);
+		p.addName().setFamily("FAMILY1");
+		IIdType id = myPatientDao.create(p).getId().toUnqualifiedVersionless();
+
+		myDaoConfig.setResourceEncoding(ResourceEncodingEnum.JSONZ);
+
+		p = new Patient();
+		p.setId(id);
+		p.setActive(true);
+		p.addName().setFamily("FAMILY2");
+		myPatientDao.update(p);
+
+		runInTransaction(() -> {
+			ResourceHistoryTable v1 = myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(id.getIdPartAsLong(), 1);
+			assertEquals(ResourceEncodingEnum.JSONC, v1.getEncoding());
+			ResourceHistoryTable v2 = myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(id.getIdPartAsLong(), 2);
+			assertEquals(ResourceEncodingEnum.JSONZ, v2.getEncoding());
+		});
+
+		// Versions stored with either encoding can be read
+		myDaoConfig.setResourceEncoding(ResourceEncodingEnum.JSONC);
+		assertEquals("FAMILY1", myPatientDao.read(id.withVersion("1")).getNameFirstRep().getFamily());
+		assertEquals("FAMILY2", myPatientDao.read(id.withVersion("2")).getNameFirstRep().getFamily());
+		assertEquals("FAMILY2", myPatientDao.read(id).getNameFirstRep().getFamily());
+	}
+
 	@Test
 	public void testUpdateNotModifiedDoesNotAffectDates() {
 		IIdType id = runInTransaction(() -> {
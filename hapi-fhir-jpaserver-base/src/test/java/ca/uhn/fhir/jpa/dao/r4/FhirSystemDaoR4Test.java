@@ -2,6 +2,7 @@ package ca.uhn.fhir.jpa.dao.r4;
 
 import ca.uhn.fhir.jpa.dao.BaseHapiFhirDao;
 import ca.uhn.fhir.jpa.dao.DaoConfig;
+import ca.uhn.fhir.jpa.entity.ResourceReindexJobEntity;
 import ca.uhn.fhir.jpa.model.entity.*;
 import ca.uhn.fhir.jpa.provider.SystemProviderDstu2Test;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
@@ -23,6 +24,7 @@ import org.hl7.fhir.r4.model.Bundle.*;
 import org.hl7.fhir.r4.model.Observation.ObservationStatus;
 import org.hl7.fhir.r4.model.OperationOutcome.IssueSeverity;
 import org.junit.*;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallback;
@@ -48,6 +50,8 @@ public class FhirSystemDaoR4Test extends BaseJpaR4SystemTest {
 	public void after() {
 		myDaoConfig.setAllowInlineMatchUrlReferences(false);
 		myDaoConfig.setAllowMultipleDelete(new DaoConfig().isAllowMultipleDelete());
+		myDaoConfig.setReindexChunkSize(new DaoConfig().getReindexChunkSize());
+		myDaoConfig.setReindexJobPartitionCount(new DaoConfig().getReindexJobPartitionCount());
 	}
 
 	@Before
@@ -608,6 +612,72 @@ public class FhirSystemDaoR4Test extends BaseJpaR4SystemTest {
 		assertEquals(1, myPatientDao.search(searchParamMap).size().intValue());
 	}
 
+	@Test
+	public void testReindexingInChunks() {
+		myDaoConfig.setReindexChunkSize(2);
+
+		List<IIdType> ids = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			Patient p = new Patient();
+			p.addName().setFamily("family" + i);
+			ids.add(myPatientDao.create(p, mySrd).getId().toUnqualifiedVersionless());
+		}
+
+		runInTransaction(()->{
+			myEntityManager
+				.createQuery("UPDATE ResourceIndexedSearchParamString s SET s.myHashNormalizedPrefix = null")
+				.executeUpdate();
+		});
+
+		SearchParameterMap searchParamMap = new SearchParameterMap();
+		searchParamMap.setLoadSynchronous(true);
+		searchParamMap.add(Patient.SP_FAMILY, new StringParam("family"));
+		assertEquals(0, myPatientDao.search(searchParamMap).size().intValue());
+
+		Long jobId = myResourceReindexingSvc.markAllResourcesForReindexing();
+		assertEquals(5, myResourceReindexingSvc.forceReindexingPass());
+
+		assertEquals(5, myPatientDao.search(searchParamMap).size().intValue());
+		runInTransaction(()->{
+			assertEquals(5, myResourceReindexJobDao.getReindexCount(jobId).orElse(0).intValue());
+			for (IIdType next : ids) {
+				assertEquals(Long.valueOf(1), myResourceTableDao.findById(next.getIdPartAsLong()).orElseThrow(IllegalStateException::new).getIndexStatus());
+			}
+		});
+	}
+
+	@Test
+	public void testReindexingWithPartitionedJobs() {
+		myDaoConfig.setReindexJobPartitionCount(3);
+
+		List<Long> pids = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			Patient p = new Patient();
+			p.addName().setFamily("family" + i);
+			pids.add(myPatientDao.create(p, mySrd).getId().getIdPartAsLong());
+		}
+
+		myResourceReindexingSvc.markAllResourcesForReindexing();
+
+		List<ResourceReindexJobEntity> jobs = runInTransaction(() -> myResourceReindexJobDao.findAll(PageRequest.of(0, 10), false));
+		jobs.sort(Comparator.comparing(ResourceReindexJobEntity::getId));
+		assertEquals(3, jobs.size());
+		assertNull(jobs.get(0).getPidRangeLow());
+		assertEquals(jobs.get(0).getPidRangeHigh() + 1, jobs.get(1).getPidRangeLow().longValue());
+		assertEquals(jobs.get(1).getPidRangeHigh() + 1, jobs.get(2).getPidRangeLow().longValue());
+		assertNull(jobs.get(2).getPidRangeHigh());
+
+		// Each job only covers the resources in its own range
+		assertEquals(6, myResourceReindexingSvc.forceReindexingPass());
+		runInTransaction(()->{
+			int total = 0;
+			for (ResourceReindexJobEntity next : jobs) {
+				total += myResourceReindexJobDao.getReindexCount(next.getId()).orElse(0);
+			}
+			assertEquals(6, total);
+		});
+	}
+
 	@Test
 	public void testReindexingSingleStringHashIdentityValueIsDeleted() {
 		Patient p = new Patient();
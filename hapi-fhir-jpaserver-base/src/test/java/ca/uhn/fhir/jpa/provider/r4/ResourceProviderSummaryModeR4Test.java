@@ -3,6 +3,7 @@ package ca.uhn.fhir.jpa.provider.r4;
 import ca.uhn.fhir.jpa.config.TestR4Config;
 import ca.uhn.fhir.jpa.dao.DaoConfig;
 import ca.uhn.fhir.jpa.search.SearchCoordinatorSvcImpl;
+import ca.uhn.fhir.jpa.search.SearchTotalCacheSvc;
 import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
 import ca.uhn.fhir.rest.api.SummaryEnum;
 import ca.uhn.fhir.util.TestUtil;
@@ -13,6 +14,7 @@ import org.hl7.fhir.r4.model.Patient;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.util.AopTestUtils;
 
 import java.util.ArrayList;
@@ -24,6 +26,8 @@ public class ResourceProviderSummaryModeR4Test extends BaseResourceProviderR4Tes
 
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ResourceProviderSummaryModeR4Test.class);
 	private SearchCoordinatorSvcImpl mySearchCoordinatorSvcRaw;
+	@Autowired
+	private SearchTotalCacheSvc mySearchTotalCacheSvc;
 
 	@Override
 	@After
@@ -34,6 +38,7 @@ public class ResourceProviderSummaryModeR4Test extends BaseResourceProviderR4Tes
 		mySearchCoordinatorSvcRaw.setSyncSizeForUnitTests(SearchCoordinatorSvcImpl.DEFAULT_SYNC_SIZE);
 		myDaoConfig.setSearchPreFetchThresholds(new DaoConfig().getSearchPreFetchThresholds());
 		myDaoConfig.setDefaultTotalMode(null);
+		myDaoConfig.setReuseCachedSearchResultsForMillis(new DaoConfig().getReuseCachedSearchResultsForMillis());
 	}
 
 	@Override
@@ -149,6 +154,45 @@ public class ResourceProviderSummaryModeR4Test extends BaseResourceProviderR4Tes
 		assertEquals(10, outcome.getEntry().size());
 	}
 
+	/**
+	 * Estimated total - A recent total is reported in the first page, but
+	 * isn't used for paging
+	 */
+	@Test
+	public void testSearchWithTotalEstimatedUsesRecentTotal() {
+		myDaoConfig.setReuseCachedSearchResultsForMillis(null);
+		mySearchTotalCacheSvc.invalidateAll();
+
+		Bundle outcome = ourClient
+			.search()
+			.forResource(Patient.class)
+			.where(Patient.ACTIVE.exactly().code("true"))
+			.totalMode(SearchTotalModeEnum.ACCURATE)
+			.returnBundle(Bundle.class)
+			.execute();
+		assertEquals(new Integer(104), outcome.getTotalElement().getValue());
+
+		Patient p = new Patient();
+		p.setActive(true);
+		myPatientDao.create(p);
+
+		outcome = ourClient
+			.search()
+			.forResource(Patient.class)
+			.where(Patient.ACTIVE.exactly().code("true"))
+			.totalMode(SearchTotalModeEnum.ESTIMATED)
+			.returnBundle(Bundle.class)
+			.execute();
+		assertEquals(new Integer(104), outcome.getTotalElement().getValue());
+
+		int count = outcome.getEntry().size();
+		while (outcome.getLink(Bundle.LINK_NEXT) != null) {
+			outcome = ourClient.loadPage().next(outcome).execute();
+			count += outcome.getEntry().size();
+		}
+		assertEquals(105, count);
+	}
+
 	@AfterClass
 	public static void afterClassClearContext() {
 		TestUtil.clearAllStaticFieldsForUnitTest();
@@ -61,6 +61,8 @@ public class SearchCoordinatorSvcImplTest {
 	private ISearchCacheSvc mySearchCacheSvc;
 	@Mock
 	private ISearchResultCacheSvc mySearchResultCacheSvc;
+	@Mock
+	private SearchTotalCacheSvc mySearchTotalCacheSvc;
 	private SearchCoordinatorSvcImpl mySvc;
 	@Mock
 	private PlatformTransactionManager myTxManager;
@@ -87,6 +89,7 @@ public class SearchCoordinatorSvcImplTest {
 		mySvc.setSearchCacheServicesForUnitTest(mySearchCacheSvc, mySearchResultCacheSvc);
 		mySvc.setDaoRegistryForUnitTest(myDaoRegistry);
 		mySvc.setInterceptorBroadcasterForUnitTest(myInterceptorBroadcaster);
+		mySvc.setSearchTotalCacheSvcForUnitTest(mySearchTotalCacheSvc);
 
 		myDaoConfig = new DaoConfig();
 		mySvc.setDaoConfigForUnitTest(myDaoConfig);
@@ -0,0 +1,50 @@
+package ca.uhn.fhir.jpa.search.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class DatabaseSearchResultPageCacheSvcImplTest {
+
+	private static long[] toArray(List<Long> thePids) {
+		return thePids.stream().mapToLong(t -> t).toArray();
+	}
+
+	@Test
+	public void testEncodeAndDecodePids() {
+		List<Long> pids = Arrays.asList(0L, 1L, 1000L, 999L, 5L, Long.MAX_VALUE, Long.MIN_VALUE, 0L, -1L, 123456789012L);
+		byte[] encoded = DatabaseSearchResultPageCacheSvcImpl.encodePids(pids);
+		assertArrayEquals(toArray(pids), DatabaseSearchResultPageCacheSvcImpl.decodePids(encoded, pids.size()));
+	}
+
+	@Test
+	public void testEncodeAndDecodeRandomPids() {
+		Random random = new Random(0);
+		List<Long> pids = new ArrayList<>();
+		for (int i = 0; i < DatabaseSearchResultPageCacheSvcImpl.MAX_PIDS_PER_PAGE; i++) {
+			pids.add(random.nextLong());
+		}
+		byte[] encoded = DatabaseSearchResultPageCacheSvcImpl.encodePids(pids);
+		assertArrayEquals(toArray(pids), DatabaseSearchResultPageCacheSvcImpl.decodePids(encoded, pids.size()));
+	}
+
+	@Test
+	public void testEncodedSizeOfNearbyPids() {
+		List<Long> pids = new ArrayList<>();
+		for (long i = 0; i < 1000; i++) {
+			pids.add(1000000L + i * 3);
+		}
+		byte[] encoded = DatabaseSearchResultPageCacheSvcImpl.encodePids(pids);
+
+		// The first PID needs 3 bytes, after that each needs only one
+		assertEquals(1002, encoded.length);
+		assertArrayEquals(toArray(pids), DatabaseSearchResultPageCacheSvcImpl.decodePids(encoded, pids.size()));
+	}
+
+}
@@ -6,6 +6,7 @@ import ca.uhn.fhir.jpa.dao.DaoConfig;
 import ca.uhn.fhir.jpa.dao.DaoRegistry;
 import ca.uhn.fhir.jpa.dao.IFhirResourceDao;
 import ca.uhn.fhir.jpa.dao.data.IForcedIdDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceHistoryTableDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceReindexJobDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceTableDao;
 import ca.uhn.fhir.jpa.entity.ResourceReindexJobEntity;
@@ -26,8 +27,13 @@ import org.springframework.data.domain.SliceImpl;
 import org.springframework.transaction.PlatformTransactionManager;
 
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -52,6 +58,8 @@ public class ResourceReindexingSvcImplTest extends BaseJpaTest {
 	@Mock
 	private IResourceTableDao myResourceTableDao;
 	@Mock
+	private IResourceHistoryTableDao myResourceHistoryTableDao;
+	@Mock
 	private IFhirResourceDao myResourceDao;
 	@Captor
 	private ArgumentCaptor<Long> myIdCaptor;
@@ -89,6 +97,7 @@ public class ResourceReindexingSvcImplTest extends BaseJpaTest {
 		mySvc.setForcedIdDaoForUnitTest(myForcedIdDao);
 		mySvc.setReindexJobDaoForUnitTest(myReindexJobDao);
 		mySvc.setResourceTableDaoForUnitTest(myResourceTableDao);
+		mySvc.setResourceHistoryTableDaoForUnitTest(myResourceHistoryTableDao);
 		mySvc.setTxManagerForUnitTest(myTxManager);
 		mySvc.setSearchParamRegistryForUnitTest(mySearchParamRegistry);
 		mySvc.start();
@@ -178,6 +187,8 @@ public class ResourceReindexingSvcImplTest extends BaseJpaTest {
 		verify(myReindexJobDao, times(1)).findAll(any(), eq(true));
 		verify(myReindexJobDao, times(1)).getReindexCount(any());
 		verify(myReindexJobDao, times(1)).setReindexCount(any(), anyInt());
+		verify(myReindexJobDao, times(1)).claimLease(eq(123L), any(), any());
+		verify(myReindexJobDao, times(1)).releaseLease(eq(123L), any());
 		verifyNoMoreInteractions(myReindexJobDao);
 
 		verify(mySearchParamRegistry, times(1)).forceRefresh();
@@ -236,18 +247,128 @@ public class ResourceReindexingSvcImplTest extends BaseJpaTest {
 		verify(myReindexJobDao, times(1)).findAll(any(), eq(true));
 		verify(myReindexJobDao, times(1)).getReindexCount(any());
 		verify(myReindexJobDao, times(1)).setReindexCount(any(), anyInt());
+		verify(myReindexJobDao, times(1)).claimLease(eq(123L), any(), any());
+		verify(myReindexJobDao, times(1)).releaseLease(eq(123L), any());
 		verifyNoMoreInteractions(myReindexJobDao);
 	}
 
+	@Test
+	public void testReindexPassInChunks() {
+		myDaoConfig.setReindexChunkSize(3);
+		mockNothingToExpunge();
+		mockSingleReindexingJob(null);
+		mockFourResourcesNeedReindexing();
+		mockFetchFourResources();
+
+		int count = mySvc.forceReindexingPass();
+		assertEquals(4, count);
+		verify(myResourceDao, times(4)).reindex(any(), any());
+
+		// The first chunk is loaded in bulk, and the final chunk only has one resource
+		verify(myResourceTableDao, times(1)).findByIdsAndFetchForcedId(eq(Arrays.asList(0L, 1L, 2L)));
+		verify(myResourceHistoryTableDao, times(1)).findByResourceIdsAndFetchProvenance(eq(Arrays.asList(0L, 1L, 2L)));
+		verify(myResourceTableDao, times(1)).findById(eq(3L));
+		verify(myResourceTableDao, never()).findById(eq(0L));
+
+		verify(myReindexJobDao, times(1)).setThresholdLow(eq(123L), eq(new Date(40 * DateUtils.MILLIS_PER_DAY)));
+	}
+
+	@Test
+	public void testReindexPassChunksRunConcurrently() {
+		myDaoConfig.setReindexChunkSize(2);
+		mockNothingToExpunge();
+		mockSingleReindexingJob(null);
+		mockFourResourcesNeedReindexing();
+		mockFetchFourResources();
+
+		// Each resource waits until both chunks have started, which only happens if they run on separate threads
+		CountDownLatch bothChunksStarted = new CountDownLatch(2);
+		Set<String> threadNames = Collections.synchronizedSet(new HashSet<>());
+		List<Boolean> overlapped = Collections.synchronizedList(new ArrayList<>());
+		doAnswer(t -> {
+			if (threadNames.add(Thread.currentThread().getName())) {
+				bothChunksStarted.countDown();
+			}
+			overlapped.add(bothChunksStarted.await(10, TimeUnit.SECONDS));
+			return null;
+		}).when(myResourceDao).reindex(any(), any());
+
+		int count = mySvc.forceReindexingPass();
+		assertEquals(4, count);
+		assertEquals(2, threadNames.size());
+		assertThat(overlapped, everyItem(equalTo(true)));
+	}
+
+	@Test
+	public void testReindexPassReleasesOnlyItsOwnLease() {
+		mockNothingToExpunge();
+		mockSingleReindexingJob(null);
+		mockFourResourcesNeedReindexing();
+		mockFetchFourResources();
+		// Our lease expired during the pass and another server claimed the job
+		when(myReindexJobDao.releaseLease(eq(123L), any())).thenReturn(0);
+
+		mySvc.forceReindexingPass();
+
+		ArgumentCaptor<Date> claimedCaptor = ArgumentCaptor.forClass(Date.class);
+		ArgumentCaptor<Date> releasedCaptor = ArgumentCaptor.forClass(Date.class);
+		verify(myReindexJobDao, times(1)).claimLease(eq(123L), any(), claimedCaptor.capture());
+		verify(myReindexJobDao, times(1)).releaseLease(eq(123L), releasedCaptor.capture());
+		assertEquals(claimedCaptor.getValue(), releasedCaptor.getValue());
+	}
+
+	@Test
+	public void testReindexPassSkipsJobLeasedByAnotherServer() {
+		mockNothingToExpunge();
+		mockSingleReindexingJob(null);
+		when(myReindexJobDao.claimLease(eq(123L), any(), any())).thenReturn(0);
+
+		int count = mySvc.forceReindexingPass();
+		assertEquals(0, count);
+
+		verify(myResourceTableDao, never()).findIdsOfResourcesWithinUpdatedRangeOrderedFromOldest(any(), any(), any());
+		verify(myReindexJobDao, never()).releaseLease(any(), any());
+		verify(myReindexJobDao, never()).setThresholdLow(any(), any());
+	}
+
+	@Test
+	public void testReindexPassWithPidRange() {
+		mockNothingToExpunge();
+		mockSingleReindexingJob(null);
+		mySingleJob.setPidRangeLow(2L);
+		mockFetchFourResources();
+		List<Long> values = Arrays.asList(2L, 3L);
+		when(myResourceTableDao.findIdsOfResourcesWithinUpdatedAndPidRangeOrderedFromOldest(any(), any(), any(), any(), any())).thenReturn(new SliceImpl<>(values));
+
+		int count = mySvc.forceReindexingPass();
+		assertEquals(2, count);
+
+		verify(myResourceTableDao, never()).findIdsOfResourcesWithinUpdatedRangeOrderedFromOldest(any(), any(), any());
+		verify(myResourceTableDao, times(1)).findIdsOfResourcesWithinUpdatedAndPidRangeOrderedFromOldest(any(), any(), any(), eq(2L), eq(Long.MAX_VALUE));
+		verify(myResourceDao, times(2)).reindex(any(), any());
+	}
+
 	private void mockWhenResourceTableFindById(long[] theUpdatedTimes, String[] theResourceTypes) {
 		when(myResourceTableDao.findById(any())).thenAnswer(t -> {
-			ResourceTable retVal = new ResourceTable();
 			Long id = (Long) t.getArguments()[0];
-			retVal.setId(id);
-			retVal.setResourceType(theResourceTypes[id.intValue()]);
-			retVal.setUpdated(new Date(theUpdatedTimes[id.intValue()]));
-			return Optional.of(retVal);
+			return Optional.of(newResourceTable(id, theUpdatedTimes, theResourceTypes));
 		});
+		when(myResourceTableDao.findByIdsAndFetchForcedId(any())).thenAnswer(t -> {
+			Collection<Long> ids = (Collection<Long>) t.getArguments()[0];
+			List<ResourceTable> retVal = new ArrayList<>();
+			for (Long next : ids) {
+				retVal.add(newResourceTable(next, theUpdatedTimes, theResourceTypes));
+			}
+			return retVal;
+		});
+	}
+
+	private ResourceTable newResourceTable(Long theId, long[] theUpdatedTimes, String[] theResourceTypes) {
+		ResourceTable retVal = new ResourceTable();
+		retVal.setId(theId);
+		retVal.setResourceType(theResourceTypes[theId.intValue()]);
+		retVal.setUpdated(new Date(theUpdatedTimes[theId.intValue()]));
+		return retVal;
 	}
 
 	private void mockFetchFourResources() {
@@ -300,6 +421,8 @@ public class ResourceReindexingSvcImplTest extends BaseJpaTest {
 		mySingleJob.setThresholdHigh(DateUtils.addMinutes(new Date(), 1));
 		mySingleJob.setResourceType(theResourceType);
 		when(myReindexJobDao.findAll(any(), eq(false))).thenReturn(Arrays.asList(mySingleJob));
+		when(myReindexJobDao.claimLease(eq(123L), any(), any())).thenReturn(1);
+		when(myReindexJobDao.releaseLease(eq(123L), any())).thenReturn(1);
 	}
 
 	private void mockNothingToExpunge() {
@@ -43,6 +43,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static org.apache.commons.lang3.StringUtils.*;
@@ -376,6 +377,31 @@ public class StressTestR4Test extends BaseResourceProviderR4Test {
 		}
 	}
 
+	@Ignore
+	@Test
+	public void testCreateThroughput() {
+		int count = 5000;
+
+		Patient patient = new Patient();
+		patient.setActive(true);
+		IIdType patientId = myPatientDao.create(patient).getId().toUnqualifiedVersionless();
+
+		StopWatch sw = new StopWatch();
+		for (int i = 0; i < count; i++) {
+			Observation obs = new Observation();
+			obs.setStatus(Observation.ObservationStatus.FINAL);
+			obs.addIdentifier().setSystem("http://foo").setValue("OBS" + i);
+			obs.getCode().addCoding().setSystem("http://loinc.org").setCode("8867-4");
+			obs.addCategory().addCoding().setSystem("http://terminology.hl7.org/CodeSystem/observation-category").setCode("vital-signs");
+			obs.setSubject(new Reference(patientId));
+			obs.setEffective(new DateTimeType("2019-01-01T10:00:00Z"));
+			obs.setValue(new Quantity().setValue(60 + (i % 40)).setSystem("http://unitsofmeasure.org").setCode("/min"));
+			myObservationDao.create(obs);
+		}
+
+		ourLog.info("Created {} resources in {} - {}/sec", count, sw, sw.formatThroughput(count, TimeUnit.SECONDS));
+	}
+
 	@Test
 	public void testMultithreadedSearch() throws Exception {
 		Bundle input = new Bundle();
@@ -0,0 +1,137 @@
+package ca.uhn.fhir.jpa.subscription.module.cache;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.config.TestR4Config;
+import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
+import ca.uhn.fhir.jpa.searchparam.matcher.IndexedSearchParamExtractor;
+import ca.uhn.fhir.jpa.util.TestUtil;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Subscription;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.*;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {TestR4Config.class})
+public class SubscriptionRegistryCandidatesR4Test {
+
+	@Autowired
+	private SubscriptionRegistry mySubscriptionRegistry;
+	@Autowired
+	private IndexedSearchParamExtractor myIndexedSearchParamExtractor;
+	@Autowired
+	private FhirContext myContext;
+
+	@Before
+	@After
+	public void clearRegistry() {
+		mySubscriptionRegistry.unregisterAllSubscriptions();
+	}
+
+	private void register(String theId, String theCriteria) {
+		Subscription subscription = new Subscription();
+		subscription.setId(theId);
+		subscription.setCriteria(theCriteria);
+		subscription.setStatus(Subscription.SubscriptionStatus.ACTIVE);
+		subscription.getChannel().setType(Subscription.SubscriptionChannelType.RESTHOOK);
+		subscription.getChannel().setPayload("application/fhir+json");
+		subscription.getChannel().setEndpoint("http://localhost:8888");
+		assertTrue(mySubscriptionRegistry.registerSubscriptionUnlessAlreadyRegistered(subscription));
+	}
+
+	private Set<String> getCandidateIds(IBaseResource theResource) {
+		Supplier<ResourceIndexedSearchParams> searchParams = () -> myIndexedSearchParamExtractor.extractIndexedSearchParams(theResource, null);
+		Collection<ActiveSubscription> candidates = mySubscriptionRegistry.getCandidates(myContext.getResourceDefinition(theResource).getName(), searchParams);
+		return candidates.stream().map(t -> t.getSubscription().getIdPart()).collect(Collectors.toCollection(TreeSet::new));
+	}
+
+	@Test
+	public void testCriteriaCompiledOnRegistration() {
+		register("1", "Observation?code=http://foo|CODE1");
+		register("2", "Observation?foo=bar");
+
+		assertEquals("Observation", mySubscriptionRegistry.get("1").getSubscription().getCompiledCriteria().getResourceName());
+		assertNull(mySubscriptionRegistry.get("2").getSubscription().getCompiledCriteria());
+	}
+
+	@Test
+	public void testCandidatesByResourceType() {
+		register("1", "Observation?status=final");
+		register("2", "Patient?active=true");
+		register("3", "Patient?");
+
+		Patient patient = new Patient();
+		patient.setActive(true);
+		assertThat(getCandidateIds(patient), containsInAnyOrder("2", "3"));
+
+		Observation obs = new Observation();
+		obs.setStatus(Observation.ObservationStatus.FINAL);
+		assertThat(getCandidateIds(obs), containsInAnyOrder("1"));
+		assertThat(mySubscriptionRegistry.getCandidates(null, () -> null), hasSize(3));
+	}
+
+	@Test
+	public void testCandidatesByToken() {
+		register("1", "Observation?code=http://foo|CODE1");
+		register("2", "Observation?code=http://foo|CODE2,http://foo|CODE3");
+		register("3", "Observation?code=CODE4");
+		register("4", "Observation?code=http://bar|");
+		register("5", "Observation?code=http://foo|CODE1&code=http://foo|CODE5");
+		register("6", "Observation?value-quantity=100");
+		register("7", "Observation?code=http://foo|CODE1&status=final");
+
+		Observation obs = new Observation();
+		obs.setStatus(Observation.ObservationStatus.FINAL);
+		obs.getCode().addCoding().setSystem("http://foo").setCode("code1");
+		assertThat(getCandidateIds(obs), containsInAnyOrder("1", "5", "6", "7"));
+
+		obs = new Observation();
+		obs.getCode().addCoding().setSystem("http://foo").setCode("CODE3");
+		assertThat(getCandidateIds(obs), containsInAnyOrder("2", "6"));
+
+		obs = new Observation();
+		obs.getCode().addCoding().setSystem("http://baz").setCode("CODE4");
+		obs.getCode().addCoding().setSystem("http://bar").setCode("CODE6");
+		assertThat(getCandidateIds(obs), containsInAnyOrder("3", "4", "6"));
+
+		obs = new Observation();
+		obs.getCode().addCoding().setSystem("http://foo").setCode("CODE5");
+		assertThat(getCandidateIds(obs), containsInAnyOrder("5", "6"));
+	}
+
+	@Test
+	public void testCandidatesUpdatedWhenCriteriaChange() {
+		register("1", "Observation?code=http://foo|CODE1");
+
+		Observation obs = new Observation();
+		obs.getCode().addCoding().setSystem("http://foo").setCode("CODE2");
+		assertThat(getCandidateIds(obs), empty());
+
+		register("1", "Observation?code=http://foo|CODE2");
+		assertThat(getCandidateIds(obs), containsInAnyOrder("1"));
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() {
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+}
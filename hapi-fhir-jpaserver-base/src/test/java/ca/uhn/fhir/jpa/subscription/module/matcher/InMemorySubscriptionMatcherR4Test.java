@@ -4,6 +4,7 @@ import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.jpa.config.TestR4Config;
 import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamString;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
 import ca.uhn.fhir.jpa.searchparam.matcher.SearchParamMatcher;
 import ca.uhn.fhir.jpa.subscription.module.CanonicalSubscription;
@@ -408,6 +409,40 @@ public class InMemorySubscriptionMatcherR4Test {
 		}
 	}
 
+	@Test
+	public void testSearchParamsExtractedOncePerMessage() {
+		Patient patient = new Patient();
+		patient.setId("Patient/123");
+		patient.addName().setFamily("FOO");
+		patient.setGender(Enumerations.AdministrativeGender.MALE);
+
+		ResourceModifiedMessage msg = new ResourceModifiedMessage(myContext, patient, ResourceModifiedMessage.OperationTypeEnum.CREATE);
+
+		// Criteria that don't need indexed params don't trigger an extraction
+		InMemoryMatchResult result = myInMemorySubscriptionMatcher.match(newSubscription("Patient?_id=123"), msg);
+		assertTrue(result.matched());
+		assertNull(msg.getIndexedSearchParams());
+
+		result = myInMemorySubscriptionMatcher.match(newSubscription("Patient?family=FOO"), msg);
+		assertTrue(result.matched());
+		ResourceIndexedSearchParams searchParams = msg.getIndexedSearchParams();
+		assertNotNull(searchParams);
+
+		// Later subscriptions reuse the params extracted for the first one
+		result = myInMemorySubscriptionMatcher.match(newSubscription("Patient?gender=male"), msg);
+		assertTrue(result.matched());
+		result = myInMemorySubscriptionMatcher.match(newSubscription("Patient?family=BAR"), msg);
+		assertFalse(result.matched());
+		assertSame(searchParams, msg.getIndexedSearchParams());
+	}
+
+	private CanonicalSubscription newSubscription(String theCriteria) {
+		CanonicalSubscription subscription = new CanonicalSubscription();
+		subscription.setCriteriaString(theCriteria);
+		subscription.setIdElement(new IdType("Subscription", 123L));
+		return subscription;
+	}
+
 	@Test
 	public void testReferenceAlias() {
 		Observation obs = new Observation();
@@ -3,9 +3,11 @@ package ca.uhn.fhir.jpa.subscription.resthook;
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.jpa.config.StoppableSubscriptionDeliveringRestHookSubscriber;
 import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.IAnonymousInterceptor;
 import ca.uhn.fhir.interceptor.api.IInterceptorService;
 import ca.uhn.fhir.interceptor.api.Interceptor;
 import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.model.entity.ModelConfig;
 import ca.uhn.fhir.jpa.subscription.BaseSubscriptionsR4Test;
 import ca.uhn.fhir.jpa.subscription.module.CanonicalSubscription;
 import ca.uhn.fhir.jpa.subscription.module.ResourceModifiedMessage;
@@ -13,6 +15,8 @@ import ca.uhn.fhir.jpa.subscription.module.interceptor.SubscriptionDebugLogInter
 import ca.uhn.fhir.jpa.subscription.module.subscriber.ResourceDeliveryMessage;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.MethodOutcome;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 import org.apache.commons.lang3.Validate;
 import org.hl7.fhir.r4.model.IdType;
 import org.hl7.fhir.r4.model.Observation;
@@ -36,6 +40,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -202,6 +207,99 @@ public class RestHookWithInterceptorR4Test extends BaseSubscriptionsR4Test {
 	}
 
 
+	@Test
+	public void testDeliveryFailedThenRetried() throws Exception {
+		myModelConfig.setRestHookDeliveryRetryCount(2);
+		myModelConfig.setRestHookDeliveryRetryDelayMillis(100);
+
+		AtomicInteger attempts = new AtomicInteger();
+		IAnonymousInterceptor failFirstAttempt = (thePointcut, theArgs) -> {
+			if (attempts.incrementAndGet() == 1) {
+				throw new InternalErrorException("Simulated delivery failure");
+			}
+		};
+		CountDownLatch failedLatch = new CountDownLatch(1);
+		IAnonymousInterceptor countFailures = (thePointcut, theArgs) -> failedLatch.countDown();
+		myInterceptorRegistry.registerAnonymousInterceptor(Pointcut.SUBSCRIPTION_BEFORE_REST_HOOK_DELIVERY, failFirstAttempt);
+		myInterceptorRegistry.registerAnonymousInterceptor(Pointcut.SUBSCRIPTION_AFTER_DELIVERY_FAILED, countFailures);
+		try {
+
+			// Create a subscription
+			CountDownLatch registerLatch = registerLatchHookInterceptor(1, Pointcut.SUBSCRIPTION_AFTER_ACTIVE_SUBSCRIPTION_REGISTERED);
+			createSubscription("Observation?status=final", "application/fhir+json");
+			registerLatch.await(10, TimeUnit.SECONDS);
+
+			sendObservation();
+
+			assertTrue(failedLatch.await(10, TimeUnit.SECONDS));
+			waitForSize(1, ourUpdatedObservations);
+			assertEquals(2, attempts.get());
+
+		} finally {
+			myInterceptorRegistry.unregisterInterceptor(failFirstAttempt);
+			myInterceptorRegistry.unregisterInterceptor(countFailures);
+			myModelConfig.setRestHookDeliveryRetryCount(new ModelConfig().getRestHookDeliveryRetryCount());
+			myModelConfig.setRestHookDeliveryRetryDelayMillis(new ModelConfig().getRestHookDeliveryRetryDelayMillis());
+		}
+	}
+
+	@Test
+	public void testDeliveryFailedWithClientErrorNotRetried() throws Exception {
+		myModelConfig.setRestHookDeliveryRetryCount(2);
+		myModelConfig.setRestHookDeliveryRetryDelayMillis(100);
+
+		AtomicInteger attempts = new AtomicInteger();
+		IAnonymousInterceptor failFirstAttempt = (thePointcut, theArgs) -> {
+			if (attempts.incrementAndGet() == 1) {
+				throw new ResourceNotFoundException("Simulated delivery failure");
+			}
+		};
+		CountDownLatch failedLatch = new CountDownLatch(1);
+		IAnonymousInterceptor countFailures = (thePointcut, theArgs) -> failedLatch.countDown();
+		myInterceptorRegistry.registerAnonymousInterceptor(Pointcut.SUBSCRIPTION_BEFORE_REST_HOOK_DELIVERY, failFirstAttempt);
+		myInterceptorRegistry.registerAnonymousInterceptor(Pointcut.SUBSCRIPTION_AFTER_DELIVERY_FAILED, countFailures);
+		try {
+
+			// Create a subscription
+			CountDownLatch registerLatch = registerLatchHookInterceptor(1, Pointcut.SUBSCRIPTION_AFTER_ACTIVE_SUBSCRIPTION_REGISTERED);
+			createSubscription("Observation?status=final", "application/fhir+json");
+			registerLatch.await(10, TimeUnit.SECONDS);
+
+			sendObservation();
+
+			assertTrue(failedLatch.await(10, TimeUnit.SECONDS));
+			Thread.sleep(1000);
+			assertEquals(1, attempts.get());
+			assertEquals(0, ourUpdatedObservations.size());
+
+		} finally {
+			myInterceptorRegistry.unregisterInterceptor(failFirstAttempt);
+			myInterceptorRegistry.unregisterInterceptor(countFailures);
+			myModelConfig.setRestHookDeliveryRetryCount(new ModelConfig().getRestHookDeliveryRetryCount());
+			myModelConfig.setRestHookDeliveryRetryDelayMillis(new ModelConfig().getRestHookDeliveryRetryDelayMillis());
+		}
+	}
+
+	@Test
+	public void testDeliveryWithMaxConcurrentDeliveriesPerEndpoint() throws Exception {
+		myModelConfig.setRestHookMaxConcurrentDeliveriesPerEndpoint(1);
+		try {
+
+			// Create a subscription
+			CountDownLatch registerLatch = registerLatchHookInterceptor(1, Pointcut.SUBSCRIPTION_AFTER_ACTIVE_SUBSCRIPTION_REGISTERED);
+			createSubscription("Observation?status=final", "application/fhir+json");
+			registerLatch.await(10, TimeUnit.SECONDS);
+
+			sendObservation();
+			sendObservation();
+
+			waitForSize(2, ourUpdatedObservations);
+
+		} finally {
+			myModelConfig.setRestHookMaxConcurrentDeliveriesPerEndpoint(new ModelConfig().getRestHookMaxConcurrentDeliveriesPerEndpoint());
+		}
+	}
+
 	protected Observation sendObservation() {
 		Observation observation = new Observation();
 		observation.setStatus(Observation.ObservationStatus.FINAL);
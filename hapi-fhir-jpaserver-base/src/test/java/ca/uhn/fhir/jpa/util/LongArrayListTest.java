@@ -0,0 +1,65 @@
+package ca.uhn.fhir.jpa.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.*;
+
+public class LongArrayListTest {
+
+	@Test
+	public void testAddAndGet() {
+		LongArrayList list = new LongArrayList(2);
+		for (long i = 0; i < 100; i++) {
+			list.add(i * 1000);
+		}
+		assertEquals(100, list.size());
+		assertEquals(0L, list.getLong(0));
+		assertEquals(Long.valueOf(99000L), list.get(99));
+		assertEquals(100, list.toLongArray().length);
+	}
+
+	@Test
+	public void testBehavesLikeArrayList() {
+		List<Long> expected = new ArrayList<>();
+		LongArrayList actual = new LongArrayList();
+		for (List<Long> next : Arrays.asList(expected, actual)) {
+			next.addAll(Arrays.asList(1L, 2L, 3L, 4L, 5L));
+			next.remove(0);
+			next.remove(2);
+			next.add(1, 10L);
+			next.add(next.size(), 20L);
+			next.set(0, 30L);
+			next.addAll(new LongArrayList(Arrays.asList(40L, 50L)));
+		}
+		assertEquals(expected, actual);
+		assertThat(actual, contains(30L, 10L, 3L, 5L, 20L, 40L, 50L));
+		assertEquals(expected.hashCode(), actual.hashCode());
+
+		actual.clear();
+		assertTrue(actual.isEmpty());
+	}
+
+	@Test
+	public void testIndexOutOfBounds() {
+		LongArrayList list = new LongArrayList();
+		list.add(1L);
+		try {
+			list.get(1);
+			fail();
+		} catch (IndexOutOfBoundsException e) {
+			assertEquals("Index: 1, Size: 1", e.getMessage());
+		}
+		try {
+			list.add(2, 2L);
+			fail();
+		} catch (IndexOutOfBoundsException e) {
+			assertEquals("Index: 2, Size: 1", e.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,45 @@
+package ca.uhn.fhir.jpa.util;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ThreadPoolUtilTest {
+
+	@Test
+	public void testAllThreadsUsedBeforeQueueFills() throws InterruptedException {
+		ThreadPoolExecutor executor = ThreadPoolUtil.newBlockingThreadPool(3, 100, new BasicThreadFactory.Builder().namingPattern("ThreadPoolUtilTest-%d").build());
+		try {
+			assertTrue(executor.allowsCoreThreadTimeOut());
+
+			// Each task waits until all three are running, which only happens if they run on separate threads
+			CountDownLatch allStarted = new CountDownLatch(3);
+			Set<String> threadNames = Collections.synchronizedSet(new HashSet<>());
+			for (int i = 0; i < 3; i++) {
+				executor.execute(() -> {
+					threadNames.add(Thread.currentThread().getName());
+					allStarted.countDown();
+					try {
+						allStarted.await(10, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				});
+			}
+
+			assertTrue(allStarted.await(10, TimeUnit.SECONDS));
+			assertEquals(3, threadNames.size());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
@@ -97,8 +97,49 @@ public class HapiFhirJpaMigrationTasks extends BaseMigrationTasks<VersionEnum> {
 		bulkExportCollectionFile.addColumn("PID").nonNullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.LONG);
 		bulkExportCollectionFile.addColumn("COLLECTION_PID").nonNullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.LONG);
 		bulkExportCollectionFile.addColumn("RES_ID").nonNullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.STRING, 100);
+		bulkExportCollectionFile.addColumn("BLOB_ID").nullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.STRING, 200);
 		bulkExportCollectionFile.addForeignKey("FK_BLKEXCOLFILE_COLLECT").toColumn("COLLECTION_PID").references("HFJ_BLK_EXPORT_COLLECTION", "PID");
 
+		// HFJ_BLK_IMPORT_JOB
+		version.addIdGenerator("SEQ_BLKIMJOB_PID");
+		Builder.BuilderAddTableByColumns bulkImportJob = version.addTableByColumns("HFJ_BLK_IMPORT_JOB", "PID");
+		bulkImportJob.addColumn("PID").nonNullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.LONG);
+		bulkImportJob.addColumn("JOB_ID").nonNullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.STRING, 36);
+		bulkImportJob.addColumn("JOB_STATUS").nonNullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.STRING, 10);
+		bulkImportJob.addColumn("CREATED_TIME").nonNullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.DATE_TIMESTAMP);
+		bulkImportJob.addColumn("STATUS_TIME").nonNullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.DATE_TIMESTAMP);
+		bulkImportJob.addColumn("OPTLOCK").nonNullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.INT);
+		bulkImportJob.addColumn("STATUS_MESSAGE").nullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.STRING, 500);
+		bulkImportJob.addColumn("CHUNK_SIZE").nonNullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.INT);
+		bulkImportJob.addIndex("IDX_BLKIM_JOB_ID").unique(true).withColumns("JOB_ID");
+
+		// HFJ_BLK_IMPORT_JOBFILE
+		version.addIdGenerator("SEQ_BLKIMJOBFILE_PID");
+		Builder.BuilderAddTableByColumns bulkImportJobFile = version.addTableByColumns("HFJ_BLK_IMPORT_JOBFILE", "PID");
+		bulkImportJobFile.addColumn("PID").nonNullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.LONG);
+		bulkImportJobFile.addColumn("JOB_PID").nonNullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.LONG);
+		bulkImportJobFile.addColumn("FILE_SEQ").nonNullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.INT);
+		bulkImportJobFile.addColumn("FILE_URL").nonNullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.STRING, 500);
+		bulkImportJobFile.addColumn("FILE_COMPLETE").nonNullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.BOOLEAN);
+		bulkImportJobFile.addColumn("OPTLOCK").nonNullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.INT);
+		bulkImportJobFile.addForeignKey("FK_BLKIMJOBFILE_JOB").toColumn("JOB_PID").references("HFJ_BLK_IMPORT_JOB", "PID");
+
+		// HFJ_BLK_IMPORT_CHUNK
+		version.addIdGenerator("SEQ_BLKIMCHUNK_PID");
+		Builder.BuilderAddTableByColumns bulkImportChunk = version.addTableByColumns("HFJ_BLK_IMPORT_CHUNK", "PID");
+		bulkImportChunk.addColumn("PID").nonNullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.LONG);
+		bulkImportChunk.addColumn("FILE_PID").nonNullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.LONG);
+		bulkImportChunk.addColumn("CHUNK_IDX").nonNullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.INT);
+		bulkImportChunk.addColumn("RES_COUNT").nonNullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.INT);
+		bulkImportChunk.addForeignKey("FK_BLKIMCHUNK_FILE").toColumn("FILE_PID").references("HFJ_BLK_IMPORT_JOBFILE", "PID");
+		bulkImportChunk.addIndex("IDX_BLKIM_CHUNK_FILE_IDX").unique(true).withColumns("FILE_PID", "CHUNK_IDX");
+
+		// HFJ_RES_REINDEX_JOB
+		Builder.BuilderWithTableName reindexJob = version.onTable("HFJ_RES_REINDEX_JOB");
+		reindexJob.addColumn("PID_RANGE_LOW").nullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.LONG);
+		reindexJob.addColumn("PID_RANGE_HIGH").nullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.LONG);
+		reindexJob.addColumn("LEASED_UNTIL").nullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.DATE_TIMESTAMP);
+
 
 		version.startSectionWithMessage("Processing bulkExportCollectionFile: HFJ_RES_VER_PROV");
 		Builder.BuilderAddTableByColumns resVerProv = version.addTableByColumns("HFJ_RES_VER_PROV", "RES_VER_PID");
@@ -126,6 +167,16 @@ public class HapiFhirJpaMigrationTasks extends BaseMigrationTasks<VersionEnum> {
 			.toColumn("VALUESET_PID")
 			.references("TRM_VALUESET", "PID");
 
+		// HFJ_SEARCH_RESULT_PAGE
+		version.addIdGenerator("SEQ_SEARCH_RES_PAGE");
+		Builder.BuilderAddTableByColumns searchResultPage = version.addTableByColumns("HFJ_SEARCH_RESULT_PAGE", "PID");
+		searchResultPage.addColumn("PID").nonNullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.LONG);
+		searchResultPage.addColumn("SEARCH_PID").nonNullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.LONG);
+		searchResultPage.addColumn("FIRST_ORDER").nonNullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.INT);
+		searchResultPage.addColumn("PID_COUNT").nonNullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.INT);
+		searchResultPage.addColumn("PIDS_DATA").nonNullable().type(BaseTableColumnTypeTask.ColumnTypeEnum.BLOB);
+		searchResultPage.addIndex("IDX_SEARCHRESPAGE_ORDER").unique(true).withColumns("SEARCH_PID", "FIRST_ORDER");
+
 		// Drop HFJ_SEARCH_RESULT foreign keys
 		version.onTable("HFJ_SEARCH_RESULT").dropForeignKey("FK_SEARCHRES_RES", "HFJ_RESOURCE");
 		version.onTable("HFJ_SEARCH_RESULT").dropForeignKey("FK_SEARCHRES_SEARCH", "HFJ_SEARCH");
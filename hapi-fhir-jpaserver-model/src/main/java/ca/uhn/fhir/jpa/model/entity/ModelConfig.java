@@ -23,6 +23,7 @@ package ca.uhn.fhir.jpa.model.entity;
 import com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.time.DateUtils;
 import org.hl7.fhir.dstu2.model.Subscription;
 
 import java.util.Arrays;
@@ -48,6 +49,10 @@ public class ModelConfig {
 		"http://hl7.org/fhir/StructureDefinition/*")));
 
 	public static final String DEFAULT_WEBSOCKET_CONTEXT_PATH = "/websocket";
+	/**
+	 * Default value for {@link #setRestHookDeliveryRetryDelayMillis(long)}: 1 second
+	 */
+	public static final long DEFAULT_REST_HOOK_DELIVERY_RETRY_DELAY_MILLIS = DateUtils.MILLIS_PER_SECOND;
 	/**
 	 * update setter javadoc if default changes
 	 */
@@ -60,6 +65,9 @@ public class ModelConfig {
 	private String myEmailFromAddress = "noreply@unknown.com";
 	private boolean mySubscriptionMatchingEnabled = true;
 	private String myWebsocketContextPath = DEFAULT_WEBSOCKET_CONTEXT_PATH;
+	private int myRestHookMaxConcurrentDeliveriesPerEndpoint = 0;
+	private int myRestHookDeliveryRetryCount = 0;
+	private long myRestHookDeliveryRetryDelayMillis = DEFAULT_REST_HOOK_DELIVERY_RETRY_DELAY_MILLIS;
 
 	/**
 	 * If set to {@code true} the default search params (i.e. the search parameters that are
@@ -381,6 +389,85 @@ public class ModelConfig {
 		myWebsocketContextPath = theWebsocketContextPath;
 	}
 
+	/**
+	 * The maximum number of REST Hook deliveries that may be in progress at the same time to a
+	 * single endpoint (i.e. a single scheme, host and port), across all subscriptions. Once this
+	 * many deliveries are in progress, further deliveries to the endpoint are queued until one of
+	 * them finishes, without holding a delivery thread. The default is <code>0</code>, meaning no limit
+	 * other than the number of delivery threads and the size of the HTTP client connection pool.
+	 *
+	 * @since 4.1.0
+	 */
+	public int getRestHookMaxConcurrentDeliveriesPerEndpoint() {
+		return myRestHookMaxConcurrentDeliveriesPerEndpoint;
+	}
+
+	/**
+	 * The maximum number of REST Hook deliveries that may be in progress at the same time to a
+	 * single endpoint (i.e. a single scheme, host and port), across all subscriptions. Once this
+	 * many deliveries are in progress, further deliveries to the endpoint are queued until one of
+	 * them finishes, without holding a delivery thread. The default is <code>0</code>, meaning no limit
+	 * other than the number of delivery threads and the size of the HTTP client connection pool.
+	 *
+	 * @since 4.1.0
+	 */
+	public void setRestHookMaxConcurrentDeliveriesPerEndpoint(int theRestHookMaxConcurrentDeliveriesPerEndpoint) {
+		Validate.isTrue(theRestHookMaxConcurrentDeliveriesPerEndpoint >= 0, "theRestHookMaxConcurrentDeliveriesPerEndpoint must not be negative");
+		myRestHookMaxConcurrentDeliveriesPerEndpoint = theRestHookMaxConcurrentDeliveriesPerEndpoint;
+	}
+
+	/**
+	 * The number of times a failed REST Hook delivery will be retried before it is given up on.
+	 * Retries are scheduled rather than waited for, so no delivery thread is held while waiting.
+	 * Deliveries which fail with a client error (HTTP 4xx) are not retried. The default is
+	 * <code>0</code>, meaning failed deliveries are not retried.
+	 *
+	 * @see #setRestHookDeliveryRetryDelayMillis(long)
+	 * @since 4.1.0
+	 */
+	public int getRestHookDeliveryRetryCount() {
+		return myRestHookDeliveryRetryCount;
+	}
+
+	/**
+	 * The number of times a failed REST Hook delivery will be retried before it is given up on.
+	 * Retries are scheduled rather than waited for, so no delivery thread is held while waiting.
+	 * Deliveries which fail with a client error (HTTP 4xx) are not retried. The default is
+	 * <code>0</code>, meaning failed deliveries are not retried.
+	 *
+	 * @see #setRestHookDeliveryRetryDelayMillis(long)
+	 * @since 4.1.0
+	 */
+	public void setRestHookDeliveryRetryCount(int theRestHookDeliveryRetryCount) {
+		Validate.isTrue(theRestHookDeliveryRetryCount >= 0, "theRestHookDeliveryRetryCount must not be negative");
+		myRestHookDeliveryRetryCount = theRestHookDeliveryRetryCount;
+	}
+
+	/**
+	 * The delay before the first retry of a failed REST Hook delivery. The delay is doubled for
+	 * each further retry of the same delivery, up to a maximum of one hour. The default is
+	 * {@link #DEFAULT_REST_HOOK_DELIVERY_RETRY_DELAY_MILLIS}.
+	 *
+	 * @see #setRestHookDeliveryRetryCount(int)
+	 * @since 4.1.0
+	 */
+	public long getRestHookDeliveryRetryDelayMillis() {
+		return myRestHookDeliveryRetryDelayMillis;
+	}
+
+	/**
+	 * The delay before the first retry of a failed REST Hook delivery. The delay is doubled for
+	 * each further retry of the same delivery, up to a maximum of one hour. The default is
+	 * {@link #DEFAULT_REST_HOOK_DELIVERY_RETRY_DELAY_MILLIS}.
+	 *
+	 * @see #setRestHookDeliveryRetryCount(int)
+	 * @since 4.1.0
+	 */
+	public void setRestHookDeliveryRetryDelayMillis(long theRestHookDeliveryRetryDelayMillis) {
+		Validate.isTrue(theRestHookDeliveryRetryDelayMillis >= 0, "theRestHookDeliveryRetryDelayMillis must not be negative");
+		myRestHookDeliveryRetryDelayMillis = theRestHookDeliveryRetryDelayMillis;
+	}
+
 	private static void validateTreatBaseUrlsAsLocal(String theUrl) {
 		Validate.notBlank(theUrl, "Base URL must not be null or empty");
 
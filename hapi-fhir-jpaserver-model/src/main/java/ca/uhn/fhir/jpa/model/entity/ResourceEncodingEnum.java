@@ -44,6 +44,14 @@ public enum ResourceEncodingEnum {
 	 */
 	JSONC,
 
+	/**
+	 * Json Compressed using Zstandard, which is considerably faster than
+	 * {@link #JSONC} to decompress and usually gives a smaller result. This
+	 * requires the <code>com.github.luben:zstd-jni</code> library to be
+	 * available on the classpath.
+	 */
+	JSONZ,
+
 	/**
 	 * Resource was deleted - No contents expected
 	 */
@@ -184,6 +184,16 @@ public class JpaConstants {
 	 */
 	public static final String OPERATION_EXPORT_POLL_STATUS = "$export-poll-status";
 
+	/**
+	 * Operation name for the "$import" operation
+	 */
+	public static final String OPERATION_IMPORT = "$import";
+
+	/**
+	 * Operation name for the "$import-poll-status" operation
+	 */
+	public static final String OPERATION_IMPORT_POLL_STATUS = "$import-poll-status";
+
 	/**
 	 * <p>
 	 * This extension should be of type <code>string</code> and should be
@@ -233,6 +243,39 @@ public class JpaConstants {
 	 */
 	public static final String EXT_SUBSCRIPTION_EMAIL_FROM = "http://hapifhir.io/fhir/StructureDefinition/subscription-email-from";
 
+	/**
+	 * This extension URL sets the number of threads that deliver messages for the
+	 * subscription at the same time. If it isn't present, the server default is used.
+	 * <p>
+	 * This extension should be of type <code>positiveInt</code> and should be
+	 * placed on the <code>Subscription.channel</code> element.
+	 * </p>
+	 */
+	public static final String EXT_SUBSCRIPTION_DELIVERY_CONCURRENT_CONSUMERS = "http://hapifhir.io/fhir/StructureDefinition/subscription-delivery-concurrent-consumers";
+
+	/**
+	 * This extension URL sets the maximum number of messages that can be waiting for
+	 * delivery for the subscription. If it isn't present, the server default is used.
+	 * <p>
+	 * This extension should be of type <code>positiveInt</code> and should be
+	 * placed on the <code>Subscription.channel</code> element.
+	 * </p>
+	 */
+	public static final String EXT_SUBSCRIPTION_DELIVERY_QUEUE_SIZE = "http://hapifhir.io/fhir/StructureDefinition/subscription-delivery-queue-size";
+
+	/**
+	 * This extension URL sets what happens when a message is matched for the subscription
+	 * while its delivery queue is full. The value <code>block</code> (the default) makes
+	 * the matching thread wait until there is room in the queue, and
+	 * <code>drop-oldest</code> discards the oldest waiting message to make room, so that a
+	 * slow endpoint never holds up matching for other subscriptions.
+	 * <p>
+	 * This extension should be of type <code>code</code> and should be
+	 * placed on the <code>Subscription.channel</code> element.
+	 * </p>
+	 */
+	public static final String EXT_SUBSCRIPTION_DELIVERY_OVERFLOW_POLICY = "http://hapifhir.io/fhir/StructureDefinition/subscription-delivery-overflow-policy";
+
 	/**
 	 * Extension ID for external binary references
 	 */
@@ -277,4 +320,14 @@ public class JpaConstants {
 	 * Parameter for the $export operation
 	 */
 	public static final String PARAM_EXPORT_TYPE_FILTER = "_typeFilter";
+
+	/**
+	 * Parameter for the $import operation
+	 */
+	public static final String PARAM_IMPORT_INPUT_URL = "inputUrl";
+
+	/**
+	 * Parameter for the $import-poll-status operation
+	 */
+	public static final String PARAM_IMPORT_POLL_STATUS_JOB_ID = "_jobId";
 }
@@ -322,6 +322,22 @@ public class SearchParameterMap implements Serializable {
 	 * </p>
 	 */
 	public String toNormalizedQueryString(FhirContext theCtx) {
+		return toNormalizedQueryString(theCtx, true);
+	}
+
+	/**
+	 * This method creates a URL query string representation of only the parameters in
+	 * this object which determine which resources match the search. Parameters which
+	 * only affect how the results are returned (<code>_sort</code>, <code>_include</code>,
+	 * <code>_revinclude</code>, <code>_count</code>, <code>_summary</code> and
+	 * <code>_total</code>) are excluded, so two searches with the same value here will
+	 * always have the same total.
+	 */
+	public String toNormalizedMatchQueryString(FhirContext theCtx) {
+		return toNormalizedQueryString(theCtx, false);
+	}
+
+	private String toNormalizedQueryString(FhirContext theCtx, boolean theIncludeResultParams) {
 		StringBuilder b = new StringBuilder();
 
 		ArrayList<String> keys = new ArrayList<>(keySet());
@@ -388,7 +404,7 @@ public class SearchParameterMap implements Serializable {
 
 		} // for keys
 
-		SortSpec sort = getSort();
+		SortSpec sort = theIncludeResultParams ? getSort() : null;
 		boolean first = true;
 		while (sort != null) {
 
@@ -411,8 +427,10 @@ public class SearchParameterMap implements Serializable {
 			sort = sort.getChain();
 		}
 
-		addUrlIncludeParams(b, Constants.PARAM_INCLUDE, getIncludes());
-		addUrlIncludeParams(b, Constants.PARAM_REVINCLUDE, getRevIncludes());
+		if (theIncludeResultParams) {
+			addUrlIncludeParams(b, Constants.PARAM_INCLUDE, getIncludes());
+			addUrlIncludeParams(b, Constants.PARAM_REVINCLUDE, getRevIncludes());
+		}
 
 		if (getLastUpdated() != null) {
 			DateParam lb = getLastUpdated().getLowerBound();
@@ -421,27 +439,29 @@ public class SearchParameterMap implements Serializable {
 			addLastUpdateParam(b, ub);
 		}
 
-		if (getCount() != null) {
-			addUrlParamSeparator(b);
-			b.append(Constants.PARAM_COUNT);
-			b.append('=');
-			b.append(getCount());
-		}
+		if (theIncludeResultParams) {
+			if (getCount() != null) {
+				addUrlParamSeparator(b);
+				b.append(Constants.PARAM_COUNT);
+				b.append('=');
+				b.append(getCount());
+			}
 
-		// Summary mode (_summary)
-		if (getSummaryMode() != null) {
-			addUrlParamSeparator(b);
-			b.append(Constants.PARAM_SUMMARY);
-			b.append('=');
-			b.append(getSummaryMode().getCode());
-		}
+			// Summary mode (_summary)
+			if (getSummaryMode() != null) {
+				addUrlParamSeparator(b);
+				b.append(Constants.PARAM_SUMMARY);
+				b.append('=');
+				b.append(getSummaryMode().getCode());
+			}
 
-		// Search count mode (_total)
-		if (getSearchTotalMode() != null) {
-			addUrlParamSeparator(b);
-			b.append(Constants.PARAM_SEARCH_TOTAL_MODE);
-			b.append('=');
-			b.append(getSearchTotalMode().getCode());
+			// Search count mode (_total)
+			if (getSearchTotalMode() != null) {
+				addUrlParamSeparator(b);
+				b.append(Constants.PARAM_SEARCH_TOTAL_MODE);
+				b.append('=');
+				b.append(getSearchTotalMode().getCode());
+			}
 		}
 
 		if (b.length() == 0) {
@@ -33,13 +33,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 
 public abstract class BaseSearchParamExtractor implements ISearchParamExtractor {
 
 	public static final Pattern SPLIT = Pattern.compile("\\||( or )");
 	public static final Pattern SPLIT_R4 = Pattern.compile("\\|");
+	private static final int MAX_PARSED_PATH_CACHE_SIZE = 10000;
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(BaseSearchParamExtractor.class);
 	@Autowired
 	private FhirContext myContext;
@@ -47,6 +52,8 @@ public abstract class BaseSearchParamExtractor implements ISearchParamExtractor
 	private ISearchParamRegistry mySearchParamRegistry;
 	@Autowired
 	private ModelConfig myModelConfig;
+	private final Map<String, Object> myParsedPathCache = new ConcurrentHashMap<>();
+	private final ThreadLocal<SinglePassValues> mySinglePassValues = new ThreadLocal<>();
 
 	public BaseSearchParamExtractor() {
 		super();
@@ -74,8 +81,74 @@ public abstract class BaseSearchParamExtractor implements ISearchParamExtractor
 		return refs;
 	}
 
+	@Override
+	public void extractInSinglePass(IBaseResource theResource, Runnable theExtraction) {
+		SinglePassValues existing = mySinglePassValues.get();
+		if (existing != null && existing.myResource == theResource) {
+			theExtraction.run();
+			return;
+		}
+
+		mySinglePassValues.set(new SinglePassValues(theResource));
+		try {
+			theExtraction.run();
+		} finally {
+			if (existing != null) {
+				mySinglePassValues.set(existing);
+			} else {
+				mySinglePassValues.remove();
+			}
+		}
+	}
+
+	/**
+	 * Evaluates a single (already split) path against a resource. If this happens within
+	 * {@link #extractInSinglePass(IBaseResource, Runnable)} for the same resource, the values
+	 * are only evaluated the first time the path is seen, and are reused after that.
+	 *
+	 * @param theEvaluator Evaluates the path against the resource. The returned list must not be modified
+	 *                     by the caller, since it may be shared.
+	 */
+	@SuppressWarnings("unchecked")
+	protected <T> List<T> evaluatePath(IBaseResource theResource, String thePath, Function<String, List<T>> theEvaluator) {
+		SinglePassValues singlePassValues = mySinglePassValues.get();
+		if (singlePassValues == null || singlePassValues.myResource != theResource) {
+			return theEvaluator.apply(thePath);
+		}
+
+		List<T> retVal = (List<T>) singlePassValues.myPathToValues.get(thePath);
+		if (retVal == null) {
+			retVal = theEvaluator.apply(thePath);
+			singlePassValues.myPathToValues.put(thePath, retVal);
+		}
+		return retVal;
+	}
+
 	protected abstract List<Object> extractValues(String thePaths, IBaseResource theResource);
 
+	/**
+	 * Search parameter paths are evaluated for every resource that is stored, so rather
+	 * than parsing the FHIRPath text each time, the parsed expression is cached using
+	 * the text as the key. Since the parsed form depends only on the text, entries never
+	 * become stale when search parameters are added or changed; the cache is simply
+	 * cleared if it grows past a fixed size.
+	 *
+	 * @param theParser Parses the expression if it is not already cached
+	 */
+	@SuppressWarnings("unchecked")
+	protected <T> T getParsedPath(String thePath, Function<String, T> theParser) {
+		T retVal = (T) myParsedPathCache.get(thePath);
+		if (retVal == null) {
+			retVal = theParser.apply(thePath);
+			if (myParsedPathCache.size() >= MAX_PARSED_PATH_CACHE_SIZE) {
+				ourLog.info("Clearing parsed search parameter path cache after reaching {} entries", MAX_PARSED_PATH_CACHE_SIZE);
+				myParsedPathCache.clear();
+			}
+			myParsedPathCache.put(thePath, retVal);
+		}
+		return retVal;
+	}
+
 	protected FhirContext getContext() {
 		return myContext;
 	}
@@ -97,5 +170,19 @@ public abstract class BaseSearchParamExtractor implements ISearchParamExtractor
 		myContext = theContext;
 	}
 
+	/**
+	 * Values extracted from one resource during a single extraction pass, keyed by path
+	 */
+	private static class SinglePassValues {
+
+		private final IBaseResource myResource;
+		private final Map<String, List<?>> myPathToValues = new HashMap<>();
+
+		SinglePassValues(IBaseResource theResource) {
+			myResource = theResource;
+		}
+
+	}
+
 
 }
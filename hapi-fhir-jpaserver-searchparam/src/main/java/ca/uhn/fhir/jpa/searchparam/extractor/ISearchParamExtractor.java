@@ -45,4 +45,13 @@ public interface ISearchParamExtractor {
 
 	List<PathAndRef> extractResourceLinks(IBaseResource theResource, RuntimeSearchParam theNextSpDef);
 
+	/**
+	 * Runs the given extraction (which will typically invoke several of the other methods on this
+	 * interface for the given resource) as a single pass over the resource: each distinct path is
+	 * evaluated against the resource at most once, and the values are then shared by every search
+	 * parameter that uses the path, regardless of its type. The resource must not be modified
+	 * while the extraction is running.
+	 */
+	void extractInSinglePass(IBaseResource theResource, Runnable theExtraction);
+
 }
@@ -644,7 +644,7 @@ public class SearchParamExtractorDstu2 extends BaseSearchParamExtractor implemen
 			String nextPathTrimmed = nextPath.trim();
 			List<Object> allValues;
 			try {
-				allValues = t.getValues(theResource, nextPathTrimmed);
+				allValues = evaluatePath(theResource, nextPathTrimmed, p -> t.getValues(theResource, p));
 			} catch (Exception e) {
 				String msg = getContext().getLocalizer().getMessage(BaseSearchParamExtractor.class, "failedToExtractPaths", nextPath, e.toString());
 				throw new InternalErrorException(msg, e);
@@ -62,6 +62,7 @@ public class SearchParamExtractorDstu3 extends BaseSearchParamExtractor implemen
 	private org.hl7.fhir.dstu3.hapi.ctx.IValidationSupport myValidationSupport;
 
 	private HapiWorkerContext myWorkerContext;
+	private FHIRPathEngine myFhirPathEngine;
 
 	/**
 	 * Constructor
@@ -727,14 +728,12 @@ public class SearchParamExtractorDstu3 extends BaseSearchParamExtractor implemen
 	 */
 	@Override
 	protected List<Object> extractValues(String thePaths, IBaseResource theResource) {
-		FHIRPathEngine fp = new FHIRPathEngine(myWorkerContext);
-
 		List<Object> values = new ArrayList<>();
 		String[] nextPathsSplit = SPLIT.split(thePaths);
 		for (String nextPath : nextPathsSplit) {
 			List<Base> allValues;
 			try {
-				allValues = fp.evaluate((Base) theResource, trim(nextPath));
+				allValues = evaluatePath(theResource, trim(nextPath), t -> evaluateFhirPath((Base) theResource, t));
 			} catch (FHIRException e) {
 				String msg = getContext().getLocalizer().getMessage(BaseSearchParamExtractor.class, "failedToExtractPaths", nextPath, e.toString());
 				throw new InternalErrorException(msg, e);
@@ -756,6 +755,11 @@ public class SearchParamExtractorDstu3 extends BaseSearchParamExtractor implemen
 		return values;
 	}
 
+	private List<Base> evaluateFhirPath(Base theResource, String thePath) {
+		ExpressionNode parsedPath = getParsedPath(thePath, myFhirPathEngine::parse);
+		return myFhirPathEngine.evaluate(theResource, parsedPath);
+	}
+
 	@VisibleForTesting
 	void setValidationSupportForTesting(org.hl7.fhir.dstu3.hapi.ctx.IValidationSupport theValidationSupport) {
 		myValidationSupport = theValidationSupport;
@@ -764,6 +768,7 @@ public class SearchParamExtractorDstu3 extends BaseSearchParamExtractor implemen
 	@PostConstruct
 	public void start() {
 		myWorkerContext = new HapiWorkerContext(getContext(), myValidationSupport);
+		myFhirPathEngine = new FHIRPathEngine(myWorkerContext);
 	}
 
 	private static <T extends Enum<?>> String extractSystem(Enumeration<T> theBoundCode) {
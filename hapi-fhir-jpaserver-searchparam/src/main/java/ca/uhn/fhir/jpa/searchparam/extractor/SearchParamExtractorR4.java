@@ -768,7 +768,7 @@ public class SearchParamExtractorR4 extends BaseSearchParamExtractor implements
 		for (String nextPath : nextPathsSplit) {
 			List<Base> allValues;
 			try {
-				allValues = myFhirPathEngine.evaluate((Base) theResource, nextPath);
+				allValues = evaluatePath(theResource, nextPath, t -> evaluateFhirPath((Base) theResource, t));
 			} catch (FHIRException e) {
 				String msg = getContext().getLocalizer().getMessage(BaseSearchParamExtractor.class, "failedToExtractPaths", nextPath, e.toString());
 				throw new InternalErrorException(msg, e);
@@ -790,6 +790,11 @@ public class SearchParamExtractorR4 extends BaseSearchParamExtractor implements
 		return values;
 	}
 
+	private List<Base> evaluateFhirPath(Base theResource, String thePath) {
+		ExpressionNode parsedPath = getParsedPath(thePath, myFhirPathEngine::parse);
+		return myFhirPathEngine.evaluate(theResource, parsedPath);
+	}
+
 	@VisibleForTesting
 	void setValidationSupportForTesting(org.hl7.fhir.r4.hapi.ctx.IValidationSupport theValidationSupport) {
 		myValidationSupport = theValidationSupport;
@@ -752,16 +752,12 @@ public class SearchParamExtractorR5 extends BaseSearchParamExtractor implements
 	 */
 	@Override
 	protected List<Object> extractValues(String thePaths, IBaseResource theResource) {
-		IWorkerContext worker = new org.hl7.fhir.r5.hapi.ctx.HapiWorkerContext(getContext(), myValidationSupport);
-		FHIRPathEngine fp = new FHIRPathEngine(worker);
-		fp.setHostServices(new SearchParamExtractorR5HostServices());
-
 		List<Object> values = new ArrayList<>();
 		String[] nextPathsSplit = SPLIT_R4.split(thePaths);
 		for (String nextPath : nextPathsSplit) {
 			List<Base> allValues;
 			try {
-				allValues = fp.evaluate((Base) theResource, nextPath);
+				allValues = evaluatePath(theResource, nextPath, t -> evaluateFhirPath((Base) theResource, t));
 			} catch (FHIRException e) {
 				String msg = getContext().getLocalizer().getMessage(BaseSearchParamExtractor.class, "failedToExtractPaths", nextPath, e.toString());
 				throw new InternalErrorException(msg, e);
@@ -783,6 +779,11 @@ public class SearchParamExtractorR5 extends BaseSearchParamExtractor implements
 		return values;
 	}
 
+	private List<Base> evaluateFhirPath(Base theResource, String thePath) {
+		ExpressionNode parsedPath = getParsedPath(thePath, myFhirPathEngine::parse);
+		return myFhirPathEngine.evaluate(theResource, parsedPath);
+	}
+
 	@VisibleForTesting
 	void setValidationSupportForTesting(IValidationSupport theValidationSupport) {
 		myValidationSupport = theValidationSupport;
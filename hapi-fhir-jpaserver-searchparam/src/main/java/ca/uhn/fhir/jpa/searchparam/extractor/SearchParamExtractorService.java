@@ -36,7 +36,16 @@ public class SearchParamExtractorService {
 	@Autowired
 	private ISearchParamExtractor mySearchParamExtractor;
 
+	/**
+	 * Extracts all of the non-reference indexes for a resource. This is done as a single extraction
+	 * pass (see {@link ISearchParamExtractor#extractInSinglePass(IBaseResource, Runnable)}), so any
+	 * path which is shared by several search parameters is only evaluated once.
+	 */
 	public void extractFromResource(ResourceIndexedSearchParams theParams, ResourceTable theEntity, IBaseResource theResource) {
+		mySearchParamExtractor.extractInSinglePass(theResource, () -> doExtractFromResource(theParams, theEntity, theResource));
+	}
+
+	private void doExtractFromResource(ResourceIndexedSearchParams theParams, ResourceTable theEntity, IBaseResource theResource) {
 		theParams.myStringParams.addAll(extractSearchParamStrings(theEntity, theResource));
 		theParams.myNumberParams.addAll(extractSearchParamNumber(theEntity, theResource));
 		theParams.myQuantityParams.addAll(extractSearchParamQuantity(theEntity, theResource));
@@ -0,0 +1,88 @@
+package ca.uhn.fhir.jpa.searchparam.matcher;
+
+/*-
+ * #%L
+ * HAPI FHIR Search Parameters
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.rest.api.RestSearchParameterTypeEnum;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Match criteria (e.g. a subscription criteria string) that have been parsed once by
+ * {@link InMemoryResourceMatcher#compileCriteria(String)}, so that they can be matched
+ * against any number of resources without being parsed again.
+ * <p>
+ * Instances are immutable and may be shared between threads. The parsed
+ * {@link SearchParameterMap} must not be modified.
+ * </p>
+ */
+public class CompiledMatchCriteria {
+
+	private final String myCriteria;
+	private final String myResourceName;
+	private final SearchParameterMap mySearchParameterMap;
+	private final Map<String, RestSearchParameterTypeEnum> myParamTypes;
+
+	CompiledMatchCriteria(String theCriteria, String theResourceName, SearchParameterMap theSearchParameterMap, Map<String, RestSearchParameterTypeEnum> theParamTypes) {
+		myCriteria = theCriteria;
+		myResourceName = theResourceName;
+		mySearchParameterMap = theSearchParameterMap;
+		myParamTypes = Collections.unmodifiableMap(theParamTypes);
+	}
+
+	/**
+	 * The criteria string these criteria were parsed from
+	 */
+	public String getCriteria() {
+		return myCriteria;
+	}
+
+	/**
+	 * The resource type the criteria apply to
+	 */
+	public String getResourceName() {
+		return myResourceName;
+	}
+
+	/**
+	 * The parsed criteria. This map is shared and must not be modified.
+	 */
+	public SearchParameterMap getSearchParameterMap() {
+		return mySearchParameterMap;
+	}
+
+	/**
+	 * The type of each parameter in the criteria, as it was defined when the criteria
+	 * were parsed (<code>null</code> if the parameter wasn't a known search parameter)
+	 */
+	Map<String, RestSearchParameterTypeEnum> getParamTypes() {
+		return myParamTypes;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this)
+			.append("criteria", myCriteria)
+			.toString();
+	}
+}
@@ -36,14 +36,18 @@ import ca.uhn.fhir.rest.param.ReferenceParam;
 import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.util.UrlUtil;
+import com.google.common.base.Suppliers;
+import org.apache.commons.lang3.Validate;
 import org.hl7.fhir.instance.model.api.IAnyResource;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 @Service
 public class InMemoryResourceMatcher {
@@ -65,27 +69,114 @@ public class InMemoryResourceMatcher {
 	 */
 
 	public InMemoryMatchResult match(String theCriteria, IBaseResource theResource, ResourceIndexedSearchParams theSearchParams) {
+		return matchLazily(theCriteria, theResource, theSearchParams != null ? () -> theSearchParams : null);
+	}
+
+	/**
+	 * Same as {@link #match(String, IBaseResource, ResourceIndexedSearchParams)}, except that the indexed search
+	 * parameters are only requested from the supplier once a parameter in the criteria actually needs them. Callers
+	 * matching one resource against many criteria can use this to extract the parameters once and share them, and
+	 * to skip extraction entirely for criteria that never look at them (e.g. <code>Patient?_id=123</code>).
+	 *
+	 * @param theSearchParamsSupplier Supplies the indexed search parameters for <code>theResource</code>. It is called
+	 *                                at most once per invocation. Pass <code>null</code> in the same situations where
+	 *                                a <code>null</code> search parameter object would be passed to the method above.
+	 */
+	public InMemoryMatchResult matchLazily(String theCriteria, IBaseResource theResource, Supplier<ResourceIndexedSearchParams> theSearchParamsSupplier) {
 		RuntimeResourceDefinition resourceDefinition;
 		if (theResource == null) {
 			resourceDefinition = UrlUtil.parseUrlResourceType(myFhirContext, theCriteria);
 		} else {
 			resourceDefinition = myFhirContext.getResourceDefinition(theResource);
 		}
+		SearchParameterMap searchParameterMap = translateCriteria(theCriteria, resourceDefinition);
+		if (searchParameterMap == null) {
+			return InMemoryMatchResult.unsupportedFromReason(InMemoryMatchResult.PARSE_FAIL);
+		}
+		return match(searchParameterMap, resourceDefinition, theResource, theSearchParamsSupplier);
+	}
+
+	/**
+	 * Same as {@link #matchLazily(String, IBaseResource, Supplier)}, but using criteria that were parsed
+	 * ahead of time by {@link #compileCriteria(String)}.
+	 * <p>
+	 * If a search parameter used by the criteria has changed type since they were compiled, or if
+	 * the resource is not of the type the criteria apply to, the criteria string is parsed again
+	 * so that the result is always the same as for the string based method.
+	 * </p>
+	 */
+	public InMemoryMatchResult matchLazily(CompiledMatchCriteria theCriteria, IBaseResource theResource, Supplier<ResourceIndexedSearchParams> theSearchParamsSupplier) {
+		Validate.notNull(theResource, "theResource must not be null");
+
+		RuntimeResourceDefinition resourceDefinition = myFhirContext.getResourceDefinition(theResource);
+		if (!resourceDefinition.getName().equals(theCriteria.getResourceName()) || !isCurrent(theCriteria)) {
+			return matchLazily(theCriteria.getCriteria(), theResource, theSearchParamsSupplier);
+		}
+		return match(theCriteria.getSearchParameterMap(), resourceDefinition, theResource, theSearchParamsSupplier);
+	}
+
+	/**
+	 * Parses criteria (e.g. <code>Patient?identifier=foo|bar</code>) once, so that they can be matched
+	 * repeatedly using {@link #matchLazily(CompiledMatchCriteria, IBaseResource, Supplier)}
+	 *
+	 * @return The compiled criteria, or <code>null</code> if the criteria can't be parsed for in-memory matching
+	 * @throws ca.uhn.fhir.parser.DataFormatException If the criteria don't start with a valid resource type
+	 * @throws InvalidRequestException                If the criteria are invalid
+	 */
+	public CompiledMatchCriteria compileCriteria(String theCriteria) {
+		RuntimeResourceDefinition resourceDefinition = UrlUtil.parseUrlResourceType(myFhirContext, theCriteria);
+		SearchParameterMap searchParameterMap = translateCriteria(theCriteria, resourceDefinition);
+		if (searchParameterMap == null) {
+			return null;
+		}
+
+		String resourceName = resourceDefinition.getName();
+		Map<String, RestSearchParameterTypeEnum> paramTypes = new HashMap<>();
+		for (String nextParamName : searchParameterMap.keySet()) {
+			paramTypes.put(nextParamName, getParamType(resourceName, nextParamName));
+		}
+		return new CompiledMatchCriteria(theCriteria, resourceName, searchParameterMap, paramTypes);
+	}
+
+	/**
+	 * The search parameter values in compiled criteria are typed according to the parameter definitions
+	 * at the time they were compiled, so they are only usable as long as those types haven't changed
+	 */
+	public boolean isCurrent(CompiledMatchCriteria theCriteria) {
+		for (Map.Entry<String, RestSearchParameterTypeEnum> next : theCriteria.getParamTypes().entrySet()) {
+			if (getParamType(theCriteria.getResourceName(), next.getKey()) != next.getValue()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private RestSearchParameterTypeEnum getParamType(String theResourceName, String theParamName) {
+		RuntimeSearchParam paramDef = mySearchParamRegistry.getActiveSearchParam(theResourceName, theParamName);
+		return paramDef != null ? paramDef.getParamType() : null;
+	}
+
+	private SearchParameterMap translateCriteria(String theCriteria, RuntimeResourceDefinition theResourceDefinition) {
 		SearchParameterMap searchParameterMap;
 		try {
-			searchParameterMap = myMatchUrlService.translateMatchUrl(theCriteria, resourceDefinition);
+			searchParameterMap = myMatchUrlService.translateMatchUrl(theCriteria, theResourceDefinition);
 		} catch (UnsupportedOperationException e) {
-			return InMemoryMatchResult.unsupportedFromReason(InMemoryMatchResult.PARSE_FAIL);
+			return null;
 		}
 		searchParameterMap.clean();
-		if (searchParameterMap.getLastUpdated() != null) {
+		return searchParameterMap;
+	}
+
+	private InMemoryMatchResult match(SearchParameterMap theSearchParameterMap, RuntimeResourceDefinition theResourceDefinition, IBaseResource theResource, Supplier<ResourceIndexedSearchParams> theSearchParamsSupplier) {
+		if (theSearchParameterMap.getLastUpdated() != null) {
 			return InMemoryMatchResult.unsupportedFromParameterAndReason(Constants.PARAM_LASTUPDATED, InMemoryMatchResult.STANDARD_PARAMETER);
 		}
 
-		for (Map.Entry<String, List<List<IQueryParameterType>>> entry : searchParameterMap.entrySet()) {
+		Supplier<ResourceIndexedSearchParams> searchParams = theSearchParamsSupplier != null ? Suppliers.memoize(theSearchParamsSupplier::get) : null;
+		for (Map.Entry<String, List<List<IQueryParameterType>>> entry : theSearchParameterMap.entrySet()) {
 			String theParamName = entry.getKey();
 			List<List<IQueryParameterType>> theAndOrParams = entry.getValue();
-			InMemoryMatchResult result = matchIdsWithAndOr(theParamName, theAndOrParams, resourceDefinition, theResource, theSearchParams);
+			InMemoryMatchResult result = matchIdsWithAndOr(theParamName, theAndOrParams, theResourceDefinition, theResource, searchParams);
 			if (!result.matched()) {
 				return result;
 			}
@@ -94,7 +185,7 @@ public class InMemoryResourceMatcher {
 	}
 
 	// This method is modelled from SearchBuilder.searchForIdsWithAndOr()
-	private InMemoryMatchResult matchIdsWithAndOr(String theParamName, List<List<IQueryParameterType>> theAndOrParams, RuntimeResourceDefinition theResourceDefinition, IBaseResource theResource, ResourceIndexedSearchParams theSearchParams) {
+	private InMemoryMatchResult matchIdsWithAndOr(String theParamName, List<List<IQueryParameterType>> theAndOrParams, RuntimeResourceDefinition theResourceDefinition, IBaseResource theResource, Supplier<ResourceIndexedSearchParams> theSearchParams) {
 		if (theAndOrParams.isEmpty()) {
 			return InMemoryMatchResult.successfulMatch();
 		}
@@ -152,7 +243,7 @@ public class InMemoryResourceMatcher {
 		return theValue.equals(theId.getValue()) || theValue.equals(theId.getIdPart());
 	}
 
-	private InMemoryMatchResult matchResourceParam(String theParamName, List<List<IQueryParameterType>> theAndOrParams, ResourceIndexedSearchParams theSearchParams, String theResourceName, RuntimeSearchParam theParamDef) {
+	private InMemoryMatchResult matchResourceParam(String theParamName, List<List<IQueryParameterType>> theAndOrParams, Supplier<ResourceIndexedSearchParams> theSearchParams, String theResourceName, RuntimeSearchParam theParamDef) {
 		if (theParamDef != null) {
 			switch (theParamDef.getParamType()) {
 				case QUANTITY:
@@ -165,7 +256,8 @@ public class InMemoryResourceMatcher {
 					if (theSearchParams == null) {
 						return InMemoryMatchResult.successfulMatch();
 					} else {
-						return InMemoryMatchResult.fromBoolean(theAndOrParams.stream().anyMatch(nextAnd -> matchParams(theResourceName, theParamName, theParamDef, nextAnd, theSearchParams)));
+						ResourceIndexedSearchParams searchParams = theSearchParams.get();
+						return InMemoryMatchResult.fromBoolean(theAndOrParams.stream().anyMatch(nextAnd -> matchParams(theResourceName, theParamName, theParamDef, nextAnd, searchParams)));
 					}
 				case COMPOSITE:
 				case HAS:
@@ -20,7 +20,6 @@ package ca.uhn.fhir.jpa.searchparam.matcher;
  * #L%
  */
 
-import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -34,7 +33,6 @@ public class SearchParamMatcher {
 	private InMemoryResourceMatcher myInMemoryResourceMatcher;
 
 	public InMemoryMatchResult match(String theCriteria, IBaseResource theResource, RequestDetails theRequest) {
-		ResourceIndexedSearchParams resourceIndexedSearchParams = myIndexedSearchParamExtractor.extractIndexedSearchParams(theResource, theRequest);
-		return myInMemoryResourceMatcher.match(theCriteria, theResource, resourceIndexedSearchParams);
+		return myInMemoryResourceMatcher.matchLazily(theCriteria, theResource, () -> myIndexedSearchParamExtractor.extractIndexedSearchParams(theResource, theRequest));
 	}
 }
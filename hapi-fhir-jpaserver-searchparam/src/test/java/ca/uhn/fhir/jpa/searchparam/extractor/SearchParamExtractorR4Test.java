@@ -0,0 +1,216 @@
+package ca.uhn.fhir.jpa.searchparam.extractor;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeSearchParam;
+import ca.uhn.fhir.jpa.model.entity.BaseResourceIndexedSearchParam;
+import ca.uhn.fhir.jpa.model.entity.ModelConfig;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamString;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.model.entity.ResourceTable;
+import ca.uhn.fhir.jpa.searchparam.registry.ISearchParamRegistry;
+import ca.uhn.fhir.util.StopWatch;
+import ca.uhn.fhir.util.TestUtil;
+import org.hl7.fhir.r4.hapi.ctx.DefaultProfileValidationSupport;
+import org.hl7.fhir.r4.hapi.ctx.HapiWorkerContext;
+import org.hl7.fhir.r4.hapi.ctx.IValidationSupport;
+import org.hl7.fhir.r4.model.Base;
+import org.hl7.fhir.r4.model.ExpressionNode;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Quantity;
+import org.hl7.fhir.r4.utils.FHIRPathEngine;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SearchParamExtractorR4Test {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(SearchParamExtractorR4Test.class);
+	private static FhirContext ourCtx = FhirContext.forR4();
+	private static IValidationSupport ourValidationSupport;
+
+	private SearchParamExtractorR4 newExtractor(String theResourceType) {
+		ISearchParamRegistry searchParamRegistry = mock(ISearchParamRegistry.class);
+		Map<String, RuntimeSearchParam> spMap = ourCtx
+			.getResourceDefinition(theResourceType)
+			.getSearchParams()
+			.stream()
+			.collect(Collectors.toMap(RuntimeSearchParam::getName, t -> t));
+		when(searchParamRegistry.getActiveSearchParams(eq(theResourceType))).thenReturn(spMap);
+		return new SearchParamExtractorR4(new ModelConfig(), ourCtx, ourValidationSupport, searchParamRegistry);
+	}
+
+	@Test
+	public void testParsedPathIsReusedAcrossResources() {
+		SearchParamExtractorR4 extractor = newExtractor("Patient");
+
+		Patient p1 = new Patient();
+		p1.addName().setFamily("ONE").addGiven("GIVEN1");
+		Patient p2 = new Patient();
+		p2.addName().setFamily("TWO").addGiven("GIVEN2");
+		p2.addName().setFamily("THREE");
+
+		List<Object> values = extractor.extractValues("Patient.name.family", p1);
+		assertEquals(1, values.size());
+		assertEquals("ONE", ((Base) values.get(0)).primitiveValue());
+
+		values = extractor.extractValues("Patient.name.family", p2);
+		assertEquals(2, values.size());
+		assertEquals("TWO", ((Base) values.get(0)).primitiveValue());
+		assertEquals("THREE", ((Base) values.get(1)).primitiveValue());
+
+		Set<ResourceIndexedSearchParamString> strings = extractor.extractSearchParamStrings(new ResourceTable(), p2);
+		List<String> familyValues = strings
+			.stream()
+			.filter(t -> t.getParamName().equals("family"))
+			.map(ResourceIndexedSearchParamString::getValueExact)
+			.collect(Collectors.toList());
+		assertThat(familyValues, containsInAnyOrder("TWO", "THREE"));
+
+		// The expression was parsed once by the first extraction, and later lookups reuse that instance
+		AtomicInteger parses = new AtomicInteger();
+		Function<String, ExpressionNode> parser = t -> {
+			parses.incrementAndGet();
+			return new ExpressionNode(0);
+		};
+		ExpressionNode parsed = extractor.getParsedPath("Patient.name.family", parser);
+		assertSame(parsed, extractor.getParsedPath("Patient.name.family", parser));
+		assertEquals(0, parses.get());
+
+		ExpressionNode parsedGiven = extractor.getParsedPath("Patient.name.given.first()", parser);
+		assertSame(parsedGiven, extractor.getParsedPath("Patient.name.given.first()", parser));
+		assertEquals(1, parses.get());
+	}
+
+	@Test
+	public void testSinglePassEvaluatesEachPathOnce() {
+		SearchParamExtractorR4 extractor = newExtractor("Patient");
+		Patient p1 = new Patient();
+		Patient p2 = new Patient();
+		AtomicInteger evaluations = new AtomicInteger();
+		Function<String, List<String>> evaluator = t -> {
+			evaluations.incrementAndGet();
+			return Collections.singletonList(t);
+		};
+
+		extractor.evaluatePath(p1, "Patient.name", evaluator);
+		extractor.evaluatePath(p1, "Patient.name", evaluator);
+		assertEquals(2, evaluations.get());
+
+		evaluations.set(0);
+		extractor.extractInSinglePass(p1, () -> {
+			extractor.evaluatePath(p1, "Patient.name", evaluator);
+			extractor.evaluatePath(p1, "Patient.name", evaluator);
+			extractor.evaluatePath(p1, "Patient.gender", evaluator);
+			extractor.extractInSinglePass(p1, () -> extractor.evaluatePath(p1, "Patient.gender", evaluator));
+
+			// A different resource is not covered by the pass
+			extractor.evaluatePath(p2, "Patient.name", evaluator);
+		});
+		assertEquals(3, evaluations.get());
+
+		// Values are not retained after the pass
+		extractor.evaluatePath(p1, "Patient.name", evaluator);
+		assertEquals(4, evaluations.get());
+	}
+
+	@Test
+	public void testSinglePassExtractsSameIndexes() {
+		SearchParamExtractorR4 extractor = newExtractor("Observation");
+		Observation obs = new Observation();
+		obs.getCode().addCoding().setSystem("http://loinc.org").setCode("1234-5");
+		obs.addComponent().getCode().addCoding().setSystem("http://loinc.org").setCode("2345-6");
+
+		ResourceTable entity = new ResourceTable();
+		Set<BaseResourceIndexedSearchParam> expected = extractor.extractSearchParamTokens(entity, obs);
+		Set<BaseResourceIndexedSearchParam> actual = new HashSet<>();
+		extractor.extractInSinglePass(obs, () -> actual.addAll(extractor.extractSearchParamTokens(entity, obs)));
+
+		assertEquals(expected, actual);
+		List<String> comboCodes = actual
+			.stream()
+			.filter(t -> t.getParamName().equals("combo-code"))
+			.map(t -> ((ResourceIndexedSearchParamToken) t).getValue())
+			.collect(Collectors.toList());
+		assertThat(comboCodes, containsInAnyOrder("1234-5", "2345-6"));
+	}
+
+	/**
+	 * Compares evaluating each Observation search parameter path from its text (which is what
+	 * the extractor did for every resource before parsed paths were cached) against
+	 * evaluating it through the extractor
+	 */
+	@Test
+	@Ignore
+	public void testExtractValuesMicroBenchmark() {
+		SearchParamExtractorR4 extractor = newExtractor("Observation");
+		FHIRPathEngine engine = new FHIRPathEngine(new HapiWorkerContext(ourCtx, ourValidationSupport));
+
+		Observation obs = new Observation();
+		obs.setStatus(Observation.ObservationStatus.FINAL);
+		obs.getCode().addCoding().setSystem("http://loinc.org").setCode("1234-5");
+		obs.getSubject().setReference("Patient/123");
+		obs.setValue(new Quantity().setValue(123).setUnit("kg"));
+		obs.addComponent().getCode().addCoding().setSystem("http://loinc.org").setCode("2345-6");
+
+		List<String> paths = ourCtx
+			.getResourceDefinition("Observation")
+			.getSearchParams()
+			.stream()
+			.map(RuntimeSearchParam::getPath)
+			.flatMap(t -> BaseSearchParamExtractor.SPLIT_R4.splitAsStream(t))
+			.map(String::trim)
+			.filter(t -> !t.contains("resolve()"))
+			.collect(Collectors.toList());
+
+		int loops = 2000;
+		for (int pass = 0; pass < 5; pass++) {
+			StopWatch sw = new StopWatch();
+			for (int i = 0; i < loops; i++) {
+				for (String next : paths) {
+					engine.evaluate(obs, next);
+				}
+			}
+			ourLog.info("Unparsed paths: {} passes - {}ms / pass", loops, sw.getMillisPerOperation(loops));
+
+			sw = new StopWatch();
+			for (int i = 0; i < loops; i++) {
+				for (String next : paths) {
+					extractor.extractValues(next, obs);
+				}
+			}
+			ourLog.info("Parsed paths:   {} passes - {}ms / pass", loops, sw.getMillisPerOperation(loops));
+		}
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() {
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+	@BeforeClass
+	public static void beforeClass() {
+		ourValidationSupport = new DefaultProfileValidationSupport();
+	}
+
+}
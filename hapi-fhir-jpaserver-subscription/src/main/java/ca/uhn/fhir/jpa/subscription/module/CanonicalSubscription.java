@@ -21,7 +21,9 @@ package ca.uhn.fhir.jpa.subscription.module;
  */
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.searchparam.matcher.CompiledMatchCriteria;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.apache.commons.lang3.builder.EqualsBuilder;
@@ -66,6 +68,8 @@ public class CanonicalSubscription implements Serializable, Cloneable {
 	private RestHookDetails myRestHookDetails;
 	@JsonProperty("extensions")
 	private Map<String, List<String>> myChannelExtensions;
+	@JsonIgnore
+	private transient volatile CompiledMatchCriteria myCompiledCriteria;
 
 	/**
 	 * Constructor
@@ -97,6 +101,20 @@ public class CanonicalSubscription implements Serializable, Cloneable {
 
 	public void setCriteriaString(String theCriteriaString) {
 		myCriteriaString = theCriteriaString;
+		myCompiledCriteria = null;
+	}
+
+	/**
+	 * Returns the criteria string in parsed form, if it has been compiled for in-memory
+	 * matching (which the subscription registry does when the subscription is registered).
+	 * This is never serialized.
+	 */
+	public CompiledMatchCriteria getCompiledCriteria() {
+		return myCompiledCriteria;
+	}
+
+	public void setCompiledCriteria(CompiledMatchCriteria theCompiledCriteria) {
+		myCompiledCriteria = theCompiledCriteria;
 	}
 
 	public EmailDetails getEmailDetails() {
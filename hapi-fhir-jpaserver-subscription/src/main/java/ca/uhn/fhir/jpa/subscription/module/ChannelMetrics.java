@@ -0,0 +1,146 @@
+package ca.uhn.fhir.jpa.subscription.module;
+
+/*-
+ * #%L
+ * HAPI FHIR Subscription Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * Running totals describing the activity of a {@link LinkedBlockingQueueSubscribableChannel}.
+ * The values are updated as the channel is used, so they can be read at any time from any
+ * thread.
+ */
+public class ChannelMetrics {
+
+	private final IntSupplier myQueueSize;
+	private final AtomicLong myMessagesSent = new AtomicLong();
+	private final AtomicLong myMessagesHandled = new AtomicLong();
+	private final AtomicLong myMessagesFailed = new AtomicLong();
+	private final AtomicLong myMessagesDropped = new AtomicLong();
+	private final AtomicLong mySenderWaits = new AtomicLong();
+	private final AtomicLong myTotalHandlingNanos = new AtomicLong();
+	private final AtomicLong myMaxHandlingNanos = new AtomicLong();
+
+	ChannelMetrics(IntSupplier theQueueSize) {
+		myQueueSize = theQueueSize;
+	}
+
+	/**
+	 * The number of messages currently waiting in the queue
+	 */
+	public int getQueueSize() {
+		return myQueueSize.getAsInt();
+	}
+
+	/**
+	 * The number of messages sent to the channel
+	 */
+	public long getMessagesSent() {
+		return myMessagesSent.get();
+	}
+
+	/**
+	 * The number of messages that were handled without an exception being thrown
+	 */
+	public long getMessagesHandled() {
+		return myMessagesHandled.get();
+	}
+
+	/**
+	 * The number of messages whose handler threw an exception
+	 */
+	public long getMessagesFailed() {
+		return myMessagesFailed.get();
+	}
+
+	/**
+	 * The number of messages discarded from a full queue by the
+	 * {@link ChannelOverflowPolicyEnum#DROP_OLDEST} policy
+	 */
+	public long getMessagesDropped() {
+		return myMessagesDropped.get();
+	}
+
+	/**
+	 * The number of times a sender had to wait because the queue was full, when using the
+	 * {@link ChannelOverflowPolicyEnum#BLOCK} policy
+	 */
+	public long getSenderWaits() {
+		return mySenderWaits.get();
+	}
+
+	/**
+	 * The average time taken to handle a message, in milliseconds
+	 */
+	public double getAverageHandlingMillis() {
+		long count = myMessagesHandled.get() + myMessagesFailed.get();
+		if (count == 0) {
+			return 0;
+		}
+		return (double) myTotalHandlingNanos.get() / count / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	/**
+	 * The longest time taken to handle a message, in milliseconds
+	 */
+	public long getMaxHandlingMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(myMaxHandlingNanos.get());
+	}
+
+	void incrementMessagesSent() {
+		myMessagesSent.incrementAndGet();
+	}
+
+	void incrementMessagesDropped() {
+		myMessagesDropped.incrementAndGet();
+	}
+
+	void incrementSenderWaits() {
+		mySenderWaits.incrementAndGet();
+	}
+
+	void recordMessageHandled(long theHandlingNanos, boolean theSuccess) {
+		if (theSuccess) {
+			myMessagesHandled.incrementAndGet();
+		} else {
+			myMessagesFailed.incrementAndGet();
+		}
+		myTotalHandlingNanos.addAndGet(theHandlingNanos);
+		myMaxHandlingNanos.accumulateAndGet(theHandlingNanos, Math::max);
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this)
+			.append("queueSize", getQueueSize())
+			.append("messagesSent", getMessagesSent())
+			.append("messagesHandled", getMessagesHandled())
+			.append("messagesFailed", getMessagesFailed())
+			.append("messagesDropped", getMessagesDropped())
+			.append("senderWaits", getSenderWaits())
+			.append("averageHandlingMillis", getAverageHandlingMillis())
+			.append("maxHandlingMillis", getMaxHandlingMillis())
+			.toString();
+	}
+}
@@ -0,0 +1,59 @@
+package ca.uhn.fhir.jpa.subscription.module;
+
+/*-
+ * #%L
+ * HAPI FHIR Subscription Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * What a delivery channel does when a message is sent to it while its queue is full
+ *
+ * @see ca.uhn.fhir.jpa.model.util.JpaConstants#EXT_SUBSCRIPTION_DELIVERY_OVERFLOW_POLICY
+ */
+public enum ChannelOverflowPolicyEnum {
+	/**
+	 * The sending thread waits until there is room in the queue
+	 */
+	BLOCK("block"),
+	/**
+	 * The oldest message waiting in the queue is discarded to make room
+	 */
+	DROP_OLDEST("drop-oldest");
+
+	private final String myCode;
+
+	ChannelOverflowPolicyEnum(String theCode) {
+		myCode = theCode;
+	}
+
+	public String getCode() {
+		return myCode;
+	}
+
+	/**
+	 * Returns the policy with the given code, or <code>null</code> if there isn't one
+	 */
+	public static ChannelOverflowPolicyEnum fromCode(String theCode) {
+		for (ChannelOverflowPolicyEnum next : values()) {
+			if (next.myCode.equals(theCode)) {
+				return next;
+			}
+		}
+		return null;
+	}
+}
@@ -22,11 +22,14 @@ package ca.uhn.fhir.jpa.subscription.module;
 
 import ca.uhn.fhir.util.StopWatch;
 import com.google.common.annotations.VisibleForTesting;
+import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessagingException;
 import org.springframework.messaging.SubscribableChannel;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.ExecutorSubscribableChannel;
@@ -34,58 +37,122 @@ import org.springframework.messaging.support.ExecutorSubscribableChannel;
 import java.util.ArrayList;
 import java.util.concurrent.*;
 
-public class LinkedBlockingQueueSubscribableChannel implements SubscribableChannel {
+public class LinkedBlockingQueueSubscribableChannel implements SubscribableChannel, DisposableBean {
+	/**
+	 * How long a thread may sit idle before it is stopped, in channels that keep all of
+	 * their threads busy
+	 */
+	private static final long IDLE_THREAD_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(1);
 	private Logger ourLog = LoggerFactory.getLogger(LinkedBlockingQueueSubscribableChannel.class);
 
 	private final ExecutorSubscribableChannel mySubscribableChannel;
 	private final BlockingQueue<Runnable> myQueue;
+	private final ThreadPoolExecutor myExecutor;
+	private final ChannelMetrics myMetrics;
 
 	public LinkedBlockingQueueSubscribableChannel(BlockingQueue<Runnable> theQueue, String theThreadNamingPattern, int theConcurrentConsumers) {
+		this(theQueue, theThreadNamingPattern, 1, theConcurrentConsumers, 0L, ChannelOverflowPolicyEnum.BLOCK);
+	}
+
+	/**
+	 * Creates a channel that uses up to <code>theConcurrentConsumers</code> threads as soon as
+	 * there are messages waiting, and applies the given policy when the queue is full.
+	 * Threads that have been idle for a while are stopped.
+	 */
+	public LinkedBlockingQueueSubscribableChannel(BlockingQueue<Runnable> theQueue, String theThreadNamingPattern, int theConcurrentConsumers, ChannelOverflowPolicyEnum theOverflowPolicy) {
+		this(theQueue, theThreadNamingPattern, theConcurrentConsumers, theConcurrentConsumers, IDLE_THREAD_TIMEOUT_MILLIS, theOverflowPolicy);
+		myExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	private LinkedBlockingQueueSubscribableChannel(BlockingQueue<Runnable> theQueue, String theThreadNamingPattern, int theCoreThreads, int theMaxThreads, long theKeepAliveMillis, ChannelOverflowPolicyEnum theOverflowPolicy) {
+		Validate.notNull(theOverflowPolicy, "theOverflowPolicy must not be null");
+		myQueue = theQueue;
+		myMetrics = new ChannelMetrics(theQueue::size);
 
 		ThreadFactory threadFactory = new BasicThreadFactory.Builder()
 			.namingPattern(theThreadNamingPattern)
 			.daemon(false)
 			.priority(Thread.NORM_PRIORITY)
 			.build();
-		RejectedExecutionHandler rejectedExecutionHandler = (theRunnable, theExecutor) -> {
-			ourLog.info("Note: Executor queue is full ({} elements), waiting for a slot to become available!", theQueue.size());
-			StopWatch sw = new StopWatch();
-			try {
-				theQueue.put(theRunnable);
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
-				throw new RejectedExecutionException("Task " + theRunnable.toString() +
-					" rejected from " + e.toString());
-			}
-			ourLog.info("Slot become available after {}ms", sw.getMillis());
-		};
-		ThreadPoolExecutor executor = new ThreadPoolExecutor(
-			1,
-			theConcurrentConsumers,
-			0L,
+		RejectedExecutionHandler rejectedExecutionHandler;
+		switch (theOverflowPolicy) {
+			case DROP_OLDEST:
+				rejectedExecutionHandler = (theRunnable, theExecutor) -> {
+					if (theExecutor.isShutdown()) {
+						ourLog.warn("Channel has been shut down, discarding message");
+						return;
+					}
+					int queueSize = theQueue.size();
+					if (theQueue.poll() != null) {
+						myMetrics.incrementMessagesDropped();
+						ourLog.warn("Executor queue is full ({} elements), dropped the oldest message", queueSize);
+					}
+					theExecutor.execute(theRunnable);
+				};
+				break;
+			case BLOCK:
+			default:
+				rejectedExecutionHandler = (theRunnable, theExecutor) -> {
+					if (theExecutor.isShutdown()) {
+						ourLog.warn("Channel has been shut down, discarding message");
+						return;
+					}
+					ourLog.info("Note: Executor queue is full ({} elements), waiting for a slot to become available!", theQueue.size());
+					myMetrics.incrementSenderWaits();
+					StopWatch sw = new StopWatch();
+					try {
+						theQueue.put(theRunnable);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new RejectedExecutionException("Task " + theRunnable.toString() +
+							" rejected from " + e.toString());
+					}
+					ourLog.info("Slot become available after {}ms", sw.getMillis());
+				};
+				break;
+		}
+		myExecutor = new ThreadPoolExecutor(
+			theCoreThreads,
+			theMaxThreads,
+			theKeepAliveMillis,
 			TimeUnit.MILLISECONDS,
 			theQueue,
 			threadFactory,
 			rejectedExecutionHandler);
-		myQueue = theQueue;
-		mySubscribableChannel = new ExecutorSubscribableChannel(executor);
+		mySubscribableChannel = new ExecutorSubscribableChannel(myExecutor);
 	}
 
 	@Override
 	public boolean subscribe(MessageHandler handler) {
-		return mySubscribableChannel.subscribe(handler);
+		return mySubscribableChannel.subscribe(new MeteredMessageHandler(handler));
 	}
 
 	@Override
 	public boolean unsubscribe(MessageHandler handler) {
-		return mySubscribableChannel.unsubscribe(handler);
+		return mySubscribableChannel.unsubscribe(new MeteredMessageHandler(handler));
 	}
 
 	@Override
 	public boolean send(Message<?> message, long timeout) {
+		myMetrics.incrementMessagesSent();
 		return mySubscribableChannel.send(message, timeout);
 	}
 
+	/**
+	 * Returns the metrics for this channel
+	 */
+	public ChannelMetrics getMetrics() {
+		return myMetrics;
+	}
+
+	/**
+	 * Stops the channel's threads once the messages already in the queue have been handled
+	 */
+	@Override
+	public void destroy() {
+		myExecutor.shutdown();
+	}
+
 	@VisibleForTesting
 	public void clearInterceptorsForUnitTest() {
 		mySubscribableChannel.setInterceptors(new ArrayList<>());
@@ -100,4 +167,43 @@ public class LinkedBlockingQueueSubscribableChannel implements SubscribableChann
 	public int getQueueSizeForUnitTest() {
 		return myQueue.size();
 	}
+
+	/**
+	 * Records metrics for each message handled. Instances are equal if they wrap the same
+	 * handler, so a handler can be unsubscribed using the handler itself.
+	 */
+	private class MeteredMessageHandler implements MessageHandler {
+		private final MessageHandler myDelegate;
+
+		MeteredMessageHandler(MessageHandler theDelegate) {
+			myDelegate = theDelegate;
+		}
+
+		@Override
+		public void handleMessage(Message<?> theMessage) throws MessagingException {
+			long start = System.nanoTime();
+			boolean success = false;
+			try {
+				myDelegate.handleMessage(theMessage);
+				success = true;
+			} finally {
+				myMetrics.recordMessageHandled(System.nanoTime() - start, success);
+			}
+		}
+
+		@Override
+		public boolean equals(Object theO) {
+			return theO instanceof MeteredMessageHandler && myDelegate.equals(((MeteredMessageHandler) theO).myDelegate);
+		}
+
+		@Override
+		public int hashCode() {
+			return myDelegate.hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return myDelegate.toString();
+		}
+	}
 }
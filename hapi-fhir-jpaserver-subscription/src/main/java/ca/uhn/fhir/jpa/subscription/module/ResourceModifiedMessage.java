@@ -21,8 +21,10 @@ package ca.uhn.fhir.jpa.subscription.module;
  */
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
 import ca.uhn.fhir.jpa.subscription.module.subscriber.BaseResourceMessage;
 import ca.uhn.fhir.jpa.subscription.module.subscriber.IResourceMessage;
+import ca.uhn.fhir.rest.api.EncodingEnum;
 import ca.uhn.fhir.util.ResourceReferenceInfo;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -32,7 +34,9 @@ import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
 
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
@@ -57,6 +61,10 @@ public class ResourceModifiedMessage extends BaseResourceMessage implements IRes
 	private String myPayloadId;
 	@JsonIgnore
 	private transient IBaseResource myPayloadDecoded;
+	@JsonIgnore
+	private transient ResourceIndexedSearchParams myIndexedSearchParams;
+	@JsonIgnore
+	private transient Map<EncodingEnum, String> myEncodedPayloads;
 
 	/**
 	 * Constructor
@@ -102,6 +110,36 @@ public class ResourceModifiedMessage extends BaseResourceMessage implements IRes
 		return myPayloadDecoded;
 	}
 
+	/**
+	 * Returns the new payload encoded using the given encoding, encoding it the first time
+	 * this is called for that encoding. Every subscription matched by this message that asks
+	 * for the same encoding can then share a single copy of the encoded payload. These are
+	 * never serialized.
+	 */
+	public String getNewPayloadEncoded(FhirContext theCtx, EncodingEnum theEncoding) {
+		if (myEncodedPayloads == null) {
+			myEncodedPayloads = new EnumMap<>(EncodingEnum.class);
+		}
+		String retVal = myEncodedPayloads.get(theEncoding);
+		if (retVal == null) {
+			retVal = theEncoding.newParser(theCtx).encodeResourceToString(getNewPayload(theCtx));
+			myEncodedPayloads.put(theEncoding, retVal);
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns the search parameters extracted from the new payload, if a matcher has already
+	 * extracted them while processing this message. These are never serialized.
+	 */
+	public ResourceIndexedSearchParams getIndexedSearchParams() {
+		return myIndexedSearchParams;
+	}
+
+	public void setIndexedSearchParams(ResourceIndexedSearchParams theIndexedSearchParams) {
+		myIndexedSearchParams = theIndexedSearchParams;
+	}
+
 	public OperationTypeEnum getOperationType() {
 		return myOperationType;
 	}
@@ -34,6 +34,7 @@ class ActiveSubscriptionCache {
 	private static final Logger ourLog = LoggerFactory.getLogger(ActiveSubscriptionCache.class);
 
 	private final Map<String, ActiveSubscription> myCache = new ConcurrentHashMap<>();
+	private volatile ActiveSubscriptionIndex myIndex = ActiveSubscriptionIndex.EMPTY;
 
 	public ActiveSubscription get(String theIdPart) {
 		return myCache.get(theIdPart);
@@ -43,12 +44,24 @@ class ActiveSubscriptionCache {
 		return Collections.unmodifiableCollection(myCache.values());
 	}
 
+	/**
+	 * Returns the current index of the cached subscriptions. Subscriptions are registered rarely
+	 * compared to how often they are matched, so the index is rebuilt on every change.
+	 */
+	ActiveSubscriptionIndex getIndex() {
+		return myIndex;
+	}
+
 	public int size() {
 		return myCache.size();
 	}
 
-	public void put(String theSubscriptionId, ActiveSubscription theValue) {
+	/**
+	 * Adds a subscription, or re-indexes it if the same ActiveSubscription has been updated
+	 */
+	public synchronized void put(String theSubscriptionId, ActiveSubscription theValue) {
 		myCache.put(theSubscriptionId, theValue);
+		reindex();
 	}
 
 	public synchronized void remove(String theSubscriptionId) {
@@ -61,6 +74,11 @@ class ActiveSubscriptionCache {
 
 		activeSubscription.close();
 		myCache.remove(theSubscriptionId);
+		reindex();
+	}
+
+	private void reindex() {
+		myIndex = new ActiveSubscriptionIndex(myCache.values());
 	}
 
 	public void unregisterAllSubscriptionsNotInCollection(Collection<String> theAllIds) {
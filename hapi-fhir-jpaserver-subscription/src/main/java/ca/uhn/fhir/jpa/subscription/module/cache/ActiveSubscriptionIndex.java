@@ -0,0 +1,221 @@
+package ca.uhn.fhir.jpa.subscription.module.cache;
+
+/*-
+ * #%L
+ * HAPI FHIR Subscription Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
+import ca.uhn.fhir.jpa.searchparam.matcher.CompiledMatchCriteria;
+import ca.uhn.fhir.jpa.subscription.module.CanonicalSubscription;
+import ca.uhn.fhir.model.api.IQueryParameterType;
+import ca.uhn.fhir.rest.param.TokenParam;
+
+import java.util.*;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+/**
+ * An immutable snapshot of the active subscriptions, indexed so that the subscriptions which
+ * could possibly match a given resource can be found without testing every subscription.
+ * <p>
+ * Subscriptions are grouped by the resource type in their criteria. Within a resource type, a
+ * subscription whose compiled criteria require a plain token parameter (e.g.
+ * <code>Observation?code=http://loinc.org|1234-5</code>) is also indexed by that token, and is
+ * only returned as a candidate for resources which have a matching token indexed. Token
+ * comparison is case insensitive, in the same way as the in-memory matcher.
+ * </p>
+ */
+class ActiveSubscriptionIndex {
+
+	static final ActiveSubscriptionIndex EMPTY = new ActiveSubscriptionIndex(Collections.emptyList());
+
+	private final Map<String, ResourceTypeIndex> myResourceTypeIndexes = new HashMap<>();
+
+	ActiveSubscriptionIndex(Collection<ActiveSubscription> theActiveSubscriptions) {
+		for (ActiveSubscription next : theActiveSubscriptions) {
+			CanonicalSubscription subscription = next.getSubscription();
+			if (subscription == null || isBlank(subscription.getCriteriaString())) {
+				continue;
+			}
+
+			String criteria = subscription.getCriteriaString();
+			int index = criteria.indexOf('?');
+			String resourceType = index != -1 ? criteria.substring(0, index) : criteria;
+			ResourceTypeIndex resourceTypeIndex = myResourceTypeIndexes.computeIfAbsent(resourceType, t -> new ResourceTypeIndex());
+			resourceTypeIndex.add(next, subscription.getCompiledCriteria());
+		}
+	}
+
+	/**
+	 * Returns every subscription whose criteria apply to the given resource type
+	 */
+	Collection<ActiveSubscription> getAllForResourceType(String theResourceType) {
+		ResourceTypeIndex resourceTypeIndex = myResourceTypeIndexes.get(theResourceType);
+		if (resourceTypeIndex == null) {
+			return Collections.emptyList();
+		}
+		return resourceTypeIndex.myAll;
+	}
+
+	/**
+	 * Returns the names of the parameters that subscriptions for the given resource type
+	 * are indexed by. The caller must make sure these are still token parameters before
+	 * calling {@link #getCandidates(String, ResourceIndexedSearchParams)}.
+	 */
+	Set<String> getTokenParamNames(String theResourceType) {
+		ResourceTypeIndex resourceTypeIndex = myResourceTypeIndexes.get(theResourceType);
+		if (resourceTypeIndex == null) {
+			return Collections.emptySet();
+		}
+		return resourceTypeIndex.myTokenParamNames;
+	}
+
+	/**
+	 * Returns the subscriptions whose criteria apply to the given resource type, leaving out
+	 * any that require a token the resource doesn't have
+	 */
+	Collection<ActiveSubscription> getCandidates(String theResourceType, ResourceIndexedSearchParams theSearchParams) {
+		ResourceTypeIndex resourceTypeIndex = myResourceTypeIndexes.get(theResourceType);
+		if (resourceTypeIndex == null) {
+			return Collections.emptyList();
+		}
+		if (resourceTypeIndex.mySubscriptionsByToken.isEmpty()) {
+			return resourceTypeIndex.myAll;
+		}
+
+		Set<ActiveSubscription> retVal = Collections.newSetFromMap(new IdentityHashMap<>());
+		retVal.addAll(resourceTypeIndex.myNotIndexedByToken);
+		for (ResourceIndexedSearchParamToken next : theSearchParams.myTokenParams) {
+			for (String nextKey : toTokenKeys(next.getParamName(), next.getSystem(), next.getValue())) {
+				retVal.addAll(resourceTypeIndex.mySubscriptionsByToken.getOrDefault(nextKey, Collections.emptyList()));
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * The keys a resource token is indexed under. These mirror the rules in
+	 * {@link ResourceIndexedSearchParamToken#matches(IQueryParameterType)}.
+	 */
+	private static List<String> toTokenKeys(String theParamName, String theSystem, String theValue) {
+		List<String> retVal = new ArrayList<>(3);
+		String paramName = normalize(theParamName);
+		if (isNotBlank(theValue)) {
+			retVal.add("V|" + paramName + "|" + normalize(theValue));
+		}
+		if (isNotBlank(theSystem)) {
+			retVal.add("S|" + paramName + "|" + normalize(theSystem));
+			if (isNotBlank(theValue)) {
+				retVal.add("SV|" + paramName + "|" + normalize(theSystem) + "|" + normalize(theValue));
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * The key a token in subscription criteria is indexed under, or <code>null</code> if it
+	 * can't be indexed
+	 */
+	private static String toTokenKey(String theParamName, IQueryParameterType theParam) {
+		if (!(theParam instanceof TokenParam) || theParam.getQueryParameterQualifier() != null) {
+			return null;
+		}
+		TokenParam token = (TokenParam) theParam;
+		String paramName = normalize(theParamName);
+		if (isBlank(token.getSystem())) {
+			return isNotBlank(token.getValue()) ? "V|" + paramName + "|" + normalize(token.getValue()) : null;
+		}
+		if (isBlank(token.getValue())) {
+			return "S|" + paramName + "|" + normalize(token.getSystem());
+		}
+		return "SV|" + paramName + "|" + normalize(token.getSystem()) + "|" + normalize(token.getValue());
+	}
+
+	/**
+	 * Folds case the same way {@link String#equalsIgnoreCase(String)} compares characters
+	 */
+	private static String normalize(String theString) {
+		char[] chars = theString.toCharArray();
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+		}
+		return new String(chars);
+	}
+
+	private static class ResourceTypeIndex {
+		private final List<ActiveSubscription> myAll = new ArrayList<>();
+		private final List<ActiveSubscription> myNotIndexedByToken = new ArrayList<>();
+		private final Map<String, List<ActiveSubscription>> mySubscriptionsByToken = new HashMap<>();
+		private final Set<String> myTokenParamNames = new HashSet<>();
+
+		void add(ActiveSubscription theActiveSubscription, CompiledMatchCriteria theCompiledCriteria) {
+			myAll.add(theActiveSubscription);
+
+			String paramName = null;
+			Set<String> keys = null;
+			if (theCompiledCriteria != null) {
+				for (Map.Entry<String, List<List<IQueryParameterType>>> nextEntry : theCompiledCriteria.getSearchParameterMap().entrySet()) {
+					Set<String> nextKeys = getTokenKeys(nextEntry.getKey(), nextEntry.getValue());
+					if (nextKeys != null && (keys == null || nextKeys.size() < keys.size())) {
+						paramName = nextEntry.getKey();
+						keys = nextKeys;
+					}
+				}
+			}
+
+			if (keys == null) {
+				myNotIndexedByToken.add(theActiveSubscription);
+				return;
+			}
+
+			myTokenParamNames.add(paramName);
+			for (String nextKey : keys) {
+				mySubscriptionsByToken.computeIfAbsent(nextKey, k -> new ArrayList<>()).add(theActiveSubscription);
+			}
+		}
+
+		/**
+		 * A resource can only match a token parameter if it has at least one of the tokens in
+		 * it (across all of the AND and OR values), so those tokens are what the subscription is
+		 * indexed under. Returns <code>null</code> if any of the values can't be indexed.
+		 */
+		private static Set<String> getTokenKeys(String theParamName, List<List<IQueryParameterType>> theAndOrParams) {
+			// Built-in parameters such as _id and _tag aren't matched against the indexed tokens
+			if (theParamName.startsWith("_") || theAndOrParams.isEmpty()) {
+				return null;
+			}
+			Set<String> retVal = new HashSet<>();
+			for (List<IQueryParameterType> nextOrParams : theAndOrParams) {
+				if (nextOrParams.isEmpty()) {
+					return null;
+				}
+				for (IQueryParameterType nextParam : nextOrParams) {
+					String key = toTokenKey(theParamName, nextParam);
+					if (key == null) {
+						return null;
+					}
+					retVal.add(key);
+				}
+			}
+			return retVal;
+		}
+	}
+}
@@ -20,11 +20,24 @@ package ca.uhn.fhir.jpa.subscription.module.cache;
  * #L%
  */
 
+import ca.uhn.fhir.jpa.subscription.module.ChannelOverflowPolicyEnum;
 import org.springframework.messaging.SubscribableChannel;
 
 public interface ISubscribableChannelFactory {
 	SubscribableChannel createSubscribableChannel(String theChannelName, int theConcurrentConsumers);
 
+	/**
+	 * Creates a channel using settings that were configured for one subscription. Factories
+	 * which can't apply the queue size or overflow policy may ignore them, and by default
+	 * this simply calls {@link #createSubscribableChannel(String, int)}.
+	 *
+	 * @param theQueueSize      The maximum number of messages that can be waiting in the channel
+	 * @param theOverflowPolicy What to do when a message is sent while the channel is full
+	 */
+	default SubscribableChannel createSubscribableChannel(String theChannelName, int theConcurrentConsumers, int theQueueSize, ChannelOverflowPolicyEnum theOverflowPolicy) {
+		return createSubscribableChannel(theChannelName, theConcurrentConsumers);
+	}
+
 	int getDeliveryChannelConcurrentConsumers();
 
 	int getMatchingChannelConcurrentConsumers();
@@ -20,6 +20,7 @@ package ca.uhn.fhir.jpa.subscription.module.cache;
  * #L%
  */
 
+import ca.uhn.fhir.jpa.subscription.module.ChannelOverflowPolicyEnum;
 import ca.uhn.fhir.jpa.subscription.module.LinkedBlockingQueueSubscribableChannel;
 import org.springframework.messaging.SubscribableChannel;
 
@@ -31,6 +32,11 @@ public class LinkedBlockingQueueSubscribableChannelFactory implements ISubscriba
 		return new LinkedBlockingQueueSubscribableChannel(new LinkedBlockingQueue<>(SubscriptionConstants.DELIVERY_EXECUTOR_QUEUE_SIZE), theChannelName + "-%d", theConcurrentConsumers);
 	}
 
+	@Override
+	public SubscribableChannel createSubscribableChannel(String theChannelName, int theConcurrentConsumers, int theQueueSize, ChannelOverflowPolicyEnum theOverflowPolicy) {
+		return new LinkedBlockingQueueSubscribableChannel(new LinkedBlockingQueue<>(theQueueSize), theChannelName + "-%d", theConcurrentConsumers, theOverflowPolicy);
+	}
+
 	@Override
 	public int getDeliveryChannelConcurrentConsumers() {
 		return SubscriptionConstants.DELIVERY_CHANNEL_CONCURRENT_CONSUMERS;
@@ -20,12 +20,35 @@ package ca.uhn.fhir.jpa.subscription.module.cache;
  * #L%
  */
 
+import ca.uhn.fhir.jpa.model.util.JpaConstants;
+import ca.uhn.fhir.jpa.subscription.module.CanonicalSubscription;
+import ca.uhn.fhir.jpa.subscription.module.ChannelOverflowPolicyEnum;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.SubscribableChannel;
 import org.springframework.stereotype.Component;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+import static org.apache.commons.lang3.StringUtils.trim;
+
 @Component
 public class SubscriptionChannelFactory {
+	private static final Logger ourLog = LoggerFactory.getLogger(SubscriptionChannelFactory.class);
+
+	/**
+	 * Channel extensions that change how a subscription's delivery channel is created
+	 */
+	private static final List<String> DELIVERY_CHANNEL_EXTENSIONS = Arrays.asList(
+		JpaConstants.EXT_SUBSCRIPTION_DELIVERY_CONCURRENT_CONSUMERS,
+		JpaConstants.EXT_SUBSCRIPTION_DELIVERY_QUEUE_SIZE,
+		JpaConstants.EXT_SUBSCRIPTION_DELIVERY_OVERFLOW_POLICY);
 
 	private ISubscribableChannelFactory mySubscribableChannelFactory;
 
@@ -35,14 +58,68 @@ public class SubscriptionChannelFactory {
 	}
 
 	public SubscribableChannel newDeliveryChannel(String theSubscriptionId, String theChannelType) {
-		String channelName = "subscription-delivery-" +
-			theChannelType +
-			"-" +
-			theSubscriptionId;
+		String channelName = toDeliveryChannelName(theSubscriptionId, theChannelType);
 		return mySubscribableChannelFactory.createSubscribableChannel(channelName, mySubscribableChannelFactory.getDeliveryChannelConcurrentConsumers());
 	}
 
+	/**
+	 * Creates the delivery channel for a subscription. If the subscription has any of the
+	 * delivery channel extensions (e.g. {@link JpaConstants#EXT_SUBSCRIPTION_DELIVERY_QUEUE_SIZE})
+	 * the channel is created using those settings, otherwise the defaults are used.
+	 */
+	public SubscribableChannel newDeliveryChannel(String theSubscriptionId, CanonicalSubscription theSubscription) {
+		String channelType = theSubscription.getChannelType().toCode().toLowerCase();
+		if (DELIVERY_CHANNEL_EXTENSIONS.stream().allMatch(t -> isBlank(theSubscription.getChannelExtension(t)))) {
+			return newDeliveryChannel(theSubscriptionId, channelType);
+		}
+
+		int concurrentConsumers = getPositiveInt(theSubscription, JpaConstants.EXT_SUBSCRIPTION_DELIVERY_CONCURRENT_CONSUMERS, mySubscribableChannelFactory.getDeliveryChannelConcurrentConsumers());
+		int queueSize = getPositiveInt(theSubscription, JpaConstants.EXT_SUBSCRIPTION_DELIVERY_QUEUE_SIZE, SubscriptionConstants.DELIVERY_EXECUTOR_QUEUE_SIZE);
+		ChannelOverflowPolicyEnum overflowPolicy = ChannelOverflowPolicyEnum.BLOCK;
+		String overflowPolicyCode = trim(theSubscription.getChannelExtension(JpaConstants.EXT_SUBSCRIPTION_DELIVERY_OVERFLOW_POLICY));
+		if (isNotBlank(overflowPolicyCode)) {
+			overflowPolicy = ChannelOverflowPolicyEnum.fromCode(overflowPolicyCode);
+			if (overflowPolicy == null) {
+				ourLog.warn("Ignoring unknown delivery overflow policy \"{}\" for subscription {}", overflowPolicyCode, theSubscriptionId);
+				overflowPolicy = ChannelOverflowPolicyEnum.BLOCK;
+			}
+		}
+
+		ourLog.info("Creating delivery channel for subscription {} with {} consumers, a queue size of {} and overflow policy {}", theSubscriptionId, concurrentConsumers, queueSize, overflowPolicy.getCode());
+		return mySubscribableChannelFactory.createSubscribableChannel(toDeliveryChannelName(theSubscriptionId, channelType), concurrentConsumers, queueSize, overflowPolicy);
+	}
+
 	public SubscribableChannel newMatchingChannel(String theChannelName) {
 		return mySubscribableChannelFactory.createSubscribableChannel(theChannelName, mySubscribableChannelFactory.getMatchingChannelConcurrentConsumers());
 	}
+
+	private static String toDeliveryChannelName(String theSubscriptionId, String theChannelType) {
+		return "subscription-delivery-" +
+			theChannelType +
+			"-" +
+			theSubscriptionId;
+	}
+
+	private static int getPositiveInt(CanonicalSubscription theSubscription, String theExtensionUrl, int theDefault) {
+		String value = trim(theSubscription.getChannelExtension(theExtensionUrl));
+		if (isBlank(value)) {
+			return theDefault;
+		}
+		int retVal = NumberUtils.toInt(value, 0);
+		if (retVal < 1) {
+			ourLog.warn("Ignoring invalid value \"{}\" for extension {} on subscription {}", value, theExtensionUrl, theSubscription.getIdElementString());
+			return theDefault;
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns <code>true</code> if the two subscriptions would have their delivery channels
+	 * created with the same settings
+	 */
+	static boolean isSameDeliveryChannelSettings(CanonicalSubscription theSubscription, CanonicalSubscription theOtherSubscription) {
+		return DELIVERY_CHANNEL_EXTENSIONS
+			.stream()
+			.allMatch(t -> Objects.equals(theSubscription.getChannelExtension(t), theOtherSubscription.getChannelExtension(t)));
+	}
 }
@@ -20,11 +20,18 @@ package ca.uhn.fhir.jpa.subscription.module.cache;
  * #L%
  */
 
+import ca.uhn.fhir.context.RuntimeSearchParam;
 import ca.uhn.fhir.interceptor.api.HookParams;
 import ca.uhn.fhir.jpa.model.entity.ModelConfig;
 import ca.uhn.fhir.interceptor.api.IInterceptorBroadcaster;
 import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
+import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryResourceMatcher;
+import ca.uhn.fhir.jpa.searchparam.registry.ISearchParamRegistry;
 import ca.uhn.fhir.jpa.subscription.module.CanonicalSubscription;
+import ca.uhn.fhir.jpa.subscription.module.ChannelMetrics;
+import ca.uhn.fhir.jpa.subscription.module.LinkedBlockingQueueSubscribableChannel;
+import ca.uhn.fhir.rest.api.RestSearchParameterTypeEnum;
 import org.apache.commons.lang3.Validate;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
@@ -37,7 +44,13 @@ import org.springframework.stereotype.Component;
 import javax.annotation.PreDestroy;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
 
 /**
  * Cache of active subscriptions.  When a new subscription is added to the cache, a new Spring Channel is created
@@ -60,6 +73,10 @@ public class SubscriptionRegistry {
 	ModelConfig myModelConfig;
 	@Autowired
 	private IInterceptorBroadcaster myInterceptorBroadcaster;
+	@Autowired
+	private InMemoryResourceMatcher myInMemoryResourceMatcher;
+	@Autowired
+	private ISearchParamRegistry mySearchParamRegistry;
 
 	/**
 	 * Constructor
@@ -76,6 +93,58 @@ public class SubscriptionRegistry {
 		return myActiveSubscriptionCache.getAll();
 	}
 
+	/**
+	 * Returns the active subscriptions that could match a resource of the given type. This
+	 * always includes every subscription that matches the resource, but may include others too.
+	 *
+	 * @param theResourceType The resource type, or <code>null</code> if it isn't known (in which case all subscriptions are returned)
+	 * @param theSearchParams Supplies the indexed search parameters for the resource. This is only called if some
+	 *                        subscriptions for the resource type can be ruled out using the tokens the resource has.
+	 */
+	public Collection<ActiveSubscription> getCandidates(String theResourceType, Supplier<ResourceIndexedSearchParams> theSearchParams) {
+		if (theResourceType == null) {
+			return getAll();
+		}
+
+		ActiveSubscriptionIndex index = myActiveSubscriptionCache.getIndex();
+		Set<String> tokenParamNames = index.getTokenParamNames(theResourceType);
+		if (tokenParamNames.isEmpty()) {
+			return index.getAllForResourceType(theResourceType);
+		}
+
+		// The index is only valid while the parameters it uses are still tokens
+		for (String nextParamName : tokenParamNames) {
+			RuntimeSearchParam paramDef = mySearchParamRegistry.getActiveSearchParam(theResourceType, nextParamName);
+			if (paramDef == null || paramDef.getParamType() != RestSearchParameterTypeEnum.TOKEN) {
+				return index.getAllForResourceType(theResourceType);
+			}
+		}
+
+		ResourceIndexedSearchParams searchParams;
+		try {
+			searchParams = theSearchParams.get();
+		} catch (Exception e) {
+			ourLog.warn("Failed to extract search parameters, testing all {} subscriptions: {}", theResourceType, e.toString());
+			return index.getAllForResourceType(theResourceType);
+		}
+		return index.getCandidates(theResourceType, searchParams);
+	}
+
+	/**
+	 * Returns the metrics of the delivery channel of each active subscription, keyed by
+	 * subscription ID. Only channels that keep metrics (i.e. those created by
+	 * {@link LinkedBlockingQueueSubscribableChannelFactory}) are included.
+	 */
+	public Map<String, ChannelMetrics> getDeliveryChannelMetrics() {
+		Map<String, ChannelMetrics> retVal = new TreeMap<>();
+		for (ActiveSubscription next : myActiveSubscriptionCache.getAll()) {
+			if (next.getSubscribableChannel() instanceof LinkedBlockingQueueSubscribableChannel) {
+				retVal.put(next.getSubscription().getIdPart(), ((LinkedBlockingQueueSubscribableChannel) next.getSubscribableChannel()).getMetrics());
+			}
+		}
+		return retVal;
+	}
+
 	private Optional<CanonicalSubscription> hasSubscription(IIdType theId) {
 		Validate.notNull(theId);
 		Validate.notBlank(theId.getIdPart());
@@ -91,11 +160,12 @@ public class SubscriptionRegistry {
 		Validate.notNull(theSubscription);
 
 		CanonicalSubscription canonicalized = mySubscriptionCanonicalizer.canonicalize(theSubscription);
+		compileCriteria(canonicalized);
 		SubscribableChannel deliveryChannel;
 		Optional<MessageHandler> deliveryHandler;
 
 		if (myModelConfig.isSubscriptionMatchingEnabled()) {
-			deliveryChannel = mySubscriptionDeliveryChannelFactory.newDeliveryChannel(subscriptionId, canonicalized.getChannelType().toCode().toLowerCase());
+			deliveryChannel = mySubscriptionDeliveryChannelFactory.newDeliveryChannel(subscriptionId, canonicalized);
 			deliveryHandler = mySubscriptionDeliveryHandlerFactory.createDeliveryHandler(canonicalized);
 		} else {
 			deliveryChannel = null;
@@ -146,8 +216,8 @@ public class SubscriptionRegistry {
 				return false;
 			}
 			ourLog.info("Updating already-registered active subscription {}", theSubscription.getIdElement().toUnqualified().getValue());
-			if (channelTypeSame(existingSubscription.get(), newSubscription)) {
-				ourLog.info("Channel type is same.  Updating active subscription and re-using existing channel and handlers.");
+			if (channelTypeSame(existingSubscription.get(), newSubscription) && SubscriptionChannelFactory.isSameDeliveryChannelSettings(existingSubscription.get(), newSubscription)) {
+				ourLog.info("Channel type and settings are same.  Updating active subscription and re-using existing channel and handlers.");
 				updateSubscription(theSubscription);
 				return true;
 			}
@@ -168,7 +238,9 @@ public class SubscriptionRegistry {
 		ActiveSubscription activeSubscription = myActiveSubscriptionCache.get(theId.getIdPart());
 		Validate.notNull(activeSubscription);
 		CanonicalSubscription canonicalized = mySubscriptionCanonicalizer.canonicalize(theSubscription);
+		compileCriteria(canonicalized);
 		activeSubscription.setSubscription(canonicalized);
+		myActiveSubscriptionCache.put(theId.getIdPart(), activeSubscription);
 
 		// Interceptor call: SUBSCRIPTION_AFTER_ACTIVE_SUBSCRIPTION_REGISTERED
 		HookParams params = new HookParams()
@@ -176,6 +248,22 @@ public class SubscriptionRegistry {
 		myInterceptorBroadcaster.callHooks(Pointcut.SUBSCRIPTION_AFTER_ACTIVE_SUBSCRIPTION_REGISTERED, params);
 	}
 
+	/**
+	 * Parse the criteria once up front so that matching doesn't need to parse them for every resource
+	 */
+	private void compileCriteria(CanonicalSubscription theSubscription) {
+		String criteria = theSubscription.getCriteriaString();
+		if (isBlank(criteria)) {
+			return;
+		}
+		try {
+			theSubscription.setCompiledCriteria(myInMemoryResourceMatcher.compileCriteria(criteria));
+		} catch (Exception e) {
+			// Matching will parse the criteria string and report the problem
+			ourLog.debug("Unable to compile criteria {} for subscription {}: {}", criteria, theSubscription.getIdElementString(), e.toString());
+		}
+	}
+
 	private boolean channelTypeSame(CanonicalSubscription theExistingSubscription, CanonicalSubscription theNewSubscription) {
 		return theExistingSubscription.getChannelType().equals(theNewSubscription.getChannelType());
 	}
@@ -21,27 +21,40 @@ package ca.uhn.fhir.jpa.subscription.module.matcher;
  */
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
+import ca.uhn.fhir.jpa.searchparam.matcher.CompiledMatchCriteria;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
-import ca.uhn.fhir.jpa.searchparam.matcher.SearchParamMatcher;
+import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryResourceMatcher;
 import ca.uhn.fhir.jpa.subscription.module.CanonicalSubscription;
 import ca.uhn.fhir.jpa.subscription.module.ResourceModifiedMessage;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.function.Supplier;
+
 public class InMemorySubscriptionMatcher implements ISubscriptionMatcher {
 	private static final Logger ourLog = LoggerFactory.getLogger(InMemorySubscriptionMatcher.class);
 
 	@Autowired
 	private FhirContext myContext;
 	@Autowired
-	private SearchParamMatcher mySearchParamMatcher;
+	private InMemoryResourceMatcher myInMemoryResourceMatcher;
+	@Autowired
+	private ResourceModifiedSearchParamExtractor myResourceModifiedSearchParamExtractor;
 
 	@Override
 	public InMemoryMatchResult match(CanonicalSubscription theSubscription, ResourceModifiedMessage theMsg) {
 		try {
-			return mySearchParamMatcher.match(theSubscription.getCriteriaString(), theMsg.getNewPayload(myContext), null);
+			IBaseResource resource = theMsg.getNewPayload(myContext);
+			Supplier<ResourceIndexedSearchParams> searchParams = () -> myResourceModifiedSearchParamExtractor.getIndexedSearchParams(theMsg);
+			CompiledMatchCriteria compiledCriteria = theSubscription.getCompiledCriteria();
+			if (compiledCriteria != null && resource != null) {
+				return myInMemoryResourceMatcher.matchLazily(compiledCriteria, resource, searchParams);
+			}
+			return myInMemoryResourceMatcher.matchLazily(theSubscription.getCriteriaString(), resource, searchParams);
 		} catch (Exception e) {
 			ourLog.error("Failure in in-memory matcher", e);
 			throw new InternalErrorException("Failure performing memory-match for resource ID[" + theMsg.getId(myContext) + "] for subscription ID[" + theSubscription.getIdElementString() + "]: " + e.getMessage(), e);
@@ -0,0 +1,52 @@
+package ca.uhn.fhir.jpa.subscription.module.matcher;
+
+/*-
+ * #%L
+ * HAPI FHIR Subscription Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
+import ca.uhn.fhir.jpa.searchparam.matcher.IndexedSearchParamExtractor;
+import ca.uhn.fhir.jpa.subscription.module.ResourceModifiedMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Extracts the search parameters for the new payload of a {@link ResourceModifiedMessage}.
+ * The same message is used to look up candidate subscriptions and is then matched against
+ * each of them, so the parameters are extracted the first time they are needed and kept on
+ * the message for everything else that processes it.
+ */
+@Component
+public class ResourceModifiedSearchParamExtractor {
+
+	@Autowired
+	private FhirContext myContext;
+	@Autowired
+	private IndexedSearchParamExtractor myIndexedSearchParamExtractor;
+
+	public ResourceIndexedSearchParams getIndexedSearchParams(ResourceModifiedMessage theMsg) {
+		ResourceIndexedSearchParams retVal = theMsg.getIndexedSearchParams();
+		if (retVal == null) {
+			retVal = myIndexedSearchParamExtractor.extractIndexedSearchParams(theMsg.getNewPayload(myContext), null);
+			theMsg.setIndexedSearchParams(retVal);
+		}
+		return retVal;
+	}
+}
@@ -91,10 +91,21 @@ public abstract class BaseSubscriptionDeliverySubscriber implements MessageHandl
 				return;
 			}
 
+			handleDeliveryFailure(msg, e);
+
 			throw new MessagingException(theMessage, errorMsg, e);
 		}
 	}
 
 	public abstract void handleMessage(ResourceDeliveryMessage theMessage) throws Exception;
 
+	/**
+	 * Called when a delivery has failed and no interceptor has handled the failure, just
+	 * before the failure is passed on to the channel. Subclasses may use this to arrange for
+	 * the delivery to be retried. The default implementation does nothing.
+	 */
+	protected void handleDeliveryFailure(ResourceDeliveryMessage theMessage, Exception theException) {
+		// nothing
+	}
+
 }
@@ -104,6 +104,18 @@ public class ResourceDeliveryMessage extends BaseResourceMessage implements IRes
 		myPayloadId = thePayload.getIdElement().toUnqualified().getValue();
 	}
 
+	/**
+	 * Sets the payload using an encoding of it that has already been created, e.g. by
+	 * {@link ResourceModifiedMessage#getNewPayloadEncoded(FhirContext, EncodingEnum)}.
+	 * The resource is kept as well, so a subscriber receiving this message through an
+	 * in-process channel won't need to parse the encoded payload.
+	 */
+	public void setPayload(IBaseResource thePayload, String thePayloadString) {
+		myPayload = thePayload;
+		myPayloadString = thePayloadString;
+		myPayloadId = thePayload.getIdElement().toUnqualified().getValue();
+	}
+
 	@Override
 	public String getPayloadId() {
 		return myPayloadId;
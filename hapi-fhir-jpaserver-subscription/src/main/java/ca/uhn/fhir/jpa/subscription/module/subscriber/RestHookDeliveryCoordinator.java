@@ -0,0 +1,237 @@
+package ca.uhn.fhir.jpa.subscription.module.subscriber;
+
+/*-
+ * #%L
+ * HAPI FHIR Subscription Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.model.entity.ModelConfig;
+import ca.uhn.fhir.jpa.subscription.module.cache.ActiveSubscription;
+import ca.uhn.fhir.jpa.subscription.module.cache.SubscriptionRegistry;
+import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.commons.lang3.time.DateUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Locale;
+import java.util.concurrent.*;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Coordinates REST Hook deliveries across all subscriptions. It limits the number of
+ * deliveries in progress to each endpoint by running them on a separate executor for each
+ * endpoint (see {@link ModelConfig#setRestHookMaxConcurrentDeliveriesPerEndpoint(int)}), and
+ * schedules failed deliveries to be sent to the delivery channel again (see
+ * {@link ModelConfig#setRestHookDeliveryRetryCount(int)}).
+ */
+@Component
+public class RestHookDeliveryCoordinator {
+
+	/**
+	 * Message attribute holding the number of times a delivery has already been retried
+	 */
+	public static final String ATTRIBUTE_RETRY_COUNT = "restHookDeliveryRetryCount";
+	private static final long MAX_RETRY_DELAY_MILLIS = DateUtils.MILLIS_PER_HOUR;
+	/**
+	 * The number of deliveries which may be waiting for each endpoint before the delivery
+	 * threads have to wait as well
+	 */
+	static final int MAX_QUEUED_DELIVERIES_PER_ENDPOINT = 1000;
+	private static final Logger ourLog = LoggerFactory.getLogger(RestHookDeliveryCoordinator.class);
+
+	private final ConcurrentHashMap<String, ThreadPoolExecutor> myEndpointExecutors = new ConcurrentHashMap<>();
+	@Autowired
+	private ModelConfig myModelConfig;
+	@Autowired
+	private FhirContext myFhirContext;
+	@Autowired
+	private SubscriptionRegistry mySubscriptionRegistry;
+	private ScheduledExecutorService myRetryExecutor;
+
+	@PostConstruct
+	public void start() {
+		ThreadFactory threadFactory = new BasicThreadFactory.Builder()
+			.namingPattern("subscription-resthook-retry-%d")
+			.daemon(true)
+			.build();
+		myRetryExecutor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+	}
+
+	@PreDestroy
+	public void stop() {
+		if (myRetryExecutor != null) {
+			myRetryExecutor.shutdownNow();
+		}
+		myEndpointExecutors.values().forEach(ThreadPoolExecutor::shutdown);
+	}
+
+	/**
+	 * Hands the given delivery to the executor for the given endpoint, which runs no more than
+	 * the maximum number of deliveries to that endpoint at the same time. The calling thread
+	 * only waits if the endpoint already has the maximum number of deliveries queued. If there
+	 * is no limit, the delivery is run by the calling thread.
+	 */
+	public void deliver(String theEndpointUrl, Runnable theDelivery) {
+		int limit = myModelConfig.getRestHookMaxConcurrentDeliveriesPerEndpoint();
+		if (limit <= 0 || isBlank(theEndpointUrl)) {
+			theDelivery.run();
+			return;
+		}
+
+		String endpoint = toEndpointKey(theEndpointUrl);
+		ThreadPoolExecutor executor = myEndpointExecutors.compute(endpoint, (k, v) -> {
+			if (v == null) {
+				return newEndpointExecutor(limit);
+			}
+			if (v.getMaximumPoolSize() < limit) {
+				v.setMaximumPoolSize(limit);
+				v.setCorePoolSize(limit);
+			} else if (v.getMaximumPoolSize() > limit) {
+				v.setCorePoolSize(limit);
+				v.setMaximumPoolSize(limit);
+			}
+			return v;
+		});
+		executor.execute(() -> {
+			try {
+				theDelivery.run();
+			} catch (RuntimeException e) {
+				// The delivery has already logged and handled its own failure
+				ourLog.debug("REST Hook delivery to {} failed", endpoint, e);
+			}
+		});
+	}
+
+	/**
+	 * Schedules a failed delivery to be sent to its subscription's delivery channel again,
+	 * unless it has already been retried as many times as allowed or the failure was
+	 * reported by the endpoint as a client error, which a retry would not fix
+	 *
+	 * @return Returns <code>true</code> if a retry was scheduled
+	 */
+	public boolean scheduleRetry(ResourceDeliveryMessage theMessage, Exception theException) {
+		if (!isRetryable(theException)) {
+			ourLog.info("Not retrying REST Hook delivery for subscription {} because it failed with a client error", theMessage.getSubscriptionId(myFhirContext));
+			return false;
+		}
+
+		int previousRetries = NumberUtils.toInt(theMessage.getAttribute(ATTRIBUTE_RETRY_COUNT).orElse(null), 0);
+		if (previousRetries >= myModelConfig.getRestHookDeliveryRetryCount()) {
+			return false;
+		}
+
+		long delay = getRetryDelayMillis(myModelConfig.getRestHookDeliveryRetryDelayMillis(), previousRetries);
+		theMessage.setAttribute(ATTRIBUTE_RETRY_COUNT, Integer.toString(previousRetries + 1));
+		ourLog.info("Retrying REST Hook delivery for subscription {} in {}ms (retry {} of {})", theMessage.getSubscriptionId(myFhirContext), delay, previousRetries + 1, myModelConfig.getRestHookDeliveryRetryCount());
+		myRetryExecutor.schedule(() -> resend(theMessage), delay, TimeUnit.MILLISECONDS);
+		return true;
+	}
+
+	private void resend(ResourceDeliveryMessage theMessage) {
+		String subscriptionId = theMessage.getSubscription().getIdElement(myFhirContext).getIdPart();
+		ActiveSubscription activeSubscription = mySubscriptionRegistry.get(subscriptionId);
+		if (activeSubscription == null || activeSubscription.getSubscribableChannel() == null) {
+			ourLog.info("Not retrying REST Hook delivery because subscription {} is no longer active", subscriptionId);
+			return;
+		}
+
+		try {
+			activeSubscription.getSubscribableChannel().send(new ResourceDeliveryJsonMessage(theMessage));
+		} catch (RuntimeException e) {
+			ourLog.error("Failed to send REST Hook delivery retry for subscription " + subscriptionId + " to its delivery channel", e);
+		}
+	}
+
+	/**
+	 * Failures are retried unless the endpoint responded with a 4xx status. Request
+	 * timeouts and throttling are the exception, since those are expected to pass.
+	 */
+	@VisibleForTesting
+	static boolean isRetryable(Exception theException) {
+		int index = ExceptionUtils.indexOfType(theException, BaseServerResponseException.class);
+		if (index == -1) {
+			return true;
+		}
+		int status = ((BaseServerResponseException) ExceptionUtils.getThrowableList(theException).get(index)).getStatusCode();
+		return status < 400 || status >= 500 || status == 408 || status == 429;
+	}
+
+	@VisibleForTesting
+	static long getRetryDelayMillis(long theInitialDelayMillis, int thePreviousRetries) {
+		long retVal = theInitialDelayMillis;
+		for (int i = 0; i < thePreviousRetries && retVal < MAX_RETRY_DELAY_MILLIS; i++) {
+			retVal = Math.min(retVal * 2, MAX_RETRY_DELAY_MILLIS);
+		}
+		return retVal;
+	}
+
+	/**
+	 * Deliveries are limited per scheme, host and port, since that's what a connection
+	 * (and the server on the other end of it) is shared by
+	 */
+	@VisibleForTesting
+	static String toEndpointKey(String theEndpointUrl) {
+		try {
+			URI uri = new URI(theEndpointUrl);
+			if (uri.getHost() != null) {
+				return (uri.getScheme() + "://" + uri.getHost() + ":" + uri.getPort()).toLowerCase(Locale.US);
+			}
+		} catch (URISyntaxException e) {
+			ourLog.debug("Invalid REST Hook endpoint URL: {}", theEndpointUrl);
+		}
+		return theEndpointUrl;
+	}
+
+	/**
+	 * Threads time out when idle, so an endpoint which isn't receiving deliveries holds no
+	 * threads. Once the queue is full, the delivery thread waits for space in the queue.
+	 */
+	private static ThreadPoolExecutor newEndpointExecutor(int theLimit) {
+		ThreadFactory threadFactory = new BasicThreadFactory.Builder()
+			.namingPattern("subscription-resthook-delivery-%d")
+			.daemon(true)
+			.build();
+		RejectedExecutionHandler rejectHandler = (theRunnable, theExecutor) -> {
+			try {
+				theExecutor.getQueue().put(theRunnable);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RejectedExecutionException("Interrupted while waiting to queue REST Hook delivery", e);
+			}
+		};
+		ThreadPoolExecutor retVal = new ThreadPoolExecutor(theLimit, theLimit,
+			DateUtils.MILLIS_PER_MINUTE, TimeUnit.MILLISECONDS,
+			new LinkedBlockingQueue<>(MAX_QUEUED_DELIVERIES_PER_ENDPOINT),
+			threadFactory,
+			rejectHandler);
+		retVal.allowCoreThreadTimeOut(true);
+		return retVal;
+	}
+}
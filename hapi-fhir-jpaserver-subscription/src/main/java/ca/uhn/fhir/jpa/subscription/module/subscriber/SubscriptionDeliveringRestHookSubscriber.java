@@ -27,6 +27,7 @@ import ca.uhn.fhir.interceptor.api.Pointcut;
 import ca.uhn.fhir.rest.api.EncodingEnum;
 import ca.uhn.fhir.rest.api.RequestTypeEnum;
 import ca.uhn.fhir.rest.client.api.*;
+import ca.uhn.fhir.rest.client.exceptions.FhirClientConnectionException;
 import ca.uhn.fhir.rest.client.interceptor.SimpleRequestHeaderInterceptor;
 import ca.uhn.fhir.rest.gclient.IClientExecutable;
 import ca.uhn.fhir.rest.server.exceptions.ResourceGoneException;
@@ -38,12 +39,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
+import org.springframework.messaging.Message;
 import org.springframework.messaging.MessagingException;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.util.*;
 
+import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 @Component
@@ -54,6 +57,9 @@ public class SubscriptionDeliveringRestHookSubscriber extends BaseSubscriptionDe
 	private Logger ourLog = LoggerFactory.getLogger(SubscriptionDeliveringRestHookSubscriber.class);
 	@Autowired
 	private IInterceptorBroadcaster myInterceptorBroadcaster;
+	@Autowired
+	private RestHookDeliveryCoordinator myDeliveryCoordinator;
+	private volatile CachedClient myCachedClient;
 
 	protected void deliverPayload(ResourceDeliveryMessage theMsg, CanonicalSubscription theSubscription, EncodingEnum thePayloadType, IGenericClient theClient) {
 		IBaseResource payloadResource = getAndMassagePayload(theMsg, theSubscription);
@@ -136,8 +142,25 @@ public class SubscriptionDeliveringRestHookSubscriber extends BaseSubscriptionDe
 		return payloadResource;
 	}
 
+	/**
+	 * Hands the whole delivery, including its interceptor calls and failure handling, to
+	 * the coordinator so that deliveries are limited per endpoint without holding up
+	 * this thread
+	 */
 	@Override
-	public void handleMessage(ResourceDeliveryMessage theMessage) throws MessagingException {
+	public void handleMessage(Message theMessage) throws MessagingException {
+		String endpointUrl = null;
+		if (theMessage.getPayload() instanceof ResourceDeliveryMessage) {
+			CanonicalSubscription subscription = ((ResourceDeliveryMessage) theMessage.getPayload()).getSubscription();
+			if (subscription != null) {
+				endpointUrl = subscription.getEndpointUrl();
+			}
+		}
+		myDeliveryCoordinator.deliver(endpointUrl, () -> super.handleMessage(theMessage));
+	}
+
+	@Override
+	public void handleMessage(ResourceDeliveryMessage theMessage) throws Exception {
 		CanonicalSubscription subscription = theMessage.getSubscription();
 
 		// Interceptor call: SUBSCRIPTION_BEFORE_REST_HOOK_DELIVERY
@@ -148,9 +171,6 @@ public class SubscriptionDeliveringRestHookSubscriber extends BaseSubscriptionDe
 			return;
 		}
 
-		// Grab the endpoint from the subscription
-		String endpointUrl = subscription.getEndpointUrl();
-
 		// Grab the payload type (encoding mimetype) from the subscription
 		String payloadString = subscription.getPayloadString();
 		EncodingEnum payloadType = null;
@@ -158,21 +178,7 @@ public class SubscriptionDeliveringRestHookSubscriber extends BaseSubscriptionDe
 			payloadType = EncodingEnum.forContentType(payloadString);
 		}
 
-		// Create the client request
-		myFhirContext.getRestfulClientFactory().setServerValidationMode(ServerValidationModeEnum.NEVER);
-		IGenericClient client = null;
-		if (isNotBlank(endpointUrl)) {
-			client = myFhirContext.newRestfulGenericClient(endpointUrl);
-
-			// Additional headers specified in the subscription
-			List<String> headers = subscription.getHeaders();
-			for (String next : headers) {
-				if (isNotBlank(next)) {
-					client.registerInterceptor(new SimpleRequestHeaderInterceptor(next));
-				}
-			}
-		}
-
+		IGenericClient client = getClient(subscription);
 		deliverPayload(theMessage, subscription, payloadType, client);
 
 		// Interceptor call: SUBSCRIPTION_AFTER_REST_HOOK_DELIVERY
@@ -186,6 +192,43 @@ public class SubscriptionDeliveringRestHookSubscriber extends BaseSubscriptionDe
 
 	}
 
+	@Override
+	protected void handleDeliveryFailure(ResourceDeliveryMessage theMessage, Exception theException) {
+		myDeliveryCoordinator.scheduleRetry(theMessage, theException);
+	}
+
+	/**
+	 * Returns a client for the subscription's endpoint. Clients are thread safe once they
+	 * are configured, so the client is reused for as long as the endpoint and headers of
+	 * the subscription stay the same.
+	 */
+	private IGenericClient getClient(CanonicalSubscription theSubscription) {
+		String endpointUrl = theSubscription.getEndpointUrl();
+		if (isBlank(endpointUrl)) {
+			return null;
+		}
+
+		List<String> headers = theSubscription.getHeaders();
+		CachedClient cachedClient = myCachedClient;
+		if (cachedClient == null || !cachedClient.myEndpointUrl.equals(endpointUrl) || !cachedClient.myHeaders.equals(headers)) {
+
+			// Create the client request
+			myFhirContext.getRestfulClientFactory().setServerValidationMode(ServerValidationModeEnum.NEVER);
+			IGenericClient client = myFhirContext.newRestfulGenericClient(endpointUrl);
+
+			// Additional headers specified in the subscription
+			for (String next : headers) {
+				if (isNotBlank(next)) {
+					client.registerInterceptor(new SimpleRequestHeaderInterceptor(next));
+				}
+			}
+
+			cachedClient = new CachedClient(endpointUrl, new ArrayList<>(headers), client);
+			myCachedClient = cachedClient;
+		}
+		return cachedClient.myClient;
+	}
+
 	/**
 	 * Sends a POST notification without a payload
 	 */
@@ -215,7 +258,19 @@ public class SubscriptionDeliveringRestHookSubscriber extends BaseSubscriptionDe
 		} catch (IOException e) {
 			ourLog.error("Error trying to reach " + theMsg.getSubscription().getEndpointUrl());
 			e.printStackTrace();
-			throw new ResourceNotFoundException(e.getMessage());
+			throw new FhirClientConnectionException(e.getMessage(), e);
+		}
+	}
+
+	private static class CachedClient {
+		private final String myEndpointUrl;
+		private final List<String> myHeaders;
+		private final IGenericClient myClient;
+
+		CachedClient(String theEndpointUrl, List<String> theHeaders, IGenericClient theClient) {
+			myEndpointUrl = theEndpointUrl;
+			myHeaders = theHeaders;
+			myClient = theClient;
 		}
 	}
 }
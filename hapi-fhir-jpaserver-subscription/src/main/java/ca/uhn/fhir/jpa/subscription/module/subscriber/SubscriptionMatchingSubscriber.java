@@ -10,6 +10,7 @@ import ca.uhn.fhir.jpa.subscription.module.ResourceModifiedMessage;
 import ca.uhn.fhir.jpa.subscription.module.cache.ActiveSubscription;
 import ca.uhn.fhir.jpa.subscription.module.cache.SubscriptionRegistry;
 import ca.uhn.fhir.jpa.subscription.module.matcher.ISubscriptionMatcher;
+import ca.uhn.fhir.jpa.subscription.module.matcher.ResourceModifiedSearchParamExtractor;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.EncodingEnum;
 import org.apache.commons.lang3.StringUtils;
@@ -61,6 +62,8 @@ public class SubscriptionMatchingSubscriber implements MessageHandler {
 	private SubscriptionRegistry mySubscriptionRegistry;
 	@Autowired
 	private IInterceptorBroadcaster myInterceptorBroadcaster;
+	@Autowired
+	private ResourceModifiedSearchParamExtractor myResourceModifiedSearchParamExtractor;
 
 	@Override
 	public void handleMessage(Message<?> theMessage) throws MessagingException {
@@ -108,7 +111,7 @@ public class SubscriptionMatchingSubscriber implements MessageHandler {
 		IIdType resourceId = theMsg.getId(myFhirContext);
 		Boolean isText = false;
 
-		Collection<ActiveSubscription> subscriptions = mySubscriptionRegistry.getAll();
+		Collection<ActiveSubscription> subscriptions = mySubscriptionRegistry.getCandidates(resourceId.getResourceType(), () -> myResourceModifiedSearchParamExtractor.getIndexedSearchParams(theMsg));
 
 		ourLog.trace("Testing {} subscriptions for applicability", subscriptions.size());
 		boolean resourceMatched = false;
@@ -149,7 +152,7 @@ public class SubscriptionMatchingSubscriber implements MessageHandler {
 
 			ResourceDeliveryMessage deliveryMsg = new ResourceDeliveryMessage();
 
-			deliveryMsg.setPayload(myFhirContext, payload, encoding);
+			deliveryMsg.setPayload(payload, theMsg.getNewPayloadEncoded(myFhirContext, encoding));
 			deliveryMsg.setSubscription(subscription);
 			deliveryMsg.setOperationType(theMsg.getOperationType());
 			deliveryMsg.copyAdditionalPropertiesFrom(theMsg);
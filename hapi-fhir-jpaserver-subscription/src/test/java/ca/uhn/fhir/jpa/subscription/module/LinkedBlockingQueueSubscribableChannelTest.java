@@ -0,0 +1,91 @@
+package ca.uhn.fhir.jpa.subscription.module;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.support.GenericMessage;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class LinkedBlockingQueueSubscribableChannelTest {
+
+	private LinkedBlockingQueueSubscribableChannel myChannel;
+
+	@After
+	public void after() {
+		if (myChannel != null) {
+			myChannel.destroy();
+		}
+	}
+
+	@Test
+	public void testDropOldestWhenFull() throws Exception {
+		myChannel = new LinkedBlockingQueueSubscribableChannel(new LinkedBlockingQueue<>(2), "test-%d", 1, ChannelOverflowPolicyEnum.DROP_OLDEST);
+
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch finished = new CountDownLatch(3);
+		List<Object> handled = new CopyOnWriteArrayList<>();
+		MessageHandler handler = theMessage -> {
+			started.countDown();
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			handled.add(theMessage.getPayload());
+			finished.countDown();
+		};
+		myChannel.subscribe(handler);
+
+		// The first message is being handled, the next two fill the queue, and the
+		// last two each push the oldest waiting message out
+		myChannel.send(new GenericMessage<>("1"));
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		myChannel.send(new GenericMessage<>("2"));
+		myChannel.send(new GenericMessage<>("3"));
+		myChannel.send(new GenericMessage<>("4"));
+		myChannel.send(new GenericMessage<>("5"));
+		assertEquals(2, myChannel.getMetrics().getQueueSize());
+
+		release.countDown();
+		assertTrue(finished.await(10, TimeUnit.SECONDS));
+		assertThat(handled, contains("1", "4", "5"));
+
+		// Metrics are recorded once the handler returns
+		ChannelMetrics metrics = myChannel.getMetrics();
+		long start = System.currentTimeMillis();
+		while (metrics.getMessagesHandled() < 3 && System.currentTimeMillis() - start < 10000) {
+			Thread.sleep(10);
+		}
+		assertEquals(5, metrics.getMessagesSent());
+		assertEquals(3, metrics.getMessagesHandled());
+		assertEquals(2, metrics.getMessagesDropped());
+		assertEquals(0, metrics.getMessagesFailed());
+		assertEquals(0, metrics.getSenderWaits());
+	}
+
+	@Test
+	public void testUnsubscribeUsingOriginalHandler() throws Exception {
+		myChannel = new LinkedBlockingQueueSubscribableChannel(new LinkedBlockingQueue<>(10), "test-%d", 1);
+
+		List<Object> handled = new CopyOnWriteArrayList<>();
+		MessageHandler handler = theMessage -> handled.add(theMessage.getPayload());
+		assertTrue(myChannel.subscribe(handler));
+		assertTrue(myChannel.unsubscribe(handler));
+
+		myChannel.send(new GenericMessage<>("1"));
+		Thread.sleep(100);
+		assertEquals(0, handled.size());
+	}
+
+}
@@ -1,11 +1,15 @@
 package ca.uhn.fhir.jpa.subscription.module;
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.api.EncodingEnum;
 import org.hl7.fhir.r4.model.Organization;
 import org.junit.Test;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
 
 public class ResourceModifiedTest {
 	private FhirContext myFhirContext = FhirContext.forR4();
@@ -47,4 +51,19 @@ public class ResourceModifiedTest {
 		assertNull(msg.getNewPayload(myFhirContext));
 	}
 
+	@Test
+	public void testNewPayloadEncodedOncePerEncoding() {
+		Organization org = new Organization();
+		org.setName("testOrgName");
+		org.setId("Organization/testOrgId");
+		ResourceModifiedMessage msg = new ResourceModifiedMessage(myFhirContext, org, ResourceModifiedMessage.OperationTypeEnum.CREATE);
+
+		String json = msg.getNewPayloadEncoded(myFhirContext, EncodingEnum.JSON);
+		String xml = msg.getNewPayloadEncoded(myFhirContext, EncodingEnum.XML);
+		assertThat(json, containsString("\"name\":\"testOrgName\""));
+		assertThat(xml, containsString("<name value=\"testOrgName\"/>"));
+		assertSame(json, msg.getNewPayloadEncoded(myFhirContext, EncodingEnum.JSON));
+		assertSame(xml, msg.getNewPayloadEncoded(myFhirContext, EncodingEnum.XML));
+	}
+
 }
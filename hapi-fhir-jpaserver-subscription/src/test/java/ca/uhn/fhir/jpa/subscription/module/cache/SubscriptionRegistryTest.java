@@ -1,13 +1,20 @@
 package ca.uhn.fhir.jpa.subscription.module.cache;
 
 
+import ca.uhn.fhir.jpa.model.util.JpaConstants;
 import ca.uhn.fhir.jpa.subscription.module.BaseSubscriptionDstu3Test;
+import ca.uhn.fhir.jpa.subscription.module.ChannelMetrics;
+import ca.uhn.fhir.jpa.subscription.module.ChannelOverflowPolicyEnum;
+import org.hl7.fhir.dstu3.model.CodeType;
+import org.hl7.fhir.dstu3.model.PositiveIntType;
 import org.hl7.fhir.dstu3.model.Subscription;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.Map;
+
 import static org.junit.Assert.*;
 
 public class SubscriptionRegistryTest extends BaseSubscriptionDstu3Test {
@@ -65,6 +72,34 @@ public class SubscriptionRegistryTest extends BaseSubscriptionDstu3Test {
 		assertFalse(newActiveSubscription == origActiveSubscription);
 	}
 
+	@Test
+	public void updateSubscriptionDoesntReuseActiveSubscriptionWhenChannelSettingsChange() {
+		Subscription subscription = createSubscription();
+		mySubscriptionRegistry.registerSubscriptionUnlessAlreadyRegistered(subscription);
+		ActiveSubscription origActiveSubscription = mySubscriptionRegistry.get(SUBSCRIPTION_ID);
+
+		subscription.getChannel().addExtension(JpaConstants.EXT_SUBSCRIPTION_DELIVERY_QUEUE_SIZE, new PositiveIntType(10));
+		mySubscriptionRegistry.registerSubscriptionUnlessAlreadyRegistered(subscription);
+		assertEquals(1, mySubscriptionRegistry.size());
+		ActiveSubscription newActiveSubscription = mySubscriptionRegistry.get(SUBSCRIPTION_ID);
+		// A new object
+		assertFalse(newActiveSubscription == origActiveSubscription);
+	}
+
+	@Test
+	public void deliveryChannelMetricsAreAvailablePerSubscription() {
+		Subscription subscription = createSubscription();
+		subscription.getChannel().addExtension(JpaConstants.EXT_SUBSCRIPTION_DELIVERY_CONCURRENT_CONSUMERS, new PositiveIntType(2));
+		subscription.getChannel().addExtension(JpaConstants.EXT_SUBSCRIPTION_DELIVERY_QUEUE_SIZE, new PositiveIntType(10));
+		subscription.getChannel().addExtension(JpaConstants.EXT_SUBSCRIPTION_DELIVERY_OVERFLOW_POLICY, new CodeType(ChannelOverflowPolicyEnum.DROP_OLDEST.getCode()));
+		mySubscriptionRegistry.registerSubscriptionUnlessAlreadyRegistered(subscription);
+
+		Map<String, ChannelMetrics> metrics = mySubscriptionRegistry.getDeliveryChannelMetrics();
+		assertEquals(1, metrics.size());
+		assertEquals(0, metrics.get(SUBSCRIPTION_ID).getMessagesSent());
+		assertEquals(0, metrics.get(SUBSCRIPTION_ID).getQueueSize());
+	}
+
 	private Subscription createSubscription() {
 		Subscription subscription = new Subscription();
 		subscription.setId(SUBSCRIPTION_ID);
@@ -0,0 +1,130 @@
+package ca.uhn.fhir.jpa.subscription.module.subscriber;
+
+import ca.uhn.fhir.jpa.model.entity.ModelConfig;
+import ca.uhn.fhir.rest.client.exceptions.FhirClientConnectionException;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import ca.uhn.fhir.rest.server.exceptions.UnclassifiedServerFailureException;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RestHookDeliveryCoordinatorTest {
+
+	@Test
+	public void testRetryDelay() {
+		assertEquals(500, RestHookDeliveryCoordinator.getRetryDelayMillis(500, 0));
+		assertEquals(1000, RestHookDeliveryCoordinator.getRetryDelayMillis(500, 1));
+		assertEquals(4000, RestHookDeliveryCoordinator.getRetryDelayMillis(500, 3));
+		assertEquals(60 * 60 * 1000, RestHookDeliveryCoordinator.getRetryDelayMillis(500, 100));
+	}
+
+	@Test
+	public void testEndpointKey() {
+		assertEquals("http://localhost:8080", RestHookDeliveryCoordinator.toEndpointKey("http://LOCALHOST:8080/fhir"));
+		assertEquals("https://example.com:-1", RestHookDeliveryCoordinator.toEndpointKey("https://example.com/a/b?c=d"));
+		assertEquals("not a url", RestHookDeliveryCoordinator.toEndpointKey("not a url"));
+	}
+
+	@Test
+	public void testRetryable() {
+		assertFalse(RestHookDeliveryCoordinator.isRetryable(new ResourceNotFoundException("Not found")));
+		assertFalse(RestHookDeliveryCoordinator.isRetryable(new InvalidRequestException("Bad request")));
+		assertFalse(RestHookDeliveryCoordinator.isRetryable(new RuntimeException(new ResourceNotFoundException("Not found"))));
+		assertTrue(RestHookDeliveryCoordinator.isRetryable(new UnclassifiedServerFailureException(429, "Too many requests")));
+		assertTrue(RestHookDeliveryCoordinator.isRetryable(new InternalErrorException("Server error")));
+		assertTrue(RestHookDeliveryCoordinator.isRetryable(new FhirClientConnectionException("Connection refused")));
+		assertTrue(RestHookDeliveryCoordinator.isRetryable(new RuntimeException("Failed")));
+	}
+
+	@Test
+	public void testConcurrentDeliveriesLimitedPerEndpoint() throws Exception {
+		RestHookDeliveryCoordinator coordinator = newCoordinator(2);
+
+		AtomicInteger inProgress = new AtomicInteger();
+		AtomicInteger maxInProgress = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch finished = new CountDownLatch(4);
+		Runnable delivery = () -> {
+			maxInProgress.accumulateAndGet(inProgress.incrementAndGet(), Math::max);
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			inProgress.decrementAndGet();
+			finished.countDown();
+		};
+
+		try {
+			// None of these wait for a delivery to finish
+			coordinator.deliver("http://foo/fhir/a", delivery);
+			coordinator.deliver("http://foo/fhir/b", delivery);
+			coordinator.deliver("http://foo/fhir/c", delivery);
+			coordinator.deliver("http://bar/fhir", delivery);
+
+			// Two deliveries to foo and one to bar can be in progress, the third to foo waits
+			long start = System.currentTimeMillis();
+			while (inProgress.get() < 3 && System.currentTimeMillis() - start < 10000) {
+				Thread.sleep(10);
+			}
+			Thread.sleep(200);
+			assertEquals(3, inProgress.get());
+
+			release.countDown();
+			assertTrue(finished.await(10, TimeUnit.SECONDS));
+			assertEquals(3, maxInProgress.get());
+		} finally {
+			coordinator.stop();
+		}
+	}
+
+	@Test
+	public void testInterruptedWhileEndpointQueueFull() throws Exception {
+		RestHookDeliveryCoordinator coordinator = newCoordinator(1);
+
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			coordinator.deliver("http://foo/fhir", () -> {
+				try {
+					release.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+
+			// Fill the queue
+			for (int i = 0; i < RestHookDeliveryCoordinator.MAX_QUEUED_DELIVERIES_PER_ENDPOINT; i++) {
+				coordinator.deliver("http://foo/fhir", () -> {});
+			}
+
+			Thread.currentThread().interrupt();
+			try {
+				coordinator.deliver("http://foo/fhir", () -> {});
+				fail();
+			} catch (RejectedExecutionException e) {
+				// good
+			}
+			assertTrue(Thread.interrupted());
+		} finally {
+			release.countDown();
+			coordinator.stop();
+		}
+	}
+
+	private RestHookDeliveryCoordinator newCoordinator(int theMaxConcurrentDeliveriesPerEndpoint) {
+		ModelConfig modelConfig = new ModelConfig();
+		modelConfig.setRestHookMaxConcurrentDeliveriesPerEndpoint(theMaxConcurrentDeliveriesPerEndpoint);
+		RestHookDeliveryCoordinator retVal = new RestHookDeliveryCoordinator();
+		ReflectionTestUtils.setField(retVal, "myModelConfig", modelConfig);
+		return retVal;
+	}
+
+}
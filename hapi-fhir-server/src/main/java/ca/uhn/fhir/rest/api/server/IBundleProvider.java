@@ -151,6 +151,17 @@ public interface IBundleProvider {
 	@Nullable
 	Integer size();
 
+	/**
+	 * Returns an estimate of the total number of results, which is reported in the
+	 * response bundle's total if {@link #size()} returns {@literal null}. Unlike
+	 * {@link #size()}, this value is never used to decide how many results to return
+	 * or whether to include paging links. The default implementation returns {@literal null}.
+	 */
+	@Nullable
+	default Integer getEstimatedSize() {
+		return null;
+	}
+
 	/**
 	 * This method returns <code>true</code> if the bundle provider knows that at least
 	 * one result exists.
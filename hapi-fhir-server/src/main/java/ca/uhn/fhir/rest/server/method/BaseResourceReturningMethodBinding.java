@@ -223,7 +223,12 @@ public abstract class BaseResourceReturningMethodBinding extends BaseMethodBindi
 			}
 		}
 
-		bundleFactory.addRootPropertiesToBundle(theResult.getUuid(), serverBase, theLinkSelf, linkPrev, linkNext, theResult.size(), theBundleType, theResult.getPublished());
+		Integer bundleTotal = theResult.size();
+		if (bundleTotal == null) {
+			bundleTotal = theResult.getEstimatedSize();
+		}
+
+		bundleFactory.addRootPropertiesToBundle(theResult.getUuid(), serverBase, theLinkSelf, linkPrev, linkNext, bundleTotal, theBundleType, theResult.getPublished());
 		bundleFactory.addResourcesToBundle(new ArrayList<>(resourceList), theBundleType, serverBase, theServer.getBundleInclusionRule(), theIncludes);
 
 		if (theServer.getPagingProvider() != null) {
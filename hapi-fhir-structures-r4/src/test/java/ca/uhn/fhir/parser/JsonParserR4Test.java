@@ -1,6 +1,7 @@
 package ca.uhn.fhir.parser;
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.json.GsonStructure;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.util.StopWatch;
 import ca.uhn.fhir.util.TestUtil;
@@ -8,6 +9,7 @@ import com.google.common.collect.Sets;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.NullWriter;
 import org.apache.commons.lang.StringUtils;
+import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.r4.model.*;
 import org.junit.AfterClass;
 import org.junit.Ignore;
@@ -15,9 +17,14 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
@@ -29,6 +36,11 @@ import static org.mockito.Mockito.mock;
 public class JsonParserR4Test {
 	private static final Logger ourLog = LoggerFactory.getLogger(JsonParserR4Test.class);
 	private static FhirContext ourCtx = FhirContext.forR4();
+	private static FhirContext ourStreamingCtx = FhirContext.forR4();
+
+	static {
+		ourStreamingCtx.getParserOptions().setStreamingJsonParsing(true);
+	}
 
 	private Bundle createBundleWithPatient() {
 		Bundle b = new Bundle();
@@ -448,6 +460,139 @@ public class JsonParserR4Test {
 
 	}
 
+	@Test
+	public void testParseResourceTypeNotFirst() {
+		String input = "{" +
+			"\"id\":\"123\"," +
+			"\"name\":[{\"family\":\"FAM\",\"given\":[\"G1\",\"G2\"],\"_given\":[null,{\"extension\":[{\"url\":\"http://foo\",\"valueString\":\"EXT\"}]}]}]," +
+			"\"resourceType\":\"Patient\"," +
+			"\"active\":true" +
+			"}";
+		Patient pt = ourStreamingCtx.newJsonParser().parseResource(Patient.class, input);
+
+		assertEquals("123", pt.getIdElement().getIdPart());
+		assertEquals("FAM", pt.getNameFirstRep().getFamily());
+		assertEquals("G2", pt.getNameFirstRep().getGiven().get(1).getValue());
+		assertEquals("EXT", ((StringType) pt.getNameFirstRep().getGiven().get(1).getExtensionByUrl("http://foo").getValue()).getValue());
+		assertTrue(pt.getActive());
+	}
+
+	@Test
+	public void testParseAlternateBeforeAndAfterPrimitive() {
+		String input = "{" +
+			"\"resourceType\":\"Patient\"," +
+			"\"_birthDate\":{\"extension\":[{\"url\":\"http://foo\",\"valueString\":\"BD\"}]}," +
+			"\"birthDate\":\"2011-01-01\"," +
+			"\"gender\":\"male\"," +
+			"\"_gender\":{\"extension\":[{\"url\":\"http://foo\",\"valueString\":\"GENDER\"}]}," +
+			"\"_active\":{\"extension\":[{\"url\":\"http://foo\",\"valueString\":\"ACTIVE\"}]}" +
+			"}";
+		Patient pt = ourStreamingCtx.newJsonParser().parseResource(Patient.class, input);
+
+		assertEquals("2011-01-01", pt.getBirthDateElement().getValueAsString());
+		assertEquals("BD", ((StringType) pt.getBirthDateElement().getExtensionByUrl("http://foo").getValue()).getValue());
+		assertEquals(Enumerations.AdministrativeGender.MALE, pt.getGender());
+		assertEquals("GENDER", ((StringType) pt.getGenderElement().getExtensionByUrl("http://foo").getValue()).getValue());
+		assertNull(pt.getActiveElement().getValue());
+		assertEquals("ACTIVE", ((StringType) pt.getActiveElement().getExtensionByUrl("http://foo").getValue()).getValue());
+	}
+
+	@Test
+	public void testParseBundleEntryResourceTypeNotFirst() {
+		String input = "{\"resourceType\":\"Bundle\",\"type\":\"collection\",\"entry\":[" +
+			"{\"fullUrl\":\"Patient/1\",\"resource\":{\"id\":\"1\",\"active\":true,\"resourceType\":\"Patient\"}}," +
+			"{\"resource\":{\"resourceType\":\"Observation\",\"status\":\"final\",\"subject\":{\"reference\":\"Patient/1\"}}}" +
+			"]}";
+		Bundle bundle = ourStreamingCtx.newJsonParser().parseResource(Bundle.class, input);
+
+		assertEquals(2, bundle.getEntry().size());
+		Patient pt = (Patient) bundle.getEntry().get(0).getResource();
+		assertEquals("1", pt.getIdElement().getIdPart());
+		assertTrue(pt.getActive());
+		Observation obs = (Observation) bundle.getEntry().get(1).getResource();
+		assertEquals("Patient/1", obs.getSubject().getReference());
+	}
+
+	@Test
+	public void testParseBundleEntryResources() {
+		String input = "{\"type\":\"collection\",\"meta\":{\"profile\":[\"http://foo\"]},\"entry\":[" +
+			"{\"fullUrl\":\"http://example.com/fhir/Patient/1\",\"resource\":{\"id\":\"2\",\"meta\":{\"versionId\":\"3\"},\"active\":true,\"resourceType\":\"Patient\"}}," +
+			"{\"request\":{\"method\":\"POST\",\"url\":\"Observation\"}}," +
+			"{\"resource\":{\"resourceType\":\"Observation\",\"status\":\"final\",\"subject\":{\"reference\":\"Patient/1\"}}}" +
+			"],\"resourceType\":\"Bundle\"}";
+
+		Iterator<IBaseResource> iter = ourCtx.newJsonParser().parseBundleEntryResources(new StringReader(input));
+
+		assertTrue(iter.hasNext());
+		Patient pt = (Patient) iter.next();
+		assertEquals("http://example.com/fhir/Patient/1/_history/3", pt.getIdElement().getValue());
+		assertTrue(pt.getActive());
+
+		assertTrue(iter.hasNext());
+		Observation obs = (Observation) iter.next();
+		assertEquals("Patient/1", obs.getSubject().getReference());
+
+		assertFalse(iter.hasNext());
+	}
+
+	@Test
+	public void testParseBundleEntryResourcesMatchesBundle() {
+		Bundle b = createBigBundle();
+		IParser parser = ourCtx.newJsonParser();
+		String input = parser.encodeResourceToString(b);
+
+		Bundle parsed = parser.parseResource(Bundle.class, input);
+		List<String> expected = new ArrayList<>();
+		for (Bundle.BundleEntryComponent next : parsed.getEntry()) {
+			expected.add(parser.encodeResourceToString(next.getResource()));
+		}
+
+		List<String> actual = new ArrayList<>();
+		Iterator<IBaseResource> iter = parser.parseBundleEntryResources(new ByteArrayInputStream(input.getBytes(Constants.CHARSET_UTF8)));
+		while (iter.hasNext()) {
+			actual.add(parser.encodeResourceToString(iter.next()));
+		}
+
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testParseBundleEntryResourcesWrongType() {
+		Iterator<IBaseResource> iter = ourCtx.newJsonParser().parseBundleEntryResources(new StringReader("{\"resourceType\":\"Patient\",\"active\":true}"));
+		try {
+			iter.hasNext();
+			fail();
+		} catch (DataFormatException e) {
+			assertEquals("Expected a resource of type 'Bundle', found: Patient", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testParseTrailingContentRejected() {
+		try {
+			ourStreamingCtx.newJsonParser().parseResource(Patient.class, "{\"resourceType\":\"Patient\"} {}");
+			fail();
+		} catch (DataFormatException e) {
+			assertThat(e.getMessage(), containsString("Failed to parse JSON"));
+		}
+	}
+
+	@Test
+	public void testParseBigBundleStreamingMatchesStructure() {
+		Bundle b = createBigBundle();
+		IJsonLikeParser parser = (IJsonLikeParser) ourStreamingCtx.newJsonParser();
+		String input = parser.encodeResourceToString(b);
+
+		Bundle streamed = ourStreamingCtx.newJsonParser().parseResource(Bundle.class, input);
+		assertEquals(b.getEntry().size(), streamed.getEntry().size());
+
+		GsonStructure structure = new GsonStructure();
+		structure.load(new StringReader(input));
+		Bundle loaded = parser.parseResource(Bundle.class, structure);
+
+		assertEquals(parser.encodeResourceToString(loaded), parser.encodeResourceToString(streamed));
+	}
+
 	/**
 	 * 2019-09-19 - Pre #1489
 	 * 18:24:48.548 [main] INFO  ca.uhn.fhir.parser.JsonParserR4Test [JsonParserR4Test.java:483] - Encoded 200 passes - 50ms / pass - 19.7 / second
@@ -534,6 +679,23 @@ public class JsonParserR4Test {
 	}
 
 
+	@Test
+	@Ignore
+	public void testTimingsInputStreaming() throws IOException {
+		Bundle b = createBigBundle();
+		IParser parser = ourStreamingCtx.newJsonParser();
+		String input = parser.encodeResourceToString(b);
+
+		StopWatch sw = new StopWatch();
+		for (int i = 0; ; i++) {
+			parser.parseResource(input);
+			if (i % 100 == 0) {
+				ourLog.info("Parsed {} passes - {} / pass - {} / second", i, sw.formatMillisPerOperation(i), sw.formatThroughput(i, TimeUnit.SECONDS));
+			}
+		}
+
+	}
+
 	/**
 	 * 2019-09-19
 	 * 18:32:04.518 [main] INFO  ca.uhn.fhir.parser.JsonParserR4Test [JsonParserR4Test.java:513] - Parsed 200 passes - 37ms / pass - 26.8 / second
@@ -0,0 +1,104 @@
+package ca.uhn.fhir.parser;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.util.TestUtil;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.*;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class XmlParserR4Test {
+	private static FhirContext ourCtx = FhirContext.forR4();
+
+	@Test
+	public void testParseBundleEntryResources() {
+		String input = "<Bundle xmlns=\"http://hl7.org/fhir\">" +
+			"<meta><profile value=\"http://foo\"/></meta>" +
+			"<type value=\"collection\"/>" +
+			"<entry>" +
+			"<fullUrl value=\"http://example.com/fhir/Patient/1\"/>" +
+			"<resource>\n  <!-- comment -->\n  <Patient><id value=\"2\"/><meta><versionId value=\"3\"/></meta><contained><Organization><id value=\"org\"/><name value=\"ORG\"/></Organization></contained><active value=\"true\"/><managingOrganization><reference value=\"#org\"/></managingOrganization></Patient>\n</resource>" +
+			"</entry>" +
+			"<entry><request><method value=\"POST\"/><url value=\"Observation\"/></request></entry>" +
+			"<entry>" +
+			"<resource><Observation><status value=\"final\"/><subject><reference value=\"Patient/1\"/></subject></Observation></resource>" +
+			"</entry>" +
+			"</Bundle>";
+
+		Iterator<IBaseResource> iter = ourCtx.newXmlParser().parseBundleEntryResources(new StringReader(input));
+
+		assertTrue(iter.hasNext());
+		Patient pt = (Patient) iter.next();
+		assertEquals("http://example.com/fhir/Patient/1/_history/3", pt.getIdElement().getValue());
+		assertTrue(pt.getActive());
+		assertEquals("ORG", ((Organization) pt.getManagingOrganization().getResource()).getName());
+
+		assertTrue(iter.hasNext());
+		Observation obs = (Observation) iter.next();
+		assertEquals("Patient/1", obs.getSubject().getReference());
+
+		assertFalse(iter.hasNext());
+	}
+
+	@Test
+	public void testParseBundleEntryResourcesMatchesBundle() {
+		Bundle b = new Bundle();
+		b.setType(Bundle.BundleType.TRANSACTION);
+		for (int i = 0; i < 100; i++) {
+			Patient pt = new Patient();
+			pt.setId("Patient/" + i);
+			pt.addName().setFamily("FAM" + i).addGiven("GIVEN");
+			pt.addIdentifier().setSystem("http://foo").setValue(Integer.toString(i));
+			b.addEntry().setFullUrl(pt.getId()).setResource(pt).getRequest().setMethod(Bundle.HTTPVerb.PUT).setUrl(pt.getId());
+
+			Observation obs = new Observation();
+			obs.setStatus(Observation.ObservationStatus.FINAL);
+			obs.getSubject().setReference(pt.getId());
+			obs.setValue(new Quantity().setValue(i).setUnit("kg"));
+			b.addEntry().setResource(obs).getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("Observation");
+		}
+
+		IParser parser = ourCtx.newXmlParser();
+		String input = parser.encodeResourceToString(b);
+
+		Bundle parsed = parser.parseResource(Bundle.class, input);
+		List<String> expected = new ArrayList<>();
+		for (Bundle.BundleEntryComponent next : parsed.getEntry()) {
+			expected.add(parser.encodeResourceToString(next.getResource()));
+		}
+
+		List<String> actual = new ArrayList<>();
+		Iterator<IBaseResource> iter = parser.parseBundleEntryResources(new ByteArrayInputStream(input.getBytes(Constants.CHARSET_UTF8)));
+		while (iter.hasNext()) {
+			actual.add(parser.encodeResourceToString(iter.next()));
+		}
+
+		assertEquals(200, actual.size());
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testParseBundleEntryResourcesWrongType() {
+		try {
+			ourCtx.newXmlParser().parseBundleEntryResources(new StringReader("<Patient xmlns=\"http://hl7.org/fhir\"><active value=\"true\"/></Patient>"));
+			fail();
+		} catch (DataFormatException e) {
+			assertEquals("Expected a resource of type 'Bundle', found: Patient", e.getMessage());
+		}
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() {
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+}